@@ -0,0 +1,35 @@
+package me.braydon.redis.benchmark;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import me.braydon.redis.benchmark.server.RespServer;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * @author Braydon
+ */
+@UtilityClass
+public final class Benchmarks {
+    /**
+     * Create a pool of connections to the given server, sized
+     * like the exporter sizes its own pool.
+     *
+     * @param server the server to connect to
+     * @param index the index of the database to select
+     * @param threads the amount of workers using the pool
+     * @return the pool
+     */
+    @NonNull
+    public static JedisPool newPool(@NonNull RespServer server, int index, int threads) {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(threads + 1); // A connection for every worker, and one for the scanner
+        poolConfig.setMaxIdle(threads + 1);
+        return new JedisPool(poolConfig, new HostAndPort("127.0.0.1", server.getPort()), DefaultJedisClientConfig.builder()
+                .database(index)
+                .clientName("redis-exporter-benchmark")
+                .build());
+    }
+}
@@ -0,0 +1,57 @@
+package me.braydon.redis.benchmark;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Fills a database with a {@link DataShape}.
+ * <p>
+ * The data is generated from a fixed seed, so every
+ * run of a benchmark sees exactly the same data.
+ * </p>
+ *
+ * @author Braydon
+ */
+@UtilityClass
+public final class DataGenerator {
+    /**
+     * The seed every shape is generated from.
+     */
+    private static final long SEED = 0x5EEDL;
+
+    /**
+     * The amount of keys to queue before syncing.
+     */
+    private static final int KEYS_PER_SYNC = 1000;
+
+    /**
+     * Fill the database selected by the given connection with
+     * the given shape, replacing anything already in it.
+     *
+     * @param jedis the connection to write with
+     * @param shape the shape of the data
+     * @param scale the multiplier of the amount of keys and members
+     * @return the amount of keys written
+     */
+    public static int generate(@NonNull Jedis jedis, @NonNull DataShape shape, double scale) {
+        Random random = new Random(SEED);
+        int keys = Math.max((int) (shape.getKeys() * scale), 1);
+        int members = Math.max((int) (shape.getMembers() * scale), 1);
+        jedis.flushDB();
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < keys; i++) {
+            byte[] key = (shape.name().toLowerCase() + ':' + i).getBytes(StandardCharsets.UTF_8);
+            shape.queueKey(pipeline, key, members, random);
+            if (i % KEYS_PER_SYNC == KEYS_PER_SYNC - 1) {
+                pipeline.sync();
+            }
+        }
+        pipeline.sync();
+        return keys;
+    }
+}
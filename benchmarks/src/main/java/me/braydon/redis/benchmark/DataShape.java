@@ -0,0 +1,129 @@
+package me.braydon.redis.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import redis.clients.jedis.Pipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The shapes of data the exporter is benchmarked against,
+ * modelled on the databases it is run against.
+ *
+ * @author Braydon
+ * @see DataGenerator for generating the data
+ */
+@AllArgsConstructor @Getter
+public enum DataShape {
+    /**
+     * Many small strings, the most common shape.
+     */
+    SMALL_STRINGS(100_000, 1, 64) {
+        @Override
+        void queueKey(@NonNull Pipeline pipeline, byte @NonNull [] key, int members, @NonNull Random random) {
+            pipeline.set(key, randomBytes(random, getValueSize()));
+        }
+    },
+
+    /**
+     * A few huge hashes, read in pages.
+     */
+    HUGE_HASHES(4, 100_000, 32) {
+        @Override
+        void queueKey(@NonNull Pipeline pipeline, byte @NonNull [] key, int members, @NonNull Random random) {
+            Map<byte[], byte[]> batch = new HashMap<>();
+            for (int i = 0; i < members; i++) {
+                batch.put(("field:" + i).getBytes(StandardCharsets.UTF_8), randomBytes(random, getValueSize()));
+                if (batch.size() == BATCH_SIZE || i == members - 1) {
+                    pipeline.hset(key, batch);
+                    batch = new HashMap<>();
+                }
+            }
+        }
+    },
+
+    /**
+     * A few huge sorted sets, read in pages.
+     */
+    HUGE_ZSETS(4, 100_000, 16) {
+        @Override
+        void queueKey(@NonNull Pipeline pipeline, byte @NonNull [] key, int members, @NonNull Random random) {
+            Map<byte[], Double> batch = new HashMap<>();
+            for (int i = 0; i < members; i++) {
+                batch.put(randomBytes(random, getValueSize()), random.nextDouble() * 1_000_000D);
+                if (batch.size() == BATCH_SIZE || i == members - 1) {
+                    pipeline.zadd(key, batch);
+                    batch = new HashMap<>();
+                }
+            }
+        }
+    },
+
+    /**
+     * Long lists, whose order must be kept.
+     */
+    LONG_LISTS(8, 50_000, 48) {
+        @Override
+        void queueKey(@NonNull Pipeline pipeline, byte @NonNull [] key, int members, @NonNull Random random) {
+            byte[][] batch = new byte[Math.min(BATCH_SIZE, members)][];
+            int size = 0;
+            for (int i = 0; i < members; i++) {
+                batch[size++] = randomBytes(random, getValueSize());
+                if (size == batch.length || i == members - 1) {
+                    pipeline.rpush(key, size == batch.length ? batch : Arrays.copyOf(batch, size));
+                    size = 0;
+                }
+            }
+        }
+    };
+
+    /**
+     * The amount of members to write per command.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * The amount of keys at a scale of 1.
+     */
+    private final int keys;
+
+    /**
+     * The amount of members in each key at a scale of 1.
+     */
+    private final int members;
+
+    /**
+     * The size in bytes of each value.
+     */
+    private final int valueSize;
+
+    /**
+     * Queue the commands to write a single key of this shape.
+     *
+     * @param pipeline the pipeline to queue the commands in
+     * @param key the key to write
+     * @param members the amount of members to write
+     * @param random the source of the values
+     */
+    abstract void queueKey(@NonNull Pipeline pipeline, byte @NonNull [] key, int members, @NonNull Random random);
+
+    /**
+     * Generate the given amount of random printable bytes.
+     *
+     * @param random the source of the bytes
+     * @param length the amount of bytes
+     * @return the bytes
+     */
+    static byte @NonNull [] randomBytes(@NonNull Random random, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ('!' + random.nextInt('~' - '!' + 1));
+        }
+        return bytes;
+    }
+}
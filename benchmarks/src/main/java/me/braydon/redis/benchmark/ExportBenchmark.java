@@ -0,0 +1,95 @@
+package me.braydon.redis.benchmark;
+
+import me.braydon.redis.benchmark.server.RespServer;
+import me.braydon.redis.io.DataFormat;
+import me.braydon.redis.task.ExportMode;
+import me.braydon.redis.task.ExportTask;
+import org.openjdk.jmh.annotations.*;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures exporting each {@link DataShape} from the
+ * {@link RespServer} with each export strategy.
+ * <p>
+ * Every operation is a complete export of the database,
+ * overwriting the data file of the previous operation.
+ * </p>
+ *
+ * @author Braydon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10) @Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ExportBenchmark {
+    @Param({ "SMALL_STRINGS", "HUGE_HASHES", "HUGE_ZSETS", "LONG_LISTS" })
+    public DataShape shape;
+
+    @Param({ "1" })
+    public double scale;
+
+    @Param({ "json", "ndjson", "binary" })
+    public String format;
+
+    @Param({ "false" })
+    public boolean compress;
+
+    @Param({ "types", "dump" })
+    public String mode;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "10000" })
+    public int largeKeySize;
+
+    private RespServer server;
+    private JedisPool pool;
+    private File dataFile;
+    private int keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new RespServer();
+        pool = Benchmarks.newPool(server, 0, threads);
+        try (Jedis jedis = pool.getResource()) {
+            keys = DataGenerator.generate(jedis, shape, scale);
+        }
+        dataFile = File.createTempFile("export-benchmark", "." + DataFormat.getFormat(format).getExtension());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.close();
+        server.close();
+        Files.deleteIfExists(dataFile.toPath());
+        Files.deleteIfExists(new File(dataFile.getPath() + ".export-metrics.json").toPath());
+    }
+
+    @Benchmark
+    public void export(TransferCounters counters) {
+        long serverAllocated = server.getAllocatedBytes();
+        ExportTask.builder()
+                .pool(pool)
+                .dataFile(dataFile)
+                .format(DataFormat.getFormat(format))
+                .compress(compress)
+                .compressThreads(Runtime.getRuntime().availableProcessors())
+                .mode(ExportMode.valueOf(mode.toUpperCase()))
+                .scanCount(1000)
+                .threads(threads)
+                .largeKeySize(largeKeySize)
+                .pageSize(1000)
+                .progressInterval(0)
+                .build().run();
+        counters.keys += keys;
+        counters.bytes += dataFile.length();
+        counters.serverAllocatedBytes += server.getAllocatedBytes() - serverAllocated;
+    }
+}
@@ -0,0 +1,128 @@
+package me.braydon.redis.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import lombok.NonNull;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Reports the allocation rate and heap usage of each iteration.
+ * <p>
+ * The exporter does its work on short-lived threads, whose
+ * allocations are lost by per-thread accounting. Instead,
+ * the bytes allocated are the growth of the heap plus the
+ * bytes freed by every collection during the iteration.
+ * </p>
+ * <p>
+ * The peak heap is the sum of the peak of each heap pool,
+ * an upper bound as the pools may peak at different times,
+ * while the peak live heap is the highest usage left behind
+ * by a collection, which is what the data held in memory
+ * costs.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class HeapProfiler implements InternalProfiler {
+    private static final double MEBIBYTE = 1024D * 1024D;
+
+    private final AtomicLong freedBytes = new AtomicLong(); // The bytes freed by the collections of the iteration
+    private final LongAccumulator peakLiveBytes = new LongAccumulator(Math::max, 0L); // The highest usage after a collection
+    private final NotificationListener listener = this::onNotification;
+    private long usedBefore; // The heap usage when the iteration started
+    private long startNanos;
+
+    @Override
+    public String getDescription() {
+        return "Allocation rate, peak heap and peak live heap of each iteration";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        freedBytes.set(0L);
+        peakLiveBytes.reset();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        usedBefore = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        startNanos = System.nanoTime();
+    }
+
+    @Override @NonNull
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9D;
+        long usedAfter = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            try {
+                ((NotificationEmitter) collector).removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ignored) {
+                // Never added
+            }
+        }
+        long allocated = Math.max(usedAfter - usedBefore + freedBytes.get(), 0L);
+        long peak = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        long ops = Math.max(result.getMetadata().getAllOps(), 1L);
+        return List.of(
+                new ScalarResult("heap.alloc.rate", allocated / MEBIBYTE / seconds, "MB/sec", AggregationPolicy.AVG),
+                new ScalarResult("heap.alloc.norm", (double) allocated / ops, "B/op", AggregationPolicy.AVG),
+                new ScalarResult("heap.peak", peak / MEBIBYTE, "MB", AggregationPolicy.MAX),
+                new ScalarResult("heap.live.peak", peakLiveBytes.get() / MEBIBYTE, "MB", AggregationPolicy.MAX)
+        );
+    }
+
+    /**
+     * Record the bytes freed by a collection.
+     */
+    private void onNotification(@NonNull Notification notification, Object handback) {
+        if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long before = sumUsed(info.getGcInfo().getMemoryUsageBeforeGc());
+        long after = sumUsed(info.getGcInfo().getMemoryUsageAfterGc());
+        freedBytes.addAndGet(Math.max(before - after, 0L));
+        peakLiveBytes.accumulate(after);
+    }
+
+    /**
+     * Sum the usage of the heap pools in the given usages.
+     */
+    private static long sumUsed(@NonNull Map<String, MemoryUsage> usages) {
+        long used = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = usages.get(pool.getName());
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+}
@@ -0,0 +1,121 @@
+package me.braydon.redis.benchmark;
+
+import me.braydon.redis.benchmark.server.RespServer;
+import me.braydon.redis.io.DataFormat;
+import me.braydon.redis.task.ExportMode;
+import me.braydon.redis.task.ExportTask;
+import me.braydon.redis.task.ImportTask;
+import org.openjdk.jmh.annotations.*;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures importing each {@link DataShape} into the
+ * {@link RespServer} with each import strategy.
+ * <p>
+ * The shape is exported once per trial, every operation
+ * is then a complete import of that data file into a
+ * flushed database.
+ * </p>
+ *
+ * @author Braydon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10) @Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ImportBenchmark {
+    @Param({ "SMALL_STRINGS", "HUGE_HASHES", "HUGE_ZSETS", "LONG_LISTS" })
+    public DataShape shape;
+
+    @Param({ "1" })
+    public double scale;
+
+    @Param({ "json", "ndjson", "binary" })
+    public String format;
+
+    @Param({ "false" })
+    public boolean compress;
+
+    @Param({ "types", "dump" })
+    public String mode;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "1000" })
+    public int batchSize;
+
+    @Param({ "1000" })
+    public int memberBatchSize;
+
+    private RespServer server;
+    private JedisPool target;
+    private File dataFile;
+    private int keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new RespServer();
+        DataFormat dataFormat = DataFormat.getFormat(format);
+        dataFile = File.createTempFile("import-benchmark", "." + dataFormat.getExtension());
+        try (JedisPool source = Benchmarks.newPool(server, 0, 1)) {
+            try (Jedis jedis = source.getResource()) {
+                keys = DataGenerator.generate(jedis, shape, scale);
+            }
+            ExportTask.builder()
+                    .pool(source)
+                    .dataFile(dataFile)
+                    .format(dataFormat)
+                    .compress(compress)
+                    .compressThreads(Runtime.getRuntime().availableProcessors())
+                    .mode(ExportMode.valueOf(mode.toUpperCase()))
+                    .scanCount(1000)
+                    .threads(1)
+                    .largeKeySize(10000)
+                    .pageSize(1000)
+                    .progressInterval(0)
+                    .build().run();
+            try (Jedis jedis = source.getResource()) {
+                jedis.flushDB(); // Only the imported copy is kept in memory
+            }
+        }
+        target = Benchmarks.newPool(server, 1, threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        target.close();
+        server.close();
+        Files.deleteIfExists(dataFile.toPath());
+        Files.deleteIfExists(new File(dataFile.getPath() + ".export-metrics.json").toPath());
+        Files.deleteIfExists(new File(dataFile.getPath() + ".import-metrics.json").toPath());
+    }
+
+    @Benchmark
+    public void importDatabase(TransferCounters counters) {
+        long serverAllocated = server.getAllocatedBytes();
+        ImportTask.builder()
+                .pool(target)
+                .dataFile(dataFile)
+                .format(DataFormat.getFormat(format))
+                .compressThreads(Runtime.getRuntime().availableProcessors())
+                .flush(true)
+                .threads(threads)
+                .queueDepth(1000)
+                .batchSize(batchSize)
+                .batchBytes(8L * 1024L * 1024L)
+                .memberBatchSize(memberBatchSize)
+                .memberBatchBytes(1024L * 1024L)
+                .progressInterval(0)
+                .build().run();
+        counters.keys += keys;
+        counters.bytes += dataFile.length();
+        counters.serverAllocatedBytes += server.getAllocatedBytes() - serverAllocated;
+    }
+}
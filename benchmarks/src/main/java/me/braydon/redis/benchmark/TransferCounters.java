@@ -0,0 +1,39 @@
+package me.braydon.redis.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The secondary results of a transfer benchmark,
+ * reported by JMH as rates per second.
+ *
+ * @author Braydon
+ */
+@State(Scope.Thread) @AuxCounters(AuxCounters.Type.OPERATIONS)
+public class TransferCounters {
+    /**
+     * The amount of keys transferred.
+     */
+    public long keys;
+
+    /**
+     * The amount of data file bytes transferred.
+     */
+    public long bytes;
+
+    /**
+     * The amount of bytes allocated by the stand-in server,
+     * to subtract from the allocation rate of the benchmark.
+     */
+    public long serverAllocatedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        keys = 0L;
+        bytes = 0L;
+        serverAllocatedBytes = 0L;
+    }
+}
@@ -0,0 +1,509 @@
+package me.braydon.redis.benchmark.server;
+
+import lombok.NonNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * A single in-memory database of the {@link RespServer}.
+ * <p>
+ * This implements just the commands the exporter sends,
+ * with the replies Redis would give, so the exporter can
+ * be measured without a real server. Every command runs
+ * under the lock of the keyspace, like the single thread
+ * of Redis. Keys are wrapped in a {@link ByteBuffer}, which
+ * compares by content.
+ * </p>
+ *
+ * @author Braydon
+ */
+final class Keyspace {
+    private final Map<ByteBuffer, Object> values = new HashMap<>();
+    private final Map<ByteBuffer, Long> expiries = new HashMap<>(); // The unix time in milliseconds each key expires at
+    private final List<ByteBuffer> order = new ArrayList<>(); // The order keys were added in, walked by SCAN
+
+    /**
+     * Execute the given command.
+     *
+     * @param name the upper case name of the command
+     * @param args the arguments of the command, without the name
+     * @return the reply
+     * @see RespServer#writeReply(OutputStream, Object) for the types of reply
+     */
+    synchronized Object execute(@NonNull String name, @NonNull List<byte[]> args) {
+        return switch (name) {
+            case "DBSIZE" -> (long) values.size();
+            case "FLUSHDB" -> {
+                values.clear();
+                expiries.clear();
+                order.clear();
+                yield RespServer.OK;
+            }
+            case "SCAN" -> scan(args);
+            case "TYPE" -> new RespServer.Status(typeOf(values.get(key(args))));
+            case "PTTL" -> pttl(key(args));
+            case "EXPIRE" -> expire(key(args), Long.parseLong(string(args.get(1))) * 1000L);
+            case "PEXPIRE" -> expire(key(args), Long.parseLong(string(args.get(1))));
+            case "DEL" -> {
+                long removed = 0L;
+                for (byte[] key : args) {
+                    ByteBuffer wrapped = ByteBuffer.wrap(key);
+                    expiries.remove(wrapped);
+                    if (values.remove(wrapped) != null) {
+                        removed++;
+                    }
+                }
+                yield removed;
+            }
+            case "GET" -> get(args, byte[].class);
+            case "SET" -> {
+                put(key(args), args.get(1));
+                expiries.remove(key(args));
+                yield RespServer.OK;
+            }
+            case "HGETALL", "HLEN", "HSCAN", "HSET" -> hash(name, args);
+            case "SMEMBERS", "SCARD", "SSCAN", "SADD" -> set(name, args);
+            case "ZRANGEBYSCORE", "ZCARD", "ZSCAN", "ZADD" -> sortedSet(name, args);
+            case "LRANGE", "LLEN", "RPUSH" -> list(name, args);
+            case "DUMP" -> dump(key(args));
+            case "RESTORE" -> restore(args);
+            default -> new RespServer.Error("ERR unknown command '" + name.toLowerCase(Locale.ROOT) + "'");
+        };
+    }
+
+    /**
+     * Walk the keys in the order they were added, the
+     * cursor being the index of the next key.
+     */
+    private Object scan(@NonNull List<byte[]> args) {
+        int cursor = Integer.parseInt(string(args.get(0)));
+        int count = 10;
+        Pattern match = null;
+        String type = null;
+        for (int i = 1; i + 1 < args.size(); i += 2) {
+            String option = string(args.get(i)).toUpperCase(Locale.ROOT);
+            switch (option) {
+                case "COUNT" -> count = Integer.parseInt(string(args.get(i + 1)));
+                case "MATCH" -> match = globToPattern(new String(args.get(i + 1), StandardCharsets.ISO_8859_1)); // Match byte for byte
+                case "TYPE" -> type = string(args.get(i + 1));
+                default -> {
+                    return new RespServer.Error("ERR syntax error");
+                }
+            }
+        }
+        List<Object> keys = new ArrayList<>();
+        int index = cursor;
+        for (; index < order.size() && index < cursor + count; index++) {
+            ByteBuffer key = order.get(index);
+            Object value = values.get(key);
+            if (value == null || (match != null && !match.matcher(new String(key.array(), StandardCharsets.ISO_8859_1)).matches())
+                    || (type != null && !type.equals(typeOf(value)))) { // Removed, or filtered out
+                continue;
+            }
+            keys.add(key.array());
+        }
+        if (index >= order.size()) { // The walk is complete, drop the removed keys from the order
+            order.removeIf(key -> !values.containsKey(key));
+            index = 0;
+        }
+        return List.of(bytes(String.valueOf(index)), keys);
+    }
+
+    private Object pttl(@NonNull ByteBuffer key) {
+        if (!values.containsKey(key)) {
+            return -2L;
+        }
+        Long expireAt = expiries.get(key);
+        return expireAt == null ? -1L : Math.max(expireAt - System.currentTimeMillis(), 0L);
+    }
+
+    private Object expire(@NonNull ByteBuffer key, long millis) {
+        if (!values.containsKey(key)) {
+            return 0L;
+        }
+        expiries.put(key, System.currentTimeMillis() + millis);
+        return 1L;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object hash(@NonNull String name, @NonNull List<byte[]> args) {
+        Object current = get(args, LinkedHashMap.class);
+        if (current instanceof RespServer.Error) {
+            return current;
+        }
+        Map<ByteBuffer, byte[]> hash = (Map<ByteBuffer, byte[]>) current;
+        if (name.equals("HSET")) {
+            if (hash == null) {
+                hash = new LinkedHashMap<>();
+                put(key(args), hash);
+            }
+            long added = 0L;
+            for (int i = 1; i + 1 < args.size(); i += 2) {
+                if (hash.put(ByteBuffer.wrap(args.get(i)), args.get(i + 1)) == null) {
+                    added++;
+                }
+            }
+            return added;
+        }
+        if (hash == null) {
+            hash = Map.of();
+        }
+        if (name.equals("HLEN")) {
+            return (long) hash.size();
+        }
+        List<Object> entries = new ArrayList<>(hash.size() * 2);
+        for (Map.Entry<ByteBuffer, byte[]> entry : hash.entrySet()) {
+            entries.add(entry.getKey().array());
+            entries.add(entry.getValue());
+        }
+        return name.equals("HGETALL") ? entries : scanMembers(entries, 2, args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object set(@NonNull String name, @NonNull List<byte[]> args) {
+        Object current = get(args, LinkedHashSet.class);
+        if (current instanceof RespServer.Error) {
+            return current;
+        }
+        Set<ByteBuffer> set = (Set<ByteBuffer>) current;
+        if (name.equals("SADD")) {
+            if (set == null) {
+                set = new LinkedHashSet<>();
+                put(key(args), set);
+            }
+            long added = 0L;
+            for (int i = 1; i < args.size(); i++) {
+                if (set.add(ByteBuffer.wrap(args.get(i)))) {
+                    added++;
+                }
+            }
+            return added;
+        }
+        if (set == null) {
+            set = Set.of();
+        }
+        if (name.equals("SCARD")) {
+            return (long) set.size();
+        }
+        List<Object> members = new ArrayList<>(set.size());
+        for (ByteBuffer member : set) {
+            members.add(member.array());
+        }
+        return name.equals("SMEMBERS") ? members : scanMembers(members, 1, args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object sortedSet(@NonNull String name, @NonNull List<byte[]> args) {
+        Object current = get(args, SortedSet.class);
+        if (current instanceof RespServer.Error) {
+            return current;
+        }
+        SortedSet sortedSet = (SortedSet) current;
+        if (name.equals("ZADD")) {
+            if (sortedSet == null) {
+                sortedSet = new SortedSet();
+                put(key(args), sortedSet);
+            }
+            long added = 0L;
+            for (int i = 1; i + 1 < args.size(); i += 2) {
+                if (sortedSet.scores.put(ByteBuffer.wrap(args.get(i + 1)), parseScore(string(args.get(i)))) == null) {
+                    added++;
+                }
+            }
+            return added;
+        }
+        if (sortedSet == null) {
+            sortedSet = new SortedSet();
+        }
+        if (name.equals("ZCARD")) {
+            return (long) sortedSet.scores.size();
+        }
+        List<Map.Entry<ByteBuffer, Double>> entries = new ArrayList<>(sortedSet.scores.entrySet());
+        List<Object> members = new ArrayList<>(entries.size() * 2);
+        if (name.equals("ZSCAN")) {
+            for (Map.Entry<ByteBuffer, Double> entry : entries) {
+                members.add(entry.getKey().array());
+                members.add(formatScore(entry.getValue()));
+            }
+            return scanMembers(members, 2, args);
+        }
+        // ZRANGEBYSCORE key min max [WITHSCORES], ordered by score and then member
+        double min = parseScore(string(args.get(1)));
+        double max = parseScore(string(args.get(2)));
+        boolean withScores = args.size() > 3 && string(args.get(3)).equalsIgnoreCase("WITHSCORES");
+        entries.sort(Map.Entry.<ByteBuffer, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        for (Map.Entry<ByteBuffer, Double> entry : entries) {
+            if (entry.getValue() < min || entry.getValue() > max) {
+                continue;
+            }
+            members.add(entry.getKey().array());
+            if (withScores) {
+                members.add(formatScore(entry.getValue()));
+            }
+        }
+        return members;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object list(@NonNull String name, @NonNull List<byte[]> args) {
+        Object current = get(args, ArrayList.class);
+        if (current instanceof RespServer.Error) {
+            return current;
+        }
+        List<byte[]> list = (List<byte[]>) current;
+        if (name.equals("RPUSH")) {
+            if (list == null) {
+                list = new ArrayList<>();
+                put(key(args), list);
+            }
+            list.addAll(args.subList(1, args.size()));
+            return (long) list.size();
+        }
+        if (list == null) {
+            list = List.of();
+        }
+        if (name.equals("LLEN")) {
+            return (long) list.size();
+        }
+        int size = list.size();
+        long start = Long.parseLong(string(args.get(1)));
+        long stop = Long.parseLong(string(args.get(2)));
+        start = Math.max(start < 0 ? size + start : start, 0L);
+        stop = Math.min(stop < 0 ? size + stop : stop, size - 1L);
+        return start > stop ? List.of() : new ArrayList<Object>(list.subList((int) start, (int) stop + 1));
+    }
+
+    /**
+     * Serialize the given key into a payload only this server understands.
+     */
+    private Object dump(@NonNull ByteBuffer key) {
+        Object value = values.get(key);
+        if (value == null) {
+            return null;
+        }
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream(); ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(Snapshot.of(value));
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            return new RespServer.Error("ERR " + ex.getMessage());
+        }
+    }
+
+    /**
+     * RESTORE key ttl payload [REPLACE] [ABSTTL]
+     */
+    private Object restore(@NonNull List<byte[]> args) {
+        ByteBuffer key = key(args);
+        long ttl = Long.parseLong(string(args.get(1)));
+        boolean replace = false;
+        boolean absolute = false;
+        for (int i = 3; i < args.size(); i++) {
+            String option = string(args.get(i)).toUpperCase(Locale.ROOT);
+            replace |= option.equals("REPLACE");
+            absolute |= option.equals("ABSTTL");
+        }
+        if (!replace && values.containsKey(key)) {
+            return new RespServer.Error("BUSYKEY Target key name already exists.");
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(args.get(2)))) {
+            put(key, ((Snapshot) in.readObject()).restore());
+        } catch (IOException | ClassNotFoundException ex) {
+            return new RespServer.Error("ERR DUMP payload version or checksum are wrong");
+        }
+        expiries.remove(key);
+        if (ttl > 0L) {
+            expiries.put(key, absolute ? ttl : System.currentTimeMillis() + ttl);
+        }
+        return RespServer.OK;
+    }
+
+    /**
+     * Page through the given flattened members of a collection,
+     * the cursor being the index of the next member.
+     */
+    private static Object scanMembers(@NonNull List<Object> members, int fieldsPerMember, @NonNull List<byte[]> args) {
+        int cursor = Integer.parseInt(string(args.get(1)));
+        int count = 10;
+        for (int i = 2; i + 1 < args.size(); i += 2) {
+            if (string(args.get(i)).equalsIgnoreCase("COUNT")) {
+                count = Integer.parseInt(string(args.get(i + 1)));
+            }
+        }
+        int size = members.size() / fieldsPerMember;
+        int end = Math.min(cursor + count, size);
+        List<Object> page = new ArrayList<>(members.subList(Math.min(cursor, size) * fieldsPerMember, end * fieldsPerMember));
+        return List.of(bytes(String.valueOf(end >= size ? 0 : end)), page);
+    }
+
+    /**
+     * Get the value of the first argument, expired keys are removed first.
+     *
+     * @return the value, null if missing, or an error if it holds another type
+     */
+    private Object get(@NonNull List<byte[]> args, @NonNull Class<?> type) {
+        ByteBuffer key = key(args);
+        Long expireAt = expiries.get(key);
+        if (expireAt != null && expireAt <= System.currentTimeMillis()) {
+            values.remove(key);
+            expiries.remove(key);
+        }
+        Object value = values.get(key);
+        if (value != null && !type.isInstance(value)) {
+            return new RespServer.Error("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return value;
+    }
+
+    private void put(@NonNull ByteBuffer key, @NonNull Object value) {
+        if (values.put(key, value) == null) {
+            order.add(key);
+        }
+    }
+
+    @NonNull
+    private static String typeOf(Object value) {
+        if (value == null) {
+            return "none";
+        } else if (value instanceof byte[]) {
+            return "string";
+        } else if (value instanceof Map) {
+            return "hash";
+        } else if (value instanceof Set) {
+            return "set";
+        } else if (value instanceof SortedSet) {
+            return "zset";
+        }
+        return "list";
+    }
+
+    @NonNull
+    private static ByteBuffer key(@NonNull List<byte[]> args) {
+        return ByteBuffer.wrap(args.get(0));
+    }
+
+    @NonNull
+    private static String string(byte @NonNull [] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte @NonNull [] bytes(@NonNull String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double parseScore(@NonNull String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "+inf", "inf" -> Double.POSITIVE_INFINITY;
+            case "-inf" -> Double.NEGATIVE_INFINITY;
+            default -> Double.parseDouble(value);
+        };
+    }
+
+    private static byte @NonNull [] formatScore(double score) {
+        if (Double.isInfinite(score)) {
+            return bytes(score > 0 ? "inf" : "-inf");
+        }
+        return bytes(score == Math.rint(score) && Math.abs(score) < 1e17 ? String.valueOf((long) score) : String.valueOf(score));
+    }
+
+    @NonNull
+    private static Pattern globToPattern(@NonNull String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                case '[' -> {
+                    int end = glob.indexOf(']', i);
+                    if (end == -1) {
+                        regex.append("\\[");
+                    } else {
+                        regex.append('[').append(glob, i + 1, end).append(']');
+                        i = end;
+                    }
+                }
+                case '\\' -> {
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                }
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * The members of a sorted set, keyed by member.
+     */
+    private static final class SortedSet {
+        private final Map<ByteBuffer, Double> scores = new LinkedHashMap<>();
+    }
+
+    /**
+     * The serializable form of a value, used as the DUMP payload.
+     */
+    private record Snapshot(String type, List<byte[]> fields, double[] scores) implements Serializable {
+        @SuppressWarnings("unchecked")
+        static Snapshot of(@NonNull Object value) {
+            String type = typeOf(value);
+            List<byte[]> fields = new ArrayList<>();
+            double[] scores = null;
+            switch (type) {
+                case "string" -> fields.add((byte[]) value);
+                case "hash" -> ((Map<ByteBuffer, byte[]>) value).forEach((field, fieldValue) -> {
+                    fields.add(field.array());
+                    fields.add(fieldValue);
+                });
+                case "set" -> ((Set<ByteBuffer>) value).forEach(member -> fields.add(member.array()));
+                case "zset" -> {
+                    Map<ByteBuffer, Double> members = ((SortedSet) value).scores;
+                    scores = new double[members.size()];
+                    int i = 0;
+                    for (Map.Entry<ByteBuffer, Double> entry : members.entrySet()) {
+                        fields.add(entry.getKey().array());
+                        scores[i++] = entry.getValue();
+                    }
+                }
+                default -> fields.addAll((List<byte[]>) value);
+            }
+            return new Snapshot(type, fields, scores);
+        }
+
+        @NonNull
+        Object restore() {
+            switch (type) {
+                case "string" -> {
+                    return fields.get(0);
+                }
+                case "hash" -> {
+                    Map<ByteBuffer, byte[]> hash = new LinkedHashMap<>();
+                    for (int i = 0; i + 1 < fields.size(); i += 2) {
+                        hash.put(ByteBuffer.wrap(fields.get(i)), fields.get(i + 1));
+                    }
+                    return hash;
+                }
+                case "set" -> {
+                    Set<ByteBuffer> set = new LinkedHashSet<>();
+                    fields.forEach(member -> set.add(ByteBuffer.wrap(member)));
+                    return set;
+                }
+                case "zset" -> {
+                    SortedSet sortedSet = new SortedSet();
+                    for (int i = 0; i < fields.size(); i++) {
+                        sortedSet.scores.put(ByteBuffer.wrap(fields.get(i)), scores[i]);
+                    }
+                    return sortedSet;
+                }
+                default -> {
+                    return new ArrayList<>(fields);
+                }
+            }
+        }
+    }
+}
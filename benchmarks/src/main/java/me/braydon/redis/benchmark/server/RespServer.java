@@ -0,0 +1,282 @@
+package me.braydon.redis.benchmark.server;
+
+import com.sun.management.ThreadMXBean;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small, in-process server speaking RESP2 that
+ * stands in for Redis while benchmarking.
+ * <p>
+ * Each connection is served by its own thread, and
+ * replies are only flushed once the pipelined requests
+ * already received have been answered, so pipelines cost
+ * a single write like they would against Redis. It only
+ * understands the commands the exporter sends.
+ * </p>
+ * <p>
+ * The server shares the heap of the benchmark, so the
+ * bytes it allocates are tracked separately, allowing
+ * them to be told apart from those of the exporter.
+ * </p>
+ *
+ * @author Braydon
+ * @see Keyspace for the commands
+ */
+public final class RespServer implements Closeable {
+    /**
+     * The amount of databases, selected with SELECT.
+     */
+    public static final int DATABASES = 16;
+
+    static final Status OK = new Status("OK");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final ServerSocket serverSocket;
+    private final Keyspace[] databases = new Keyspace[DATABASES];
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    /**
+     * The port the server is listening on.
+     */
+    @Getter private final int port;
+
+    /**
+     * Start a server listening on a free port of the loopback address.
+     *
+     * @throws IOException if the socket cannot be bound
+     */
+    public RespServer() throws IOException {
+        for (int i = 0; i < DATABASES; i++) {
+            databases[i] = new Keyspace();
+        }
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        port = serverSocket.getLocalPort();
+        Thread acceptor = new Thread(this::accept, "RESP Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Get the amount of heap bytes the server has
+     * allocated while serving requests.
+     *
+     * @return the amount of bytes allocated
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * Stop the server and close every connection.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+
+    /**
+     * Accept connections until the server is closed.
+     */
+    private void accept() {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "RESP Connection " + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException ignored) {
+            // The server was closed
+        }
+    }
+
+    /**
+     * Serve the requests of the given connection until it is closed.
+     *
+     * @param socket the socket of the connection
+     */
+    private void serve(@NonNull Socket socket) {
+        int database = 0; // The database selected by the connection
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE)
+        ) {
+            List<byte[]> request;
+            long allocated = THREADS.getCurrentThreadAllocatedBytes();
+            while ((request = readRequest(in)) != null) {
+                if (request.isEmpty()) {
+                    continue;
+                }
+                String name = new String(request.get(0), StandardCharsets.UTF_8).toUpperCase(Locale.ROOT);
+                List<byte[]> args = request.subList(1, request.size());
+                Object reply;
+                switch (name) {
+                    case "PING" -> reply = new Status("PONG");
+                    case "CLIENT", "AUTH" -> reply = OK; // Names and passwords are accepted as is
+                    case "QUIT" -> {
+                        writeReply(out, OK);
+                        out.flush();
+                        return;
+                    }
+                    case "SELECT" -> {
+                        int index = Integer.parseInt(new String(args.get(0), StandardCharsets.UTF_8));
+                        if (index < 0 || index >= DATABASES) {
+                            reply = new Error("ERR DB index is out of range");
+                        } else {
+                            database = index;
+                            reply = OK;
+                        }
+                    }
+                    default -> {
+                        try {
+                            reply = databases[database].execute(name, args);
+                        } catch (RuntimeException ex) { // Malformed arguments
+                            reply = new Error("ERR " + ex);
+                        }
+                    }
+                }
+                writeReply(out, reply);
+                if (in.available() == 0) { // Answered every pipelined request received so far
+                    out.flush();
+                    long now = THREADS.getCurrentThreadAllocatedBytes();
+                    allocatedBytes.add(now - allocated);
+                    allocated = now;
+                }
+            }
+        } catch (SocketException ignored) {
+            // The connection was closed
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Read the next request, an array of bulk strings.
+     *
+     * @param in the stream to read from
+     * @return the request, null if the connection was closed
+     * @throws IOException if reading fails
+     */
+    private static List<byte[]> readRequest(@NonNull InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Expected an array but found '" + (char) type + "'");
+        }
+        int length = (int) readLong(in);
+        List<byte[]> request = new ArrayList<>(Math.max(length, 0));
+        for (int i = 0; i < length; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected a bulk string");
+            }
+            byte[] bytes = new byte[(int) readLong(in)];
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = in.read(bytes, offset, bytes.length - offset);
+                if (read == -1) {
+                    throw new EOFException();
+                }
+                offset += read;
+            }
+            in.read(); // The trailing CRLF
+            in.read();
+            request.add(bytes);
+        }
+        return request;
+    }
+
+    /**
+     * Read a number terminated by CRLF.
+     */
+    private static long readLong(@NonNull InputStream in) throws IOException {
+        long value = 0L;
+        boolean negative = false;
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            } else if (b == '-') {
+                negative = true;
+            } else {
+                value = value * 10L + (b - '0');
+            }
+        }
+        in.read(); // The LF
+        return negative ? -value : value;
+    }
+
+    /**
+     * Write the given reply.
+     * <p>
+     * A {@link Status} is a simple string, an {@link Error} an
+     * error, a long an integer, a byte array a bulk string, null
+     * the null bulk string and a list an array of replies.
+     * </p>
+     *
+     * @param out the stream to write to
+     * @param reply the reply
+     * @throws IOException if writing fails
+     */
+    static void writeReply(@NonNull OutputStream out, Object reply) throws IOException {
+        if (reply == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Status status) {
+            out.write(('+' + status.message() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Error error) {
+            out.write(('-' + error.message() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Long number) {
+            out.write((":" + number + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof byte[] bytes) {
+            out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(bytes);
+            out.write('\r');
+            out.write('\n');
+        } else if (reply instanceof List<?> list) {
+            out.write(("*" + list.size() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (Object element : list) {
+                writeReply(out, element);
+            }
+        } else {
+            throw new IllegalArgumentException("Cannot write a reply of " + reply.getClass());
+        }
+    }
+
+    /**
+     * A simple string reply.
+     */
+    record Status(@NonNull String message) { }
+
+    /**
+     * An error reply.
+     */
+    record Error(@NonNull String message) { }
+}
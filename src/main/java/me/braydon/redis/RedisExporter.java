@@ -1,40 +1,36 @@
 package me.braydon.redis;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpecBuilder;
 import lombok.NonNull;
-import me.braydon.redis.common.FileUtils;
-import me.braydon.redis.type.KeyType;
-import redis.clients.jedis.DefaultJedisClientConfig;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisClientConfig;
-import redis.clients.jedis.Pipeline;
+import me.braydon.redis.common.ClusterTopology;
+import me.braydon.redis.io.DataFormat;
+import me.braydon.redis.task.Checkpoint;
+import me.braydon.redis.task.ExportMode;
+import me.braydon.redis.task.ExportPlan;
+import me.braydon.redis.task.ExportTask;
+import me.braydon.redis.task.ImportTask;
+import me.braydon.redis.task.KeyFilter;
+import me.braydon.redis.task.MigrateTask;
+import me.braydon.redis.task.PlanTask;
+import me.braydon.redis.task.VerifyTask;
+import redis.clients.jedis.*;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
  * @author Braydon
  */
 public final class RedisExporter {
-    private static final Gson GSON = new GsonBuilder()
-            .serializeNulls()
-            .setPrettyPrinting() // This isn't necessary, but it allows users to easily read their exported data
-            .create();
-
     private static OptionSpecBuilder HELP_OPTION;
 
     public static void main(@NonNull String[] args) {
@@ -65,18 +61,186 @@ public final class RedisExporter {
                     .ofType(Integer.class) // Use integer
                     .defaultsTo(0);
 
+            // Whether the user wants to migrate the database straight to another server or index
+            acceptsAll(Collections.singletonList("migrate"), "Whether to migrate the database to the target, rather than export or import it");
+
+            // The host of the target to migrate to
+            acceptsAll(Collections.singletonList("target-host"), "The host of the target to migrate to (default: the host)")
+                    .withRequiredArg() // Required the argument
+                    .ofType(String.class); // Use string
+
+            // The port of the target to migrate to
+            acceptsAll(Collections.singletonList("target-port"), "The port of the target to migrate to (default: the port)")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class); // Use integer
+
+            // The optional password of the target to migrate to
+            acceptsAll(Collections.singletonList("target-password"), "The password of the target to migrate to (default: the password)")
+                    .withRequiredArg() // Required the argument
+                    .ofType(String.class); // Use string
+
+            // The database index of the target to migrate to
+            acceptsAll(Collections.singletonList("target-index"), "The database index of the target to migrate to (default: the index)")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class); // Use integer
+
+            // Whether the server is part of a cluster, every master of which should be exported or imported into
+            acceptsAll(Collections.singletonList("cluster"), "Whether to export or import every master of the cluster the server is part of");
+
             // Whether the user wants to export the database contents
             acceptsAll(Collections.singletonList("export"), "Whether to export or import the database")
                     .withRequiredArg() // Required the argument
                     .ofType(Boolean.class) // Use boolean
                     .defaultsTo(true); // Default to true
 
-            // The path to the data file to use
-            acceptsAll(Collections.singletonList("file"), "The data file")
+            // The format of the data file, detected from the file extension when not set
+            acceptsAll(Collections.singletonList("format"), "The format of the data file, either json, ndjson or binary (default: from the file extension)")
+                    .withRequiredArg() // Required the argument
+                    .ofType(String.class); // Use string
+
+            // Whether the user wants to compress the data file, implied by a .gz data file
+            acceptsAll(Collections.singletonList("compress"), "Whether to gzip compress the data file during export (default: from the file extension)");
+
+            // The amount of threads to compress, decompress or parse the data file with
+            acceptsAll(Collections.singletonList("compress-threads"), "The amount of threads to compress, decompress or parse the data file with (default: the amount of processors)")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class); // Use integer
+
+            // How the keys should be exported
+            acceptsAll(Collections.singletonList("mode"), "The export mode, either types or dump")
+                    .withRequiredArg() // Required the argument
+                    .ofType(String.class) // Use string
+                    .defaultsTo("types"); // Default to types
+
+            // The path to the data file to use, or the data files to import one after the other
+            acceptsAll(Collections.singletonList("file"), "The data file, repeat to import a full export followed by its incremental exports in order")
                     .withRequiredArg() // Required the argument
                     .ofType(File.class) // Use file
                     .defaultsTo(new File("data.json")); // Default to data.json
 
+            // The COUNT hint to send with each SCAN when walking the keyspace
+            acceptsAll(Collections.singletonList("scan-count"), "The amount of keys to request per SCAN during export")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(1000); // Default to 1000
+
+            // The amount of members above which a collection is read in pages rather than in a single reply
+            acceptsAll(Collections.singletonList("large-key-size"), "The amount of members above which a key is read in pages during export")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(10000); // Default to 10000
+
+            // The amount of members to request per HSCAN, SSCAN, ZSCAN or LRANGE when reading a large key
+            acceptsAll(Collections.singletonList("page-size"), "The amount of members to request per page of a large key during export")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(1000); // Default to 1000
+
+            // The pattern the key names must match, sent to the server with every SCAN
+            acceptsAll(Collections.singletonList("match"), "The glob-style pattern the key names must match, such as tenant:42:*")
+                    .withRequiredArg() // Required the argument
+                    .ofType(String.class); // Use string
+
+            // The type the keys must be, sent to the server with every SCAN
+            acceptsAll(Collections.singletonList("type"), "The type the keys must be, such as hash (requires Redis 6.0 or newer when reading)")
+                    .withRequiredArg() // Required the argument
+                    .ofType(String.class); // Use string
+
+            // The size above which a key is skipped rather than transferred
+            acceptsAll(Collections.singletonList("max-bytes"), "The size in bytes above which a key is skipped, by MEMORY USAGE or by its size in the data file, 0 for no limit")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Long.class) // Use long
+                    .defaultsTo(0L); // Default to no limit
+
+            // The amount of worker threads, each with its own connection, to export or import with
+            acceptsAll(Collections.singletonList("threads"), "The amount of threads to export or import with")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(1); // Default to 1
+
+            // The maximum amount of entries waiting for each worker during import
+            acceptsAll(Collections.singletonList("queue-depth"), "The amount of entries to queue for each thread during import")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(1000); // Default to 1000
+
+            // The maximum amount of commands to queue before syncing the pipeline during import
+            acceptsAll(Collections.singletonList("batch-size"), "The amount of commands to queue before syncing during import")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(1000); // Default to 1000
+
+            // The maximum amount of data file bytes to queue before syncing the pipeline during import
+            acceptsAll(Collections.singletonList("batch-bytes"), "The amount of data file bytes to queue before syncing during import")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Long.class) // Use long
+                    .defaultsTo(8L * 1024L * 1024L); // Default to 8 MiB
+
+            // The maximum amount of members to write per command when importing a collection
+            acceptsAll(Collections.singletonList("member-batch-size"), "The amount of members to write per command during import")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(1000); // Default to 1000
+
+            // The maximum amount of member bytes to write per command when importing a collection
+            acceptsAll(Collections.singletonList("member-batch-bytes"), "The amount of member bytes to write per command during import")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Long.class) // Use long
+                    .defaultsTo(1024L * 1024L); // Default to 1 MiB
+
+            // The interval to log the progress at, replacing a log line per key
+            acceptsAll(Collections.singletonList("progress-interval"), "The interval in seconds to report the progress at, 0 to disable")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(5); // Default to 5
+
+            // The interval to save a checkpoint at, which an interrupted export or import can be resumed from
+            acceptsAll(Collections.singletonList("checkpoint-interval"), "The interval in seconds to save a checkpoint at, 0 to disable")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(30); // Default to 30
+
+            // The latency the server should keep answering within, the transfer slows down to stay under it
+            acceptsAll(Collections.singletonList("max-latency-ms"), "The latency in milliseconds the server should keep answering within, the transfer slows down to stay under it, 0 to disable")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(0); // Default to disabled
+
+            // Whether to record the fingerprint of every key, so a later export can leave out the unchanged keys
+            acceptsAll(Collections.singletonList("fingerprint"), "Whether to record the fingerprint of every key next to the data file during export, for a later --since");
+
+            // The earlier export to compare with, only the keys added, changed or deleted since are exported
+            acceptsAll(Collections.singletonList("since"), "The earlier data file to compare with during export, only the keys added, changed or deleted since are exported (implies --fingerprint)")
+                    .withRequiredArg() // Required the argument
+                    .ofType(File.class); // Use file
+
+            // Whether to write an index of the records, so a few keys can later be imported without reading the whole data file
+            acceptsAll(Collections.singletonList("key-index"), "Whether to write an index of the offset of every key next to a binary data file during export, for a later --keys or --match import");
+
+            // The names of the keys to import, read straight from their offsets when the data file is indexed
+            acceptsAll(Collections.singletonList("keys"), "The comma separated names of the keys to import, leaving out every other key")
+                    .withRequiredArg() // Required the argument
+                    .ofType(String.class) // Use string
+                    .withValuesSeparatedBy(','); // Separate the names by commas
+
+            // Whether to compare the database with the data file, rather than export or import it
+            acceptsAll(Collections.singletonList("verify"), "Whether to verify that the database matches the data file, rather than export or import it");
+
+            // Whether to sample the database and report the plan for exporting it, rather than export it
+            acceptsAll(Collections.singletonList("plan"), "Whether to sample the database and estimate the size and time of its export, suggesting the settings to export it with");
+
+            // Whether to sample the database first and export it with the suggested settings
+            acceptsAll(Collections.singletonList("apply-plan"), "Whether to sample the database before exporting, and export with the suggested settings for those not set");
+
+            // The amount of keys to sample when planning an export
+            acceptsAll(Collections.singletonList("sample-size"), "The amount of keys to sample when planning an export")
+                    .withRequiredArg() // Required the argument
+                    .ofType(Integer.class) // Use integer
+                    .defaultsTo(1000); // Default to 1000
+
+            // Whether the user wants to continue an interrupted export or import from its last checkpoint
+            acceptsAll(Collections.singletonList("resume"), "Whether to resume an interrupted export or import from its checkpoint");
+
             // Whether the user wants to confirm the import of the data file
             acceptsAll(Collections.singletonList("confirm"), "Whether to confirm the import");
 
@@ -102,164 +266,354 @@ public final class RedisExporter {
         int port = (int) options.valueOf("port");
         String password = options.has("password") ? (String) options.valueOf("password") : null;
         int index = (int) options.valueOf("index");
-        boolean export = (boolean) options.valueOf("export");
-        File dataFile = (File) options.valueOf("file");
+        boolean verify = options.has("verify");
+        boolean export = !verify && (boolean) options.valueOf("export");
+        boolean plan = options.has("plan");
+        boolean applyPlan = options.has("apply-plan");
+        int sampleSize = (int) options.valueOf("sample-size");
+        boolean migrate = options.has("migrate");
+        boolean cluster = options.has("cluster");
+        String targetHost = options.has("target-host") ? (String) options.valueOf("target-host") : host;
+        int targetPort = options.has("target-port") ? (int) options.valueOf("target-port") : port;
+        String targetPassword = options.has("target-password") ? (String) options.valueOf("target-password") : password;
+        int targetIndex = options.has("target-index") ? (int) options.valueOf("target-index") : index;
+        String mode = (String) options.valueOf("mode");
+        List<File> dataFiles = options.valuesOf("file").stream().map(File.class::cast).toList();
+        File dataFile = dataFiles.get(0);
+        DataFormat format = getFormat(options, dataFile);
+        boolean compress = options.has("compress") || DataFormat.hasCompressedExtension(dataFile);
+        int compressThreads = options.has("compress-threads") ? (int) options.valueOf("compress-threads") : Runtime.getRuntime().availableProcessors();
         boolean confirm = options.has("confirm");
         boolean flush = options.has("flush");
+        int scanCount = (int) options.valueOf("scan-count");
+        int largeKeySize = (int) options.valueOf("large-key-size");
+        int pageSize = (int) options.valueOf("page-size");
+        int threads = (int) options.valueOf("threads");
+        int queueDepth = (int) options.valueOf("queue-depth");
+        int batchSize = (int) options.valueOf("batch-size");
+        long batchBytes = (long) options.valueOf("batch-bytes");
+        int memberBatchSize = (int) options.valueOf("member-batch-size");
+        long memberBatchBytes = (long) options.valueOf("member-batch-bytes");
+        int progressInterval = (int) options.valueOf("progress-interval");
+        int checkpointInterval = (int) options.valueOf("checkpoint-interval");
+        int maxLatencyMillis = (int) options.valueOf("max-latency-ms");
+        boolean resume = options.has("resume");
+        String match = (String) options.valueOf("match");
+        String type = (String) options.valueOf("type");
+        long maxBytes = (long) options.valueOf("max-bytes");
+        boolean fingerprint = options.has("fingerprint");
+        File since = (File) options.valueOf("since");
+        boolean keyIndex = options.has("key-index");
+        List<String> keys = options.valuesOf("keys").stream().map(String.class::cast).toList();
 
-        // Validate the data file
-        if (dataFile.isDirectory()) { // Can only use files
+        if (cluster && index != 0) { // Clusters only have a single database
+            throw new IllegalArgumentException("A cluster only has the database at index 0");
+        } else if (cluster && migrate) { // The scanner and workers of a migration use a single server each
+            throw new IllegalArgumentException("Cannot migrate a cluster, export it and import the data file instead");
+        } else if (cluster && export && resume) { // A single cursor can't describe the scans of several masters
+            throw new IllegalArgumentException("Cannot resume the export of a cluster");
+        }
+        if (verify) { // Validate the comparison, which reads both sides and writes to neither
+            if (migrate) { // Nothing to compare with without a data file
+                throw new IllegalArgumentException("Cannot verify a migration, verify the data file against the source and the target instead");
+            } else if (resume || flush) { // Nothing is checkpointed or written
+                throw new IllegalArgumentException("Cannot " + (resume ? "resume" : "flush the database") + " when verifying");
+            } else if (maxBytes > 0L) { // The database and the data file measure the size of a key differently
+                throw new IllegalArgumentException("Cannot verify with --max-bytes, the size of a key differs between the database and the data file");
+            }
+        }
+        if (plan || applyPlan) { // Validate the plan, which only reads from the source
+            if (migrate || !export) { // The plan is for an export
+                throw new IllegalArgumentException("An export can only be planned when exporting");
+            } else if (plan && applyPlan) { // Planning alone writes nothing
+                throw new IllegalArgumentException("Use either --plan to only plan the export, or --apply-plan to plan and run it");
+            } else if (resume) { // The settings are those of the interrupted export
+                throw new IllegalArgumentException("Cannot plan the export when resuming it");
+            } else if (sampleSize <= 0) { // Need at least one key to plan with
+                throw new IllegalArgumentException("The sample size must be greater than zero");
+            }
+        }
+        if (migrate) { // Validate the target, no data file is used
+            if (targetHost.equals(host) && targetPort == port && targetIndex == index) { // Would copy every key onto itself
+                throw new IllegalArgumentException("The target must be a different server or database index than the source");
+            } else if (resume) { // Nothing is checkpointed without a data file
+                throw new IllegalArgumentException("Cannot resume a migration");
+            }
+        } else if (dataFile.isDirectory()) { // Can only use files
             throw new IllegalArgumentException("The data file cannot be a directory");
-        } else if (export && dataFile.exists()) { // Don't override data
+        } else if (export && !plan && dataFile.exists() && !resume) { // Don't override data
             throw new IllegalArgumentException("The data file already exists and you are trying to export, please delete it first");
-        } else if (!export && !dataFile.exists()) { // Can't import nothing
-            throw new IllegalArgumentException("Cannot import a file that doesn't exist");
-        } else if (!FileUtils.getFileExtension(dataFile).equalsIgnoreCase("json")) { // Can only handle json files
-            throw new IllegalArgumentException("The data file must be a JSON file");
+        } else if (!dataFile.exists() && (!export || resume)) { // Can't import or resume nothing
+            throw new IllegalArgumentException("Cannot " + (export ? "resume an export to" : verify ? "verify against" : "import") + " a file that doesn't exist");
+        } else if (resume && dataFiles.stream().noneMatch(file -> Checkpoint.getFile(file).exists())) { // Nothing to resume from
+            throw new IllegalArgumentException("Cannot resume as there is no checkpoint (" + Checkpoint.getFile(dataFile) + ")");
+        } else if (resume && flush) { // Flushing would remove the keys imported before the checkpoint
+            throw new IllegalArgumentException("Cannot flush the database when resuming an import");
+        } else if (format == null) { // Can only handle the supported formats
+            throw new IllegalArgumentException("The data file must be a JSON (.json), NDJSON (.ndjson) or binary (.bin) file, or the --format must be set to json, ndjson or binary");
         }
+        if (dataFiles.size() > 1) { // Validate the chain of data files to import
+            if (migrate || export || verify) { // Only importing reads several data files
+                throw new IllegalArgumentException("Only a single data file can be " + (migrate ? "used when migrating" : verify ? "verified against" : "exported to"));
+            }
+            for (File file : dataFiles) {
+                if (!file.isFile()) {
+                    throw new IllegalArgumentException("Cannot import " + file + " as it isn't a file");
+                } else if (getFormat(options, file) == null) {
+                    throw new IllegalArgumentException("The data file " + file + " must be a JSON (.json), NDJSON (.ndjson) or binary (.bin) file, or the --format must be set to json, ndjson or binary");
+                }
+            }
+            ImportTask.checkChain(dataFiles);
+        }
+        if (fingerprint || since != null) { // Validate the earlier export
+            if (migrate || !export) { // The fingerprints sit next to the data file being exported
+                throw new IllegalArgumentException("Fingerprints are only recorded when exporting");
+            } else if (resume) { // Which of the earlier keys were found isn't checkpointed
+                throw new IllegalArgumentException("Cannot resume an export with fingerprints");
+            } else if (since != null && !since.isFile()) { // Nothing to compare with
+                throw new IllegalArgumentException("Cannot compare with " + since + " as it isn't a file");
+            }
+        }
+
+        if (keyIndex) { // Validate the data file to index
+            if (migrate || !export) { // The index sits next to the data file being exported
+                throw new IllegalArgumentException("The key index is only written when exporting");
+            } else if (format != DataFormat.BINARY) { // The json writer doesn't know the exact offset of a key
+                throw new IllegalArgumentException("Only a binary data file can be indexed");
+            } else if (resume) { // The keys written before the checkpoint aren't known
+                throw new IllegalArgumentException("Cannot resume an export with a key index");
+            }
+        }
+        if (!keys.isEmpty() && (migrate || export || verify)) { // The names are looked up in the data file
+            throw new IllegalArgumentException("The keys are only picked out when importing, use --match when " + (migrate ? "migrating" : verify ? "verifying" : "exporting"));
+        }
+
+        // Validate the options
+        if (Arrays.stream(ExportMode.values()).noneMatch(exportMode -> exportMode.name().equalsIgnoreCase(mode))) { // Unknown mode
+            throw new IllegalArgumentException("The mode must be one of " + Arrays.toString(ExportMode.values()).toLowerCase());
+        } else if (scanCount <= 0) { // Redis rejects a non-positive COUNT
+            throw new IllegalArgumentException("The scan count must be greater than zero");
+        } else if (largeKeySize <= 0 || pageSize <= 0) { // Pages must hold at least one member
+            throw new IllegalArgumentException("The large key size and page size must be greater than zero");
+        } else if (threads <= 0) { // Need at least one worker
+            throw new IllegalArgumentException("The amount of threads must be greater than zero");
+        } else if (compressThreads <= 0) { // Need at least one compression thread
+            throw new IllegalArgumentException("The amount of compress threads must be greater than zero");
+        } else if (queueDepth <= 0) { // Workers need room for at least one entry
+            throw new IllegalArgumentException("The queue depth must be greater than zero");
+        } else if (batchSize <= 0 || batchBytes <= 0L) { // Batches must hold at least one command
+            throw new IllegalArgumentException("The batch size and batch bytes must be greater than zero");
+        } else if (memberBatchSize <= 0 || memberBatchBytes <= 0L) { // Commands must hold at least one member
+            throw new IllegalArgumentException("The member batch size and member batch bytes must be greater than zero");
+        } else if (progressInterval < 0) { // Zero disables the progress
+            throw new IllegalArgumentException("The progress interval cannot be negative");
+        } else if (checkpointInterval < 0) { // Zero disables the checkpoints
+            throw new IllegalArgumentException("The checkpoint interval cannot be negative");
+        } else if (maxLatencyMillis < 0) { // Zero disables the throttle
+            throw new IllegalArgumentException("The max latency cannot be negative");
+        } else if (maxBytes < 0L) { // Zero disables the limit
+            throw new IllegalArgumentException("The max bytes cannot be negative");
+        } else if (type != null && !type.equals(type.toLowerCase())) { // The server only knows the lower case names
+            throw new IllegalArgumentException("The type must be a lower case type name, such as hash");
+        }
+        KeyFilter filter = match == null && type == null && maxBytes == 0L ? null // Transfer every key
+                : KeyFilter.builder().pattern(match).typeName(type).maxBytes(maxBytes).build();
 
         // Confirm the user wants to overwrite any existing data
-        if (!export && !confirm) {
-            System.err.println("WARNING: You are about to import data into the database, this will overwrite any existing data.");
+        if ((migrate || !export) && !verify && !confirm) {
+            System.err.printf("WARNING: You are about to %s data into the %sdatabase, this will overwrite any existing data.%n",
+                    migrate ? "migrate" : "import", migrate ? "target " : "");
             System.err.println("If you'd wish to continue, please re-run the command with the --confirm flag");
             return;
         }
 
-        // Log the connection
-        System.out.printf("Connecting to %s:%s and selecting database at index %s%n", host, port, index);
-
-        // Setup the client config
-        JedisClientConfig config = DefaultJedisClientConfig.builder()
-                .password(password)
-                .database(index)
-                .clientName("redis-exporter")
-                .build();
-        try (Jedis jedis = new Jedis(host, port, config)) { // Attempt to connect
+        int probes = maxLatencyMillis > 0 ? 1 : 0; // The connection the throttle probes the latency with
+        List<HostAndPort> servers = List.of(new HostAndPort(host, port));
+        ClusterTopology topology = null;
+        if (cluster) { // Find the masters to read from or write to
+            System.out.printf("Discovering the masters of the cluster at %s:%s%n", host, port);
+            try (JedisPool seed = newPool(host, port, password, index, 1); Jedis jedis = seed.getResource()) {
+                topology = ClusterTopology.discover(jedis, host);
+            }
+            servers = topology.getMasters();
+            System.out.printf("Found %s master(s): %s%n", servers.size(), servers);
+        }
+        List<JedisPool> pools = new ArrayList<>();
+        try {
+            for (HostAndPort server : servers) {
+                // Log the connection
+                System.out.printf("Connecting to %s:%s and selecting database at index %s%n", server.getHost(), server.getPort(), index);
+                int workers = applyPlan && !options.has("threads") ? Math.max(threads, PlanTask.MAX_THREADS) : threads; // Room for the suggested amount of workers
+                JedisPool pool = newPool(server.getHost(), server.getPort(), password, index, workers + 1 + probes); // A connection for every worker, and one for the scanner
+                pools.add(pool);
+                pool.getResource().close(); // Attempt to connect
+            }
             System.out.println("Successfully connected!");
-            if (export) { // Export the database
-                exportDatabase(jedis, dataFile);
-            } else { // Import the database
-                importDatabase(jedis, flush, dataFile);
+            if (migrate) { // Migrate the database to the target
+                System.out.printf("Connecting to the target %s:%s and selecting database at index %s%n", targetHost, targetPort, targetIndex);
+                try (JedisPool targetPool = newPool(targetHost, targetPort, targetPassword, targetIndex, threads + probes)) { // A connection for every writer
+                    targetPool.getResource().close(); // Attempt to connect
+                    System.out.println("Successfully connected to the target!");
+                    MigrateTask.builder()
+                            .sourcePool(pools.get(0))
+                            .targetPool(targetPool)
+                            .mode(ExportMode.valueOf(mode.toUpperCase()))
+                            .scanCount(scanCount)
+                            .threads(threads)
+                            .largeKeySize(largeKeySize)
+                            .pageSize(pageSize)
+                            .filter(filter)
+                            .maxLatencyMillis(maxLatencyMillis)
+                            .queueDepth(queueDepth)
+                            .batchSize(batchSize)
+                            .batchBytes(batchBytes)
+                            .memberBatchSize(memberBatchSize)
+                            .memberBatchBytes(memberBatchBytes)
+                            .flush(flush)
+                            .progressInterval(progressInterval)
+                            .build().run();
+                }
+            } else if (verify) { // Compare the database with the data file
+                VerifyTask.builder()
+                        .pools(pools)
+                        .dataFile(dataFile)
+                        .format(format)
+                        .compressThreads(compressThreads)
+                        .scanCount(scanCount)
+                        .threads(threads)
+                        .largeKeySize(largeKeySize)
+                        .pageSize(pageSize)
+                        .filter(filter)
+                        .maxLatencyMillis(maxLatencyMillis)
+                        .progressInterval(progressInterval)
+                        .build().run();
+            } else if (export) { // Export the database
+                if (plan || applyPlan) { // Sample the database first
+                    ExportPlan exportPlan = PlanTask.builder()
+                            .pools(pools)
+                            .format(format)
+                            .compress(compress)
+                            .mode(ExportMode.valueOf(mode.toUpperCase()))
+                            .filter(filter)
+                            .sampleSize(sampleSize)
+                            .scanCount(scanCount)
+                            .threads(threads)
+                            .largeKeySize(largeKeySize)
+                            .pageSize(pageSize)
+                            .build().run();
+                    if (plan || exportPlan == null) { // Nothing to export, or only planning
+                        return;
+                    }
+                    // Use the suggested settings, unless set
+                    scanCount = options.has("scan-count") ? scanCount : exportPlan.getScanCount();
+                    threads = options.has("threads") ? threads : exportPlan.getThreads();
+                    largeKeySize = options.has("large-key-size") ? largeKeySize : exportPlan.getLargeKeySize();
+                    pageSize = options.has("page-size") ? pageSize : exportPlan.getPageSize();
+                    System.out.printf("Exporting with --scan-count %s --threads %s --large-key-size %s --page-size %s%n",
+                            scanCount, threads, largeKeySize, pageSize);
+                }
+                ExportTask.builder()
+                        .pools(pools)
+                        .dataFile(dataFile)
+                        .format(format)
+                        .compress(compress)
+                        .compressThreads(compressThreads)
+                        .mode(ExportMode.valueOf(mode.toUpperCase()))
+                        .scanCount(scanCount)
+                        .threads(threads)
+                        .largeKeySize(largeKeySize)
+                        .pageSize(pageSize)
+                        .filter(filter)
+                        .maxLatencyMillis(maxLatencyMillis)
+                        .fingerprint(fingerprint)
+                        .since(since)
+                        .keyIndex(keyIndex)
+                        .progressInterval(progressInterval)
+                        .checkpointInterval(checkpointInterval)
+                        .resume(resume)
+                        .build().run();
+            } else { // Import the data files, in order
+                int first = 0; // The first data file to import
+                if (resume) { // The data files before the one interrupted were imported in full
+                    while (!Checkpoint.getFile(dataFiles.get(first)).exists()) {
+                        first++;
+                    }
+                }
+                Set<String> foundKeys = new HashSet<>(); // The names asked for found by the data files so far
+                for (int i = first; i < dataFiles.size(); i++) {
+                    File file = dataFiles.get(i);
+                    if (dataFiles.size() > 1) {
+                        System.out.printf("Importing %s (%s of %s)%n", file, i + 1, dataFiles.size());
+                    }
+                    boolean completed = ImportTask.builder()
+                            .pools(pools)
+                            .topology(topology)
+                            .dataFile(file)
+                            .format(getFormat(options, file))
+                            .compressThreads(compressThreads)
+                            .flush(flush && i == 0) // Only before the first, the later ones build on it
+                            .threads(threads)
+                            .queueDepth(queueDepth)
+                            .batchSize(batchSize)
+                            .batchBytes(batchBytes)
+                            .memberBatchSize(memberBatchSize)
+                            .memberBatchBytes(memberBatchBytes)
+                            .filter(filter)
+                            .keys(keys)
+                            .foundKeys(dataFiles.size() > 1 ? foundKeys : null)
+                            .reportMissing(first == 0 && i == dataFiles.size() - 1) // The earlier data files may hold the keys, unless every one was read
+                            .maxLatencyMillis(maxLatencyMillis)
+                            .progressInterval(progressInterval)
+                            .checkpointInterval(checkpointInterval)
+                            .resume(resume && i == first)
+                            .build().run();
+                    if (!completed) { // The later data files build on this one
+                        if (i + 1 < dataFiles.size()) {
+                            System.err.printf("Stopped before importing the %s data file(s) after %s%n", dataFiles.size() - i - 1, file);
+                        }
+                        return;
+                    }
+                }
+            }
+        } finally {
+            for (JedisPool pool : pools) {
+                pool.close();
             }
         }
     }
 
     /**
-     * Export the database to the given file.
+     * Get the format of the given data file, as set
+     * by the options or from the file extension.
      *
-     * @param jedis the jedis connection
-     * @param dataFile the data file to export to
+     * @param options the parsed options
+     * @param dataFile the data file
+     * @return the format, null if unknown
      */
-    private static void exportDatabase(@NonNull Jedis jedis, @NonNull File dataFile) {
-        Set<String> keys = jedis.keys("*");
-        if (keys.isEmpty()) { // If there are no keys in the database, exit
-            System.out.println("No keys were found in the database, exiting...");
-            return;
-        }
-        System.out.printf("Found %s key(s)%n", keys.size()); // Log the amount of key(s) found
-
-        JsonObject keysObject = new JsonObject();
-        long before = System.currentTimeMillis(); // Get the time before the export
-        int failed = 0; // The amount of keys that failed to export
-        for (String key : keys) {
-            String typeName = jedis.type(key); // The name of the key type
-            Class<? extends KeyType> type = KeyType.TYPES.get(typeName); // Get the type of the key
-            if (type == null) { // If the key type is not supported, skip it
-                failed++;
-                System.err.printf("Cannot export '%s' as the type (%s) is not supported%n", key, typeName);
-                continue;
-            }
-            try {
-                KeyType keyType = type.getConstructor().newInstance(); // Constructor a new instance of the key type class
-                keyType.populateFromRedis(jedis, key); // Populate the object with the data from Redis
-
-                JsonObject keyObject = new JsonObject();
-                keyObject.addProperty("type", typeName); // Add the type name to the key json object
-                keyObject.addProperty("ttl", jedis.ttl(key)); // Add the time-to-live to the key json object
-                keyObject.add("data", keyType.getJsonObject()); // Add the key type json object to the key json object
-
-                keysObject.add(key, keyObject); // Add the key json object to the keys json object
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException ex) {
-                failed++;
-                ex.printStackTrace();
-                continue;
-            }
-            System.out.printf("Exported key '%s' (%s)%n", key, typeName); // Log that the key was exported
-        }
-        // Save the json to the data file
-        try (FileWriter writer = new FileWriter(dataFile)) {
-            GSON.toJson(keysObject, writer);
-        } catch (IOException ex) {
-            ex.printStackTrace();
-        }
-        // Log that the export has finished
-        System.out.printf("Export finished in %sms (success: %s, failed: %s, total: %s)%n",
-                System.currentTimeMillis() - before,
-                keys.size() - failed, // The amount of keys successfully exported
-                failed, // The amount of keys that failed to export
-                keys.size() // The total amount of keys in the database
-        );
+    private static DataFormat getFormat(@NonNull OptionSet options, @NonNull File dataFile) {
+        return options.has("format") ? DataFormat.getFormat((String) options.valueOf("format")) : DataFormat.getFormat(dataFile);
     }
 
     /**
-     * Import the keys from the given file into the database.
+     * Create a pool of connections to the given database.
      *
-     * @param jedis the jedis connection
-     * @param flush whether to flush the database prior to importing
-     * @param dataFile the data file to import from
+     * @param host the host to connect to
+     * @param port the port to connect to
+     * @param password the password to use, null for none
+     * @param index the database index to select
+     * @param connections the maximum amount of connections
+     * @return the pool
      */
-    private static void importDatabase(@NonNull Jedis jedis, boolean flush, @NonNull File dataFile) {
-        if (flush) { // If the user wants to flush the database, flush it
-            long size = jedis.dbSize(); // The amount of keys in the database
-            jedis.flushDB(); // Flush the database
-            if (size > 0) { // If there were any key(s) flushed, log it
-                System.out.printf("Flushed %s key(s)%n", size);
-            }
-        }
-        long before = System.currentTimeMillis(); // Get the time before the import
-        int failed = 0; // The amount of keys that failed to import
-        int keyCount = 0; // The amount of keys in the file
-        try (FileReader reader = new FileReader(dataFile)) {
-            JsonObject keysObject = GSON.fromJson(reader, JsonObject.class); // Get the keys json object from the file
-            Set<Map.Entry<String, JsonElement>> keys = keysObject.entrySet();
-            keyCount = keys.size();
-
-            Pipeline pipelined = jedis.pipelined(); // Create a pipeline to execute the commands in
-            for (Map.Entry<String, JsonElement> entry : keys) {
-                String key = entry.getKey();
-                JsonObject keyObject = entry.getValue().getAsJsonObject();
-                String typeName = keyObject.get("type").getAsString();
-                long ttl = keyObject.get("ttl").getAsLong();
-                Class<? extends KeyType> type = KeyType.TYPES.get(typeName); // Get the type of the key
-                if (type == null) { // If the key type is not supported, skip it
-                    failed++;
-                    System.err.printf("Cannot import '%s' as the type (%s) is not supported%n", key, typeName);
-                    continue;
-                }
-                try {
-                    KeyType keyType = type.getConstructor().newInstance(); // Constructor a new instance of the key type class
-                    JsonElement data = entry.getValue().getAsJsonObject().get("data");
-                    keyType.saveToRedis(pipelined, key, data); // Save the key to redis
-                    if (ttl > 0) { // If the key has a time to live rule, set it in Redis
-                        pipelined.expire(key, ttl);
-                    }
-                } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException ex) {
-                    failed++;
-                    ex.printStackTrace();
-                    continue;
-                }
-                System.out.printf("Imported key '%s' (%s)%n", key, typeName); // Log that the key was imported
-            }
-            pipelined.sync(); // Execute the commands in the pipeline
-        } catch (IOException ex) {
-            ex.printStackTrace();
-        }
-        // Log that the import has finished
-        System.out.printf("Import finished in %sms (success: %s, failed: %s, total: %s)%n",
-                System.currentTimeMillis() - before,
-                keyCount - failed, // The amount of keys successfully imported
-                failed, // The amount of keys that failed to import
-                keyCount // The total amount of keys in the file
-        );
+    @NonNull
+    private static JedisPool newPool(@NonNull String host, int port, String password, int index, int connections) {
+        JedisClientConfig config = DefaultJedisClientConfig.builder()
+                .password(password)
+                .database(index)
+                .clientName("redis-exporter")
+                .build();
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(connections);
+        poolConfig.setMaxIdle(connections); // Keep the connections open between batches
+        return new JedisPool(poolConfig, new HostAndPort(host, port), config);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,253 @@
+package me.braydon.redis.common;
+
+import lombok.Getter;
+import lombok.NonNull;
+import me.braydon.redis.metrics.LatencyHistogram;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A pipeline that is synced every time a batch of
+ * commands or bytes has been queued, rather than
+ * once at the very end.
+ * <p>
+ * This keeps the amount of queued responses bounded
+ * and sends the server steady, back-pressured traffic.
+ * </p>
+ * <p>
+ * With a {@link LatencyThrottle}, the batches shrink and
+ * the syncs wait their turn while the server is slow.
+ * </p>
+ * <p>
+ * The commands of each key can be queued along with a
+ * {@link ReplyHandler}, which is handed the first error
+ * the server replied to them with once the batch is synced,
+ * as the server rejecting a command doesn't fail the sync.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class BatchedPipeline implements Closeable {
+    /**
+     * The pipeline to queue the commands in.
+     */
+    @Getter private final Pipeline pipeline;
+
+    /**
+     * The maximum amount of commands to queue before syncing.
+     */
+    private final int maxCommands;
+
+    /**
+     * The maximum amount of bytes to queue before syncing.
+     */
+    private final long maxBytes;
+
+    /**
+     * The histogram to record the latency of each sync in, null to not record it.
+     */
+    private final LatencyHistogram syncLatency;
+
+    /**
+     * The throttle to slow the syncs down with, null to never slow them down.
+     */
+    private final LatencyThrottle throttle;
+
+    /**
+     * The amount of commands queued since the last sync.
+     */
+    private int commands;
+
+    /**
+     * The amount of bytes queued since the last sync.
+     */
+    private long bytes;
+
+    /**
+     * The keys queued since the last sync
+     * that wait on the replies to their commands.
+     */
+    private final List<Queued> queued = new ArrayList<>();
+
+    /**
+     * The amount of batches that have been synced.
+     */
+    @Getter private long batches;
+
+    public BatchedPipeline(@NonNull Jedis jedis, int maxCommands, long maxBytes) {
+        this(jedis, maxCommands, maxBytes, null);
+    }
+
+    public BatchedPipeline(@NonNull Jedis jedis, int maxCommands, long maxBytes, LatencyHistogram syncLatency) {
+        this(jedis, maxCommands, maxBytes, syncLatency, null);
+    }
+
+    public BatchedPipeline(@NonNull Jedis jedis, int maxCommands, long maxBytes, LatencyHistogram syncLatency, LatencyThrottle throttle) {
+        pipeline = jedis.pipelined();
+        this.maxCommands = maxCommands;
+        this.maxBytes = maxBytes;
+        this.syncLatency = syncLatency;
+        this.throttle = throttle;
+    }
+
+    /**
+     * Record that commands have been queued in the
+     * pipeline, syncing it if the batch is full.
+     *
+     * @param commands the amount of commands queued
+     * @param bytes the amount of bytes queued
+     */
+    public void queued(int commands, long bytes) {
+        queued(commands, bytes, null);
+    }
+
+    /**
+     * Record that the commands of a key have been queued
+     * in the pipeline, syncing it if the batch is full.
+     *
+     * @param commands the amount of commands queued, which must be every command queued since the last call
+     * @param bytes the amount of bytes queued
+     * @param handler the handler of the replies to the commands, null to not read them
+     */
+    public void queued(int commands, long bytes, ReplyHandler handler) {
+        if (handler != null) {
+            queued.add(new Queued(this.commands, commands, handler));
+        }
+        this.commands += commands;
+        this.bytes += bytes;
+        if (throttle == null ? this.commands >= maxCommands || this.bytes >= maxBytes
+                : this.commands >= throttle.scale(maxCommands) || this.bytes >= throttle.scale(maxBytes)) { // The batch is full, send it
+            sync();
+        }
+    }
+
+    /**
+     * Sync the commands queued in the pipeline, handing
+     * the replies to the handlers of the queued keys.
+     * <p>
+     * If the sync itself fails, every queued key is handed
+     * the error, as none of them are known to be written.
+     * </p>
+     *
+     * @throws CancellationException if interrupted while waiting for the throttle
+     */
+    public void sync() {
+        if (commands == 0) { // Nothing to send
+            return;
+        }
+        if (throttle != null) {
+            try {
+                throttle.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                CancellationException cancelled = new CancellationException("Interrupted while waiting for the throttle");
+                fail(queued, cancelled);
+                throw cancelled;
+            }
+        }
+        List<Queued> keys = queued.isEmpty() ? List.of() : new ArrayList<>(queued);
+        commands = 0;
+        bytes = 0;
+        queued.clear();
+        long start = System.nanoTime();
+        List<Object> replies = null;
+        try {
+            if (keys.isEmpty()) {
+                pipeline.sync();
+            } else {
+                replies = pipeline.syncAndReturnAll(); // The errors are returned in place of the replies, rather than thrown
+            }
+        } catch (RuntimeException ex) {
+            fail(keys, ex);
+            throw ex;
+        } finally {
+            if (throttle != null) {
+                throttle.release();
+            }
+        }
+        if (syncLatency != null) {
+            syncLatency.recordSince(start);
+        }
+        batches++;
+        if (replies != null) {
+            handleReplies(keys, replies);
+        }
+    }
+
+    /**
+     * Sync any remaining commands.
+     */
+    @Override
+    public void close() {
+        sync();
+    }
+
+    /**
+     * Hand the given replies to the handlers of the keys they belong to.
+     *
+     * @param keys the keys queued in the batch
+     * @param replies the replies to every command of the batch, in the order queued
+     */
+    private static void handleReplies(@NonNull List<Queued> keys, @NonNull List<Object> replies) {
+        for (Queued key : keys) {
+            RuntimeException error = null;
+            for (int i = key.first; i < key.first + key.commands && i < replies.size(); i++) {
+                if (replies.get(i) instanceof JedisDataException ex) { // The server rejected the command
+                    error = ex;
+                    break;
+                }
+            }
+            key.handler.replied(error);
+        }
+    }
+
+    /**
+     * Hand the given error to the handlers of the given keys,
+     * as none of their commands are known to be written.
+     *
+     * @param keys the keys queued in the batch
+     * @param error the error the batch failed with
+     */
+    private void fail(@NonNull List<Queued> keys, @NonNull RuntimeException error) {
+        for (Queued key : keys) {
+            key.handler.replied(error);
+        }
+        commands = 0;
+        bytes = 0;
+        queued.clear();
+    }
+
+    /**
+     * Handles the replies to the commands of a key.
+     */
+    @FunctionalInterface
+    public interface ReplyHandler {
+        /**
+         * Called once the batch the commands of the key were queued in is synced.
+         *
+         * @param error the first error the commands were replied to with, null if none
+         */
+        void replied(RuntimeException error);
+    }
+
+    /**
+     * A key waiting on the replies to its commands.
+     */
+    private static final class Queued {
+        private final int first; // The index of the first command of the key in the batch
+        private final int commands; // The amount of commands of the key
+        private final ReplyHandler handler;
+
+        private Queued(int first, int commands, @NonNull ReplyHandler handler) {
+            this.first = first;
+            this.commands = commands;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package me.braydon.redis.common;
+
+import lombok.Getter;
+import lombok.NonNull;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The masters of a Redis Cluster and the
+ * hash slots each one of them serves.
+ * <p>
+ * Every key belongs to one of the {@value #SLOTS} hash slots,
+ * and every slot is served by a single master, so the keys
+ * can be sent straight to the master that owns them rather
+ * than being redirected by the node they were sent to.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class ClusterTopology {
+    /**
+     * The amount of hash slots in a cluster.
+     */
+    public static final int SLOTS = 16384;
+
+    /**
+     * The masters serving at least one slot.
+     */
+    @Getter @NonNull private final List<HostAndPort> masters;
+
+    /**
+     * The index of the master serving each slot.
+     */
+    private final int[] owners;
+
+    private ClusterTopology(@NonNull List<HostAndPort> masters, int @NonNull [] owners) {
+        this.masters = Collections.unmodifiableList(masters);
+        this.owners = owners;
+    }
+
+    /**
+     * Read the topology of the cluster the given node is part of.
+     *
+     * @param jedis the connection to a node of the cluster
+     * @param seedHost the host of the node, for nodes that don't know their own address
+     * @return the topology
+     * @throws IllegalStateException if a slot isn't served by any master
+     */
+    @NonNull
+    public static ClusterTopology discover(@NonNull Jedis jedis, @NonNull String seedHost) {
+        return parse(jedis.clusterNodes(), seedHost);
+    }
+
+    /**
+     * Parse the given CLUSTER NODES reply.
+     * <p>
+     * Each line describes a node as its id, its address,
+     * its flags, its master, the ping and pong times, its
+     * epoch, its link state and then the slots it serves,
+     * either single slots or ranges such as {@code 0-5460}.
+     * Slots being migrated are listed in brackets and are
+     * still served by the node they are listed on.
+     * </p>
+     *
+     * @param nodes the CLUSTER NODES reply
+     * @param seedHost the host of the node the reply came from, for nodes that don't know their own address
+     * @return the topology
+     * @throws IllegalStateException if a slot isn't served by any master
+     */
+    @NonNull
+    static ClusterTopology parse(@NonNull String nodes, @NonNull String seedHost) {
+        List<HostAndPort> masters = new ArrayList<>();
+        int[] owners = new int[SLOTS];
+        Arrays.fill(owners, -1);
+        for (String line : nodes.split("\n")) {
+            String[] fields = line.trim().split(" ");
+            if (fields.length < 9) { // Not a node, or a node without slots
+                continue;
+            }
+            List<String> flags = Arrays.asList(fields[2].split(","));
+            if (!flags.contains("master") || flags.contains("fail") || flags.contains("noaddr")) { // Only the healthy masters serve keys
+                continue;
+            }
+            String address = fields[1].split("[@,]")[0]; // The address is followed by the cluster bus port and hostname
+            int separator = address.lastIndexOf(':');
+            String host = separator == 0 ? seedHost : address.substring(0, separator);
+            int port = Integer.parseInt(address.substring(separator + 1));
+            int master = masters.size();
+            masters.add(new HostAndPort(host, port));
+            for (int i = 8; i < fields.length; i++) {
+                String slots = fields[i];
+                if (slots.startsWith("[")) { // A slot being migrated, still served here
+                    continue;
+                }
+                int dash = slots.indexOf('-');
+                int start = Integer.parseInt(dash < 0 ? slots : slots.substring(0, dash));
+                int end = dash < 0 ? start : Integer.parseInt(slots.substring(dash + 1));
+                Arrays.fill(owners, start, end + 1, master);
+            }
+        }
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (owners[slot] < 0) { // Keys in the slot could be neither read nor written
+                throw new IllegalStateException("Hash slot " + slot + " isn't served by any master, is the cluster healthy?");
+            }
+        }
+        return new ClusterTopology(masters, owners);
+    }
+
+    /**
+     * Get the index of the master serving the given key.
+     *
+     * @param key the name of the key, as it is stored
+     * @return the index in {@link #getMasters()}
+     */
+    public int getMaster(byte @NonNull [] key) {
+        return owners[JedisClusterCRC16.getSlot(key)];
+    }
+}
@@ -0,0 +1,99 @@
+package me.braydon.redis.common;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 64-bit hashes for digesting the content of keys.
+ * <p>
+ * These are fast, well mixed hashes for comparing large
+ * amounts of data, not cryptographic ones. Unordered
+ * members are digested by adding up their hashes, which
+ * is why every hash is mixed before it is returned.
+ * </p>
+ *
+ * @author Braydon
+ */
+@UtilityClass
+public final class Digests {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+
+    /**
+     * Reads the bytes of an array eight at a time.
+     */
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Hash the given bytes.
+     *
+     * @param bytes the bytes
+     * @return the hash
+     */
+    public static long hash(byte @NonNull [] bytes) {
+        return hash(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Hash the given range of bytes.
+     *
+     * @param bytes the bytes
+     * @param offset the start of the range
+     * @param length the length of the range
+     * @return the hash
+     */
+    public static long hash(byte @NonNull [] bytes, int offset, int length) {
+        long hash = PRIME_3 + length * PRIME_1;
+        int end = offset + length;
+        int i = offset;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) { // Eight bytes at a time
+            hash = Long.rotateLeft(hash ^ mix((long) LONGS.get(bytes, i)), 27) * PRIME_1 + PRIME_2;
+        }
+        for (; i < end; i++) { // Then the rest one at a time
+            hash = Long.rotateLeft(hash ^ (bytes[i] & 0xFFL) * PRIME_3, 11) * PRIME_1;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Hash the given string, encoded as UTF-8.
+     *
+     * @param string the string
+     * @return the hash
+     */
+    public static long hash(@NonNull String string) {
+        return hash(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Combine the given hashes, in order.
+     *
+     * @param first the first hash
+     * @param second the second hash
+     * @return the combined hash, which differs when the hashes are swapped
+     */
+    public static long combine(long first, long second) {
+        return mix(first * PRIME_1 + Long.rotateLeft(second, 31) + PRIME_2);
+    }
+
+    /**
+     * Spread every bit of the given value across the hash.
+     *
+     * @param value the value
+     * @return the mixed value
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,253 @@
+package me.braydon.redis.common;
+
+import lombok.NonNull;
+import me.braydon.redis.metrics.LatencyHistogram;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slows the work sent to a server down when the server
+ * is answering slower than a latency ceiling.
+ * <p>
+ * A single PING is sent on its own connection every
+ * {@value #PROBE_INTERVAL_MILLIS}ms, standing in for a
+ * command of the applications using the server. While the
+ * probes are over the ceiling, the size of every batch and
+ * the amount of round trips in flight at once are halved,
+ * down to a single small round trip with a growing pause
+ * before each. While the probes are comfortably under the
+ * ceiling, they are raised again step by step, so the
+ * transfer runs as fast as the budget allows.
+ * </p>
+ * <p>
+ * A probe that fails counts as over the ceiling, as the server
+ * may be too busy to answer at all, and the connection is
+ * borrowed again for the next probe.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class LatencyThrottle implements Closeable {
+    /**
+     * The interval in milliseconds to probe the latency at.
+     */
+    private static final long PROBE_INTERVAL_MILLIS = 100L;
+
+    /**
+     * The amount of probes in a row that must be under
+     * the headroom before the limits are raised.
+     */
+    private static final int HEALTHY_PROBES = 10;
+
+    /**
+     * The amount of probes to wait after lowering the limits
+     * before lowering them again, so the server has time
+     * to drain what was sent before the change.
+     */
+    private static final int COOLDOWN_PROBES = 5;
+
+    /**
+     * The fraction of the ceiling a probe must be under to count as healthy.
+     */
+    private static final double HEADROOM = 0.8D;
+
+    /**
+     * The smallest fraction of the configured batch sizes to send.
+     */
+    private static final double MIN_SCALE = 1D / 64D;
+
+    /**
+     * The longest pause before each round trip, in nanoseconds.
+     */
+    private static final long MAX_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+    private final long maxLatencyNanos; // The latency ceiling
+    private final int maxInFlight; // The amount of round trips allowed in flight at full speed
+    private final LatencyHistogram probeLatency; // The histogram to record the probes in, null to not record them
+    private final JedisPool pool; // The pool to borrow the connection to probe with from
+    private Jedis jedis; // The connection to probe with, null if it broke and couldn't be borrowed again
+    private boolean warned; // Whether a failed probe has been logged
+    private final ScheduledExecutorService executor;
+
+    private volatile double scale = 1D; // The fraction of the configured batch sizes to send
+    private int inFlightLimit; // The amount of round trips allowed in flight
+    private int inFlight; // The amount of round trips in flight
+    private long pauseNanos; // The pause before each round trip
+    private long probes; // The amount of probes taken
+    private long lastDecrease = -COOLDOWN_PROBES; // The probe the limits were last lowered at
+    private int healthy; // The amount of healthy probes in a row
+
+    /**
+     * Start probing the latency of the server behind the given pool.
+     *
+     * @param pool the pool to borrow the connection to probe with from
+     * @param maxLatencyMillis the latency ceiling in milliseconds
+     * @param maxInFlight the amount of round trips allowed in flight at full speed
+     * @param probeLatency the histogram to record the probes in, null to not record them
+     */
+    public LatencyThrottle(@NonNull JedisPool pool, long maxLatencyMillis, int maxInFlight, LatencyHistogram probeLatency) {
+        maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.maxInFlight = maxInFlight;
+        this.probeLatency = probeLatency;
+        inFlightLimit = maxInFlight;
+        this.pool = pool;
+        jedis = pool.getResource();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Latency Probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::probe, PROBE_INTERVAL_MILLIS, PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Scale the given batch size down to what the server can currently take.
+     *
+     * @param size the configured batch size
+     * @return the batch size to send, at least one
+     */
+    public int scale(int size) {
+        return (int) Math.max(1L, Math.round(size * scale));
+    }
+
+    /**
+     * Scale the given batch size down to what the server can currently take.
+     *
+     * @param size the configured batch size
+     * @return the batch size to send, at least one
+     */
+    public long scale(long size) {
+        return Math.max(1L, Math.round(size * scale));
+    }
+
+    /**
+     * Wait until another round trip may be sent to the
+     * server, which must be followed by {@link #release()}.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long pause;
+        synchronized (this) {
+            while (inFlight >= inFlightLimit) {
+                wait();
+            }
+            inFlight++;
+            pause = pauseNanos;
+        }
+        if (pause > 0L) { // Even a single round trip is too much, space them out
+            try {
+                TimeUnit.NANOSECONDS.sleep(pause);
+            } catch (InterruptedException ex) {
+                release();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Record that a round trip has been answered.
+     */
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Stop probing the latency and return the connection.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1L, TimeUnit.SECONDS); // Don't return the connection mid probe
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (jedis != null) {
+            jedis.close();
+        }
+    }
+
+    /**
+     * Probe the latency of the server and adjust the limits to it.
+     */
+    private void probe() {
+        long start = System.nanoTime();
+        try {
+            if (jedis == null) { // The connection broke, borrow another
+                jedis = pool.getResource();
+            }
+            jedis.ping();
+        } catch (Exception ex) { // Slow down until the server answers again, rather than trusting the last probe
+            if (!warned) {
+                System.err.printf("The latency probe failed, slowing down until the server answers again: %s%n", ex.getMessage());
+                warned = true;
+            }
+            if (jedis != null) {
+                jedis.close(); // The pool discards it if broken
+                jedis = null;
+            }
+            adjust(Long.MAX_VALUE);
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        if (probeLatency != null) {
+            probeLatency.recordSince(start);
+        }
+        adjust(latency);
+    }
+
+    /**
+     * Adjust the limits to the given probed latency.
+     *
+     * @param latency the probed latency in nanoseconds
+     */
+    private synchronized void adjust(long latency) {
+        probes++;
+        if (latency > maxLatencyNanos) { // Over the ceiling, back off
+            healthy = 0;
+            if (probes - lastDecrease >= COOLDOWN_PROBES) {
+                decrease();
+                lastDecrease = probes;
+            }
+        } else if (latency <= maxLatencyNanos * HEADROOM) { // Comfortably under the ceiling, speed up once it has lasted
+            if (++healthy >= HEALTHY_PROBES) {
+                increase();
+                healthy = 0;
+            }
+        } else { // Close to the ceiling, hold steady
+            healthy = 0;
+        }
+    }
+
+    /**
+     * Halve the limits, or pause for longer once they are at their lowest.
+     */
+    private void decrease() {
+        if (inFlightLimit > 1 || scale > MIN_SCALE) {
+            inFlightLimit = Math.max(inFlightLimit / 2, 1);
+            scale = Math.max(scale / 2D, MIN_SCALE);
+        } else {
+            pauseNanos = pauseNanos == 0L ? TimeUnit.MILLISECONDS.toNanos(1L) : Math.min(pauseNanos * 2L, MAX_PAUSE_NANOS);
+        }
+    }
+
+    /**
+     * Shorten the pause, or raise the limits once there is none.
+     */
+    private void increase() {
+        if (pauseNanos > 0L) {
+            pauseNanos = pauseNanos / 2L < TimeUnit.MILLISECONDS.toNanos(1L) ? 0L : pauseNanos / 2L;
+            return;
+        }
+        inFlightLimit = Math.min(inFlightLimit + 1, maxInFlight);
+        scale = Math.min(scale * 1.25D, 1D);
+        notifyAll(); // Wake the round trips waiting for the higher limit
+    }
+}
@@ -0,0 +1,298 @@
+package me.braydon.redis.io;
+
+import lombok.NonNull;
+import me.braydon.redis.type.KeyCodec;
+import me.braydon.redis.type.KeyCodecs;
+import me.braydon.redis.type.KeyValue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the keys from a binary data file
+ * one record at a time.
+ *
+ * @author Braydon
+ * @see BinaryDataWriter for the layout of the file
+ */
+public final class BinaryDataReader implements DataReader {
+    private final InputStream in;
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BinaryDataWriter.BUFFER_SIZE);
+    private long read; // The amount of bytes read from the channel
+    private int fieldsPerMember; // The amount of fields per member in the current block
+    private boolean ended; // Whether the end of file tag has been read
+
+    public BinaryDataReader(@NonNull InputStream in) throws IOException {
+        this.in = in;
+        channel = Channels.newChannel(in); // A file stream hands out its own channel, skipping the copy
+        buffer.flip(); // Start with an empty buffer
+        byte[] magic = new byte[BinaryDataWriter.MAGIC.length];
+        ensureAvailable(magic.length + 1);
+        buffer.get(magic);
+        if (!Arrays.equals(magic, BinaryDataWriter.MAGIC)) { // Not a binary data file
+            channel.close();
+            throw new IOException("The data file is not a binary data file");
+        }
+        byte version = buffer.get();
+        if (version != BinaryDataWriter.VERSION) { // Written by a different version of the format
+            channel.close();
+            throw new IOException("Unsupported binary data file version: " + version);
+        }
+    }
+
+    /**
+     * Read the next record from the data file.
+     * <p>
+     * Records with an unsupported type are
+     * skipped and returned without a value.
+     * </p>
+     *
+     * @return the entry, null if there are no more entries
+     * @throws IOException if reading fails
+     * @see DataEntry for entry
+     */
+    @Override
+    public DataEntry next() throws IOException {
+        if (ended) {
+            return null;
+        }
+        long start = getPosition();
+        ensureAvailable(1);
+        if (buffer.get() == BinaryDataWriter.END_OF_FILE) { // Reached the end of the file
+            ended = true;
+            return null;
+        }
+        String key = readString();
+        String typeName = readString();
+        ensureAvailable(Long.BYTES);
+        long ttl = buffer.getLong();
+        KeyCodec<?> codec = KeyCodecs.getCodec(typeName); // Get the codec of the key type
+        KeyValue<?> value = null;
+        if (codec == null) { // Unsupported type, skip the members
+            skipBlocks();
+        } else {
+            value = readValue(codec); // Read the members of the key
+        }
+        return new DataEntry(key, typeName, ttl, value, getPosition() - start);
+    }
+
+    /**
+     * Read the blocks of the current record with the given codec.
+     *
+     * @param codec the codec of the key type
+     * @param <T> the type of value
+     * @return the value
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    private <T> KeyValue<T> readValue(@NonNull KeyCodec<T> codec) throws IOException {
+        return new KeyValue<>(codec, codec.readBinary(this));
+    }
+
+    /**
+     * Start reading the next block of members.
+     *
+     * @return the amount of members in the block, zero if the record has ended
+     * @throws IOException if reading fails
+     */
+    public int nextBlock() throws IOException {
+        ensureAvailable(Integer.BYTES);
+        int members = buffer.getInt();
+        if (members == 0) { // No more blocks in the record
+            return 0;
+        }
+        ensureAvailable(1);
+        fieldsPerMember = buffer.get();
+        if (members < 0 || fieldsPerMember < 1) {
+            throw new IOException("The data file is corrupt, found a block of " + members + " members of "
+                    + fieldsPerMember + " fields before " + getPosition());
+        }
+        return members;
+    }
+
+    /**
+     * Read the next field.
+     *
+     * @return the bytes of the field
+     * @throws IOException if reading fails
+     */
+    public byte @NonNull [] readField() throws IOException {
+        ensureAvailable(Integer.BYTES);
+        int fieldLength = buffer.getInt();
+        if (fieldLength < 0 || fieldLength > getRemainingLength()) { // Never allocate a corrupt length
+            throw new IOException("The data file is corrupt, found a field of " + fieldLength + " bytes before " + getPosition());
+        }
+        byte[] bytes = new byte[Math.min(fieldLength, buffer.capacity())];
+        int offset = 0;
+        while (offset < fieldLength) { // The field may be larger than the buffer
+            if (!buffer.hasRemaining()) {
+                ensureAvailable(1);
+            }
+            if (offset == bytes.length) { // Grown as the bytes arrive, a truncated file ends before the length is allocated
+                bytes = Arrays.copyOf(bytes, (int) Math.min(fieldLength, bytes.length * 2L));
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Read the next field as a UTF-8 string.
+     *
+     * @return the string
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    public String readString() throws IOException {
+        return new String(readField(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the next field as a long.
+     *
+     * @return the long
+     * @throws IOException if reading fails
+     */
+    public long readLong() throws IOException {
+        ensureFixedField(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    /**
+     * Read the next field as a double.
+     *
+     * @return the double
+     * @throws IOException if reading fails
+     */
+    public double readDouble() throws IOException {
+        ensureFixedField(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    /**
+     * Get the exact position of the reader in the data file.
+     * <p>
+     * For a compressed data file this is the
+     * amount of uncompressed bytes consumed.
+     * </p>
+     *
+     * @return the amount of bytes consumed
+     */
+    @Override
+    public long getPosition() {
+        return read - buffer.remaining();
+    }
+
+    /**
+     * Skip ahead to the given position, the start of a record.
+     * <p>
+     * An uncompressed file is skipped by seeking,
+     * a compressed one is decompressed up to the
+     * position without parsing the records.
+     * </p>
+     *
+     * @param position the position to skip to
+     * @return true, the position is always exact
+     * @throws IOException if the position is behind the reader or skipping fails
+     */
+    @Override
+    public boolean skipTo(long position) throws IOException {
+        long remaining = position - getPosition();
+        if (remaining < 0L) {
+            throw new IOException("Cannot skip back to " + position + " from " + getPosition());
+        }
+        int buffered = (int) Math.min(remaining, buffer.remaining()); // Skip what has already been read first
+        buffer.position(buffer.position() + buffered);
+        remaining -= buffered;
+        while (remaining > 0L) { // The buffer is now empty, skip the rest of the stream
+            long skipped = in.skip(remaining);
+            if (skipped <= 0L) {
+                throw new EOFException("Unexpected end of the data file");
+            }
+            read += skipped;
+            remaining -= skipped;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Skip the remaining blocks of the current record.
+     *
+     * @throws IOException if reading fails
+     */
+    private void skipBlocks() throws IOException {
+        int members;
+        while ((members = nextBlock()) > 0) {
+            for (long field = 0; field < (long) members * fieldsPerMember; field++) {
+                readField();
+            }
+        }
+    }
+
+    /**
+     * Get the amount of bytes left to read in the data file.
+     *
+     * @return the amount of bytes, unlimited if the length of the stream isn't known
+     * @throws IOException if the size of the file cannot be read
+     */
+    private long getRemainingLength() throws IOException {
+        if (!(channel instanceof FileChannel file)) { // A compressed or partial stream, only known once it ends
+            return Long.MAX_VALUE;
+        }
+        return file.size() - getPosition();
+    }
+
+    /**
+     * Read the length of a fixed size field and make
+     * sure its value is available in the buffer.
+     *
+     * @param length the expected length of the field
+     * @throws IOException if the field has a different length
+     */
+    private void ensureFixedField(int length) throws IOException {
+        ensureAvailable(Integer.BYTES);
+        int actual = buffer.getInt();
+        if (actual != length) {
+            throw new IOException("Expected a field of " + length + " bytes but found " + actual);
+        }
+        ensureAvailable(length);
+    }
+
+    /**
+     * Make sure the given amount of bytes are
+     * available in the buffer, reading more if not.
+     *
+     * @param bytes the amount of bytes
+     * @throws IOException if the end of the file is reached first
+     */
+    private void ensureAvailable(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            int count = channel.read(buffer);
+            if (count == -1) {
+                buffer.flip();
+                throw new EOFException("Unexpected end of the data file");
+            }
+            read += count;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,267 @@
+package me.braydon.redis.io;
+
+import lombok.NonNull;
+import me.braydon.redis.type.KeyCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes exported keys to a binary data file.
+ * <p>
+ * The file starts with the {@link #MAGIC} bytes and the format
+ * {@link #VERSION}, followed by one record per key and a single
+ * {@link #END_OF_FILE} tag. A record holds the {@link #KEY_RECORD}
+ * tag, the key name, the type name, the time-to-live in seconds
+ * and the blocks of members written by the {@link KeyCodec}.
+ * </p>
+ * <p>
+ * A block starts with the amount of members in it and the
+ * amount of fields per member, every field is prefixed with its
+ * length. The blocks of a record end with a member count of zero,
+ * so a reader can skip a record without understanding its type.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class BinaryDataWriter implements DataWriter {
+    /**
+     * The bytes every binary data file starts with.
+     */
+    static final byte[] MAGIC = { 'R', 'D', 'E', 'X' };
+
+    /**
+     * The version of the format written by this writer.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * The tag that starts a key record.
+     */
+    static final byte KEY_RECORD = 1;
+
+    /**
+     * The tag that marks the end of the file.
+     */
+    static final byte END_OF_FILE = 0;
+
+    /**
+     * The size of the direct output buffer.
+     */
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long written; // The amount of bytes written to the channel
+
+    public BinaryDataWriter(@NonNull OutputStream out) {
+        this(out, false);
+    }
+
+    /**
+     * Create a writer, continuing a data file whose
+     * header has already been written if resumed.
+     *
+     * @param out the stream to write to
+     * @param resumed whether the data file was cut off after a key
+     */
+    BinaryDataWriter(@NonNull OutputStream out, boolean resumed) {
+        this.out = out;
+        channel = Channels.newChannel(out); // A file stream hands out its own channel, skipping the copy
+        if (!resumed) {
+            buffer.put(MAGIC).put(VERSION);
+        }
+    }
+
+    /**
+     * Start writing the record of the given key.
+     *
+     * @param key the key name
+     * @param ttl the time-to-live of the key in seconds
+     * @param codec the codec of the key type
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void beginKey(@NonNull String key, long ttl, @NonNull KeyCodec<?> codec) throws IOException {
+        ensureRemaining(1);
+        buffer.put(KEY_RECORD);
+        writeString(key);
+        writeString(codec.getTypeName());
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(ttl);
+    }
+
+    /**
+     * Write the given members as blocks
+     * of the record being written.
+     *
+     * @param codec the codec of the key type
+     * @param value the members to write
+     * @param <T> the type of value
+     * @throws IOException if writing fails
+     * @see KeyCodec for codec
+     */
+    @Override
+    public <T> void writeMembers(@NonNull KeyCodec<T> codec, T value) throws IOException {
+        codec.writeBinary(this, value); // Each page becomes its own block
+    }
+
+    /**
+     * End the blocks of the record being written.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void endKey() throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(0);
+    }
+
+    /**
+     * Start a block of members.
+     * <p>
+     * Exactly {@code members * fieldsPerMember} fields must
+     * be written after this, empty blocks are skipped.
+     * </p>
+     *
+     * @param members the amount of members in the block
+     * @param fieldsPerMember the amount of fields in each member
+     * @throws IOException if writing fails
+     */
+    public void beginBlock(int members, int fieldsPerMember) throws IOException {
+        if (members == 0) { // A member count of zero ends the record
+            return;
+        }
+        ensureRemaining(Integer.BYTES + 1);
+        buffer.putInt(members);
+        buffer.put((byte) fieldsPerMember);
+    }
+
+    /**
+     * Write the given bytes as a field.
+     *
+     * @param bytes the bytes to write
+     * @throws IOException if writing fails
+     */
+    public void writeField(byte @NonNull [] bytes) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(bytes.length);
+        if (bytes.length <= buffer.capacity()) { // Copy the field into the buffer
+            ensureRemaining(bytes.length);
+            buffer.put(bytes);
+            return;
+        }
+        writeBuffer(); // The field is larger than the buffer, write it directly
+        ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+        while (wrapped.hasRemaining()) {
+            written += channel.write(wrapped);
+        }
+    }
+
+    /**
+     * Write the given string as a UTF-8 field.
+     *
+     * @param value the string to write
+     * @throws IOException if writing fails
+     */
+    public void writeString(@NonNull String value) throws IOException {
+        writeField(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the given long as an 8 byte field.
+     *
+     * @param value the long to write
+     * @throws IOException if writing fails
+     */
+    public void writeLong(long value) throws IOException {
+        ensureRemaining(Integer.BYTES + Long.BYTES);
+        buffer.putInt(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Write the given double as an 8 byte field.
+     *
+     * @param value the double to write
+     * @throws IOException if writing fails
+     */
+    public void writeDouble(double value) throws IOException {
+        ensureRemaining(Integer.BYTES + Double.BYTES);
+        buffer.putInt(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Get the exact position of the writer in the data file.
+     * <p>
+     * For a compressed data file this is the
+     * amount of uncompressed bytes produced.
+     * </p>
+     *
+     * @return the amount of bytes written
+     */
+    @Override
+    public long getPosition() {
+        return written + buffer.position();
+    }
+
+    /**
+     * Write the buffer and flush the stream, which
+     * ends the gzip member of a compressed file.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+        out.flush();
+    }
+
+    /**
+     * Write the end of file tag and close the file.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            ensureRemaining(1);
+            buffer.put(END_OF_FILE);
+            writeBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Make sure the buffer has room for the given
+     * amount of bytes, flushing it if it doesn't.
+     *
+     * @param bytes the amount of bytes
+     * @throws IOException if flushing fails
+     */
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            writeBuffer();
+        }
+    }
+
+    /**
+     * Write the contents of the buffer to the channel.
+     *
+     * @throws IOException if writing fails
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
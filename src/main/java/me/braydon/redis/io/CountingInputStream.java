@@ -0,0 +1,49 @@
+package me.braydon.redis.io;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that counts the bytes read through it.
+ *
+ * @author Braydon
+ */
+final class CountingInputStream extends FilterInputStream {
+    /**
+     * The amount of bytes read so far.
+     */
+    @Getter private long count;
+
+    CountingInputStream(@NonNull InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte @NonNull [] bytes, int offset, int length) throws IOException {
+        int read = super.read(bytes, offset, length);
+        if (read > 0) {
+            count += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+}
@@ -0,0 +1,67 @@
+package me.braydon.redis.io;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A writer that counts the UTF-8 bytes of the characters written through it.
+ * <p>
+ * The characters are counted as they are written, before
+ * any buffering, so the count is exact at every point
+ * rather than lagging behind until the buffer is flushed.
+ * </p>
+ *
+ * @author Braydon
+ */
+final class CountingWriter extends FilterWriter {
+    /**
+     * The amount of UTF-8 bytes written so far.
+     */
+    @Getter private long count;
+
+    CountingWriter(@NonNull Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        out.write(c);
+        count += utf8Length((char) c);
+    }
+
+    @Override
+    public void write(char @NonNull [] chars, int offset, int length) throws IOException {
+        out.write(chars, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            count += utf8Length(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(@NonNull String string, int offset, int length) throws IOException {
+        out.write(string, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            count += utf8Length(string.charAt(i));
+        }
+    }
+
+    /**
+     * Get the amount of UTF-8 bytes the given character is encoded as.
+     *
+     * @param c the character
+     * @return the amount of bytes, two for each half of a surrogate pair
+     */
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800 || Character.isSurrogate(c)) { // A surrogate pair is four bytes
+            return 2;
+        }
+        return 3;
+    }
+}
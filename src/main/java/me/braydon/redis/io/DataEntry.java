@@ -0,0 +1,62 @@
+package me.braydon.redis.io;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import me.braydon.redis.type.KeyValue;
+
+/**
+ * A key read from a data file.
+ * <p>
+ * When a key is migrated rather than read from a data
+ * file, the pages of a large key each become an entry,
+ * with every page after the first appended to the key.
+ * </p>
+ *
+ * @author Braydon
+ */
+@AllArgsConstructor @Getter @ToString
+public class DataEntry {
+    /**
+     * The name of the key.
+     */
+    @NonNull private final String key;
+
+    /**
+     * The name of the key type.
+     */
+    @NonNull private final String typeName;
+
+    /**
+     * The time-to-live of the key in seconds, or in
+     * milliseconds when the key is migrated.
+     */
+    private final long ttl;
+
+    /**
+     * The value of the key paired with its
+     * codec, null if the type is not supported.
+     */
+    @ToString.Exclude private final KeyValue<?> keyValue;
+
+    /**
+     * The amount of data file bytes consumed
+     * while reading this entry.
+     * <p>
+     * This may follow a buffered file position, so it
+     * is only accurate when summed over many entries.
+     * </p>
+     */
+    private final long size;
+
+    /**
+     * Whether the members are appended to
+     * the key, rather than replacing it.
+     */
+    private final boolean append;
+
+    public DataEntry(@NonNull String key, @NonNull String typeName, long ttl, KeyValue<?> keyValue, long size) {
+        this(key, typeName, ttl, keyValue, size, false);
+    }
+}
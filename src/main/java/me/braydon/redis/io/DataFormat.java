@@ -0,0 +1,288 @@
+package me.braydon.redis.io;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import me.braydon.redis.common.FileUtils;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * The formats a data file can be written in.
+ *
+ * @author Braydon
+ */
+@AllArgsConstructor @Getter
+public enum DataFormat {
+    /**
+     * A single, human readable, json object
+     * keyed by the key name.
+     */
+    JSON("json") {
+        @Override @NonNull
+        public DataWriter newWriter(@NonNull OutputStream out) throws IOException {
+            return new JsonDataWriter(out);
+        }
+
+        @Override @NonNull
+        public DataWriter newResumedWriter(@NonNull OutputStream out, boolean empty) throws IOException {
+            return new JsonDataWriter(out, true, empty);
+        }
+
+        @Override @NonNull
+        public DataReader newReader(@NonNull InputStream in, int threads) throws IOException {
+            return new JsonDataReader(in);
+        }
+    },
+
+    /**
+     * A compact, versioned container of
+     * length-prefixed binary records.
+     */
+    BINARY("bin") {
+        @Override @NonNull
+        public DataWriter newWriter(@NonNull OutputStream out) {
+            return new BinaryDataWriter(out);
+        }
+
+        @Override @NonNull
+        public DataWriter newResumedWriter(@NonNull OutputStream out, boolean empty) {
+            return new BinaryDataWriter(out, true);
+        }
+
+        @Override @NonNull
+        public DataReader newReader(@NonNull InputStream in, int threads) throws IOException {
+            return new BinaryDataReader(in);
+        }
+    },
+
+    /**
+     * Line delimited json, a self-contained json object
+     * per key, which is parsed across several threads.
+     */
+    NDJSON("ndjson") {
+        @Override @NonNull
+        public DataWriter newWriter(@NonNull OutputStream out) {
+            return new NdjsonDataWriter(out);
+        }
+
+        @Override @NonNull
+        public DataWriter newResumedWriter(@NonNull OutputStream out, boolean empty) {
+            return new NdjsonDataWriter(out); // Every line stands alone, so the keys are simply appended
+        }
+
+        @Override @NonNull
+        public DataReader newReader(@NonNull InputStream in, int threads) {
+            return new NdjsonDataReader(in, threads);
+        }
+    };
+
+    /**
+     * The extension appended to the name of a compressed data file.
+     */
+    public static final String COMPRESSED_EXTENSION = ".gz";
+
+    /**
+     * The bytes every gzip stream starts with.
+     */
+    private static final byte[] GZIP_MAGIC = { 0x1f, (byte) 0x8b };
+
+    /**
+     * The file extension used by this format.
+     */
+    @NonNull private final String extension;
+
+    /**
+     * Create a writer for the given stream in this format.
+     * <p>
+     * The writer owns the stream and closes it when it is closed.
+     * </p>
+     *
+     * @param out the stream to write to
+     * @return the writer
+     * @throws IOException if writing fails
+     */
+    @NonNull
+    public abstract DataWriter newWriter(@NonNull OutputStream out) throws IOException;
+
+    /**
+     * Create a writer in this format for the given stream, which
+     * continues a data file that was cut off after a key.
+     * <p>
+     * The writer owns the stream and closes it when it is closed.
+     * </p>
+     *
+     * @param out the stream to write to
+     * @param empty whether no keys were written before the data file was cut off
+     * @return the writer
+     * @throws IOException if writing fails
+     * @see DataWriter#flush() for cutting off a data file
+     */
+    @NonNull
+    public abstract DataWriter newResumedWriter(@NonNull OutputStream out, boolean empty) throws IOException;
+
+    /**
+     * Create a reader for the given stream in this format.
+     * <p>
+     * The reader owns the stream and closes it when it is closed.
+     * </p>
+     *
+     * @param in the stream to read from
+     * @param threads the amount of threads to parse with, if the format is parsed in parallel
+     * @return the reader
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    public abstract DataReader newReader(@NonNull InputStream in, int threads) throws IOException;
+
+    /**
+     * Open a writer for the given file in this format.
+     *
+     * @param file the file to write to
+     * @param compress whether to gzip compress the file
+     * @param compressThreads the amount of threads to compress with
+     * @return the writer
+     * @throws IOException if the file cannot be opened
+     * @see ParallelGzipOutputStream for compression
+     */
+    @NonNull
+    public DataWriter openWriter(@NonNull File file, boolean compress, int compressThreads) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (compress) {
+            out = new ParallelGzipOutputStream(out, compressThreads);
+        }
+        try {
+            return newWriter(out);
+        } catch (IOException ex) {
+            out.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Open a writer continuing the given file in this format.
+     * <p>
+     * The file is cut off at the given length, which must be
+     * the length it had right after the writer was flushed,
+     * and the writer appends to it from there. A compressed
+     * file is continued with a new gzip member.
+     * </p>
+     *
+     * @param file the file to continue
+     * @param compress whether the file is gzip compressed
+     * @param compressThreads the amount of threads to compress with
+     * @param length the length to cut the file off at
+     * @param empty whether no keys were written before the length
+     * @return the writer
+     * @throws IOException if the file cannot be opened or is shorter than the length
+     * @see DataWriter#flush() for flushing the writer
+     */
+    @NonNull
+    public DataWriter resumeWriter(@NonNull File file, boolean compress, int compressThreads, long length, boolean empty) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            if (channel.size() < length) {
+                throw new IOException("The data file is shorter (" + channel.size() + " bytes) than its checkpoint (" + length + " bytes)");
+            }
+            channel.truncate(length); // Drop whatever was written after the checkpoint
+        }
+        OutputStream out = new FileOutputStream(file, true);
+        if (compress) {
+            out = new ParallelGzipOutputStream(out, compressThreads);
+        }
+        try {
+            return newResumedWriter(out, empty);
+        } catch (IOException ex) {
+            out.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Open a reader for the given file in this format.
+     * <p>
+     * A gzip compressed file is detected by its
+     * magic bytes, regardless of its extension.
+     * </p>
+     *
+     * @param file the file to read from
+     * @param compressThreads the amount of threads to decompress, and parse if the format is parsed in parallel, with
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     * @see ParallelGzipInputStream for decompression
+     */
+    @NonNull
+    public DataReader openReader(@NonNull File file, int compressThreads) throws IOException {
+        boolean compressed = isCompressed(file);
+        InputStream in = new FileInputStream(file);
+        if (compressed) {
+            in = new ParallelGzipInputStream(in, compressThreads);
+        }
+        try {
+            return newReader(in, compressThreads);
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the format with the given name or extension.
+     *
+     * @param name the name or extension
+     * @return the format, null if none match
+     */
+    public static DataFormat getFormat(@NonNull String name) {
+        for (DataFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name) || format.getExtension().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the format matching the extension of the given file.
+     * <p>
+     * The {@link #COMPRESSED_EXTENSION} is ignored, so a file named
+     * {@code data.json.gz} is detected as a json data file.
+     * </p>
+     *
+     * @param file the file
+     * @return the format, null if none match
+     * @see FileUtils#getFileExtension(File) for the extension
+     */
+    public static DataFormat getFormat(@NonNull File file) {
+        if (hasCompressedExtension(file)) { // Detect the format from the name without the compressed extension
+            String name = file.getName();
+            file = new File(name.substring(0, name.length() - COMPRESSED_EXTENSION.length()));
+        }
+        return getFormat(FileUtils.getFileExtension(file));
+    }
+
+    /**
+     * Check whether the given file is named as a compressed data file.
+     *
+     * @param file the file
+     * @return whether the name ends with the {@link #COMPRESSED_EXTENSION}
+     */
+    public static boolean hasCompressedExtension(@NonNull File file) {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(COMPRESSED_EXTENSION);
+    }
+
+    /**
+     * Check whether the given file starts with the gzip magic bytes.
+     *
+     * @param file the file
+     * @return whether the file is gzip compressed
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isCompressed(@NonNull File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] magic = in.readNBytes(GZIP_MAGIC.length);
+            return magic.length == GZIP_MAGIC.length && magic[0] == GZIP_MAGIC[0] && magic[1] == GZIP_MAGIC[1];
+        }
+    }
+}
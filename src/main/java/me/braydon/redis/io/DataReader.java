@@ -0,0 +1,47 @@
+package me.braydon.redis.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the keys from a data file
+ * one entry at a time.
+ *
+ * @author Braydon
+ * @see DataFormat for the available formats
+ */
+public interface DataReader extends Closeable {
+    /**
+     * Read the next entry from the data file.
+     *
+     * @return the entry, null if there are no more entries
+     * @throws IOException if reading fails
+     * @see DataEntry for entry
+     */
+    DataEntry next() throws IOException;
+
+    /**
+     * Get the amount of bytes consumed from the data file.
+     *
+     * @return the amount of bytes consumed
+     * @throws IOException if the position cannot be read
+     */
+    long getPosition() throws IOException;
+
+    /**
+     * Skip ahead to the given position without reading
+     * the entries before it.
+     * <p>
+     * The position must be one this reader was at right
+     * after an entry was read. Readers whose position runs
+     * ahead of the entries they have read cannot skip.
+     * </p>
+     *
+     * @param position the position to skip to
+     * @return whether the reader skipped, false if it cannot
+     * @throws IOException if skipping fails
+     */
+    default boolean skipTo(long position) throws IOException {
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package me.braydon.redis.io;
+
+import lombok.NonNull;
+import me.braydon.redis.type.KeyCodec;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Writes exported keys to a data file.
+ *
+ * @author Braydon
+ * @see DataFormat for the available formats
+ */
+public interface DataWriter extends Closeable, Flushable {
+    /**
+     * Write the given key to the data file.
+     *
+     * @param key the key name
+     * @param ttl the time-to-live of the key in seconds
+     * @param codec the codec of the key type
+     * @param value the value of the key
+     * @param <T> the type of value
+     * @throws IOException if writing fails
+     * @see KeyCodec for codec
+     */
+    default <T> void writeKey(@NonNull String key, long ttl, @NonNull KeyCodec<T> codec, T value) throws IOException {
+        beginKey(key, ttl, codec);
+        writeMembers(codec, value);
+        endKey();
+    }
+
+    /**
+     * Start writing the given key to the data file.
+     * <p>
+     * This allows a large key to be written one page of members
+     * at a time with {@link #writeMembers(KeyCodec, Object)}, which
+     * must be called at least once before {@link #endKey()}.
+     * </p>
+     *
+     * @param key the key name
+     * @param ttl the time-to-live of the key in seconds
+     * @param codec the codec of the key type
+     * @throws IOException if writing fails
+     */
+    void beginKey(@NonNull String key, long ttl, @NonNull KeyCodec<?> codec) throws IOException;
+
+    /**
+     * Write the given members to the key being written.
+     *
+     * @param codec the codec of the key type
+     * @param value the members to write
+     * @param <T> the type of value
+     * @throws IOException if writing fails
+     * @see KeyCodec for codec
+     */
+    <T> void writeMembers(@NonNull KeyCodec<T> codec, T value) throws IOException;
+
+    /**
+     * Finish writing the key being written.
+     *
+     * @throws IOException if writing fails
+     */
+    void endKey() throws IOException;
+
+    /**
+     * Get the amount of bytes written to the data file.
+     *
+     * @return the amount of bytes written
+     */
+    long getPosition();
+
+    /**
+     * Write every key written so far through to the data file.
+     * <p>
+     * Must not be called while a key is being written. Once
+     * flushed, the data file ends on a key boundary, and a
+     * compressed data file on a complete gzip member, so it
+     * can be cut off there and resumed.
+     * </p>
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    void flush() throws IOException;
+}
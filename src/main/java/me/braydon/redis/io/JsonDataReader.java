@@ -0,0 +1,127 @@
+package me.braydon.redis.io;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.NonNull;
+import me.braydon.redis.type.KeyCodec;
+import me.braydon.redis.type.KeyCodecs;
+import me.braydon.redis.type.KeyValue;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the keys from a json data file one
+ * entry at a time, rather than parsing the
+ * entire file into memory up front.
+ *
+ * @author Braydon
+ */
+public final class JsonDataReader implements DataReader {
+    private static final int BUFFER_SIZE = 64 * 1024; // The size of the input buffer
+
+    private final CountingInputStream counter;
+    private final JsonReader reader;
+    private long position; // The position in the data file after the previous entry
+
+    public JsonDataReader(@NonNull InputStream in) throws IOException {
+        counter = new CountingInputStream(in);
+        reader = new JsonReader(new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8), BUFFER_SIZE));
+        reader.beginObject(); // Open the keys object
+    }
+
+    /**
+     * Read the next entry from the data file.
+     * <p>
+     * The members are streamed straight into the value
+     * by its codec, only this key is held in memory. The
+     * type must come before the data, as it is written.
+     * </p>
+     *
+     * @return the entry, null if there are no more entries
+     * @throws IOException if reading fails
+     * @see DataEntry for entry
+     */
+    @Override
+    public DataEntry next() throws IOException {
+        if (reader.peek() == JsonToken.END_OBJECT) { // Reached the end of the keys object
+            return null;
+        }
+        String key = reader.nextName();
+        String typeName = null;
+        long ttl = -1L;
+        KeyValue<?> value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type" -> typeName = reader.nextString();
+                case "ttl" -> ttl = reader.nextLong();
+                case "data" -> {
+                    if (typeName == null) {
+                        throw new IOException("The data of '" + key + "' comes before its type");
+                    }
+                    KeyCodec<?> codec = KeyCodecs.getCodec(typeName); // Get the codec of the key type
+                    if (codec == null) { // Unsupported type, skip the data
+                        reader.skipValue();
+                    } else {
+                        value = readValue(reader, codec); // Read the members of the key
+                    }
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (typeName == null) {
+            throw new IOException("The key '" + key + "' has no type");
+        }
+        long previousPosition = position;
+        position = getPosition();
+        return new DataEntry(key, typeName, ttl, value, position - previousPosition);
+    }
+
+    /**
+     * Read the data object or array of
+     * the current key with the given codec.
+     *
+     * @param reader the reader at the data of the key
+     * @param codec the codec of the key type
+     * @param <T> the type of value
+     * @return the value
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    static <T> KeyValue<T> readValue(@NonNull JsonReader reader, @NonNull KeyCodec<T> codec) throws IOException {
+        T value;
+        if (codec.isJsonArray()) {
+            reader.beginArray();
+            value = codec.readJson(reader);
+            reader.endArray();
+        } else {
+            reader.beginObject();
+            value = codec.readJson(reader);
+            reader.endObject();
+        }
+        return new KeyValue<>(codec, value);
+    }
+
+    /**
+     * Get the amount of bytes consumed from the data file.
+     * <p>
+     * This is the amount of bytes read from the underlying
+     * stream, so it runs ahead of the parser by up to the
+     * buffer size. For a compressed data file this is the
+     * amount of uncompressed bytes.
+     * </p>
+     *
+     * @return the amount of bytes consumed
+     */
+    @Override
+    public long getPosition() {
+        return counter.getCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
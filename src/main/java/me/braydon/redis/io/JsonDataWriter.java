@@ -0,0 +1,182 @@
+package me.braydon.redis.io;
+
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.type.KeyCodec;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes exported keys to a json data file as they
+ * are fetched, rather than building the entire file
+ * in memory before writing it.
+ * <p>
+ * The output is a single json object keyed by the
+ * key name, identical to what the importer expects.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class JsonDataWriter implements DataWriter {
+    private static final int BUFFER_SIZE = 64 * 1024; // The size of the output buffer
+
+    private final CountingWriter counter;
+    private final JsonWriter writer;
+    private boolean dataArray; // Whether the data of the key being written is an array rather than an object
+
+    public JsonDataWriter(@NonNull OutputStream out) throws IOException {
+        this(out, false, true);
+    }
+
+    /**
+     * Create a writer, continuing a data file whose
+     * keys object has already been opened if resumed.
+     *
+     * @param out the stream to write to
+     * @param resumed whether the data file was cut off after a key
+     * @param empty whether no keys were written before the data file was cut off
+     * @throws IOException if writing fails
+     */
+    JsonDataWriter(@NonNull OutputStream out, boolean resumed, boolean empty) throws IOException {
+        counter = new CountingWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE));
+        MutableWriter output = new MutableWriter(counter);
+        writer = new JsonWriter(output);
+        writer.setIndent("  "); // This isn't necessary, but it allows users to easily read their exported data
+        writer.setSerializeNulls(true);
+        output.muted = resumed; // The keys object is already in the data file, only bring the writer up to it
+        writer.beginObject(); // Open the keys object
+        if (resumed && !empty) { // Step past a key, so the next key is separated from those in the data file
+            writer.name("").nullValue();
+        }
+        output.muted = false;
+    }
+
+    /**
+     * Start writing the given key to the data file,
+     * opening its data object or array.
+     *
+     * @param key the key name
+     * @param ttl the time-to-live of the key in seconds
+     * @param codec the codec of the key type
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void beginKey(@NonNull String key, long ttl, @NonNull KeyCodec<?> codec) throws IOException {
+        writer.name(key).beginObject();
+        writer.name("type").value(codec.getTypeName()); // Write the type name to the key json object
+        writer.name("ttl").value(ttl); // Write the time-to-live to the key json object
+        writer.name("data");
+        dataArray = codec.isJsonArray();
+        if (dataArray) {
+            writer.beginArray();
+        } else {
+            writer.beginObject();
+        }
+    }
+
+    /**
+     * Write the given members to the key being written.
+     * <p>
+     * The members of every page are streamed
+     * into a single data object or array.
+     * </p>
+     *
+     * @param codec the codec of the key type
+     * @param value the members to write
+     * @param <T> the type of value
+     * @throws IOException if writing fails
+     * @see KeyCodec for codec
+     */
+    @Override
+    public <T> void writeMembers(@NonNull KeyCodec<T> codec, T value) throws IOException {
+        codec.writeJson(writer, value);
+    }
+
+    /**
+     * Finish writing the key being written.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void endKey() throws IOException {
+        if (dataArray) { // Close the data object or array
+            writer.endArray();
+        } else {
+            writer.endObject();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Get the amount of bytes written to the data file.
+     * <p>
+     * The bytes are counted as the characters are written,
+     * so this includes what is still buffered. For a compressed
+     * data file this is the amount of uncompressed bytes.
+     * </p>
+     *
+     * @return the amount of bytes written
+     */
+    @Override
+    public long getPosition() {
+        return counter.getCount();
+    }
+
+    /**
+     * Flush the buffered output through to the data file.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Close the keys object and flush
+     * the remaining output to the file.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.endObject(); // Close the keys object
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * A writer that discards its output while muted.
+     */
+    private static final class MutableWriter extends FilterWriter {
+        private boolean muted;
+
+        private MutableWriter(@NonNull Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (!muted) {
+                super.write(c);
+            }
+        }
+
+        @Override
+        public void write(char @NonNull [] chars, int offset, int length) throws IOException {
+            if (!muted) {
+                super.write(chars, offset, length);
+            }
+        }
+
+        @Override
+        public void write(@NonNull String string, int offset, int length) throws IOException {
+            if (!muted) {
+                super.write(string, offset, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package me.braydon.redis.io;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Converts the raw bytes of a value to and
+ * from the strings held in a json data file.
+ * <p>
+ * Valid UTF-8 is written as plain text, so existing
+ * data files read the same as before. Anything else,
+ * such as a serialized or compressed blob, is written
+ * as base64 behind the {@link #BASE64_PREFIX}.
+ * </p>
+ *
+ * @author Braydon
+ */
+@UtilityClass
+public final class JsonStrings {
+    /**
+     * The prefix of a string holding base64 bytes rather than text.
+     */
+    public static final String BASE64_PREFIX = "\u0000base64:";
+
+    private static final ThreadLocal<CharsetDecoder> DECODERS = ThreadLocal.withInitial(() -> StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+    );
+
+    /**
+     * Encode the given bytes as a json string.
+     *
+     * @param bytes the bytes to encode
+     * @return the encoded string
+     */
+    @NonNull
+    public static String encode(byte @NonNull [] bytes) {
+        String text = toText(bytes);
+        if (text == null || text.startsWith(BASE64_PREFIX)) { // Not text, or text that would be mistaken for base64
+            return BASE64_PREFIX + Base64.getEncoder().encodeToString(bytes);
+        }
+        return text;
+    }
+
+    /**
+     * Decode the given json string to bytes.
+     *
+     * @param value the string to decode
+     * @return the decoded bytes
+     * @throws IllegalArgumentException if the base64 is invalid
+     */
+    public static byte @NonNull [] decode(@NonNull String value) {
+        if (value.startsWith(BASE64_PREFIX)) {
+            return Base64.getDecoder().decode(value.substring(BASE64_PREFIX.length()));
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode the given bytes as strict UTF-8.
+     *
+     * @param bytes the bytes to decode
+     * @return the text, null if the bytes are not valid UTF-8
+     */
+    private static String toText(byte @NonNull [] bytes) {
+        for (byte b : bytes) {
+            if (b < 0) { // Not plain ASCII, check every sequence
+                try {
+                    return DECODERS.get().decode(ByteBuffer.wrap(bytes)).toString();
+                } catch (CharacterCodingException ex) {
+                    return null;
+                }
+            }
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1); // Plain ASCII maps byte for byte
+    }
+}
@@ -0,0 +1,464 @@
+package me.braydon.redis.io;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The index of a binary data file, kept in a sidecar next to it.
+ * <p>
+ * The index lists the name, offset and length of every
+ * record in the data file, sorted by key name, so a few
+ * keys can be restored from a huge data file by reading
+ * just their records rather than parsing the whole file.
+ * Every {@value #SPARSE_INTERVAL}th entry is also listed in
+ * a small sparse table, which is held in memory to find
+ * the entries of a key with a single short read.
+ * </p>
+ * <p>
+ * The offsets are those of the uncompressed data. For a
+ * compressed data file, the index also lists where every
+ * gzip member starts, so a record is read by inflating
+ * from the start of the member holding it rather than
+ * from the start of the file.
+ * </p>
+ *
+ * @author Braydon
+ * @see KeyIndexWriter for writing the index
+ */
+public final class KeyIndex implements Closeable {
+    /**
+     * The extension appended to the name of the data file.
+     */
+    public static final String EXTENSION = ".index";
+
+    /**
+     * The bytes every index starts and ends with.
+     */
+    static final int MAGIC = 0x52584958; // RXIX
+
+    /**
+     * The version of the index format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The interval between the entries listed in the sparse table.
+     */
+    static final int SPARSE_INTERVAL = 128;
+
+    /**
+     * The size of the footer, the amount of entries, the position
+     * and size of every table, the length of the data file and the magic.
+     */
+    static final int FOOTER_SIZE = Long.BYTES * 4 + Integer.BYTES * 3;
+
+    /**
+     * The furthest to inflate ahead to the next record of a
+     * compressed data file, rather than starting from its member.
+     */
+    private static final long MAX_SKIP = 2L * ParallelGzipOutputStream.BLOCK_SIZE;
+
+    /**
+     * The remaining bytes of the parts of a {@link RecordInputStream}
+     * that are read until they end, the header and end of file tag.
+     */
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final FileChannel channel; // The channel of the index
+    private final File dataFile; // The data file indexed
+    private final long entriesEnd; // The position the entries end at
+    private final String[] sparseKeys; // The key of every sparse entry
+    private final long[] sparsePositions; // The position of every sparse entry
+    private final long[] memberOffsets; // The uncompressed offset of every gzip member, empty if uncompressed
+    private final long[] memberPositions; // The position of every gzip member in the data file
+
+    /**
+     * The amount of entries in the index.
+     */
+    @Getter private final long entries;
+
+    private KeyIndex(@NonNull FileChannel channel, @NonNull File dataFile) throws IOException {
+        this.channel = channel;
+        this.dataFile = dataFile;
+        long size = channel.size();
+        if (size < Integer.BYTES * 2 + FOOTER_SIZE) {
+            throw new IOException("The index of " + dataFile + " is incomplete");
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        channel.read(footer, size - FOOTER_SIZE);
+        footer.flip();
+        entries = footer.getLong();
+        entriesEnd = footer.getLong();
+        int sparseCount = footer.getInt();
+        long membersStart = footer.getLong();
+        int memberCount = footer.getInt();
+        long dataFileLength = footer.getLong();
+        if (footer.getInt() != MAGIC) {
+            throw new IOException("The index of " + dataFile + " is incomplete");
+        } else if (dataFileLength != dataFile.length()) { // Every offset would be wrong
+            throw new IOException("The index of " + dataFile + " is out of date, the data file has changed since");
+        }
+        if (entriesEnd < Integer.BYTES * 2 || entriesEnd > membersStart || membersStart > size - FOOTER_SIZE
+                || sparseCount < 0 || sparseCount > (membersStart - entriesEnd) / (Integer.BYTES + Long.BYTES)
+                || memberCount < 0 || (long) memberCount * Long.BYTES * 2 != size - FOOTER_SIZE - membersStart) { // The tables must fit where they are
+            throw new IOException("The index of " + dataFile + " is corrupt");
+        }
+        sparseKeys = new String[sparseCount];
+        sparsePositions = new long[sparseCount];
+        try (DataInputStream in = open(entriesEnd)) {
+            for (int i = 0; i < sparseCount; i++) {
+                sparseKeys[i] = readKey(in, membersStart - entriesEnd);
+                sparsePositions[i] = in.readLong();
+            }
+        }
+        memberOffsets = new long[memberCount];
+        memberPositions = new long[memberCount];
+        try (DataInputStream in = open(membersStart)) {
+            for (int i = 0; i < memberCount; i++) {
+                memberOffsets[i] = in.readLong();
+                memberPositions[i] = in.readLong();
+            }
+        }
+    }
+
+    /**
+     * Open the index of the given data file.
+     *
+     * @param dataFile the data file
+     * @return the index
+     * @throws IOException if the index cannot be read, or doesn't match the data file
+     */
+    @NonNull
+    public static KeyIndex open(@NonNull File dataFile) throws IOException {
+        FileChannel channel = FileChannel.open(getFile(dataFile).toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES * 2);
+            channel.read(header, 0L);
+            header.flip();
+            if (header.remaining() < Integer.BYTES * 2 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(getFile(dataFile) + " isn't an index of this version");
+            }
+            return new KeyIndex(channel, dataFile);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the index file of the given data file.
+     *
+     * @param dataFile the data file
+     * @return the index file, next to the data file
+     */
+    @NonNull
+    public static File getFile(@NonNull File dataFile) {
+        return new File(dataFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Find the entries of the given keys.
+     *
+     * @param keys the names of the keys
+     * @return the entries, in the order of the data file, more than one for a key written twice
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    public List<Entry> find(@NonNull Collection<String> keys) throws IOException {
+        List<Entry> found = new ArrayList<>();
+        for (String key : new TreeSet<>(keys)) {
+            scan(key, name -> name.equals(key), name -> name.compareTo(key) > 0, found);
+        }
+        found.sort(Comparator.comparingLong(Entry::getOffset));
+        return found;
+    }
+
+    /**
+     * Find the entries of the keys starting with the given
+     * prefix, whose names pass the given predicate.
+     *
+     * @param prefix the start every name shares, empty to read every entry
+     * @param names the predicate the names must pass
+     * @return the entries, in the order of the data file
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    public List<Entry> find(@NonNull String prefix, @NonNull Predicate<String> names) throws IOException {
+        List<Entry> found = new ArrayList<>();
+        scan(prefix, names, name -> !name.startsWith(prefix), found);
+        found.sort(Comparator.comparingLong(Entry::getOffset));
+        return found;
+    }
+
+    /**
+     * Open a reader of the records of the given entries.
+     * <p>
+     * The records are read straight from their offsets
+     * and parsed as though they were a data file of
+     * their own, so nothing else is parsed.
+     * </p>
+     *
+     * @param entries the entries to read, in the order of the data file
+     * @return the reader
+     * @throws IOException if the data file cannot be opened
+     */
+    @NonNull
+    public DataReader openReader(@NonNull List<Entry> entries) throws IOException {
+        return new BinaryDataReader(new RecordInputStream(entries));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Collect the entries from the first that could sort at or after
+     * the given key, until one of them sorts past what is looked for.
+     *
+     * @param from the key to start from
+     * @param names the predicate the names of the collected entries must pass
+     * @param past the predicate of the names sorted past what is looked for
+     * @param found the entries to add to
+     * @throws IOException if reading fails
+     */
+    private void scan(@NonNull String from, @NonNull Predicate<String> names, @NonNull Predicate<String> past,
+                      @NonNull List<Entry> found) throws IOException {
+        int sparse = Arrays.binarySearch(sparseKeys, from);
+        if (sparse < 0) { // Start from the last sparse entry before the key
+            sparse = -sparse - 2;
+        }
+        while (sparse > 0 && sparseKeys[sparse].equals(from)) { // Duplicate names may span sparse entries
+            sparse--;
+        }
+        long position = sparse < 0 ? Integer.BYTES * 2 : sparsePositions[sparse];
+        try (DataInputStream in = open(position)) {
+            for (long read = position; read < entriesEnd; ) {
+                String key = readKey(in, entriesEnd - read);
+                long offset = in.readLong();
+                long length = in.readLong();
+                read += Integer.BYTES + key.getBytes(StandardCharsets.UTF_8).length + Long.BYTES * 2;
+                if (key.compareTo(from) < 0) { // Before what is looked for
+                    continue;
+                }
+                if (past.test(key)) {
+                    break;
+                }
+                if (names.test(key)) {
+                    found.add(new Entry(key, offset, length));
+                }
+            }
+        }
+    }
+
+    /**
+     * Open a buffered stream of the index at the given position.
+     *
+     * @param position the position
+     * @return the stream
+     */
+    @NonNull
+    private DataInputStream open(long position) {
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(new PositionedChannel(channel, position)), 16 * 1024));
+    }
+
+    /**
+     * Read a key name from the index.
+     *
+     * @param in the stream of the index
+     * @param remaining the amount of bytes left in the table being read, no name is longer
+     * @return the key name
+     * @throws IOException if reading fails, or the length of the name is corrupt
+     */
+    @NonNull
+    static String readKey(@NonNull DataInputStream in, long remaining) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > remaining) { // Never allocate a corrupt length
+            throw new IOException("The index is corrupt, found a key name of " + length + " bytes");
+        }
+        byte[] name = new byte[length];
+        in.readFully(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An entry of the index, the location of a record in the data file.
+     */
+    @AllArgsConstructor @Getter @ToString
+    public static final class Entry {
+        /**
+         * The name of the key.
+         */
+        @NonNull private final String key;
+
+        /**
+         * The offset of the record in the uncompressed data.
+         */
+        private final long offset;
+
+        /**
+         * The length of the record in bytes.
+         */
+        private final long length;
+    }
+
+    /**
+     * A read-only view of a file channel from a position, so
+     * several streams can read it without sharing a position,
+     * and closing a stream leaves the channel open.
+     */
+    private static final class PositionedChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        private long position;
+
+        private PositionedChannel(@NonNull FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read(@NonNull ByteBuffer buffer) throws IOException {
+            int read = channel.read(buffer, position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // The channel is closed by its owner
+        }
+    }
+
+    /**
+     * The bytes of a binary data file holding only the
+     * records of the given entries, read from the data file
+     * as they are needed.
+     */
+    private final class RecordInputStream extends InputStream {
+        private final List<Entry> entries;
+        private final FileChannel data; // The channel of the data file
+        private InputStream current; // The stream of the part being read, null once every part has been read
+        private int next; // The index of the next record, the end of file tag follows the last
+        private long remaining; // The bytes left in the part being read
+        private InputStream inflater; // The stream inflating the data file, null if not open or uncompressed
+        private long inflated; // The uncompressed offset the inflater is at
+
+        private RecordInputStream(@NonNull List<Entry> entries) throws IOException {
+            this.entries = entries;
+            data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+            byte[] header = Arrays.copyOf(BinaryDataWriter.MAGIC, BinaryDataWriter.MAGIC.length + 1);
+            header[BinaryDataWriter.MAGIC.length] = BinaryDataWriter.VERSION;
+            current = new ByteArrayInputStream(header);
+            remaining = UNBOUNDED;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte @NonNull [] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (current != null) {
+                int read = remaining == 0L ? -1 : current.read(bytes, offset, (int) Math.min(length, remaining));
+                if (read > 0) {
+                    if (remaining != UNBOUNDED) {
+                        remaining -= read;
+                    }
+                    if (current == inflater) {
+                        inflated += read;
+                    }
+                    return read;
+                }
+                if (remaining > 0L && remaining != UNBOUNDED) {
+                    throw new EOFException("The data file ended within a record");
+                }
+                openNext();
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inflater != null) {
+                inflater.close();
+            }
+            data.close();
+        }
+
+        /**
+         * Move on to the next record, or the end of file tag after the last.
+         *
+         * @throws IOException if the record cannot be reached
+         */
+        private void openNext() throws IOException {
+            if (next > entries.size()) { // The end of file tag has been read
+                current = null;
+                return;
+            }
+            if (next++ == entries.size()) { // Every record has been read, end the file
+                current = new ByteArrayInputStream(new byte[] { BinaryDataWriter.END_OF_FILE });
+                remaining = UNBOUNDED;
+                return;
+            }
+            Entry entry = entries.get(next - 1);
+            long offset = entry.getOffset();
+            remaining = entry.getLength();
+            if (memberOffsets.length == 0) { // Read the record straight from its offset
+                current = Channels.newInputStream(new PositionedChannel(data, offset));
+                return;
+            }
+            if (inflater == null || offset < inflated || offset - inflated > MAX_SKIP) { // Inflate from the member holding the record
+                int member = Arrays.binarySearch(memberOffsets, offset);
+                if (member < 0) {
+                    member = -member - 2;
+                }
+                if (inflater != null) {
+                    inflater.close(); // Frees its inflater, the data file stays open
+                }
+                InputStream compressed = Channels.newInputStream(new PositionedChannel(data, memberPositions[member]));
+                inflater = new GZIPInputStream(new BufferedInputStream(compressed, 64 * 1024), 64 * 1024);
+                inflated = memberOffsets[member];
+            }
+            inflater.skipNBytes(offset - inflated); // Up to the record, within the member or the next few
+            inflated = offset;
+            current = inflater;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package me.braydon.redis.io;
+
+import lombok.NonNull;
+import me.braydon.redis.type.KeyCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Writes the {@link KeyIndex} of a binary data file.
+ * <p>
+ * The offset and length of every record are collected while
+ * the data file is written, through the writer returned by
+ * {@link #wrap(DataWriter)}. Once the data file is complete,
+ * the entries are sorted by key name and written to the
+ * index. Every {@value #RUN_SIZE} entries are sorted and
+ * spilled to a temporary run file, which are merged at the
+ * end, so the keys of a huge data file are never all held
+ * in memory at once.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class KeyIndexWriter {
+    /**
+     * The amount of entries to sort in memory before spilling them to a run.
+     */
+    private static final int RUN_SIZE = 1 << 20;
+
+    /**
+     * The order of the entries in the index, by key
+     * name and then in the order of the data file.
+     */
+    private static final Comparator<KeyIndex.Entry> ORDER = Comparator.comparing(KeyIndex.Entry::getKey)
+            .thenComparingLong(KeyIndex.Entry::getOffset);
+
+    @NonNull private final File dataFile; // The data file being indexed
+    private final List<KeyIndex.Entry> entries = new ArrayList<>(); // The entries not yet spilled
+    private final List<File> runs = new ArrayList<>(); // The sorted runs spilled so far
+
+    public KeyIndexWriter(@NonNull File dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * Wrap the given writer of the data file, so
+     * every record it writes is added to the index.
+     *
+     * @param writer the writer of the data file
+     * @return the wrapped writer
+     */
+    @NonNull
+    public DataWriter wrap(@NonNull DataWriter writer) {
+        return new IndexingDataWriter(writer);
+    }
+
+    /**
+     * Write the index, once the data file is complete and closed.
+     * <p>
+     * The index is written to a temporary file which
+     * then replaces any index the data file had before.
+     * </p>
+     *
+     * @return the index file
+     * @throws IOException if reading the data file or writing the index fails
+     */
+    @NonNull
+    public File complete() throws IOException {
+        List<long[]> members = DataFormat.isCompressed(dataFile) ? readMembers() : List.of();
+        File file = KeyIndex.getFile(dataFile);
+        File temporary = new File(file.getPath() + ".tmp");
+        entries.sort(ORDER);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16))) {
+            out.writeInt(KeyIndex.MAGIC);
+            out.writeInt(KeyIndex.VERSION);
+            long position = Integer.BYTES * 2L;
+            long count = 0L;
+            List<String> sparseKeys = new ArrayList<>();
+            List<Long> sparsePositions = new ArrayList<>();
+            Merger merger = new Merger();
+            try {
+                KeyIndex.Entry entry;
+                while ((entry = merger.next()) != null) {
+                    if (count++ % KeyIndex.SPARSE_INTERVAL == 0L) {
+                        sparseKeys.add(entry.getKey());
+                        sparsePositions.add(position);
+                    }
+                    position += writeEntry(out, entry);
+                }
+            } finally {
+                merger.close();
+            }
+            long entriesEnd = position;
+            for (int i = 0; i < sparseKeys.size(); i++) {
+                position += writeKey(out, sparseKeys.get(i)) + Long.BYTES;
+                out.writeLong(sparsePositions.get(i));
+            }
+            for (long[] member : members) {
+                out.writeLong(member[0]);
+                out.writeLong(member[1]);
+            }
+            // The footer
+            out.writeLong(count);
+            out.writeLong(entriesEnd);
+            out.writeInt(sparseKeys.size());
+            out.writeLong(position);
+            out.writeInt(members.size());
+            out.writeLong(dataFile.length());
+            out.writeInt(KeyIndex.MAGIC);
+        } catch (IOException ex) {
+            temporary.delete();
+            throw ex;
+        } finally {
+            entries.clear();
+            for (File run : runs) {
+                run.delete();
+            }
+            runs.clear();
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /**
+     * Add the record of the given key to the index,
+     * spilling the entries to a run when there are enough.
+     *
+     * @param entry the entry of the record
+     * @throws IOException if spilling fails
+     */
+    private void add(@NonNull KeyIndex.Entry entry) throws IOException {
+        entries.add(entry);
+        if (entries.size() < RUN_SIZE) {
+            return;
+        }
+        entries.sort(ORDER);
+        File run = File.createTempFile(dataFile.getName() + ".index-", ".run", dataFile.getAbsoluteFile().getParentFile());
+        run.deleteOnExit(); // An export that fails never completes its index
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+            for (KeyIndex.Entry spilled : entries) {
+                writeEntry(out, spilled);
+            }
+        }
+        entries.clear();
+    }
+
+    /**
+     * Find where every gzip member of the compressed data file starts.
+     * <p>
+     * Every member written by {@link ParallelGzipOutputStream}
+     * holds its size in its header and its uncompressed size
+     * in its trailer, so only those are read.
+     * </p>
+     *
+     * @return the uncompressed offset and the position in the file of every member
+     * @throws IOException if reading fails, or a member wasn't written by this tool
+     */
+    @NonNull
+    private List<long[]> readMembers() throws IOException {
+        List<long[]> members = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(ParallelGzipOutputStream.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long position = 0L;
+            long offset = 0L;
+            while (position < channel.size()) {
+                readFully(channel, header.clear(), position);
+                if (header.get(12) != ParallelGzipOutputStream.SUBFIELD_ID_1 || header.get(13) != ParallelGzipOutputStream.SUBFIELD_ID_2) {
+                    throw new IOException("Cannot index " + dataFile + " as it was compressed by another tool");
+                }
+                long size = header.getInt(16) & 0xFFFFFFFFL;
+                readFully(channel, trailer.clear(), position + size - Integer.BYTES);
+                members.add(new long[] { offset, position });
+                offset += trailer.getInt(0) & 0xFFFFFFFFL;
+                position += size;
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Fill the given buffer from the given position of the given channel.
+     *
+     * @param channel the channel to read from
+     * @param buffer the buffer to fill
+     * @param position the position to read from
+     * @throws IOException if reading fails or the channel ends first
+     */
+    private static void readFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("The data file ended within a gzip member");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Write the given entry.
+     *
+     * @param out the stream to write to
+     * @param entry the entry
+     * @return the amount of bytes written
+     * @throws IOException if writing fails
+     */
+    private static long writeEntry(@NonNull DataOutputStream out, @NonNull KeyIndex.Entry entry) throws IOException {
+        long written = writeKey(out, entry.getKey());
+        out.writeLong(entry.getOffset());
+        out.writeLong(entry.getLength());
+        return written + Long.BYTES * 2;
+    }
+
+    /**
+     * Write the given key name, prefixed with its length.
+     *
+     * @param out the stream to write to
+     * @param key the key name
+     * @return the amount of bytes written
+     * @throws IOException if writing fails
+     */
+    private static long writeKey(@NonNull DataOutputStream out, @NonNull String key) throws IOException {
+        byte[] name = key.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(name.length);
+        out.write(name);
+        return Integer.BYTES + name.length;
+    }
+
+    /**
+     * Merges the sorted runs and the entries
+     * still in memory into a single sorted stream.
+     */
+    private final class Merger {
+        private final PriorityQueue<Source> sources = new PriorityQueue<>(Comparator.comparing(Source::getHead, ORDER));
+        private final List<DataInputStream> streams = new ArrayList<>();
+
+        private Merger() throws IOException {
+            for (File run : runs) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+                streams.add(in);
+                offer(new Source(in, run.length(), null));
+            }
+            offer(new Source(null, 0L, entries));
+        }
+
+        /**
+         * Get the next entry in order.
+         *
+         * @return the entry, null once every entry has been merged
+         * @throws IOException if reading a run fails
+         */
+        private KeyIndex.Entry next() throws IOException {
+            Source source = sources.poll();
+            if (source == null) {
+                return null;
+            }
+            KeyIndex.Entry entry = source.getHead();
+            offer(source);
+            return entry;
+        }
+
+        private void offer(@NonNull Source source) throws IOException {
+            if (source.advance()) {
+                sources.add(source);
+            }
+        }
+
+        private void close() throws IOException {
+            for (DataInputStream in : streams) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * A run, or the entries in memory, being merged.
+     */
+    private static final class Source {
+        private final DataInputStream in; // The stream of the run, null for the entries in memory
+        private final long length; // The length of the run, no key name can be longer
+        private final List<KeyIndex.Entry> entries; // The entries in memory, null for a run
+        private int next; // The index of the next entry in memory
+        private KeyIndex.Entry head; // The entry this source is at
+
+        private Source(DataInputStream in, long length, List<KeyIndex.Entry> entries) {
+            this.in = in;
+            this.length = length;
+            this.entries = entries;
+        }
+
+        private KeyIndex.Entry getHead() {
+            return head;
+        }
+
+        /**
+         * Move on to the next entry of this source.
+         *
+         * @return whether there is one
+         * @throws IOException if reading the run fails
+         */
+        private boolean advance() throws IOException {
+            if (entries != null) {
+                head = next < entries.size() ? entries.get(next++) : null;
+                return head != null;
+            }
+            String key;
+            try {
+                key = KeyIndex.readKey(in, length);
+            } catch (EOFException ex) { // The end of the run
+                return false;
+            }
+            head = new KeyIndex.Entry(key, in.readLong(), in.readLong());
+            return true;
+        }
+    }
+
+    /**
+     * A writer of the data file which adds every record it writes to the index.
+     */
+    private final class IndexingDataWriter implements DataWriter {
+        private final DataWriter writer;
+        private String key; // The key being written
+        private long start; // The offset of the record of the key being written
+
+        private IndexingDataWriter(@NonNull DataWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void beginKey(@NonNull String key, long ttl, @NonNull KeyCodec<?> codec) throws IOException {
+            this.key = key;
+            start = writer.getPosition();
+            writer.beginKey(key, ttl, codec);
+        }
+
+        @Override
+        public <T> void writeMembers(@NonNull KeyCodec<T> codec, T value) throws IOException {
+            writer.writeMembers(codec, value);
+        }
+
+        @Override
+        public void endKey() throws IOException {
+            writer.endKey();
+            add(new KeyIndex.Entry(key, start, writer.getPosition() - start));
+        }
+
+        @Override
+        public long getPosition() {
+            return writer.getPosition();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package me.braydon.redis.io;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.NonNull;
+import me.braydon.redis.type.KeyCodec;
+import me.braydon.redis.type.KeyCodecs;
+import me.braydon.redis.type.KeyValue;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the keys from a line delimited json data
+ * file, parsing the lines across a fork-join pool.
+ * <p>
+ * The data file is read in chunks of about {@value #CHUNK_SIZE}
+ * bytes, each cut off at a line break, so every chunk holds
+ * whole keys and can be parsed on its own. The chunks are
+ * parsed in parallel, while the entries are still handed out
+ * in the order of the data file.
+ * </p>
+ * <p>
+ * Unlike the other readers, the position of this reader
+ * is exact, it is always right after the last entry read.
+ * </p>
+ *
+ * @author Braydon
+ * @see NdjsonDataWriter for the format
+ */
+public final class NdjsonDataReader implements DataReader {
+    /**
+     * The size to read the chunks at, a chunk is longer if it ends within a line.
+     * <p>
+     * Small chunks keep the buffers out of the humongous allocations
+     * of the garbage collector, which are far slower to allocate.
+     * </p>
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final ForkJoinPool pool;
+    private final int maxPending; // The maximum amount of chunks being parsed at once
+    private final Deque<Future<Chunk>> pending = new ArrayDeque<>(); // The chunks being parsed, in order
+    private byte[] partial = new byte[0]; // The start of the line the previous chunk was cut off within
+    private long read; // The amount of bytes read from the stream
+    private boolean endOfStream; // Whether every byte has been read from the stream
+    private Chunk current; // The chunk the entries are being taken from
+    private int next; // The index of the next entry in the current chunk
+    private long position; // The position in the data file after the previous entry
+
+    public NdjsonDataReader(@NonNull InputStream in, int threads) {
+        this.in = in;
+        pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("Parsing Worker");
+            return thread;
+        }, null, false);
+        maxPending = threads * 2;
+    }
+
+    /**
+     * Read the next entry from the data file.
+     *
+     * @return the entry, null if there are no more entries
+     * @throws IOException if reading or parsing fails
+     * @see DataEntry for entry
+     */
+    @Override
+    public DataEntry next() throws IOException {
+        while (current == null || next == current.entries.size()) { // The current chunk has been consumed
+            readAheadChunks();
+            if (pending.isEmpty()) { // Reached the end of the data file
+                return null;
+            }
+            current = takeNextChunk();
+            next = 0;
+        }
+        position = current.ends[next];
+        return current.entries.get(next++);
+    }
+
+    /**
+     * Get the amount of bytes consumed from the data file.
+     * <p>
+     * This is the position right after the line of the
+     * last entry read. For a compressed data file this is
+     * the amount of uncompressed bytes.
+     * </p>
+     *
+     * @return the amount of bytes consumed
+     */
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Skip ahead to the given position without reading
+     * the lines before it.
+     * <p>
+     * This is only done before the first entry is read,
+     * once chunks have been read ahead the entries before
+     * the position must be read instead.
+     * </p>
+     *
+     * @param position the position to skip to
+     * @return whether the reader skipped
+     * @throws IOException if skipping fails
+     */
+    @Override
+    public boolean skipTo(long position) throws IOException {
+        if (read > 0L) { // Already reading ahead
+            return false;
+        }
+        in.skipNBytes(position);
+        read = position;
+        this.position = position;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        in.close();
+    }
+
+    /**
+     * Read chunks from the stream and hand them to
+     * the pool until enough of them are pending.
+     *
+     * @throws IOException if reading fails
+     */
+    private void readAheadChunks() throws IOException {
+        while (!endOfStream && pending.size() < maxPending) {
+            long start = read - partial.length; // The chunk starts with the line the previous one was cut off within
+            byte[] bytes = Arrays.copyOf(partial, Math.max(CHUNK_SIZE, partial.length * 2));
+            int length = partial.length;
+            int end; // The end of the last whole line in the chunk
+            while (true) {
+                int filled = in.readNBytes(bytes, length, bytes.length - length);
+                read += filled;
+                end = lastLineEnd(bytes, length, length + filled);
+                length += filled;
+                if (end >= 0 || length < bytes.length) { // Cut off at a line break, or at the end of the stream
+                    break;
+                }
+                bytes = Arrays.copyOf(bytes, bytes.length * 2); // A line longer than the chunk, keep reading
+            }
+            if (end < 0) { // The end of the stream, the last line may not end with a line break
+                endOfStream = true;
+                end = length;
+            }
+            partial = Arrays.copyOfRange(bytes, end, length);
+            if (end == 0) {
+                continue;
+            }
+            byte[] chunk = bytes;
+            int chunkLength = end;
+            pending.add(pool.submit(() -> parse(chunk, chunkLength, start)));
+        }
+    }
+
+    /**
+     * Wait for the oldest pending chunk to be parsed.
+     *
+     * @return the parsed chunk
+     * @throws IOException if parsing fails
+     */
+    @NonNull
+    private Chunk takeNextChunk() throws IOException {
+        try {
+            return pending.poll().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Failed to parse the data file", ex.getCause());
+        }
+    }
+
+    /**
+     * Find the end of the last line within the given range.
+     *
+     * @param bytes the bytes to search
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the index after the last line break, -1 if there is none
+     */
+    private static int lastLineEnd(byte @NonNull [] bytes, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse the keys in the given chunk, one per line.
+     *
+     * @param bytes the bytes of the chunk
+     * @param length the amount of bytes in the chunk
+     * @param start the position of the chunk in the data file
+     * @return the parsed chunk
+     * @throws IOException if a line isn't a key
+     */
+    @NonNull
+    private static Chunk parse(byte @NonNull [] bytes, int length, long start) throws IOException {
+        List<DataEntry> entries = new ArrayList<>();
+        long[] ends = new long[64];
+        int lines = 0;
+        int lineStart = 0;
+        while (lineStart < length) { // Find where every line with a key ends
+            int lineEnd = lineStart;
+            boolean blank = true; // Whether the line is only whitespace
+            while (lineEnd < length) { // Up to and including the line break
+                byte b = bytes[lineEnd++];
+                if (b == '\n') {
+                    break;
+                }
+                blank &= b == ' ' || b == '\t' || b == '\r';
+            }
+            if (!blank) {
+                if (lines == ends.length) {
+                    ends = Arrays.copyOf(ends, lines * 2);
+                }
+                ends[lines++] = start + lineEnd;
+            }
+            lineStart = lineEnd;
+        }
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes, 0, length), StandardCharsets.UTF_8));
+        reader.setLenient(true); // Every line is a top-level value of its own
+        try {
+            long previousEnd = start;
+            while (reader.peek() != JsonToken.END_DOCUMENT) {
+                if (entries.size() == lines) {
+                    throw new IOException("A line holds more than a single key");
+                }
+                long end = ends[entries.size()];
+                entries.add(readEntry(reader, end - previousEnd));
+                previousEnd = end;
+            }
+        } catch (IOException | IllegalStateException ex) { // Point at the chunk the line is in
+            throw new IOException("Failed to parse the key after byte " + (entries.isEmpty() ? start : ends[entries.size() - 1])
+                    + " of the data file", ex);
+        }
+        if (entries.size() != lines) {
+            throw new IOException("A line after byte " + start + " of the data file holds no key");
+        }
+        return new Chunk(entries, ends);
+    }
+
+    /**
+     * Read the key object of a line.
+     *
+     * @param reader the reader at the start of the line
+     * @param size the amount of bytes in the line
+     * @return the entry of the key
+     * @throws IOException if reading fails or the key is incomplete
+     */
+    @NonNull
+    private static DataEntry readEntry(@NonNull JsonReader reader, long size) throws IOException {
+        String key = null;
+        String typeName = null;
+        long ttl = -1L;
+        KeyValue<?> value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "key" -> key = reader.nextString();
+                case "type" -> typeName = reader.nextString();
+                case "ttl" -> ttl = reader.nextLong();
+                case "data" -> {
+                    if (typeName == null) {
+                        throw new IOException("The data of '" + key + "' comes before its type");
+                    }
+                    KeyCodec<?> codec = KeyCodecs.getCodec(typeName); // Get the codec of the key type
+                    if (codec == null) { // Unsupported type, skip the data
+                        reader.skipValue();
+                    } else {
+                        value = JsonDataReader.readValue(reader, codec); // Read the members of the key
+                    }
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (key == null || typeName == null) {
+            throw new IOException("The key '" + key + "' has no name or type");
+        }
+        return new DataEntry(key, typeName, ttl, value, size);
+    }
+
+    /**
+     * The entries parsed from a chunk, with the
+     * position right after the line of each.
+     */
+    private static final class Chunk {
+        private final List<DataEntry> entries;
+        private final long[] ends;
+
+        private Chunk(@NonNull List<DataEntry> entries, long @NonNull [] ends) {
+            this.entries = entries;
+            this.ends = ends;
+        }
+    }
+}
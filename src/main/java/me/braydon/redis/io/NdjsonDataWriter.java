@@ -0,0 +1,129 @@
+package me.braydon.redis.io;
+
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.type.KeyCodec;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes exported keys to a line delimited json data
+ * file, one self-contained json object per key.
+ * <p>
+ * Every line holds the name, type, time-to-live and data
+ * of a key, so the file can be split at any line break
+ * and each part parsed on its own. The strings in the
+ * data are escaped, so a line never breaks within a key.
+ * </p>
+ *
+ * @author Braydon
+ * @see NdjsonDataReader for parsing the lines in parallel
+ */
+public final class NdjsonDataWriter implements DataWriter {
+    private static final int BUFFER_SIZE = 64 * 1024; // The size of the output buffer
+
+    private final CountingWriter output;
+    private final JsonWriter writer;
+    private boolean dataArray; // Whether the data of the key being written is an array rather than an object
+
+    public NdjsonDataWriter(@NonNull OutputStream out) {
+        output = new CountingWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE));
+        writer = new JsonWriter(output);
+        writer.setLenient(true); // Every line is a top-level value of its own
+        writer.setSerializeNulls(true);
+    }
+
+    /**
+     * Start writing the given key to the data file,
+     * opening its line and data object or array.
+     *
+     * @param key the key name
+     * @param ttl the time-to-live of the key in seconds
+     * @param codec the codec of the key type
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void beginKey(@NonNull String key, long ttl, @NonNull KeyCodec<?> codec) throws IOException {
+        writer.beginObject();
+        writer.name("key").value(key);
+        writer.name("type").value(codec.getTypeName());
+        writer.name("ttl").value(ttl);
+        writer.name("data");
+        dataArray = codec.isJsonArray();
+        if (dataArray) {
+            writer.beginArray();
+        } else {
+            writer.beginObject();
+        }
+    }
+
+    /**
+     * Write the given members to the key being written.
+     *
+     * @param codec the codec of the key type
+     * @param value the members to write
+     * @param <T> the type of value
+     * @throws IOException if writing fails
+     * @see KeyCodec for codec
+     */
+    @Override
+    public <T> void writeMembers(@NonNull KeyCodec<T> codec, T value) throws IOException {
+        codec.writeJson(writer, value);
+    }
+
+    /**
+     * Finish writing the key being written, ending its line.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void endKey() throws IOException {
+        if (dataArray) { // Close the data object or array
+            writer.endArray();
+        } else {
+            writer.endObject();
+        }
+        writer.endObject();
+        output.write('\n'); // The json writer writes straight through, so the line ends after the key
+    }
+
+    /**
+     * Get the amount of bytes written to the data file.
+     * <p>
+     * The bytes are counted as the characters are written,
+     * so this includes what is still buffered. For a compressed
+     * data file this is the amount of uncompressed bytes.
+     * </p>
+     *
+     * @return the amount of bytes written
+     */
+    @Override
+    public long getPosition() {
+        return output.getCount();
+    }
+
+    /**
+     * Flush the buffered output through to the data file.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Flush the remaining output to the file.
+     * <p>
+     * The output is closed directly, as the json writer
+     * refuses to close a document without a value.
+     * </p>
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,213 @@
+package me.braydon.redis.io;
+
+import lombok.NonNull;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * An input stream that decompresses the gzip members
+ * written by {@link ParallelGzipOutputStream} across
+ * a pool of threads.
+ * <p>
+ * Members without the size subfield, such as a file
+ * compressed by another tool, are read sequentially.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class ParallelGzipInputStream extends InputStream {
+    private final PushbackInputStream in;
+    private final ExecutorService executor;
+    private final int maxPending; // The maximum amount of members being decompressed at once
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>(); // The members being decompressed, in order
+    private InputStream sequential; // Reads the rest of the input when a member has no size subfield
+    private byte[] current = new byte[0]; // The most recently decompressed block
+    private int position; // The position in the current block
+    private boolean endOfMembers; // Whether every sized member has been read from the input
+
+    public ParallelGzipInputStream(@NonNull InputStream in, int threads) {
+        this.in = new PushbackInputStream(new BufferedInputStream(in, 64 * 1024), ParallelGzipOutputStream.HEADER_SIZE);
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Decompression Worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maxPending = threads * 2;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte @NonNull [] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (position == current.length) { // The current block has been consumed
+            readAheadMembers();
+            if (pending.isEmpty()) { // No more sized members
+                return sequential == null ? -1 : sequential.read(bytes, offset, length);
+            }
+            current = takeNextBlock();
+            position = 0;
+        }
+        int read = Math.min(length, current.length - position);
+        System.arraycopy(current, position, bytes, offset, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        in.close();
+    }
+
+    /**
+     * Read members from the input and hand them to
+     * the pool until enough of them are pending.
+     *
+     * @throws IOException if reading fails
+     */
+    private void readAheadMembers() throws IOException {
+        while (!endOfMembers && pending.size() < maxPending) {
+            byte[] member = readMember();
+            if (member == null) {
+                endOfMembers = true;
+                break;
+            }
+            pending.add(executor.submit(() -> inflate(member)));
+        }
+    }
+
+    /**
+     * Read the next sized member from the input.
+     * <p>
+     * If the next member has no size subfield the rest
+     * of the input is handed to a sequential gzip reader.
+     * </p>
+     *
+     * @return the member, null if there are no more sized members
+     * @throws IOException if reading fails
+     */
+    private byte[] readMember() throws IOException {
+        byte[] header = new byte[ParallelGzipOutputStream.HEADER_SIZE];
+        int read = in.readNBytes(header, 0, header.length);
+        if (read == 0) { // Reached the end of the input
+            return null;
+        }
+        if (read < header.length || !hasSizeSubfield(header)) { // Not written by the parallel stream, read the rest sequentially
+            in.unread(header, 0, read);
+            sequential = new GZIPInputStream(in, 64 * 1024);
+            return null;
+        }
+        int size = readIntLE(header, 16);
+        if (size < header.length + ParallelGzipOutputStream.TRAILER_SIZE) {
+            throw new IOException("Invalid gzip member size: " + size);
+        }
+        byte[] member = new byte[size];
+        System.arraycopy(header, 0, member, 0, header.length);
+        if (in.readNBytes(member, header.length, size - header.length) != size - header.length) {
+            throw new EOFException("Unexpected end of the compressed data file");
+        }
+        return member;
+    }
+
+    /**
+     * Wait for the oldest pending member to be decompressed.
+     *
+     * @return the decompressed block
+     * @throws IOException if decompressing fails
+     */
+    private byte @NonNull [] takeNextBlock() throws IOException {
+        try {
+            return pending.poll().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing");
+        } catch (ExecutionException ex) {
+            throw new IOException("Failed to decompress a block", ex.getCause());
+        }
+    }
+
+    /**
+     * Decompress the given member.
+     *
+     * @param member the gzip member
+     * @return the decompressed block
+     * @throws IOException if the member is corrupt
+     */
+    private static byte @NonNull [] inflate(byte @NonNull [] member) throws IOException {
+        int dataOffset = ParallelGzipOutputStream.HEADER_SIZE;
+        int dataLength = member.length - dataOffset - ParallelGzipOutputStream.TRAILER_SIZE;
+        int expectedCrc = readIntLE(member, member.length - 8);
+        byte[] block = new byte[readIntLE(member, member.length - 4)];
+        Inflater inflater = new Inflater(true); // Raw deflate, the gzip framing was parsed by hand
+        try {
+            inflater.setInput(member, dataOffset, dataLength);
+            int inflated = 0;
+            while (inflated < block.length && !inflater.finished()) {
+                int read = inflater.inflate(block, inflated, block.length - inflated);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += read;
+            }
+            if (inflated != block.length) {
+                throw new IOException("Corrupt gzip member, expected " + block.length + " bytes but inflated " + inflated);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt gzip member", ex);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(block);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Corrupt gzip member, the CRC-32 does not match");
+        }
+        return block;
+    }
+
+    /**
+     * Check whether the given member header
+     * carries the member size subfield.
+     *
+     * @param header the member header
+     * @return whether the size subfield is present
+     */
+    private static boolean hasSizeSubfield(byte @NonNull [] header) {
+        return header[0] == 0x1f && header[1] == (byte) 0x8b // The gzip magic
+                && header[3] == 0x04 // Only FEXTRA, so the extra field directly follows the fixed header
+                && header[10] == 8 && header[11] == 0
+                && header[12] == ParallelGzipOutputStream.SUBFIELD_ID_1 && header[13] == ParallelGzipOutputStream.SUBFIELD_ID_2
+                && header[14] == 4 && header[15] == 0;
+    }
+
+    /**
+     * Read a little endian int from the given bytes.
+     *
+     * @param bytes the bytes
+     * @param offset the offset of the int
+     * @return the int
+     */
+    private static int readIntLE(byte @NonNull [] bytes, int offset) {
+        return (bytes[offset] & 0xff)
+                | (bytes[offset + 1] & 0xff) << 8
+                | (bytes[offset + 2] & 0xff) << 16
+                | (bytes[offset + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,215 @@
+package me.braydon.redis.io;
+
+import lombok.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An output stream that gzip compresses its data in
+ * independent blocks across a pool of threads, in the
+ * style of pigz.
+ * <p>
+ * Each block is written as its own gzip member, which
+ * any gzip reader treats as one concatenated stream.
+ * Every member also carries its total size in an extra
+ * field, so {@link ParallelGzipInputStream} can find the
+ * next member without inflating the current one, and
+ * decompress the members in parallel as well.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class ParallelGzipOutputStream extends OutputStream {
+    /**
+     * The amount of uncompressed bytes in each block.
+     */
+    static final int BLOCK_SIZE = 256 * 1024;
+
+    /**
+     * The identifier of the extra subfield holding the member size.
+     */
+    static final byte SUBFIELD_ID_1 = 'R', SUBFIELD_ID_2 = 'X';
+
+    /**
+     * The size of the member header, including the extra field.
+     */
+    static final int HEADER_SIZE = 10 + 2 + 8;
+
+    /**
+     * The size of the member trailer, the CRC-32 and the uncompressed size.
+     */
+    static final int TRAILER_SIZE = 8;
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() ->
+            new Deflater(Deflater.DEFAULT_COMPRESSION, true) // Raw deflate, the gzip framing is written by hand
+    );
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int maxPending; // The maximum amount of blocks being compressed at once
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>(); // The blocks being compressed, in order
+    private byte[] block = new byte[BLOCK_SIZE]; // The block being filled
+    private int count; // The amount of bytes in the block being filled
+    private boolean closed;
+
+    public ParallelGzipOutputStream(@NonNull OutputStream out, int threads) {
+        this.out = out;
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Compression Worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maxPending = threads * 2;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == block.length) {
+            submitBlock();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte @NonNull [] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (count == block.length) {
+                submitBlock();
+            }
+            int copied = Math.min(length, block.length - count);
+            System.arraycopy(bytes, offset, block, count, copied);
+            count += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    /**
+     * Compress the partially filled block and
+     * write every pending block to the output.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        submitBlock();
+        while (!pending.isEmpty()) {
+            writeNextBlock();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Hand the block being filled to the pool, writing
+     * the oldest block if too many are pending.
+     *
+     * @throws IOException if writing fails
+     */
+    private void submitBlock() throws IOException {
+        if (count == 0) { // Nothing to compress
+            return;
+        }
+        byte[] data = block;
+        int length = count;
+        pending.add(executor.submit(() -> compress(data, length)));
+        block = new byte[BLOCK_SIZE];
+        count = 0;
+        while (pending.size() > maxPending) { // Don't run too far ahead of the output
+            writeNextBlock();
+        }
+    }
+
+    /**
+     * Wait for the oldest pending block and write it to the output.
+     *
+     * @throws IOException if compressing or writing fails
+     */
+    private void writeNextBlock() throws IOException {
+        try {
+            out.write(pending.poll().get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException ex) {
+            throw new IOException("Failed to compress a block", ex.getCause());
+        }
+    }
+
+    /**
+     * Compress the given block into a complete gzip member.
+     *
+     * @param data the block
+     * @param length the amount of bytes in the block
+     * @return the gzip member
+     */
+    private static byte @NonNull [] compress(byte @NonNull [] data, int length) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + HEADER_SIZE + TRAILER_SIZE);
+        member.writeBytes(new byte[HEADER_SIZE]); // Reserve the header, it is written once the size is known
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            member.write(buffer, 0, deflater.deflate(buffer));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        writeIntLE(member, (int) crc.getValue());
+        writeIntLE(member, length);
+
+        byte[] bytes = member.toByteArray();
+        int size = bytes.length;
+        byte[] header = {
+                0x1f, (byte) 0x8b, // The gzip magic
+                Deflater.DEFLATED, // The compression method
+                0x04, // FEXTRA, the member has an extra field
+                0, 0, 0, 0, // No modification time
+                0, // No extra flags
+                (byte) 0xff, // Unknown operating system
+                8, 0, // The length of the extra field
+                SUBFIELD_ID_1, SUBFIELD_ID_2, 4, 0, // The member size subfield, 4 bytes long
+                (byte) size, (byte) (size >>> 8), (byte) (size >>> 16), (byte) (size >>> 24)
+        };
+        System.arraycopy(header, 0, bytes, 0, HEADER_SIZE);
+        return bytes;
+    }
+
+    /**
+     * Write the given int in little endian order.
+     *
+     * @param out the stream to write to
+     * @param value the int to write
+     */
+    private static void writeIntLE(@NonNull ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
@@ -0,0 +1,153 @@
+package me.braydon.redis.metrics;
+
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in microseconds.
+ * <p>
+ * The buckets are log-linear: every power of two is split
+ * into {@link #SUB_BUCKETS} equal buckets, so a recorded
+ * value is off by at most 12.5% while the whole range of
+ * a long fits in a few hundred counters. Recording is a
+ * couple of atomic increments, so it is cheap enough to
+ * call for every round trip from every thread.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class LatencyHistogram {
+    /**
+     * The amount of bits used to split each power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The amount of buckets each power of two is split into.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Record the time elapsed since the given start.
+     *
+     * @param startNanos the {@link System#nanoTime()} the operation started at
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000L);
+    }
+
+    /**
+     * Record the given latency.
+     *
+     * @param micros the latency in microseconds
+     */
+    public void record(long micros) {
+        micros = Math.max(micros, 0L);
+        buckets.incrementAndGet(bucketOf(micros));
+        count.increment();
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    /**
+     * Get the amount of recorded latencies.
+     *
+     * @return the amount of recorded latencies
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get the mean of the recorded latencies.
+     *
+     * @return the mean in microseconds, zero if nothing was recorded
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0L ? 0D : (double) sum.sum() / count;
+    }
+
+    /**
+     * Get the highest recorded latency.
+     *
+     * @return the highest latency in microseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the latency at the given percentile.
+     * <p>
+     * This is the upper bound of the bucket holding the
+     * percentile, capped at the highest recorded latency.
+     * </p>
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in microseconds, zero if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0L) {
+            return 0L;
+        }
+        long rank = Math.max((long) Math.ceil(count * percentile / 100D), 1L); // The amount of values at or below the percentile
+        long seen = 0L;
+        for (int bucket = 0; bucket < buckets.length(); bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), getMax());
+            }
+        }
+        return getMax(); // Values were recorded while walking the buckets
+    }
+
+    /**
+     * Get a short description of this histogram.
+     *
+     * @return the description
+     */
+    @Override @NonNull
+    public String toString() {
+        return String.format("count=%s, mean=%.0fus, p50=%sus, p99=%sus, max=%sus",
+                getCount(), getMean(), getPercentile(50D), getPercentile(99D), getMax());
+    }
+
+    /**
+     * Get the bucket the given value is counted in.
+     *
+     * @param value the value
+     * @return the index of the bucket
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) { // Small values have a bucket each
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Get the highest value counted in the given bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the highest value
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
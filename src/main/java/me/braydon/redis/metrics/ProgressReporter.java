@@ -0,0 +1,127 @@
+package me.braydon.redis.metrics;
+
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically logs the progress of an export or import.
+ * <p>
+ * This replaces logging every key, which is synchronous
+ * console output on the hot path, with a single line
+ * every interval built from the {@link TransferMetrics}.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class ProgressReporter implements Closeable {
+    private static final double MEBIBYTE = 1024D * 1024D;
+
+    @NonNull private final TransferMetrics metrics;
+    @NonNull private final String verb; // The past tense of the operation, such as "Exported"
+    private final ScheduledExecutorService executor;
+    private long lastReport; // The elapsed time at the previous report
+    private long lastKeys; // The amount of keys at the previous report
+    private long lastBytes; // The amount of bytes at the previous report
+
+    /**
+     * Start reporting the progress of the given metrics.
+     *
+     * @param metrics the metrics to report
+     * @param verb the past tense of the operation, such as "Exported"
+     * @param intervalSeconds the interval to report at, zero to never report
+     */
+    public ProgressReporter(@NonNull TransferMetrics metrics, @NonNull String verb, int intervalSeconds) {
+        this.metrics = metrics;
+        this.verb = verb;
+        if (intervalSeconds <= 0) { // Reporting is disabled
+            executor = null;
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Progress Reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Log the progress since the previous report.
+     */
+    public void report() {
+        long elapsed = metrics.getElapsed();
+        long keys = metrics.getKeys();
+        long bytes = metrics.getBytes();
+        double seconds = Math.max(elapsed - lastReport, 1L) / 1000D;
+        StringBuilder builder = new StringBuilder();
+        builder.append(verb).append(' ').append(keys);
+        long expectedKeys = metrics.getExpectedKeys();
+        if (expectedKeys > 0L) {
+            builder.append('/').append(expectedKeys);
+        }
+        builder.append(" keys (failed: ").append(metrics.getFailed()).append(")");
+        builder.append(String.format(", %.1f keys/s, %.2f MiB/s", (keys - lastKeys) / seconds, (bytes - lastBytes) / seconds / MEBIBYTE));
+        long eta = estimateRemaining(elapsed, keys, bytes);
+        if (eta >= 0L) {
+            builder.append(", ETA ").append(formatDuration(eta));
+        }
+        StringJoiner types = new StringJoiner(", ", " [", "]");
+        for (Map.Entry<String, Long> entry : metrics.getTypes().entrySet()) {
+            types.add(entry.getKey() + ": " + entry.getValue());
+        }
+        builder.append(types);
+        System.out.println(builder);
+        lastReport = elapsed;
+        lastKeys = keys;
+        lastBytes = bytes;
+    }
+
+    /**
+     * Stop reporting the progress.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Estimate the time remaining from the average rate so far,
+     * preferring the expected amount of keys over bytes.
+     *
+     * @param elapsed the elapsed time in milliseconds
+     * @param keys the amount of keys transferred
+     * @param bytes the amount of bytes transferred
+     * @return the remaining time in milliseconds, -1 if it can't be estimated
+     */
+    private long estimateRemaining(long elapsed, long keys, long bytes) {
+        long expectedKeys = metrics.getExpectedKeys();
+        if (expectedKeys > 0L && keys > 0L) {
+            return Math.max(expectedKeys - keys, 0L) * elapsed / keys;
+        }
+        long expectedBytes = metrics.getExpectedBytes();
+        if (expectedBytes > 0L && bytes > 0L) {
+            return (long) (Math.max(expectedBytes - bytes, 0L) * ((double) elapsed / bytes));
+        }
+        return -1L;
+    }
+
+    /**
+     * Format the given duration as hours, minutes and seconds.
+     *
+     * @param millis the duration in milliseconds
+     * @return the formatted duration
+     */
+    @NonNull
+    private static String formatDuration(long millis) {
+        long seconds = millis / 1000L;
+        return String.format("%d:%02d:%02d", seconds / 3600L, seconds / 60L % 60L, seconds % 60L);
+    }
+}
@@ -0,0 +1,256 @@
+package me.braydon.redis.metrics;
+
+import com.google.gson.stream.JsonWriter;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of a single export or import.
+ * <p>
+ * Every counter is a {@link LongAdder}, so the workers
+ * update them without contending with each other, and
+ * the progress reporter reads them without a lock.
+ * </p>
+ *
+ * @author Braydon
+ * @see ProgressReporter for reporting the progress
+ */
+public final class TransferMetrics {
+    /**
+     * The name of the operation, such as "export".
+     */
+    @Getter @NonNull private final String operation;
+
+    /**
+     * The unix time in milliseconds the operation started at.
+     */
+    @Getter private final long startedAt = System.currentTimeMillis();
+
+    /**
+     * The {@link System#nanoTime()} the operation started at.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The amount of keys the operation is expected
+     * to transfer, -1 if it isn't known.
+     */
+    @Getter @Setter private volatile long expectedKeys = -1L;
+
+    /**
+     * The amount of bytes the operation is expected
+     * to transfer, -1 if it isn't known.
+     */
+    @Getter @Setter private volatile long expectedBytes = -1L;
+
+    private final LongAdder keys = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final Map<String, LongAdder> types = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    public TransferMetrics(@NonNull String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Record that a key has been transferred.
+     *
+     * @param typeName the name of the key type
+     * @param bytes the amount of data file bytes of the key
+     */
+    public void keyTransferred(@NonNull String typeName, long bytes) {
+        keys.increment();
+        this.bytes.add(bytes);
+        types.computeIfAbsent(typeName, name -> new LongAdder()).increment();
+    }
+
+    /**
+     * Record that more of a key already counted
+     * has been transferred, such as a later page.
+     *
+     * @param bytes the amount of bytes transferred
+     */
+    public void bytesTransferred(long bytes) {
+        this.bytes.add(bytes);
+    }
+
+    /**
+     * Record that a key failed to transfer.
+     */
+    public void keyFailed() {
+        failed.increment();
+    }
+
+    /**
+     * Record that a key counted as transferred failed after
+     * all, such as when a later page of it is rejected.
+     *
+     * @param typeName the name of the key type
+     */
+    public void keyRejected(@NonNull String typeName) {
+        keys.decrement();
+        types.computeIfAbsent(typeName, name -> new LongAdder()).decrement();
+        failed.increment();
+    }
+
+    /**
+     * Record that a key was left out as it is over the size limit.
+     */
+    public void keySkipped() {
+        skipped.increment();
+    }
+
+    /**
+     * Record that a key was left out as it hasn't
+     * changed since the export it is compared with.
+     */
+    public void keyUnchanged() {
+        unchanged.increment();
+    }
+
+    /**
+     * Get the latency histogram of the given command.
+     *
+     * @param command the name of the command
+     * @return the histogram
+     */
+    @NonNull
+    public LatencyHistogram getLatency(@NonNull String command) {
+        return latencies.computeIfAbsent(command, name -> new LatencyHistogram());
+    }
+
+    /**
+     * Get the amount of keys transferred.
+     *
+     * @return the amount of keys transferred
+     */
+    public long getKeys() {
+        return keys.sum();
+    }
+
+    /**
+     * Get the amount of keys that failed to transfer.
+     *
+     * @return the amount of keys that failed
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Get the amount of keys left out as they were over the size limit.
+     *
+     * @return the amount of keys skipped
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * Get the amount of keys left out as they haven't changed.
+     *
+     * @return the amount of keys unchanged
+     */
+    public long getUnchanged() {
+        return unchanged.sum();
+    }
+
+    /**
+     * Get the amount of data file bytes transferred.
+     *
+     * @return the amount of bytes transferred
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Get the amount of keys transferred of each type.
+     *
+     * @return the amount of keys keyed by the type name, sorted by name
+     */
+    @NonNull
+    public Map<String, Long> getTypes() {
+        Map<String, Long> types = new TreeMap<>();
+        this.types.forEach((typeName, count) -> types.put(typeName, count.sum()));
+        return types;
+    }
+
+    /**
+     * Get the time elapsed since the operation started.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsed() {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    /**
+     * Get the file the summary of the given data file is written to.
+     *
+     * @param dataFile the data file
+     * @return the summary file, next to the data file
+     */
+    @NonNull
+    public File getSummaryFile(@NonNull File dataFile) {
+        return new File(dataFile.getPath() + "." + operation + "-metrics.json");
+    }
+
+    /**
+     * Write a json summary of these metrics to the given file.
+     *
+     * @param file the file to write to
+     * @param completed whether the operation completed without error
+     * @throws IOException if writing fails
+     */
+    public void writeSummary(@NonNull File file, boolean completed) throws IOException {
+        long elapsed = Math.max(getElapsed(), 1L);
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("operation").value(operation);
+            writer.name("startedAt").value(Instant.ofEpochMilli(startedAt).toString());
+            writer.name("completed").value(completed);
+            writer.name("elapsedMs").value(elapsed);
+            writer.name("keys").value(getKeys());
+            writer.name("failed").value(getFailed());
+            writer.name("skipped").value(getSkipped());
+            writer.name("unchanged").value(getUnchanged());
+            writer.name("bytes").value(getBytes());
+            writer.name("keysPerSecond").value(getKeys() * 1000D / elapsed);
+            writer.name("bytesPerSecond").value(getBytes() * 1000D / elapsed);
+            writer.name("types").beginObject();
+            for (Map.Entry<String, Long> entry : getTypes().entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+            writer.endObject();
+            writer.name("latencyMicros").beginObject(); // The latencies of every command
+            for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+                LatencyHistogram latency = entry.getValue();
+                writer.name(entry.getKey()).beginObject();
+                writer.name("count").value(latency.getCount());
+                writer.name("mean").value(latency.getMean());
+                writer.name("p50").value(latency.getPercentile(50D));
+                writer.name("p90").value(latency.getPercentile(90D));
+                writer.name("p99").value(latency.getPercentile(99D));
+                writer.name("p999").value(latency.getPercentile(99.9D));
+                writer.name("max").value(latency.getMax());
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+    }
+}
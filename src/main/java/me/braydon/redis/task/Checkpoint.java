@@ -0,0 +1,190 @@
+package me.braydon.redis.task;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The last consistent point of an export or import,
+ * stored in a sidecar next to the data file so an
+ * interrupted run can be resumed from it.
+ * <p>
+ * An export checkpoint holds the SCAN cursor to continue
+ * from and the size the data file had once every key
+ * scanned before the cursor was written to it. An import
+ * checkpoint holds the amount of entries, and pipeline
+ * batches, committed to the database and the position
+ * of the reader after the last of them.
+ * </p>
+ *
+ * @author Braydon
+ */
+@Builder @Getter @ToString
+public final class Checkpoint {
+    /**
+     * The extension appended to the name of the data file.
+     */
+    public static final String EXTENSION = ".checkpoint";
+
+    /**
+     * The name of the operation, such as "export".
+     */
+    @NonNull private final String operation;
+
+    /**
+     * The name of the data file format.
+     */
+    @NonNull private final String format;
+
+    /**
+     * Whether the data file is gzip compressed.
+     */
+    private final boolean compressed;
+
+    /**
+     * The name of the export mode, null for an import.
+     */
+    private final String mode;
+
+    /**
+     * The SCAN cursor to continue the export from.
+     */
+    private final String cursor;
+
+    /**
+     * The amount of keys scanned before the cursor.
+     */
+    private final long found;
+
+    /**
+     * For an export, the size in bytes of the data file.
+     * For an import, the position of the reader in the
+     * uncompressed data file.
+     */
+    private final long offset;
+
+    /**
+     * The amount of entries committed to the database.
+     */
+    private final long entries;
+
+    /**
+     * The amount of pipeline batches committed to the database.
+     */
+    private final long batches;
+
+    /**
+     * The amount of keys transferred.
+     */
+    private final long keys;
+
+    /**
+     * The amount of keys that failed to transfer.
+     */
+    private final long failed;
+
+    /**
+     * The amount of keys skipped as they were over the size limit.
+     */
+    private final long skipped;
+
+    /**
+     * The size in bytes of the data file being imported, used
+     * to detect a data file that changed since the checkpoint.
+     */
+    private final long dataFileLength;
+
+    /**
+     * Get the checkpoint file of the given data file.
+     *
+     * @param dataFile the data file
+     * @return the checkpoint file, next to the data file
+     */
+    @NonNull
+    public static File getFile(@NonNull File dataFile) {
+        return new File(dataFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Read the checkpoint from the given file.
+     *
+     * @param file the file to read from
+     * @return the checkpoint
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    public static Checkpoint read(@NonNull File file) throws IOException {
+        CheckpointBuilder builder = builder();
+        try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "operation" -> builder.operation(reader.nextString());
+                    case "format" -> builder.format(reader.nextString());
+                    case "compressed" -> builder.compressed(reader.nextBoolean());
+                    case "mode" -> builder.mode(reader.nextString());
+                    case "cursor" -> builder.cursor(reader.nextString());
+                    case "found" -> builder.found(reader.nextLong());
+                    case "offset" -> builder.offset(reader.nextLong());
+                    case "entries" -> builder.entries(reader.nextLong());
+                    case "batches" -> builder.batches(reader.nextLong());
+                    case "keys" -> builder.keys(reader.nextLong());
+                    case "failed" -> builder.failed(reader.nextLong());
+                    case "skipped" -> builder.skipped(reader.nextLong());
+                    case "dataFileLength" -> builder.dataFileLength(reader.nextLong());
+                    default -> reader.skipValue(); // Written by a newer version
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NullPointerException ex) { // Malformed or missing fields
+            throw new IOException("The checkpoint " + file + " is corrupt", ex);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Write this checkpoint to the given file.
+     * <p>
+     * The checkpoint is written to a temporary file which
+     * then replaces the given file, so a run interrupted
+     * while writing never leaves a partial checkpoint.
+     * </p>
+     *
+     * @param file the file to write to
+     * @throws IOException if writing fails
+     */
+    public void write(@NonNull File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary), StandardCharsets.UTF_8)))) {
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("operation").value(operation);
+            writer.name("format").value(format);
+            writer.name("compressed").value(compressed);
+            if (mode != null) {
+                writer.name("mode").value(mode);
+            }
+            if (cursor != null) {
+                writer.name("cursor").value(cursor);
+            }
+            writer.name("found").value(found);
+            writer.name("offset").value(offset);
+            writer.name("entries").value(entries);
+            writer.name("batches").value(batches);
+            writer.name("keys").value(keys);
+            writer.name("failed").value(failed);
+            writer.name("skipped").value(skipped);
+            writer.name("dataFileLength").value(dataFileLength);
+            writer.endObject();
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,75 @@
+package me.braydon.redis.task;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a task is due to save a {@link Checkpoint}
+ * and saves it next to the data file.
+ *
+ * @author Braydon
+ */
+final class Checkpointer {
+    /**
+     * The file the checkpoints are saved to.
+     */
+    @Getter @NonNull private final File file;
+
+    /**
+     * The interval between checkpoints in nanoseconds, zero to never save one.
+     */
+    private final long intervalNanos;
+
+    /**
+     * The {@link System#nanoTime()} the last checkpoint was saved at.
+     */
+    private long lastNanos = System.nanoTime();
+
+    Checkpointer(@NonNull File dataFile, int intervalSeconds) {
+        file = Checkpoint.getFile(dataFile);
+        intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+    }
+
+    /**
+     * Check whether checkpoints are saved at all.
+     *
+     * @return whether checkpoints are enabled
+     */
+    boolean isEnabled() {
+        return intervalNanos > 0L;
+    }
+
+    /**
+     * Check whether the interval has passed since the last checkpoint.
+     *
+     * @return whether a checkpoint is due
+     */
+    boolean isDue() {
+        return isEnabled() && System.nanoTime() - lastNanos >= intervalNanos;
+    }
+
+    /**
+     * Save the given checkpoint, replacing the last one.
+     *
+     * @param checkpoint the checkpoint
+     * @throws IOException if writing fails
+     */
+    void save(@NonNull Checkpoint checkpoint) throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        checkpoint.write(file);
+        lastNanos = System.nanoTime();
+    }
+
+    /**
+     * Remove the last checkpoint, once the task has completed.
+     */
+    void clear() {
+        file.delete();
+    }
+}
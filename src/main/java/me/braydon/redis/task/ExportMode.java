@@ -0,0 +1,20 @@
+package me.braydon.redis.task;
+
+/**
+ * The ways a key can be exported.
+ *
+ * @author Braydon
+ */
+public enum ExportMode {
+    /**
+     * Read each key with the commands for its
+     * type, using the matching key type.
+     */
+    TYPES,
+
+    /**
+     * Store the serialized DUMP payload of each key,
+     * this covers every type the server supports.
+     */
+    DUMP
+}
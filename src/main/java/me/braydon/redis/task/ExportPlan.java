@@ -0,0 +1,60 @@
+package me.braydon.redis.task;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The settings a {@link PlanTask} suggests for an export,
+ * along with what it expects the export to cost.
+ *
+ * @author Braydon
+ */
+@Builder @Getter @ToString
+public final class ExportPlan {
+    /**
+     * The estimated amount of keys to export.
+     */
+    private final long expectedKeys;
+
+    /**
+     * The estimated size of the data file in bytes,
+     * compressed if the data file is compressed.
+     */
+    private final long expectedBytes;
+
+    /**
+     * The estimated time the export takes with
+     * the suggested settings, in milliseconds.
+     */
+    private final long expectedMillis;
+
+    /**
+     * The suggested COUNT hint to use for each SCAN, which
+     * is also the amount of keys read per pipeline.
+     */
+    private final int scanCount;
+
+    /**
+     * The suggested amount of workers to fetch pages from each server with.
+     */
+    private final int threads;
+
+    /**
+     * The suggested amount of members above
+     * which a key is read in pages.
+     */
+    private final int largeKeySize;
+
+    /**
+     * The suggested amount of members to
+     * request per page of a large key.
+     */
+    private final int pageSize;
+
+    /**
+     * The suggested amount of commands to queue
+     * per pipeline when importing the data file.
+     */
+    private final int batchSize;
+}
@@ -0,0 +1,432 @@
+package me.braydon.redis.task;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import me.braydon.redis.common.LatencyThrottle;
+import me.braydon.redis.io.DataFormat;
+import me.braydon.redis.io.DataWriter;
+import me.braydon.redis.io.KeyIndex;
+import me.braydon.redis.io.KeyIndexWriter;
+import me.braydon.redis.metrics.ProgressReporter;
+import me.braydon.redis.metrics.TransferMetrics;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.ScanParams;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exports the keys in a database to a data file.
+ * <p>
+ * The keyspace is read by a {@link KeyspaceScanner}, which
+ * writes the pages of keys to the data file in the order
+ * they were scanned.
+ * </p>
+ * <p>
+ * A cluster is exported by scanning every master at once,
+ * each with its own scanner and workers, so the export runs
+ * at the combined speed of the masters.
+ * </p>
+ * <p>
+ * Once the pages before a cursor have been written, the
+ * cursor and the size of the data file are periodically
+ * saved as a {@link Checkpoint}, which an interrupted
+ * export can be resumed from. This is only done when
+ * exporting a single server.
+ * </p>
+ * <p>
+ * When fingerprinting, the fingerprint of every key is
+ * recorded in a {@link Fingerprints} sidecar, and an
+ * incremental export compares the keys with the sidecar
+ * of an earlier export, only writing the keys added or
+ * changed since and a tombstone for every key deleted.
+ * </p>
+ * <p>
+ * When indexing a binary data file, the offset and
+ * length of every record are written to a {@link KeyIndex}
+ * sidecar once the export is complete, so a few keys can
+ * later be restored without parsing the whole file.
+ * </p>
+ *
+ * @author Braydon
+ */
+@Builder
+public final class ExportTask {
+    /**
+     * The pools to borrow connections from, one for each
+     * server to export, such as every master of a cluster.
+     * <p>
+     * Each must be able to hand out a connection to
+     * its scanner and to every worker at once, and one
+     * more to the latency probe if throttled.
+     * </p>
+     */
+    @Singular @NonNull private final List<JedisPool> pools;
+
+    /**
+     * The data file to export to.
+     */
+    @NonNull private final File dataFile;
+
+    /**
+     * The format to write the data file in.
+     */
+    @NonNull private final DataFormat format;
+
+    /**
+     * Whether to gzip compress the data file.
+     */
+    private final boolean compress;
+
+    /**
+     * The amount of threads to compress the data file with.
+     */
+    private final int compressThreads;
+
+    /**
+     * How the keys should be exported.
+     */
+    @NonNull private final ExportMode mode;
+
+    /**
+     * The COUNT hint to use for each SCAN.
+     */
+    private final int scanCount;
+
+    /**
+     * The amount of workers to fetch pages from each server with.
+     */
+    private final int threads;
+
+    /**
+     * The amount of members above which a
+     * key is read and written in pages.
+     */
+    private final int largeKeySize;
+
+    /**
+     * The amount of members to request
+     * per page when reading a large key.
+     */
+    private final int pageSize;
+
+    /**
+     * The filter the keys must pass, null to export every key.
+     */
+    private final KeyFilter filter;
+
+    /**
+     * The latency ceiling in milliseconds to slow the
+     * reads down to, zero to read as fast as possible.
+     */
+    private final int maxLatencyMillis;
+
+    /**
+     * Whether to record the fingerprint of every
+     * key, so a later export can be compared with it.
+     */
+    private final boolean fingerprint;
+
+    /**
+     * The earlier data file to compare the keys with, null to export
+     * every key. This must have been exported with fingerprints.
+     */
+    private final File since;
+
+    /**
+     * Whether to write a {@link KeyIndex} of the
+     * data file, which must be in the binary format.
+     */
+    private final boolean keyIndex;
+
+    /**
+     * The interval in seconds to report the progress at, zero to never report.
+     */
+    private final int progressInterval;
+
+    /**
+     * The interval in seconds to save a checkpoint at, zero to never save one.
+     */
+    private final int checkpointInterval;
+
+    /**
+     * Whether to resume an interrupted export from its checkpoint.
+     */
+    private final boolean resume;
+
+    /**
+     * Export the database to the data file.
+     * <p>
+     * The progress is reported periodically rather than
+     * per key, and a json summary of the metrics is
+     * written next to the data file once finished.
+     * </p>
+     * <p>
+     * When resuming, the data file is cut off at the size
+     * saved in the checkpoint and the scan continues from
+     * its cursor. SCAN guarantees every key that exists for
+     * the entire scan is returned, across both runs.
+     * </p>
+     */
+    public void run() {
+        boolean checkpointed = pools.size() == 1 && !isFingerprinting() && !keyIndex; // A cursor can't describe the scans of several servers, nor the keys fingerprinted or indexed
+        Checkpointer checkpointer = new Checkpointer(dataFile, checkpointed ? checkpointInterval : 0);
+        Checkpoint resumed = null; // The checkpoint to resume from
+        if (resume) {
+            try {
+                resumed = Checkpoint.read(checkpointer.getFile());
+            } catch (IOException ex) {
+                System.err.printf("Failed to read the checkpoint %s%n", checkpointer.getFile());
+                ex.printStackTrace();
+                return;
+            }
+            if (!resumed.getOperation().equals("export") || !resumed.getFormat().equals(format.name())
+                    || resumed.isCompressed() != compress || !mode.name().equals(resumed.getMode())) {
+                System.err.printf("Cannot resume as the checkpoint is of a different operation, format or mode: %s%n", resumed);
+                return;
+            }
+            System.out.printf("Resuming the export from cursor %s (%s key(s) exported)%n", resumed.getCursor(), resumed.getKeys());
+        }
+        Fingerprints fingerprints;
+        try {
+            fingerprints = isFingerprinting() ? new Fingerprints(dataFile, since, filter) : null;
+        } catch (IOException ex) {
+            System.err.printf("Failed to open the fingerprints of %s%n", since == null ? dataFile : since);
+            ex.printStackTrace();
+            return;
+        }
+        KeyIndex.getFile(dataFile).delete(); // An earlier index won't match the data file once it's rewritten
+        KeyIndexWriter indexWriter = keyIndex ? new KeyIndexWriter(dataFile) : null;
+        TransferMetrics metrics = new TransferMetrics("export");
+        long found = resumed == null ? 0L : resumed.getFound(); // The amount of keys found while scanning
+        long resumedFound = found; // The amount of keys found before resuming
+        long resumedKeys = resumed == null ? 0L : resumed.getKeys(); // The amount of keys exported before resuming
+        long resumedFailed = resumed == null ? 0L : resumed.getFailed(); // The amount of keys that failed before resuming
+        long resumedSkipped = resumed == null ? 0L : resumed.getSkipped(); // The amount of keys skipped before resuming
+        long tombstones = 0L; // The amount of keys deleted since the earlier export
+        Exception error = null;
+        if (filter == null || (filter.getPattern() == null && filter.getTypeName() == null)) { // How many keys match a filter isn't known up front
+            long expectedKeys = 0L;
+            for (JedisPool pool : pools) {
+                try (Jedis jedis = pool.getResource()) {
+                    expectedKeys += jedis.dbSize();
+                }
+            }
+            // An estimate, keys may be added or removed while scanning. The counters start from zero
+            // when resuming, so only the keys after the checkpoint are expected
+            metrics.setExpectedKeys(Math.max(expectedKeys - resumedFound, 0L));
+        }
+        ProgressReporter reporter = new ProgressReporter(metrics, "Exported", progressInterval);
+        try (fingerprints; DataWriter writer = openWriter(resumed, indexWriter)) { // Stream the keys to the data file
+            String cursor = resumed == null ? ScanParams.SCAN_POINTER_START : resumed.getCursor();
+            if (resumed == null) { // Save a checkpoint of the empty data file, so the export can be resumed from the start
+                writer.flush();
+                checkpointer.save(newCheckpoint(cursor, found, 0L, 0L, 0L));
+            }
+            if (pools.size() > 1) { // Scan the servers in parallel
+                found += scanServers(writer, metrics, fingerprints);
+            } else {
+                found += scan(pools.get(0), null, writer, metrics, fingerprints, cursor, (nextCursor, foundBefore) -> {
+                    if (checkpointer.isDue() && !nextCursor.equals(ScanParams.SCAN_POINTER_START)) { // Every page before the cursor has been written
+                        writer.flush();
+                        checkpointer.save(newCheckpoint(nextCursor, resumedFound + foundBefore,
+                                resumedKeys + metrics.getKeys(), resumedFailed + metrics.getFailed(), resumedSkipped + metrics.getSkipped()));
+                    }
+                });
+            }
+            if (fingerprints != null) { // Every key has been scanned, the earlier keys not found were deleted
+                tombstones = fingerprints.writeTombstones(writer, metrics);
+                writer.flush();
+                fingerprints.complete();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception ex) {
+            error = ex;
+        } finally {
+            reporter.close();
+        }
+        if (error != null) { // The scan failed, the data file is incomplete
+            error.printStackTrace();
+            if (checkpointer.getFile().exists()) {
+                System.err.println("The export can be resumed from its last checkpoint with the --resume flag");
+            }
+            writeSummary(metrics, false);
+            return;
+        }
+        checkpointer.clear(); // The export is complete, there is nothing to resume
+        if (found == 0 && tombstones == 0) { // If there are no keys in the database, exit
+            dataFile.delete(); // Don't leave an empty data file behind
+            Fingerprints.getFile(dataFile).delete(); // Nor fingerprints that a later export could be compared with
+            System.out.printf("No %skeys were found in the database, exiting...%n", filter == null ? "" : "matching ");
+            return;
+        }
+        // Log that the export has finished
+        System.out.printf("Export finished in %sms (success: %s, failed: %s, skipped: %s, total: %s)%n",
+                metrics.getElapsed(),
+                resumedKeys + metrics.getKeys(), // The amount of keys successfully exported
+                resumedFailed + metrics.getFailed(), // The amount of keys that failed to export
+                resumedSkipped + metrics.getSkipped(), // The amount of keys over the size limit
+                found // The total amount of keys found while scanning
+        );
+        if (indexWriter != null) { // The data file is complete and closed, the offsets are final
+            try {
+                System.out.printf("Wrote the index of the data file to %s%n", indexWriter.complete());
+            } catch (IOException ex) {
+                System.err.printf("Failed to write the index of %s%n", dataFile);
+                ex.printStackTrace();
+            }
+        }
+        if (since != null) {
+            System.out.printf("Left out %s key(s) unchanged since %s, wrote %s tombstone(s) for the keys deleted since%n",
+                    metrics.getUnchanged(), since, tombstones);
+        }
+        writeSummary(metrics, true);
+    }
+
+    /**
+     * Check whether the fingerprints of the keys are recorded.
+     *
+     * @return whether fingerprinting
+     */
+    private boolean isFingerprinting() {
+        return fingerprint || since != null;
+    }
+
+    /**
+     * Scan every server at once, writing their keys to the given writer.
+     * <p>
+     * The writer is shared between the scanners, each writes
+     * whole pages while holding a lock. If a scan fails, the
+     * other scans are stopped.
+     * </p>
+     *
+     * @param writer the writer to write the keys to
+     * @param metrics the metrics to record the keys in
+     * @param fingerprints the fingerprints to record the keys in, null if not fingerprinting
+     * @return the amount of keys found while scanning
+     * @throws Exception the first error a scanner ran into
+     */
+    private long scanServers(@NonNull DataWriter writer, @NonNull TransferMetrics metrics, Fingerprints fingerprints) throws Exception {
+        ReentrantLock writeLock = new ReentrantLock();
+        ExecutorService executor = Executors.newFixedThreadPool(pools.size());
+        CompletionService<Long> scans = new ExecutorCompletionService<>(executor);
+        for (JedisPool pool : pools) {
+            scans.submit(() -> scan(pool, writeLock, writer, metrics, fingerprints, ScanParams.SCAN_POINTER_START, null));
+        }
+        executor.shutdown();
+        long found = 0L; // The amount of keys found while scanning
+        try {
+            for (int i = 0; i < pools.size(); i++) {
+                found += scans.take().get(); // In the order the scans finish, so a failure is seen straight away
+            }
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        } finally {
+            executor.shutdownNow(); // Stop the other scans if one failed
+        }
+        return found;
+    }
+
+    /**
+     * Scan the server behind the given pool, writing its keys to the given writer.
+     *
+     * @param pool the pool of the server
+     * @param writeLock the lock to hold while writing, null if the writer isn't shared
+     * @param writer the writer to write the keys to
+     * @param metrics the metrics to record the keys in
+     * @param fingerprints the fingerprints to record the keys in, null if not fingerprinting
+     * @param cursor the cursor to start scanning from
+     * @param listener the listener to call once each page has been written, null for none
+     * @return the amount of keys found while scanning
+     * @throws Exception the first error the scanner ran into
+     */
+    private long scan(@NonNull JedisPool pool, ReentrantLock writeLock, @NonNull DataWriter writer, @NonNull TransferMetrics metrics,
+                      Fingerprints fingerprints, @NonNull String cursor, KeyspaceScanner.PageListener listener) throws Exception {
+        try (LatencyThrottle throttle = maxLatencyMillis > 0 ? new LatencyThrottle(pool, maxLatencyMillis, threads, metrics.getLatency("probe")) : null) {
+            return KeyspaceScanner.builder()
+                    .pool(pool)
+                    .mode(mode)
+                    .scanCount(scanCount)
+                    .threads(threads)
+                    .largeKeySize(largeKeySize)
+                    .pageSize(pageSize)
+                    .filter(filter)
+                    .throttle(throttle)
+                    .writeLock(writeLock)
+                    .fingerprints(fingerprints)
+                    .build().scan(writer, metrics, cursor, listener);
+        }
+    }
+
+    /**
+     * Open the writer of the data file.
+     *
+     * @param resumed the checkpoint to resume from, null to start a new data file
+     * @param indexWriter the writer of the index to add the records to, null if not indexing
+     * @return the writer
+     * @throws IOException if the data file cannot be opened
+     */
+    @NonNull
+    private DataWriter openWriter(Checkpoint resumed, KeyIndexWriter indexWriter) throws IOException {
+        if (resumed == null) {
+            DataWriter writer = format.openWriter(dataFile, compress, compressThreads);
+            return indexWriter == null ? writer : indexWriter.wrap(writer);
+        }
+        return format.resumeWriter(dataFile, compress, compressThreads, resumed.getOffset(), resumed.getKeys() == 0L);
+    }
+
+    /**
+     * Create a checkpoint of the export at the given
+     * cursor, the data file must have been flushed.
+     *
+     * @param cursor the cursor to continue from
+     * @param found the amount of keys found before the cursor
+     * @param keys the amount of keys exported
+     * @param failed the amount of keys that failed to export
+     * @param skipped the amount of keys over the size limit
+     * @return the checkpoint
+     */
+    @NonNull
+    private Checkpoint newCheckpoint(@NonNull String cursor, long found, long keys, long failed, long skipped) {
+        return Checkpoint.builder()
+                .operation("export")
+                .format(format.name())
+                .compressed(compress)
+                .mode(mode.name())
+                .cursor(cursor)
+                .found(found)
+                .offset(dataFile.length())
+                .keys(keys)
+                .failed(failed)
+                .skipped(skipped)
+                .build();
+    }
+
+    /**
+     * Write the summary of the given metrics next to the data file.
+     *
+     * @param metrics the metrics of the export
+     * @param completed whether the export completed without error
+     */
+    private void writeSummary(@NonNull TransferMetrics metrics, boolean completed) {
+        File summaryFile = metrics.getSummaryFile(dataFile);
+        try {
+            metrics.writeSummary(summaryFile, completed);
+            System.out.printf("Wrote the metrics to %s%n", summaryFile);
+        } catch (IOException ex) {
+            System.err.printf("Failed to write the metrics to %s%n", summaryFile);
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package me.braydon.redis.task;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import me.braydon.redis.common.Digests;
+import me.braydon.redis.io.DataWriter;
+import me.braydon.redis.metrics.TransferMetrics;
+import me.braydon.redis.type.impl.TombstoneCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The fingerprints of the keys in an export, kept in
+ * a sidecar file next to the data file.
+ * <p>
+ * The fingerprint of a key is the SHA-1 of its DUMP
+ * payload and its expiry, computed by the server with a script so
+ * only the fingerprint crosses the wire, or the digest of
+ * its members for a key large enough to be read in pages,
+ * which is never dumped. An incremental
+ * export compares the fingerprint of every key with
+ * the one recorded by the export before it, and only
+ * reads the keys that were added or changed. Every key
+ * recorded before that is no longer found is written
+ * as a tombstone once the scan has finished.
+ * </p>
+ * <p>
+ * The previous fingerprints are held in memory as a
+ * hash of each key name paired with its fingerprint,
+ * sixteen bytes per key, while the new fingerprints
+ * are streamed to the new sidecar as they are found.
+ * </p>
+ * <p>
+ * Every sidecar holds a random ID of its export and the ID
+ * of the export it was compared with, so the incremental
+ * exports can be checked to follow one another on import.
+ * </p>
+ *
+ * @author Braydon
+ */
+final class Fingerprints implements Closeable {
+    /**
+     * The extension appended to the name of the data file.
+     */
+    static final String EXTENSION = ".fingerprints";
+
+    /**
+     * The script returning the fingerprint of a key, nil if the key doesn't exist.
+     * <p>
+     * The expiry of the key is hashed along with its payload, so a
+     * change to only its time-to-live is exported too. With the
+     * argument {@link #EXPIRY_ONLY}, only the expiry is returned.
+     * </p>
+     */
+    static final String SCRIPT = "local expiry = redis.pcall('PEXPIRETIME', KEYS[1]) "
+            + "if type(expiry) ~= 'number' then expiry = redis.call('PTTL', KEYS[1]) > 0 and 1 or -1 end " // Before Redis 7.0
+            + "if ARGV[1] == 'expiry' then return expiry end "
+            + "local dump = redis.call('DUMP', KEYS[1]) "
+            + "if not dump then return false end "
+            + "return redis.sha1hex(dump .. ':' .. expiry)";
+
+    /**
+     * The argument of {@link #SCRIPT} returning only the expiry of a key,
+     * the absolute expiry in milliseconds or -1 if it doesn't expire.
+     * Before Redis 7.0 this is only 1 if it expires.
+     */
+    static final String EXPIRY_ONLY = "expiry";
+
+    /**
+     * The fingerprint of a key that must be read next time, as it
+     * failed or was skipped. No SHA-1 is read back as this value.
+     */
+    static final long UNKNOWN = 0L;
+
+    /**
+     * The first bytes of every sidecar file.
+     */
+    private static final int MAGIC = 0x52454650; // REFP
+
+    /**
+     * The version of the sidecar format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The length of the key name marking the end of the sidecar.
+     */
+    private static final int END = -1;
+
+    /**
+     * The sidecar of the export being written.
+     */
+    @NonNull private final File file;
+
+    /**
+     * The sidecar the keys are compared with, null if not incremental.
+     */
+    private final File previousFile;
+
+    /**
+     * The description of the filter the keys passed,
+     * which must be the same as the previous export's.
+     */
+    @NonNull private final String filter;
+
+    /**
+     * The ID of the export the keys are compared
+     * with, empty if not incremental.
+     */
+    private String previousId = "";
+
+    /**
+     * The hashes of the previous key names, in an open
+     * addressed table where zero marks an empty slot.
+     */
+    private long[] keyHashes = new long[1024];
+
+    /**
+     * The previous fingerprints, in the slots of their key names.
+     */
+    private long[] digests = new long[1024];
+
+    /**
+     * The slots of the previous keys found again.
+     */
+    private AtomicLongArray seen;
+
+    /**
+     * The amount of previous keys held.
+     */
+    @Getter private int previousKeys;
+
+    private final File temporary; // The new sidecar until it is complete
+    private final DataOutputStream out; // The stream of the new sidecar
+
+    /**
+     * Open the sidecar of the given data file,
+     * loading the previous fingerprints if any.
+     *
+     * @param dataFile the data file being exported
+     * @param previousDataFile the data file to compare with, null to record every key
+     * @param filter the filter the keys must pass, null for every key
+     * @throws IOException if the previous sidecar cannot be read, or was written with another filter
+     */
+    Fingerprints(@NonNull File dataFile, File previousDataFile, KeyFilter filter) throws IOException {
+        file = getFile(dataFile);
+        previousFile = previousDataFile == null ? null : getFile(previousDataFile);
+        this.filter = filter == null ? "" : filter.getPattern() + " " + filter.getTypeName() + " " + filter.getMaxBytes();
+        if (previousFile != null) {
+            load();
+        }
+        temporary = new File(file.getPath() + ".tmp");
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(this.filter);
+        out.writeUTF(previousDataFile == null ? "" : previousDataFile.getName());
+        out.writeUTF(previousId);
+        out.writeUTF(UUID.randomUUID().toString()); // The ID of this export
+    }
+
+    /**
+     * Get the sidecar file of the given data file.
+     *
+     * @param dataFile the data file
+     * @return the sidecar file, next to the data file
+     */
+    @NonNull
+    static File getFile(@NonNull File dataFile) {
+        return new File(dataFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Read which export the export of the given data file is and
+     * which export it was compared with, from its sidecar.
+     *
+     * @param dataFile the data file
+     * @return the link of the export, null if it has no sidecar
+     * @throws IOException if the sidecar cannot be read
+     */
+    static Link readLink(@NonNull File dataFile) throws IOException {
+        File file = getFile(dataFile);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            readHeader(in, file);
+            in.readUTF(); // The filter
+            String previousName = in.readUTF();
+            String previousId = in.readUTF();
+            return new Link(in.readUTF(), previousId, previousName);
+        }
+    }
+
+    /**
+     * Convert the reply of {@link #SCRIPT} to a fingerprint.
+     * <p>
+     * The first sixteen hex digits of the SHA-1 are kept, a change
+     * is missed only if both fingerprints share all 64 bits.
+     * </p>
+     *
+     * @param reply the reply, null if the key doesn't exist
+     * @return the fingerprint, {@link #UNKNOWN} if the key doesn't exist
+     */
+    static long toDigest(Object reply) {
+        String hex;
+        if (reply instanceof byte[] bytes) { // Sent with the bytes of the key name
+            hex = new String(bytes, StandardCharsets.US_ASCII);
+        } else if (reply instanceof String string) {
+            hex = string;
+        } else {
+            return UNKNOWN;
+        }
+        long digest = Long.parseUnsignedLong(hex.substring(0, 16), 16);
+        return digest == UNKNOWN ? 1L : digest;
+    }
+
+    /**
+     * Get the fingerprint of a large key from the digest of its members.
+     * <p>
+     * A large key is never dumped, as serializing it would block the
+     * server, so its members are read a page at a time and digested
+     * instead. This never equals a fingerprint read with {@link #SCRIPT},
+     * so a key that grows past the large key size is read again.
+     * </p>
+     *
+     * @param typeName the type of the key
+     * @param expiry the reply of {@link #SCRIPT} with {@link #EXPIRY_ONLY}
+     * @param membersDigest the digest of every member of the key
+     * @return the fingerprint
+     * @see me.braydon.redis.type.KeyCodec#digest(long, Object) for digesting the members
+     */
+    static long ofMembers(@NonNull String typeName, Object expiry, long membersDigest) {
+        long expiryDigest = expiry instanceof Long millis ? millis : 0L;
+        long digest = Digests.combine(Digests.combine(Digests.hash(typeName), expiryDigest), membersDigest);
+        return digest == UNKNOWN ? 1L : digest;
+    }
+
+    /**
+     * Check whether the given key has the same fingerprint as
+     * in the previous export, marking it as found either way.
+     * <p>
+     * This may be called by many threads at once.
+     * </p>
+     *
+     * @param key the name of the key
+     * @param digest the current fingerprint of the key
+     * @return whether the key is unchanged
+     */
+    boolean isUnchanged(@NonNull String key, long digest) {
+        if (previousFile == null || digest == UNKNOWN) { // Nothing to compare with, or the key no longer exists
+            return false;
+        }
+        int slot = find(hash(key));
+        if (keyHashes[slot] == 0L) { // A new key
+            return false;
+        }
+        markSeen(slot);
+        return digests[slot] == digest;
+    }
+
+    /**
+     * Record the given key as found without its fingerprint,
+     * so it is read again by the next export rather than
+     * left out as unchanged, and isn't mistaken for a
+     * deleted key either.
+     * <p>
+     * This may be called by many threads at once.
+     * </p>
+     *
+     * @param key the name of the key
+     * @throws IOException if writing fails
+     */
+    void skip(@NonNull String key) throws IOException {
+        if (previousFile != null) {
+            int slot = find(hash(key));
+            if (keyHashes[slot] != 0L) {
+                markSeen(slot);
+            }
+        }
+        record(key, UNKNOWN);
+    }
+
+    /**
+     * Record the fingerprint of the given key in the new sidecar.
+     *
+     * @param key the name of the key
+     * @param digest the fingerprint, {@link #UNKNOWN} to read the key again next time
+     * @throws IOException if writing fails
+     */
+    synchronized void record(@NonNull String key, long digest) throws IOException {
+        byte[] name = key.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(name.length);
+        out.write(name);
+        out.writeLong(digest);
+    }
+
+    /**
+     * Write a tombstone for every previous key that wasn't found again.
+     * <p>
+     * This must only be called once every key has been compared.
+     * </p>
+     *
+     * @param writer the writer to write the tombstones to
+     * @param metrics the metrics to record the tombstones in
+     * @return the amount of tombstones written
+     * @throws IOException if reading the previous sidecar or writing fails
+     */
+    long writeTombstones(@NonNull DataWriter writer, @NonNull TransferMetrics metrics) throws IOException {
+        if (previousFile == null) {
+            return 0L;
+        }
+        TombstoneCodec codec = new TombstoneCodec();
+        long tombstones = 0L;
+        try (DataInputStream in = open(previousFile)) {
+            String key;
+            while ((key = readKey(in)) != null) {
+                in.readLong();
+                int slot = find(hash(key));
+                if (isSeen(slot)) {
+                    continue;
+                }
+                markSeen(slot); // A key scanned twice last time is deleted once
+                long position = writer.getPosition();
+                writer.writeKey(key, -1L, codec, null);
+                metrics.keyTransferred(TombstoneCodec.TYPE_NAME, writer.getPosition() - position);
+                tombstones++;
+            }
+        }
+        return tombstones;
+    }
+
+    /**
+     * Complete the new sidecar, replacing any
+     * sidecar the data file had before.
+     *
+     * @throws IOException if writing fails
+     */
+    void complete() throws IOException {
+        out.writeInt(END);
+        out.close();
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Close the new sidecar, removing it unless completed.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+        temporary.delete();
+    }
+
+    /**
+     * Load the previous fingerprints into memory.
+     *
+     * @throws IOException if reading fails, or the filter differs
+     */
+    private void load() throws IOException {
+        if (!previousFile.exists()) {
+            throw new IOException("There are no fingerprints at " + previousFile + ", was it exported with --fingerprint?");
+        }
+        try (DataInputStream in = open(previousFile)) {
+            String key;
+            while ((key = readKey(in)) != null) {
+                long digest = in.readLong();
+                if (previousKeys * 2 >= keyHashes.length) { // Keep the table at most half full
+                    grow();
+                }
+                long keyHash = hash(key);
+                int slot = find(keyHash);
+                if (keyHashes[slot] == 0L) {
+                    keyHashes[slot] = keyHash;
+                    previousKeys++;
+                }
+                digests[slot] = digest; // A key scanned twice keeps its later fingerprint
+            }
+        }
+        seen = new AtomicLongArray((keyHashes.length + 63) / 64);
+    }
+
+    /**
+     * Open the given sidecar and read past its header.
+     *
+     * @param sidecar the sidecar
+     * @return the stream, at the first key
+     * @throws IOException if reading fails, or the filter differs
+     */
+    @NonNull
+    private DataInputStream open(@NonNull File sidecar) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar), 1 << 16));
+        try {
+            readHeader(in, sidecar);
+            String previousFilter = in.readUTF();
+            if (!previousFilter.equals(filter)) { // Keys outside one of the filters would be wrongly deleted
+                throw new IOException("The fingerprints at " + sidecar + " were recorded with another --match, --type or --max-bytes");
+            }
+            in.readUTF(); // The data file it was compared with
+            in.readUTF(); // The ID of the export it was compared with
+            previousId = in.readUTF();
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+        return in;
+    }
+
+    /**
+     * Read the magic and version of the given sidecar.
+     *
+     * @param in the stream of the sidecar
+     * @param sidecar the sidecar, for the error
+     * @throws IOException if reading fails, or the file isn't a sidecar of this version
+     */
+    private static void readHeader(@NonNull DataInputStream in, @NonNull File sidecar) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException(sidecar + " isn't a fingerprint file");
+        }
+        if (in.readInt() != VERSION) {
+            throw new IOException(sidecar + " was written by another version, export again with --fingerprint");
+        }
+    }
+
+    /**
+     * Read the name of the next key in a sidecar.
+     *
+     * @param in the stream of the sidecar
+     * @return the key name, null at the end of the sidecar
+     * @throws IOException if reading fails, or the sidecar is incomplete
+     */
+    private static String readKey(@NonNull DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException ex) {
+            throw new IOException("The fingerprints are incomplete", ex);
+        }
+        if (length == END) {
+            return null;
+        }
+        byte[] name = new byte[length];
+        in.readFully(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Double the size of the table of previous keys.
+     */
+    private void grow() {
+        long[] oldHashes = keyHashes;
+        long[] oldDigests = digests;
+        keyHashes = new long[oldHashes.length * 2];
+        digests = new long[oldDigests.length * 2];
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != 0L) {
+                int slot = find(oldHashes[i]);
+                keyHashes[slot] = oldHashes[i];
+                digests[slot] = oldDigests[i];
+            }
+        }
+    }
+
+    /**
+     * Find the slot of the given key hash, or the empty slot it belongs in.
+     *
+     * @param keyHash the hash of the key name
+     * @return the slot
+     */
+    private int find(long keyHash) {
+        int mask = keyHashes.length - 1;
+        int slot = (int) (keyHash ^ (keyHash >>> 32)) & mask;
+        while (keyHashes[slot] != 0L && keyHashes[slot] != keyHash) { // Linear probing
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Mark the previous key in the given slot as found.
+     *
+     * @param slot the slot of the key
+     */
+    private void markSeen(int slot) {
+        seen.getAndAccumulate(slot >>> 6, 1L << slot, (bits, bit) -> bits | bit);
+    }
+
+    /**
+     * Check whether the previous key in the given slot was found.
+     *
+     * @param slot the slot of the key
+     * @return whether the key was found
+     */
+    private boolean isSeen(int slot) {
+        return (seen.get(slot >>> 6) & (1L << slot)) != 0L;
+    }
+
+    /**
+     * Hash the given key name to 64 bits, never zero.
+     * <p>
+     * This is FNV-1a over the UTF-8 bytes of the name,
+     * followed by a final mix to spread the low bits.
+     * </p>
+     *
+     * @param key the key name
+     * @return the hash
+     */
+    private static long hash(@NonNull String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == 0L ? 1L : hash;
+    }
+
+    /**
+     * Which export an export is, and which export it was compared with.
+     */
+    @AllArgsConstructor @Getter
+    static final class Link {
+        /**
+         * The ID of the export.
+         */
+        @NonNull private final String id;
+
+        /**
+         * The ID of the export it was compared with, empty for a full export.
+         */
+        @NonNull private final String previousId;
+
+        /**
+         * The name of the data file it was compared with, empty for a full export.
+         */
+        @NonNull private final String previousName;
+    }
+}
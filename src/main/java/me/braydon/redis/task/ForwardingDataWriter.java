@@ -0,0 +1,103 @@
+package me.braydon.redis.task;
+
+import lombok.NonNull;
+import me.braydon.redis.io.DataEntry;
+import me.braydon.redis.io.DataWriter;
+import me.braydon.redis.type.KeyCodec;
+import me.braydon.redis.type.KeyValue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Hands the keys written to it to the {@link ImportWorkers}
+ * as entries, rather than writing them to a data file.
+ * <p>
+ * Every page of a key written in pages becomes its own
+ * entry, appended to the key by its worker, so a large
+ * key is never held in memory in its entirety. The queues
+ * of the workers are bounded, so a slow target holds
+ * back the reads from the source.
+ * </p>
+ * <p>
+ * No data file is in between, so the scanner hands over
+ * the time-to-lives in milliseconds, and the workers
+ * set them with PEXPIRE rather than in whole seconds.
+ * </p>
+ *
+ * @author Braydon
+ */
+final class ForwardingDataWriter implements DataWriter {
+    @NonNull private final ImportWorkers workers;
+    private String key; // The name of the key being written
+    private long ttl; // The time-to-live of the key being written, in milliseconds
+    private boolean append; // Whether the first page of the key being written has been handed off
+    private long position; // The estimated amount of bytes handed off
+
+    ForwardingDataWriter(@NonNull ImportWorkers workers) {
+        this.workers = workers;
+    }
+
+    @Override
+    public void beginKey(@NonNull String key, long ttl, @NonNull KeyCodec<?> codec) {
+        this.key = key;
+        this.ttl = ttl;
+        append = false;
+    }
+
+    /**
+     * Hand the given members of the key being
+     * written to the worker of the key.
+     *
+     * @param codec the codec of the key type
+     * @param value the members to write
+     * @param <T> the type of value
+     * @throws IOException if a worker has failed, or if interrupted while waiting for a worker
+     */
+    @Override
+    public <T> void writeMembers(@NonNull KeyCodec<T> codec, T value) throws IOException {
+        if (workers.getError() != null) { // Stop reading keys that would never be written
+            throw new IOException("Failed to write to the target", workers.getError());
+        }
+        long size = codec.sizeOf(value);
+        try {
+            workers.dispatch(new DataEntry(key, codec.getTypeName(), append ? -1L : ttl, new KeyValue<>(codec, value), size, append));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a worker");
+        }
+        append = true; // The next page adds to this one
+        position += size;
+    }
+
+    @Override
+    public void endKey() {
+        key = null;
+    }
+
+    /**
+     * Get the estimated amount of bytes handed to the workers.
+     *
+     * @return the amount of bytes
+     * @see KeyCodec#sizeOf(Object) for the estimate
+     */
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Nothing is buffered, the entries are handed
+     * to the workers as they are written.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * The workers are finished by the task that started them.
+     */
+    @Override
+    public void close() {
+    }
+}
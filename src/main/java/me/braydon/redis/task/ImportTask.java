@@ -0,0 +1,485 @@
+package me.braydon.redis.task;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import me.braydon.redis.common.ClusterTopology;
+import me.braydon.redis.io.DataEntry;
+import me.braydon.redis.io.DataFormat;
+import me.braydon.redis.io.DataReader;
+import me.braydon.redis.io.KeyIndex;
+import me.braydon.redis.metrics.ProgressReporter;
+import me.braydon.redis.metrics.TransferMetrics;
+import me.braydon.redis.type.KeyValue;
+import me.braydon.redis.type.impl.DumpPayload;
+import me.braydon.redis.type.impl.TombstoneCodec;
+import redis.clients.jedis.JedisPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Imports the keys from a data file into a database.
+ * <p>
+ * A single thread reads the data file and hands the
+ * entries to the {@link ImportWorkers}, which partition
+ * them by key so every key is always written by the same
+ * worker, in the order it appears in the file. When
+ * importing into a cluster, the entries are partitioned
+ * by hash slot between the workers of each master.
+ * </p>
+ * <p>
+ * The tombstones of an incremental export delete their
+ * keys, so importing a full export followed by each of the
+ * incremental exports after it, in order, leaves the
+ * database as it was at the last of them.
+ * </p>
+ * <p>
+ * When only some keys are asked for, by name or pattern,
+ * and the data file has a {@link KeyIndex}, just the
+ * records of those keys are read, straight from their
+ * offsets, rather than parsing the whole data file.
+ * </p>
+ * <p>
+ * Periodically, every worker commits the entries it has
+ * been handed and the amount of entries read is saved as
+ * a {@link Checkpoint}, which an interrupted import can
+ * be resumed from.
+ * </p>
+ *
+ * @author Braydon
+ */
+@Builder
+public final class ImportTask {
+    /**
+     * The pools to borrow connections from, one for
+     * each master in the order of the topology.
+     * <p>
+     * Each must be able to hand out a connection to every
+     * worker at once, and one more to the latency probe
+     * if throttled.
+     * </p>
+     */
+    @Singular @NonNull private final List<JedisPool> pools;
+
+    /**
+     * The topology of the cluster to import into,
+     * null if importing into a single server.
+     */
+    private final ClusterTopology topology;
+
+    /**
+     * The data file to import from.
+     */
+    @NonNull private final File dataFile;
+
+    /**
+     * The format the data file is written in.
+     */
+    @NonNull private final DataFormat format;
+
+    /**
+     * The amount of threads to decompress the data file with.
+     */
+    private final int compressThreads;
+
+    /**
+     * Whether to flush the database prior to importing.
+     */
+    private final boolean flush;
+
+    /**
+     * The amount of workers to write the entries to each server with.
+     */
+    private final int threads;
+
+    /**
+     * The maximum amount of entries waiting for each worker.
+     */
+    private final int queueDepth;
+
+    /**
+     * The maximum amount of commands to queue before syncing.
+     */
+    private final int batchSize;
+
+    /**
+     * The maximum amount of data file bytes to queue before syncing.
+     */
+    private final long batchBytes;
+
+    /**
+     * The maximum amount of members to write per command.
+     */
+    private final int memberBatchSize;
+
+    /**
+     * The maximum amount of member bytes to write per command.
+     */
+    private final long memberBatchBytes;
+
+    /**
+     * The filter the entries must pass, null to import every entry.
+     */
+    private final KeyFilter filter;
+
+    /**
+     * The names of the keys to import, empty to import every key.
+     */
+    @Singular private final Set<String> keys;
+
+    /**
+     * The names asked for that were found, shared by the data
+     * files of a chain and added to by each, null to only
+     * track the names found in this data file.
+     */
+    private final Set<String> foundKeys;
+
+    /**
+     * Whether to report the names asked for that were never found
+     * once the data file is imported, counting each as failed.
+     */
+    private final boolean reportMissing;
+
+    /**
+     * The latency ceiling in milliseconds to slow the
+     * writes down to, zero to write as fast as possible.
+     */
+    private final int maxLatencyMillis;
+
+    /**
+     * The interval in seconds to report the progress at, zero to never report.
+     */
+    private final int progressInterval;
+
+    /**
+     * The interval in seconds to save a checkpoint at, zero to never save one.
+     */
+    private final int checkpointInterval;
+
+    /**
+     * Whether to resume an interrupted import from its checkpoint.
+     */
+    private final boolean resume;
+
+    /**
+     * Import the keys from the data file into the database.
+     * <p>
+     * The progress is reported periodically rather than
+     * per key, and a json summary of the metrics is
+     * written next to the data file once finished.
+     * </p>
+     * <p>
+     * When resuming, the entries committed before the
+     * checkpoint are skipped. The entries committed after it
+     * are imported again, which is safe as every key is
+     * replaced rather than merged with what is stored.
+     * </p>
+     *
+     * @return whether the import completed without error
+     */
+    public boolean run() {
+        TransferMetrics metrics = new TransferMetrics("import");
+        DataReader indexedReader = openIndexedReader(metrics); // The reader of just the records asked for, null to read every record
+        Checkpointer checkpointer = new Checkpointer(dataFile, indexedReader == null ? checkpointInterval : 0); // The records read can't be described by an offset
+        Checkpoint resumed = null; // The checkpoint to resume from
+        boolean compressed;
+        try {
+            compressed = DataFormat.isCompressed(dataFile);
+            if (resume) {
+                resumed = Checkpoint.read(checkpointer.getFile());
+            }
+        } catch (IOException ex) {
+            System.err.printf("Failed to read the data file or its checkpoint %s%n", checkpointer.getFile());
+            ex.printStackTrace();
+            if (indexedReader != null) {
+                try {
+                    indexedReader.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+            }
+            return false;
+        }
+        if (resumed != null) {
+            if (!resumed.getOperation().equals("import") || !resumed.getFormat().equals(format.name())
+                    || resumed.isCompressed() != compressed || resumed.getDataFileLength() != dataFile.length()) {
+                System.err.printf("Cannot resume as the checkpoint is of a different operation or data file: %s%n", resumed);
+                return false;
+            }
+            System.out.printf("Resuming the import after %s entries%n", resumed.getEntries());
+        }
+        ImportWorkers workers = ImportWorkers.builder()
+                .pools(pools)
+                .topology(topology)
+                .metrics(metrics)
+                .threads(threads)
+                .queueDepth(queueDepth)
+                .batchSize(batchSize)
+                .batchBytes(batchBytes)
+                .memberBatchSize(memberBatchSize)
+                .memberBatchBytes(memberBatchBytes)
+                .maxLatencyMillis(maxLatencyMillis)
+                .build();
+        if (flush && resumed == null) { // If the user wants to flush the database, flush it
+            workers.flushDatabase();
+        }
+        Exception error = null; // The error the reader ran into
+        long keyCount = resumed == null ? 0L : resumed.getEntries(); // The amount of keys in the file
+        long resumedFailed = resumed == null ? 0L : resumed.getFailed(); // The amount of keys that failed before resuming
+        long resumedSkipped = resumed == null ? 0L : resumed.getSkipped(); // The amount of keys skipped before resuming
+        long filtered = resumed == null ? 0L // The amount of entries that didn't match the filter
+                : resumed.getEntries() - resumed.getKeys() - resumedFailed - resumedSkipped;
+        Set<String> found = keys.isEmpty() ? null : foundKeys == null ? new HashSet<>() : foundKeys; // The names asked for that were found
+        workers.start();
+        ProgressReporter reporter = new ProgressReporter(metrics, "Imported", progressInterval);
+        try (DataReader reader = indexedReader == null ? format.openReader(dataFile, compressThreads) : indexedReader) {
+            if (!compressed && indexedReader == null) { // The uncompressed size of a compressed file isn't known up front
+                metrics.setExpectedBytes(dataFile.length() - (resumed == null ? 0L : resumed.getOffset())); // The counters start from zero when resuming
+            }
+            if (resumed != null) {
+                skipCommitted(reader, resumed);
+            } else { // Save a checkpoint of the start, so the import can be resumed from it
+                checkpointer.save(newCheckpoint(compressed, 0L, reader.getPosition(), 0L, 0L, 0L, 0L));
+            }
+            DataEntry entry;
+            while (workers.getError() == null && (entry = reader.next()) != null) {
+                keyCount++;
+                if (found != null && keys.contains(entry.getKey())) {
+                    found.add(entry.getKey());
+                }
+                if (!keys.isEmpty() && !keys.contains(entry.getKey())) { // Leave out the keys that weren't asked for
+                    filtered++;
+                } else if (filter == null) {
+                    workers.dispatch(entry);
+                } else if (entry.getTypeName().equals(TombstoneCodec.TYPE_NAME) ? !filter.matchesName(entry.getKey()) // The type of a deleted key isn't known
+                        : !filter.matches(entry.getKey(), getTypeName(entry))) { // Leave out the keys that weren't asked for
+                    filtered++;
+                } else if (filter.isTooLarge(entry.getSize())) {
+                    metrics.keySkipped();
+                    System.err.printf("Skipping '%s' as it is %s bytes, over the limit of %s%n", entry.getKey(), entry.getSize(), filter.getMaxBytes());
+                } else {
+                    workers.dispatch(entry);
+                }
+                if (checkpointer.isDue()) {
+                    long batches = workers.commit();
+                    if (batches >= 0L) { // Every entry read so far is in the database
+                        long failed = resumedFailed + metrics.getFailed();
+                        long skipped = resumedSkipped + metrics.getSkipped();
+                        checkpointer.save(newCheckpoint(compressed, keyCount, reader.getPosition(),
+                                (resumed == null ? 0L : resumed.getBatches()) + batches,
+                                keyCount - filtered - failed - skipped, failed, skipped));
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            error = ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            reporter.close();
+            try {
+                workers.finish();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (error == null) {
+            error = workers.getError();
+        }
+        if (error != null) { // Something went wrong, the import is incomplete
+            error.printStackTrace();
+            if (checkpointer.getFile().exists()) {
+                System.err.println("The import can be resumed from its last checkpoint with the --resume flag");
+            }
+        } else {
+            checkpointer.clear(); // The import is complete, there is nothing to resume
+            if (reportMissing && found != null && resumed == null) { // The keys imported before resuming weren't read, so only a whole import is checked
+                keyCount += reportMissing(found, metrics);
+            }
+        }
+        long elapsed = Math.max(metrics.getElapsed(), 1L);
+
+        // Log that the import has finished
+        long skipped = resumedSkipped + metrics.getSkipped();
+        System.out.printf("Import finished in %sms (success: %s, failed: %s, skipped: %s, total: %s)%n",
+                elapsed,
+                keyCount - filtered - resumedFailed - metrics.getFailed() - skipped, // The amount of keys successfully imported
+                resumedFailed + metrics.getFailed(), // The amount of keys that failed to import
+                skipped, // The amount of keys over the size limit
+                keyCount - filtered // The total amount of matching keys in the file
+        );
+        if (filtered > 0L) {
+            System.out.printf("Left out %s key(s) that didn't match the filter%n", filtered);
+        }
+        System.out.printf("Throughput: %.1f keys/s, %.2f MiB/s across %s thread(s)%n",
+                metrics.getKeys() * 1000D / elapsed,
+                metrics.getBytes() * 1000D / elapsed / (1024D * 1024D),
+                threads
+        );
+        File summaryFile = metrics.getSummaryFile(dataFile);
+        try { // Write the summary next to the data file
+            metrics.writeSummary(summaryFile, error == null);
+            System.out.printf("Wrote the metrics to %s%n", summaryFile);
+        } catch (IOException ex) {
+            System.err.printf("Failed to write the metrics to %s%n", summaryFile);
+            ex.printStackTrace();
+        }
+        return error == null;
+    }
+
+    /**
+     * Open a reader of just the records of the keys asked for,
+     * found with the index of the data file.
+     * <p>
+     * This is only done when some keys are asked for, by name or
+     * pattern, and the import isn't being resumed. If the data file
+     * has no index, or it can't be read, every record is read instead.
+     * </p>
+     *
+     * @param metrics the metrics to set the expected bytes of
+     * @return the reader, null to read every record
+     */
+    private DataReader openIndexedReader(@NonNull TransferMetrics metrics) {
+        File indexFile = KeyIndex.getFile(dataFile);
+        if (resume || (keys.isEmpty() && (filter == null || filter.getPattern() == null)) || !indexFile.exists()) {
+            return null;
+        }
+        try (KeyIndex index = KeyIndex.open(dataFile)) {
+            List<KeyIndex.Entry> entries = keys.isEmpty() ? index.find(filter.getPrefix(), filter::matchesName) : index.find(keys);
+            long bytes = 0L;
+            for (KeyIndex.Entry entry : entries) {
+                bytes += entry.getLength();
+            }
+            metrics.setExpectedBytes(bytes);
+            System.out.printf("Found %s record(s) of the keys asked for in the index of %s key(s)%n", entries.size(), index.getEntries());
+            return index.openReader(entries);
+        } catch (IOException ex) {
+            System.err.printf("Failed to read the index %s, reading the whole data file instead: %s%n", indexFile, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * List the names asked for that weren't found in the data
+     * files, counting each as failed, so a mistyped name doesn't
+     * pass for a successful restore.
+     *
+     * @param found the names asked for that were found
+     * @param metrics the metrics to record the missing keys in
+     * @return the amount of names that weren't found
+     */
+    private long reportMissing(@NonNull Set<String> found, @NonNull TransferMetrics metrics) {
+        long missing = 0L;
+        for (String key : keys) {
+            if (!found.contains(key)) {
+                metrics.keyFailed();
+                System.err.printf("Cannot import '%s' as it isn't in the data file%s%n", key, foundKeys == null ? "" : "s");
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Check that the given data files can be imported one after the other.
+     * <p>
+     * Each incremental export only holds the changes since the
+     * export it was compared with, so it must follow that export.
+     * A data file exported without fingerprints can't be checked
+     * and is assumed to be in the right place.
+     * </p>
+     *
+     * @param dataFiles the data files, in the order they will be imported
+     * @throws IllegalArgumentException if a data file doesn't follow the export it was compared with
+     */
+    public static void checkChain(@NonNull List<File> dataFiles) {
+        Fingerprints.Link before = null; // The link of the data file before, null if it has no fingerprints
+        for (int i = 0; i < dataFiles.size(); i++) {
+            File dataFile = dataFiles.get(i);
+            Fingerprints.Link link;
+            try {
+                link = Fingerprints.readLink(dataFile);
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Cannot read the fingerprints of " + dataFile, ex);
+            }
+            if (link == null) { // Exported without fingerprints
+                before = null;
+                continue;
+            }
+            if (link.getPreviousId().isEmpty()) { // A full export replaces every key, anything before it would be undone
+                if (i > 0) {
+                    throw new IllegalArgumentException(dataFile + " is a full export, so it must be imported first");
+                }
+            } else if (i == 0) {
+                System.out.printf("%s only holds the changes since %s, which must already have been imported%n", dataFile, link.getPreviousName());
+            } else if (before == null || !before.getId().equals(link.getPreviousId())) { // Compared by ID, another export may share the name
+                throw new IllegalArgumentException(dataFile + " holds the changes since " + link.getPreviousName() + ", so it must be imported right after that export, not after " + dataFiles.get(i - 1));
+            }
+            before = link;
+        }
+    }
+
+    /**
+     * Skip the entries committed before the given checkpoint.
+     *
+     * @param reader the reader of the data file
+     * @param checkpoint the checkpoint to resume from
+     * @throws IOException if reading fails or the data file ends first
+     */
+    private static void skipCommitted(@NonNull DataReader reader, @NonNull Checkpoint checkpoint) throws IOException {
+        if (reader.skipTo(checkpoint.getOffset())) {
+            return;
+        }
+        for (long i = 0L; i < checkpoint.getEntries(); i++) { // The reader can't skip, read past the entries instead
+            if (reader.next() == null) {
+                throw new IOException("The data file ended before its checkpoint");
+            }
+        }
+    }
+
+    /**
+     * Get the name of the type of the key in the given entry.
+     *
+     * @param entry the entry
+     * @return the type name, the type the payload was dumped from for a DUMP entry
+     */
+    @NonNull
+    static String getTypeName(@NonNull DataEntry entry) {
+        KeyValue<?> value = entry.getKeyValue();
+        return value != null && value.getValue() instanceof DumpPayload dump ? dump.getTypeName() : entry.getTypeName();
+    }
+
+    /**
+     * Create a checkpoint of the import after the given
+     * amount of entries, which must have been committed.
+     *
+     * @param compressed whether the data file is compressed
+     * @param entries the amount of entries committed
+     * @param position the position of the reader after the entries
+     * @param batches the amount of batches committed
+     * @param keys the amount of keys imported
+     * @param failed the amount of keys that failed to import
+     * @param skipped the amount of keys over the size limit
+     * @return the checkpoint
+     */
+    @NonNull
+    private Checkpoint newCheckpoint(boolean compressed, long entries, long position, long batches, long keys, long failed, long skipped) {
+        return Checkpoint.builder()
+                .operation("import")
+                .format(format.name())
+                .compressed(compressed)
+                .offset(position)
+                .entries(entries)
+                .batches(batches)
+                .keys(keys)
+                .failed(failed)
+                .skipped(skipped)
+                .dataFileLength(dataFile.length())
+                .build();
+    }
+}
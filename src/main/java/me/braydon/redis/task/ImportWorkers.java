@@ -0,0 +1,377 @@
+package me.braydon.redis.task;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import me.braydon.redis.common.BatchedPipeline;
+import me.braydon.redis.common.ClusterTopology;
+import me.braydon.redis.common.LatencyThrottle;
+import me.braydon.redis.io.DataEntry;
+import me.braydon.redis.io.JsonStrings;
+import me.braydon.redis.metrics.TransferMetrics;
+import me.braydon.redis.type.KeyValue;
+import me.braydon.redis.type.impl.DumpCodec;
+import me.braydon.redis.type.impl.DumpPayload;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A pool of workers writing entries into a database.
+ * <p>
+ * The entries are partitioned by key between the workers.
+ * Each worker writes its entries through its own connection
+ * and pipeline, so every key is always written by the same
+ * worker, in the order it was dispatched.
+ * </p>
+ * <p>
+ * When writing to a cluster, every master gets workers of
+ * its own and each entry is handed to a worker of the master
+ * serving its hash slot, so the masters are written to in
+ * parallel without any of the keys being redirected.
+ * </p>
+ *
+ * @author Braydon
+ * @see ImportTask for importing from a data file
+ * @see MigrateTask for migrating from another database
+ */
+final class ImportWorkers {
+    /**
+     * Queued after the last entry to tell a worker to finish.
+     */
+    private static final DataEntry END_OF_FILE = new DataEntry("", "", 0L, null, 0L);
+
+    /**
+     * Queued to tell a worker to commit its entries.
+     */
+    private static final DataEntry COMMIT = new DataEntry("", "", 0L, null, 0L);
+
+    /**
+     * The pools to borrow connections from, one for
+     * each master in the order of the topology.
+     * <p>
+     * Each must be able to hand out a connection to every
+     * worker at once, and one more to the latency probe
+     * if throttled.
+     * </p>
+     */
+    @NonNull private final List<JedisPool> pools;
+
+    /**
+     * The topology of the cluster the pools are connected
+     * to, null if there is only a single server.
+     */
+    private final ClusterTopology topology;
+
+    /**
+     * The metrics to record the keys in.
+     */
+    @NonNull private final TransferMetrics metrics;
+
+    /**
+     * The amount of workers to write the entries to each server with.
+     */
+    private final int threads;
+
+    /**
+     * The maximum amount of entries waiting for each worker.
+     */
+    private final int queueDepth;
+
+    /**
+     * The maximum amount of commands to queue before syncing.
+     */
+    private final int batchSize;
+
+    /**
+     * The maximum amount of entry bytes to queue before syncing.
+     */
+    private final long batchBytes;
+
+    /**
+     * The maximum amount of members to write per command.
+     */
+    private final int memberBatchSize;
+
+    /**
+     * The maximum amount of member bytes to write per command.
+     */
+    private final long memberBatchBytes;
+
+    /**
+     * The latency ceiling in milliseconds to slow the
+     * writes down to, zero to write as fast as possible.
+     */
+    private final int maxLatencyMillis;
+
+    /**
+     * Whether the time-to-lives of the entries are in
+     * milliseconds, as when migrating, rather than
+     * in the seconds a data file stores.
+     */
+    private final boolean millisecondTtls;
+
+    private final List<BlockingQueue<DataEntry>> queues = new ArrayList<>();
+    private final List<LatencyThrottle> throttles = new ArrayList<>(); // The throttle of each server, if throttled
+    private final List<Thread> workers = new ArrayList<>();
+    private final Phaser barrier; // The dispatcher and the workers meet at every commit
+    private final AtomicLongArray batches; // The amount of batches each worker has committed
+    private final AtomicReference<Exception> error = new AtomicReference<>(); // The first error a worker ran into
+
+    @Builder
+    private ImportWorkers(@Singular @NonNull List<JedisPool> pools, ClusterTopology topology, @NonNull TransferMetrics metrics, int threads,
+                          int queueDepth, int batchSize, long batchBytes, int memberBatchSize, long memberBatchBytes, int maxLatencyMillis,
+                          boolean millisecondTtls) {
+        this.pools = pools;
+        this.topology = topology;
+        this.metrics = metrics;
+        this.threads = threads;
+        this.queueDepth = queueDepth;
+        this.batchSize = batchSize;
+        this.batchBytes = batchBytes;
+        this.memberBatchSize = memberBatchSize;
+        this.memberBatchBytes = memberBatchBytes;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.millisecondTtls = millisecondTtls;
+        barrier = new Phaser(threads * pools.size() + 1);
+        batches = new AtomicLongArray(threads * pools.size());
+    }
+
+    /**
+     * Flush the database the workers write to.
+     */
+    void flushDatabase() {
+        long size = 0L; // The amount of keys in the database
+        for (JedisPool pool : pools) {
+            try (Jedis jedis = pool.getResource()) {
+                size += jedis.dbSize();
+                jedis.flushDB(); // Flush the database
+            }
+        }
+        if (size > 0) { // If there were any key(s) flushed, log it
+            System.out.printf("Flushed %s key(s)%n", size);
+        }
+    }
+
+    /**
+     * Start the workers, each with their own queue.
+     */
+    void start() {
+        for (JedisPool pool : pools) {
+            LatencyThrottle throttle = maxLatencyMillis > 0 ? new LatencyThrottle(pool, maxLatencyMillis, threads, metrics.getLatency("probe")) : null;
+            throttles.add(throttle);
+            for (int i = 0; i < threads; i++) {
+                int index = workers.size();
+                BlockingQueue<DataEntry> queue = new ArrayBlockingQueue<>(queueDepth);
+                Thread worker = new Thread(() -> importEntries(pool, throttle, queue, index), "Import Worker #" + (index + 1));
+                queues.add(queue);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * Hand the given entry to the worker of its key,
+     * waiting while the queue of the worker is full.
+     *
+     * @param entry the entry to dispatch
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void dispatch(@NonNull DataEntry entry) throws InterruptedException {
+        int server = topology == null ? 0 : topology.getMaster(JsonStrings.decode(entry.getKey())); // The master serving the hash slot of the key
+        queues.get(server * threads + Math.floorMod(entry.getKey().hashCode(), threads)).put(entry); // Partition the entries by key
+    }
+
+    /**
+     * Wait for every worker to commit the entries dispatched so far.
+     *
+     * @return the amount of batches committed by the workers, or -1 if a worker failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    long commit() throws InterruptedException {
+        for (BlockingQueue<DataEntry> queue : queues) { // Have every worker commit the entries before this point
+            queue.put(COMMIT);
+        }
+        barrier.arriveAndAwaitAdvance();
+        if (error.get() != null) { // Some of the entries were never written
+            return -1L;
+        }
+        long committed = 0L;
+        for (int i = 0; i < batches.length(); i++) {
+            committed += batches.get(i);
+        }
+        return committed;
+    }
+
+    /**
+     * Tell the workers there is nothing left and wait
+     * for them to commit their remaining entries.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void finish() throws InterruptedException {
+        for (BlockingQueue<DataEntry> queue : queues) {
+            queue.put(END_OF_FILE);
+        }
+        for (Thread worker : workers) { // Wait for the workers to sync their pipelines
+            worker.join();
+        }
+        for (LatencyThrottle throttle : throttles) {
+            if (throttle != null) {
+                throttle.close();
+            }
+        }
+    }
+
+    /**
+     * Get the first error a worker ran into.
+     *
+     * @return the error, null if none
+     */
+    Exception getError() {
+        return error.get();
+    }
+
+    /**
+     * Import the entries from the given queue until
+     * there is nothing left to import.
+     * <p>
+     * If the worker runs into an error it keeps draining its
+     * queue, counting every entry as failed, so the dispatcher
+     * is never left blocked on a full queue or a commit.
+     * </p>
+     * <p>
+     * A key is only counted once the server has replied to
+     * its commands, as the server rejecting a command, such as
+     * when it is out of memory or a replica, doesn't fail the
+     * batch it was sent in.
+     * </p>
+     *
+     * @param pool the pool of the server to write the entries to
+     * @param throttle the throttle of the server, null if not throttled
+     * @param queue the queue to take the entries from
+     * @param index the index of this worker
+     */
+    private void importEntries(@NonNull JedisPool pool, LatencyThrottle throttle, @NonNull BlockingQueue<DataEntry> queue, int index) {
+        Set<String> failedKeys = new HashSet<>(); // The keys of this worker the server rejected, so each is only counted as failed once
+        try (Jedis jedis = pool.getResource();
+             BatchedPipeline pipelined = new BatchedPipeline(jedis, batchSize, batchBytes, metrics.getLatency("sync"), throttle) // Create a pipeline to execute the commands in
+        ) {
+            DataEntry entry;
+            while ((entry = queue.take()) != END_OF_FILE) {
+                if (entry == COMMIT) { // Commit the entries taken so far
+                    try {
+                        pipelined.sync();
+                        batches.set(index, pipelined.getBatches());
+                    } finally {
+                        barrier.arrive();
+                    }
+                    continue;
+                }
+                importEntry(pipelined, throttle, entry, failedKeys);
+            }
+        } catch (Exception ex) {
+            error.compareAndSet(null, ex);
+            try {
+                DataEntry entry;
+                while ((entry = queue.take()) != END_OF_FILE) {
+                    if (entry == COMMIT) {
+                        barrier.arrive();
+                    } else if (!entry.isAppend()) {
+                        metrics.keyFailed();
+                    }
+                }
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Queue the commands to import the given entry.
+     *
+     * @param pipelined the pipeline to queue the commands in
+     * @param throttle the throttle of the server, null if not throttled
+     * @param entry the entry to import
+     * @param failedKeys the keys of the worker the server rejected
+     */
+    private void importEntry(@NonNull BatchedPipeline pipelined, LatencyThrottle throttle, @NonNull DataEntry entry, @NonNull Set<String> failedKeys) {
+        String key = entry.getKey();
+        String typeName = entry.getTypeName();
+        long ttl = entry.getTtl();
+        KeyValue<?> value = entry.getKeyValue(); // The value of the key, paired with its codec
+        if (value == null) { // If the key type is not supported, skip it
+            metrics.keyFailed();
+            System.err.printf("Cannot import '%s' as the type (%s) is not supported%n", key, typeName);
+            return;
+        }
+        if (value.getValue() instanceof DumpPayload dump) { // The entry holds a DUMP payload, its expiry is restored with it
+            if (dump.isExpired()) {
+                metrics.keyFailed();
+                System.err.printf("Cannot import '%s' as it has expired%n", key);
+                return;
+            }
+            typeName = dump.getTypeName();
+            ttl = -1L;
+        }
+        byte[] rawKey = JsonStrings.decode(key); // The name as it is stored, a name that isn't UTF-8 is held as base64
+        int commands = throttle == null // Smaller commands block the server for less time
+                ? value.saveToRedis(pipelined.getPipeline(), rawKey, entry.isAppend(), memberBatchSize, memberBatchBytes)
+                : value.saveToRedis(pipelined.getPipeline(), rawKey, entry.isAppend(), throttle.scale(memberBatchSize), throttle.scale(memberBatchBytes));
+        if (ttl > 0 && !entry.isAppend()) { // If the key has a time to live rule, set it in Redis
+            if (millisecondTtls) {
+                pipelined.getPipeline().pexpire(rawKey, ttl);
+            } else {
+                pipelined.getPipeline().expire(rawKey, ttl);
+            }
+            commands++;
+        }
+        String keyType = typeName;
+        pipelined.queued(commands, entry.getSize(), error -> keyReplied(entry, keyType, error, failedKeys)); // Sync the pipeline if the batch is full
+    }
+
+    /**
+     * Count the given entry once the server has replied to its commands.
+     *
+     * @param entry the entry imported
+     * @param typeName the name of the type of the key
+     * @param error the first error the server replied with, null if none
+     * @param failedKeys the keys of the worker the server rejected
+     */
+    private void keyReplied(@NonNull DataEntry entry, @NonNull String typeName, RuntimeException error, @NonNull Set<String> failedKeys) {
+        String key = entry.getKey();
+        if (error == null) {
+            if (entry.isAppend()) { // A later page of a key that has already been counted
+                metrics.bytesTransferred(entry.getSize());
+            } else {
+                failedKeys.remove(key); // Imported again, such as by a later data file
+                metrics.keyTransferred(typeName, entry.getSize());
+            }
+            return;
+        }
+        if (!failedKeys.add(key)) { // An earlier page of the key already failed
+            return;
+        }
+        if (entry.isAppend()) { // The key was counted when its first page was imported
+            metrics.keyRejected(typeName);
+        } else {
+            metrics.keyFailed();
+        }
+        if (entry.getKeyValue().getValue() instanceof DumpPayload) { // RESTORE checks the RDB version and checksum of the payload
+            System.err.printf("Cannot import '%s' as the server rejected its DUMP payload%s: %s%n", key,
+                    DumpCodec.isIncompatible(error) ? ", which is likely from a newer version of Redis" : "", error.getMessage());
+        } else {
+            System.err.printf("Cannot import '%s' as the server replied with an error: %s%n", key, error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package me.braydon.redis.task;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import me.braydon.redis.io.JsonStrings;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Decides which keys are transferred.
+ * <p>
+ * When reading from a database the pattern and type are
+ * sent with every SCAN, so the server only returns the
+ * keys that match and the rest never cross the wire. When
+ * importing, the same checks are made against the entries
+ * in the data file instead.
+ * </p>
+ *
+ * @author Braydon
+ */
+@Builder(toBuilder = true) @Getter @ToString
+public final class KeyFilter {
+    /**
+     * The glob-style pattern the key names must
+     * match, null to match every key name.
+     */
+    private final String pattern;
+
+    /**
+     * The name of the type the keys must
+     * be, such as "hash", null for any type.
+     */
+    private final String typeName;
+
+    /**
+     * The maximum amount of bytes a key may use,
+     * zero for no limit. Larger keys are skipped.
+     * <p>
+     * When reading from a database this is the size
+     * reported by MEMORY USAGE, when importing it is
+     * the size of the entry in the data file.
+     * </p>
+     */
+    private final long maxBytes;
+
+    /**
+     * The hash slots the keys must be in, null for any slot.
+     * <p>
+     * SCAN can't be limited to a slot, so the key
+     * names are checked once they have been scanned,
+     * before any of the keys are read.
+     * </p>
+     */
+    @ToString.Exclude private final BitSet slots;
+
+    /**
+     * Apply the pattern of this filter to the given SCAN parameters.
+     *
+     * @param scanParams the parameters to apply to
+     * @return the parameters
+     */
+    @NonNull
+    public ScanParams applyTo(@NonNull ScanParams scanParams) {
+        if (pattern != null) {
+            scanParams.match(pattern);
+        }
+        return scanParams;
+    }
+
+    /**
+     * Check whether a key with the given name and type passes this filter.
+     *
+     * @param key the name of the key
+     * @param typeName the name of the key type
+     * @return whether the key passes
+     */
+    public boolean matches(@NonNull String key, @NonNull String typeName) {
+        return (this.typeName == null || this.typeName.equals(typeName)) && matchesName(key);
+    }
+
+    /**
+     * Check whether the given key name matches the pattern of this filter.
+     *
+     * @param key the name of the key
+     * @return whether the name matches
+     */
+    public boolean matchesName(@NonNull String key) {
+        return (pattern == null || matches(pattern, 0, key, 0)) && (slots == null || slots.get(JedisClusterCRC16.getSlot(JsonStrings.decode(key))));
+    }
+
+    /**
+     * Leave out the given scanned key names that
+     * aren't in the hash slots of this filter.
+     *
+     * @param keys the key names as they are stored, already matched against the pattern by the server
+     * @return the key names in the slots, the given list if the keys aren't limited to slots
+     */
+    @NonNull
+    public List<byte[]> filterSlots(@NonNull List<byte[]> keys) {
+        if (slots == null) {
+            return keys;
+        }
+        List<byte[]> filtered = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            if (slots.get(JedisClusterCRC16.getSlot(key))) {
+                filtered.add(key);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Get the literal start of the pattern of this
+     * filter, which every matching key name starts with.
+     *
+     * @return the characters before the first special one, empty if there is no pattern
+     */
+    @NonNull
+    public String getPrefix() {
+        if (pattern == null) {
+            return "";
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                return pattern.substring(0, i);
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Check whether a key of the given size is over the maximum.
+     *
+     * @param bytes the size of the key in bytes
+     * @return whether the key is too large
+     */
+    public boolean isTooLarge(long bytes) {
+        return maxBytes > 0L && bytes > maxBytes;
+    }
+
+    /**
+     * Match the given key name against the given glob-style pattern,
+     * the same way the server matches the pattern given to SCAN.
+     * <p>
+     * {@code *} matches any run of characters, {@code ?} matches a
+     * single character, {@code [abc]}, {@code [^abc]} and {@code [a-z]}
+     * match a set of characters, and {@code \} escapes the next one.
+     * </p>
+     *
+     * @param pattern the pattern
+     * @param p the index in the pattern to match from
+     * @param key the key name
+     * @param k the index in the key name to match from
+     * @return whether the rest of the key name matches the rest of the pattern
+     */
+    private static boolean matches(@NonNull String pattern, int p, @NonNull String key, int k) {
+        while (p < pattern.length()) {
+            char c = pattern.charAt(p);
+            switch (c) {
+                case '*' -> {
+                    while (p + 1 < pattern.length() && pattern.charAt(p + 1) == '*') { // Consecutive stars match the same as one
+                        p++;
+                    }
+                    if (p + 1 == pattern.length()) { // A trailing star matches the rest of the key name
+                        return true;
+                    }
+                    for (int i = k; i <= key.length(); i++) {
+                        if (matches(pattern, p + 1, key, i)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                case '?' -> {
+                    if (k == key.length()) {
+                        return false;
+                    }
+                    k++;
+                }
+                case '[' -> {
+                    if (k == key.length()) {
+                        return false;
+                    }
+                    char actual = key.charAt(k++);
+                    p++;
+                    boolean not = p < pattern.length() && pattern.charAt(p) == '^';
+                    if (not) {
+                        p++;
+                    }
+                    boolean match = false;
+                    while (p < pattern.length() && pattern.charAt(p) != ']') {
+                        if (pattern.charAt(p) == '\\' && p + 1 < pattern.length()) { // An escaped character in the set
+                            match |= pattern.charAt(++p) == actual;
+                        } else if (p + 2 < pattern.length() && pattern.charAt(p + 1) == '-') { // A range of characters
+                            char start = pattern.charAt(p);
+                            char end = pattern.charAt(p + 2);
+                            match |= actual >= Math.min(start, end) && actual <= Math.max(start, end);
+                            p += 2;
+                        } else {
+                            match |= pattern.charAt(p) == actual;
+                        }
+                        p++;
+                    }
+                    if (match == not) {
+                        return false;
+                    }
+                }
+                case '\\' -> {
+                    if (p + 1 < pattern.length()) { // Match the escaped character literally
+                        c = pattern.charAt(++p);
+                    }
+                    if (k == key.length() || key.charAt(k) != c) {
+                        return false;
+                    }
+                    k++;
+                }
+                default -> {
+                    if (k == key.length() || key.charAt(k) != c) {
+                        return false;
+                    }
+                    k++;
+                }
+            }
+            p++;
+        }
+        return k == key.length();
+    }
+}
@@ -0,0 +1,714 @@
+package me.braydon.redis.task;
+
+import lombok.Builder;
+import lombok.NonNull;
+import me.braydon.redis.common.LatencyThrottle;
+import me.braydon.redis.io.DataWriter;
+import me.braydon.redis.io.JsonStrings;
+import me.braydon.redis.metrics.LatencyHistogram;
+import me.braydon.redis.metrics.TransferMetrics;
+import me.braydon.redis.type.KeyCodecs;
+import me.braydon.redis.type.KeyPage;
+import me.braydon.redis.type.KeyValue;
+import me.braydon.redis.type.ReadableKeyCodec;
+import me.braydon.redis.type.impl.DumpCodec;
+import me.braydon.redis.type.impl.DumpPayload;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Reads every key in a database and writes it to a {@link DataWriter}.
+ * <p>
+ * A single thread walks the keyspace with SCAN and hands
+ * each page of keys to a pool of workers. Each worker
+ * fetches its page on its own connection and then writes
+ * the keys to the shared writer, taking turns so the
+ * pages are written in the order they were scanned.
+ * </p>
+ *
+ * @author Braydon
+ * @see ExportTask for exporting to a data file
+ * @see MigrateTask for migrating to another database
+ */
+@Builder
+final class KeyspaceScanner {
+    /**
+     * The codec used to read the DUMP payloads of keys.
+     */
+    private static final DumpCodec DUMP_CODEC = new DumpCodec();
+
+    /**
+     * The argument of the fingerprint script returning only the expiry of a key.
+     */
+    private static final byte[] EXPIRY_ONLY = SafeEncoder.encode(Fingerprints.EXPIRY_ONLY);
+
+    /**
+     * The pool to borrow connections from.
+     * <p>
+     * This must be able to hand out a connection
+     * to the scanner and to every worker at once.
+     * </p>
+     */
+    @NonNull private final JedisPool pool;
+
+    /**
+     * How the keys should be read.
+     */
+    @NonNull private final ExportMode mode;
+
+    /**
+     * The COUNT hint to use for each SCAN.
+     */
+    private final int scanCount;
+
+    /**
+     * The amount of workers to fetch pages with.
+     */
+    private final int threads;
+
+    /**
+     * The amount of members above which a
+     * key is read and written in pages.
+     */
+    private final int largeKeySize;
+
+    /**
+     * The amount of members to request
+     * per page when reading a large key.
+     */
+    private final int pageSize;
+
+    /**
+     * The filter the keys must pass, null to read every key.
+     */
+    private final KeyFilter filter;
+
+    /**
+     * The throttle to slow the reads down with, null to read as fast as possible.
+     */
+    private final LatencyThrottle throttle;
+
+    /**
+     * The lock to hold while writing, when the writer is shared
+     * with the scanners of other servers, null if it isn't shared.
+     */
+    private final ReentrantLock writeLock;
+
+    /**
+     * The fingerprints to record the keys in, and to leave
+     * out the unchanged keys with, null to read every key.
+     */
+    private final Fingerprints fingerprints;
+
+    /**
+     * Whether the time-to-lives are handed to the writer in
+     * milliseconds, as PTTL returns them, rather than rounded
+     * up to the seconds a data file stores.
+     */
+    private final boolean millisecondTtls;
+
+    /**
+     * Scan the keyspace from the given cursor, writing
+     * every key found to the given writer.
+     *
+     * @param writer the writer to write the keys to
+     * @param metrics the metrics to record the keys in
+     * @param cursor the cursor to start scanning from
+     * @param listener the listener to call once each page has been written, null for none
+     * @return the amount of keys found while scanning
+     * @throws InterruptedException if interrupted while scanning
+     * @throws Exception the first error the scanner or a worker ran into
+     */
+    long scan(@NonNull DataWriter writer, @NonNull TransferMetrics metrics, @NonNull String cursor,
+              PageListener listener) throws Exception {
+        ScanParams scanParams = new ScanParams().count(scanCount);
+        byte[] typeName = null; // The type the server should return keys of, null for any
+        if (filter != null) { // Only fetch the keys that match
+            filter.applyTo(scanParams);
+            typeName = filter.getTypeName() == null ? null : SafeEncoder.encode(filter.getTypeName());
+        }
+        long found = 0L; // The amount of keys found while scanning
+        AtomicReference<Exception> error = new AtomicReference<>(); // The first error a worker ran into
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2); // Don't scan too far ahead of the workers
+        PageSequencer sequencer = new PageSequencer();
+        try (Jedis jedis = pool.getResource()) {
+            byte[] digestSha = fingerprints == null ? null : SafeEncoder.encode(jedis.scriptLoad(Fingerprints.SCRIPT)); // Fingerprint the keys on the server
+            long pages = 0L; // The amount of pages handed to the workers
+            do {
+                scanParams.count(throttle == null ? scanCount : throttle.scale(scanCount)); // Smaller pages while the server is slow
+                long start = System.nanoTime();
+                ScanResult<byte[]> page = typeName == null ? jedis.scan(SafeEncoder.encode(cursor), scanParams)
+                        : jedis.scan(SafeEncoder.encode(cursor), scanParams, typeName); // Fetch the next page of keys, as the bytes of their names
+                metrics.getLatency("scan").recordSince(start);
+                cursor = page.getCursor();
+                List<byte[]> keys = filter == null ? page.getResult() : filter.filterSlots(page.getResult()); // Leave out the keys in other slots
+                if (keys.isEmpty()) { // SCAN may return empty pages, nothing to do
+                    continue;
+                }
+                found += keys.size();
+                long sequence = pages++;
+                String nextCursor = cursor;
+                long foundBefore = found; // The amount of keys found before the next cursor
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try (Jedis worker = pool.getResource()) {
+                        if (mode == ExportMode.DUMP) {
+                            readDumpPage(worker, keys, digestSha, writer, metrics, sequencer, sequence); // Read the payloads of the keys in the page
+                        } else {
+                            readPage(worker, keys, digestSha, writer, metrics, sequencer, sequence); // Read the keys in the page
+                        }
+                        if (listener != null) { // Still holding the turn, every page before the next cursor has been written
+                            listener.pageWritten(nextCursor, foundBefore);
+                        }
+                        sequencer.endTurn();
+                    } catch (Exception ex) {
+                        error.compareAndSet(null, ex);
+                        sequencer.fail(); // The pages after this one must not be written
+                    } finally {
+                        if (writeLock != null && writeLock.isHeldByCurrentThread()) { // Let the other servers write
+                            writeLock.unlock();
+                        }
+                        inFlight.release();
+                    }
+                });
+            } while (!cursor.equals(ScanParams.SCAN_POINTER_START) && error.get() == null); // A cursor of 0 means the scan is complete
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS); // Wait for the workers to write their pages
+        } finally {
+            executor.shutdownNow();
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return found;
+    }
+
+    /**
+     * Read the given page of keys and write them to the given writer.
+     * <p>
+     * The TYPE of every key in the page is fetched in one
+     * pipeline, along with the MEMORY USAGE when the keys are
+     * limited in size, followed by a pipeline holding the size
+     * of every collection and a final one holding the type
+     * specific reads and the PTTL, so the page costs three round
+     * trips rather than several per key. A key removed before it
+     * is read has no PTTL, it is reported rather than written
+     * as an empty key.
+     * </p>
+     * <p>
+     * When the keys are compared with a previous export, their
+     * fingerprints are fetched in a pipeline of their own before
+     * the reads, once the keys over the size limit have been left
+     * out, so only the keys that changed are read and a key too
+     * large to export is never serialized by the server.
+     * </p>
+     * <p>
+     * Collections with more members than the large key size
+     * are left out of the final pipeline. They are read one
+     * page at a time with HSCAN, SSCAN, ZSCAN or a ranged
+     * LRANGE and streamed to the writer, so no single reply
+     * blocks the server or holds the entire key in memory.
+     * Their fingerprints are digested from those pages too.
+     * </p>
+     *
+     * @param jedis the jedis connection
+     * @param rawKeys the names of the keys in the page, as they are stored
+     * @param digestSha the SHA of the loaded fingerprint script, null if not fingerprinting
+     * @param writer the writer to write the keys to
+     * @param metrics the metrics to record the keys in
+     * @param sequencer the sequencer to wait for the turn to write in
+     * @param page the sequence number of the page
+     * @throws IOException if writing the keys fails
+     * @throws InterruptedException if interrupted while waiting for the turn to write
+     */
+    private void readPage(@NonNull Jedis jedis, @NonNull List<byte[]> rawKeys, byte[] digestSha, @NonNull DataWriter writer,
+                          @NonNull TransferMetrics metrics, @NonNull PageSequencer sequencer, long page)
+            throws IOException, InterruptedException {
+        Pipeline pipeline = jedis.pipelined(); // Create a pipeline to queue the commands for the page in
+        List<String> keys = toNames(rawKeys);
+
+        // Fetch the type of every key in the page
+        List<Response<String>> types = new ArrayList<>(keys.size());
+        List<Response<Long>> usages = isSizeLimited() ? new ArrayList<>(keys.size()) : null;
+        for (byte[] rawKey : rawKeys) {
+            types.add(pipeline.type(rawKey));
+            if (usages != null) { // Check the size before reading the value
+                usages.add(pipeline.memoryUsage(rawKey));
+            }
+        }
+        sync(pipeline, metrics.getLatency("type"));
+
+        // Fetch the size of every supported collection in the page
+        ReadableKeyCodec<?>[] codecs = new ReadableKeyCodec<?>[keys.size()];
+        List<Response<Long>> lengths = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            String typeName = types.get(i).get(); // The name of the key type
+            ReadableKeyCodec<?> codec = typeName.equals(DumpCodec.TYPE_NAME) ? null : KeyCodecs.getReadableCodec(typeName); // Get the codec of the key type
+            if (codec == null) { // If the key type is not supported, skip it
+                lengths.add(null);
+                metrics.keyFailed();
+                if (!typeName.equals("none")) { // Unless it was removed, it still exists
+                    skipFingerprint(key);
+                }
+                System.err.printf("Cannot export '%s' as the type (%s) is not supported%n", key, typeName);
+                continue;
+            }
+            if (usages != null && isTooLarge(key, usages.get(i).get(), metrics)) {
+                lengths.add(null);
+                skipFingerprint(key);
+                continue;
+            }
+            codecs[i] = codec;
+            lengths.add(codec.queueLength(pipeline, rawKeys.get(i))); // Null if the type is never paged
+        }
+        sync(pipeline, metrics.getLatency("length"));
+        boolean[] large = new boolean[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            Response<Long> length = lengths.get(i);
+            large[i] = length != null && length.get() > largeKeySize;
+        }
+
+        // Leave out the keys that are unchanged since the previous export
+        long[] keyDigests = new long[keys.size()]; // Recorded once the keys are written
+        if (digestSha != null) {
+            List<Response<Object>> digests = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                if (codecs[i] == null) {
+                    digests.add(null);
+                } else if (large[i]) { // A large key is digested from its pages instead, only its expiry is fetched
+                    digests.add(pipeline.evalsha(digestSha, 1, rawKeys.get(i), EXPIRY_ONLY));
+                } else {
+                    digests.add(pipeline.evalsha(digestSha, 1, rawKeys.get(i)));
+                }
+            }
+            sync(pipeline, metrics.getLatency("fingerprint"));
+            for (int i = 0; i < keys.size(); i++) {
+                if (codecs[i] == null) {
+                    continue;
+                }
+                String key = keys.get(i);
+                Object reply = digests.get(i).get();
+                long digest = large[i] ? digestLargeKey(jedis, rawKeys.get(i), codecs[i], reply, metrics) : Fingerprints.toDigest(reply);
+                if (isUnchanged(key, digest, metrics)) { // Nothing to read
+                    codecs[i] = null;
+                    continue;
+                }
+                keyDigests[i] = digest;
+            }
+        }
+
+        // Queue the type specific reads for every key in the page that isn't large, followed by the PTTL
+        List<Supplier<? extends KeyValue<?>>> values = new ArrayList<>(keys.size());
+        List<Response<Long>> ttls = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            ReadableKeyCodec<?> codec = codecs[i];
+            values.add(codec == null || large[i] ? null : queueRead(pipeline, codec, rawKeys.get(i))); // Null if the key failed or is large
+            ttls.add(codec == null ? null : pipeline.pttl(rawKeys.get(i))); // After the read, so a key removed before it is caught
+        }
+        sync(pipeline, metrics.getLatency("read"));
+
+        // Write the keys, the turn is held until the caller ends it
+        sequencer.awaitTurn(page); // The writer is shared between the workers
+        if (writeLock != null) { // And with the scanners of the other servers
+            writeLock.lock();
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            ReadableKeyCodec<?> codec = codecs[i];
+            if (codec == null) { // The key failed to export, was skipped or is unchanged
+                continue;
+            }
+            String key = keys.get(i);
+            long pttl = ttls.get(i).get();
+            if (pttl == -2L) { // The key was removed after it was scanned, its read came back empty
+                metrics.keyFailed();
+                skipFingerprint(key);
+                System.err.printf("Cannot export '%s' as it no longer exists%n", key);
+                continue;
+            }
+            fingerprint(key, keyDigests[i]);
+            long ttl = toTtl(pttl);
+            Supplier<? extends KeyValue<?>> value = values.get(i);
+            long position = writer.getPosition();
+            if (value == null) { // Stream the large key one page at a time, the other workers wait for it to finish
+                readLargeKey(jedis, writer, key, rawKeys.get(i), ttl, codec, metrics);
+            } else {
+                value.get().writeTo(writer, key, ttl);
+            }
+            metrics.keyTransferred(codec.getTypeName(), writer.getPosition() - position);
+        }
+    }
+
+    /**
+     * Queue the read of the given key with the given codec.
+     *
+     * @param pipeline the pipeline to queue the read in
+     * @param codec the codec of the key type
+     * @param key the key to read
+     * @param <T> the type of value
+     * @return the pending value, available once the pipeline has been synced
+     */
+    @NonNull
+    private static <T> Supplier<KeyValue<T>> queueRead(@NonNull Pipeline pipeline, @NonNull ReadableKeyCodec<T> codec, byte @NonNull [] key) {
+        Supplier<T> value = codec.queueRead(pipeline, key);
+        return () -> new KeyValue<>(codec, value.get());
+    }
+
+    /**
+     * Stream the given large key to the given
+     * writer, one page of members at a time.
+     *
+     * @param jedis the jedis connection
+     * @param writer the writer to write the key to
+     * @param key the key name
+     * @param rawKey the encoded key name
+     * @param ttl the time-to-live of the key, as converted by {@link #toTtl(long)}
+     * @param codec the codec of the key type
+     * @param metrics the metrics to record the page reads in
+     * @param <T> the type of value
+     * @throws IOException if writing the key fails
+     * @throws InterruptedException if interrupted while waiting for the throttle
+     */
+    private <T> void readLargeKey(@NonNull Jedis jedis, @NonNull DataWriter writer, @NonNull String key, byte @NonNull [] rawKey,
+                                  long ttl, @NonNull ReadableKeyCodec<T> codec, @NonNull TransferMetrics metrics)
+            throws IOException, InterruptedException {
+        writer.beginKey(key, ttl, codec);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            KeyPage<T> page = readKeyPage(jedis, rawKey, cursor, codec, metrics);
+            writer.writeMembers(codec, page.getValue());
+            cursor = page.getCursor();
+        } while (!cursor.equals(ScanParams.SCAN_POINTER_START)); // A cursor of 0 means every page has been read
+        writer.endKey();
+    }
+
+    /**
+     * Get the fingerprint of the given large key by digesting
+     * its members one page at a time, rather than having the
+     * server serialize the entire key in a single call.
+     *
+     * @param jedis the jedis connection
+     * @param rawKey the encoded key name
+     * @param codec the codec of the key type
+     * @param expiry the expiry of the key, as replied by the fingerprint script
+     * @param metrics the metrics to record the page reads in
+     * @param <T> the type of value
+     * @return the fingerprint
+     * @throws InterruptedException if interrupted while waiting for the throttle
+     */
+    private <T> long digestLargeKey(@NonNull Jedis jedis, byte @NonNull [] rawKey, @NonNull ReadableKeyCodec<T> codec,
+                                    Object expiry, @NonNull TransferMetrics metrics) throws InterruptedException {
+        long digest = 0L;
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            KeyPage<T> page = readKeyPage(jedis, rawKey, cursor, codec, metrics);
+            digest = codec.digest(digest, page.getValue());
+            cursor = page.getCursor();
+        } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+        return Fingerprints.ofMembers(codec.getTypeName(), expiry, digest);
+    }
+
+    /**
+     * Read the next page of members from the given
+     * large key, waiting for the throttle first.
+     *
+     * @param jedis the jedis connection
+     * @param rawKey the encoded key name
+     * @param cursor the cursor returned by the previous page
+     * @param codec the codec of the key type
+     * @param metrics the metrics to record the page read in
+     * @param <T> the type of value
+     * @return the page
+     * @throws InterruptedException if interrupted while waiting for the throttle
+     */
+    @NonNull
+    private <T> KeyPage<T> readKeyPage(@NonNull Jedis jedis, byte @NonNull [] rawKey, @NonNull String cursor,
+                                       @NonNull ReadableKeyCodec<T> codec, @NonNull TransferMetrics metrics) throws InterruptedException {
+        if (throttle != null) {
+            throttle.acquire();
+        }
+        long start = System.nanoTime();
+        try {
+            return codec.readPage(jedis, rawKey, cursor, throttle == null ? pageSize : throttle.scale(pageSize));
+        } finally {
+            if (throttle != null) {
+                throttle.release();
+            }
+            metrics.getLatency("page").recordSince(start);
+        }
+    }
+
+    /**
+     * Read the DUMP payloads of the given page of keys
+     * and write them to the given writer.
+     * <p>
+     * The TYPE, PTTL and DUMP of every key in the page are
+     * fetched in a single pipeline. The payload is the server's
+     * own serialized form, so every type is supported. When
+     * the keys are limited in size, their MEMORY USAGE is
+     * fetched first so the large keys are never dumped. When
+     * they are compared with a previous export, the fingerprints
+     * of the keys within the limit are fetched next, so the
+     * unchanged keys are never dumped.
+     * </p>
+     *
+     * @param jedis the jedis connection
+     * @param rawKeys the names of the keys in the page, as they are stored
+     * @param digestSha the SHA of the loaded fingerprint script, null if not fingerprinting
+     * @param writer the writer to write the payloads to
+     * @param metrics the metrics to record the keys in
+     * @param sequencer the sequencer to wait for the turn to write in
+     * @param page the sequence number of the page
+     * @throws IOException if writing the payloads fails
+     * @throws InterruptedException if interrupted while waiting for the turn to write
+     */
+    private void readDumpPage(@NonNull Jedis jedis, @NonNull List<byte[]> rawKeys, byte[] digestSha, @NonNull DataWriter writer,
+                              @NonNull TransferMetrics metrics, @NonNull PageSequencer sequencer, long page)
+            throws IOException, InterruptedException {
+        Pipeline pipeline = jedis.pipelined(); // Create a pipeline to queue the commands for the page in
+        List<String> keys = toNames(rawKeys);
+        List<Long> keyDigests = new ArrayList<>(keys.size()); // Recorded once the keys are written
+        if (isSizeLimited()) { // Check the size of the keys before dumping them
+            List<Response<Long>> usages = new ArrayList<>(keys.size());
+            for (byte[] rawKey : rawKeys) {
+                usages.add(pipeline.memoryUsage(rawKey));
+            }
+            sync(pipeline, metrics.getLatency("memory"));
+            List<String> remaining = new ArrayList<>(keys.size()); // The keys within the limit
+            List<byte[]> remainingRaw = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                if (isTooLarge(key, usages.get(i).get(), metrics)) {
+                    skipFingerprint(key);
+                } else {
+                    remaining.add(key);
+                    remainingRaw.add(rawKeys.get(i));
+                }
+            }
+            keys = remaining;
+            rawKeys = remainingRaw;
+        }
+        if (digestSha != null) { // Check the fingerprint of the keys within the limit before dumping them
+            List<Response<Object>> digests = new ArrayList<>(keys.size());
+            for (byte[] rawKey : rawKeys) {
+                digests.add(pipeline.evalsha(digestSha, 1, rawKey));
+            }
+            sync(pipeline, metrics.getLatency("fingerprint"));
+            List<String> remaining = new ArrayList<>(keys.size()); // The keys that have changed
+            List<byte[]> remainingRaw = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                long digest = Fingerprints.toDigest(digests.get(i).get());
+                if (!isUnchanged(key, digest, metrics)) {
+                    keyDigests.add(digest);
+                    remaining.add(key);
+                    remainingRaw.add(rawKeys.get(i));
+                }
+            }
+            keys = remaining;
+            rawKeys = remainingRaw;
+        }
+        List<Supplier<DumpPayload>> dumps = new ArrayList<>(keys.size());
+        for (byte[] rawKey : rawKeys) {
+            dumps.add(DUMP_CODEC.queueRead(pipeline, rawKey)); // Queue the TYPE, PTTL and DUMP of the key
+        }
+        sync(pipeline, metrics.getLatency("dump"));
+
+        // Write the payloads, the turn is held until the caller ends it
+        sequencer.awaitTurn(page); // The writer is shared between the workers
+        if (writeLock != null) { // And with the scanners of the other servers
+            writeLock.lock();
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            DumpPayload dump = dumps.get(i).get();
+            if (dump.getPayload() == null) { // The key was removed after it was scanned
+                metrics.keyFailed();
+                skipFingerprint(key);
+                System.err.printf("Cannot export '%s' as it no longer exists%n", key);
+                continue;
+            }
+            fingerprint(key, digestSha == null ? Fingerprints.UNKNOWN : keyDigests.get(i));
+            long position = writer.getPosition();
+            writer.writeKey(key, toTtl(dump.getPttl()), DUMP_CODEC, dump);
+            metrics.keyTransferred(dump.getTypeName(), writer.getPosition() - position);
+        }
+    }
+
+    /**
+     * Sync the given pipeline, waiting for the throttle first.
+     *
+     * @param pipeline the pipeline to sync
+     * @param latency the histogram to record the latency of the sync in
+     * @throws InterruptedException if interrupted while waiting for the throttle
+     */
+    private void sync(@NonNull Pipeline pipeline, @NonNull LatencyHistogram latency) throws InterruptedException {
+        if (throttle != null) {
+            throttle.acquire();
+        }
+        long start = System.nanoTime();
+        try {
+            pipeline.sync();
+        } finally {
+            if (throttle != null) {
+                throttle.release();
+            }
+        }
+        latency.recordSince(start);
+    }
+
+    /**
+     * Check whether the keys are limited in size.
+     *
+     * @return whether keys over a size are skipped
+     */
+    private boolean isSizeLimited() {
+        return filter != null && filter.getMaxBytes() > 0L;
+    }
+
+    /**
+     * Check whether the given key is over the size limit,
+     * recording and reporting it as skipped if it is.
+     *
+     * @param key the name of the key
+     * @param usage the MEMORY USAGE reply of the key, null if the key no longer exists
+     * @param metrics the metrics to record the skipped key in
+     * @return whether the key is too large
+     */
+    private boolean isTooLarge(@NonNull String key, Long usage, @NonNull TransferMetrics metrics) {
+        if (usage == null || !filter.isTooLarge(usage)) {
+            return false;
+        }
+        metrics.keySkipped();
+        System.err.printf("Skipping '%s' as it uses %s bytes, over the limit of %s%n", key, usage, filter.getMaxBytes());
+        return true;
+    }
+
+    /**
+     * Check whether the given key is unchanged since the previous
+     * export, recording it as unchanged if it is.
+     *
+     * @param key the name of the key
+     * @param digest the fingerprint of the key, {@link Fingerprints#UNKNOWN} if not fingerprinting
+     * @param metrics the metrics to record the unchanged key in
+     * @return whether the key is unchanged
+     * @throws IOException if recording the fingerprint fails
+     */
+    private boolean isUnchanged(@NonNull String key, long digest, @NonNull TransferMetrics metrics) throws IOException {
+        if (fingerprints == null || !fingerprints.isUnchanged(key, digest)) {
+            return false;
+        }
+        fingerprints.record(key, digest);
+        metrics.keyUnchanged();
+        return true;
+    }
+
+    /**
+     * Record the fingerprint of the given key, if it still exists.
+     *
+     * @param key the name of the key
+     * @param digest the fingerprint of the key, {@link Fingerprints#UNKNOWN} if it no longer exists
+     * @throws IOException if recording the fingerprint fails
+     */
+    private void fingerprint(@NonNull String key, long digest) throws IOException {
+        if (fingerprints != null && digest != Fingerprints.UNKNOWN) {
+            fingerprints.record(key, digest);
+        }
+    }
+
+    /**
+     * Record the given key without its fingerprint, as it isn't
+     * exported. It is read again by the next export rather than
+     * left out as unchanged, and isn't mistaken for a deleted
+     * key either.
+     *
+     * @param key the name of the key
+     * @throws IOException if recording the key fails
+     */
+    private void skipFingerprint(@NonNull String key) throws IOException {
+        if (fingerprints != null) {
+            fingerprints.skip(key);
+        }
+    }
+
+    /**
+     * Convert the given key names, as they are stored, to the
+     * names written to the data file and shown in messages.
+     * <p>
+     * The names are only converted to text once they have been
+     * read, every command is sent with the exact bytes of the
+     * name. A name that isn't valid UTF-8 is written as base64,
+     * so it is restored as the same bytes.
+     * </p>
+     *
+     * @param rawKeys the names as they are stored
+     * @return the names as text
+     * @see JsonStrings for the conversion
+     */
+    @NonNull
+    private static List<String> toNames(@NonNull List<byte[]> rawKeys) {
+        List<String> keys = new ArrayList<>(rawKeys.size());
+        for (byte[] rawKey : rawKeys) {
+            keys.add(JsonStrings.encode(rawKey));
+        }
+        return keys;
+    }
+
+    /**
+     * Convert the given PTTL reply to the time-to-live handed to the writer.
+     *
+     * @param pttl the time-to-live in milliseconds
+     * @return the time-to-live in milliseconds if {@link #millisecondTtls}, otherwise in seconds
+     */
+    private long toTtl(long pttl) {
+        return millisecondTtls ? pttl : toSeconds(pttl);
+    }
+
+    /**
+     * Convert the given PTTL reply to seconds.
+     * <p>
+     * The data file stores the time-to-live in seconds,
+     * the value is rounded up so a key that is about to
+     * expire is never exported as a persistent key.
+     * </p>
+     *
+     * @param pttl the time-to-live in milliseconds
+     * @return the time-to-live in seconds
+     */
+    private static long toSeconds(long pttl) {
+        return pttl < 0 ? pttl : (pttl + 999L) / 1000L; // Negative values have special meaning (no expiry, or missing)
+    }
+
+    /**
+     * Called once a page of keys has been written.
+     */
+    @FunctionalInterface
+    interface PageListener {
+        /**
+         * Called while the turn of the page is still held, so
+         * no other page is written until this returns.
+         *
+         * @param nextCursor the cursor that follows the page
+         * @param found the amount of keys found up to and including the page
+         * @throws IOException if handling the page fails
+         */
+        void pageWritten(@NonNull String nextCursor, long found) throws IOException;
+    }
+}
@@ -0,0 +1,213 @@
+package me.braydon.redis.task;
+
+import lombok.Builder;
+import lombok.NonNull;
+import me.braydon.redis.common.LatencyThrottle;
+import me.braydon.redis.metrics.ProgressReporter;
+import me.braydon.redis.metrics.TransferMetrics;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.ScanParams;
+
+/**
+ * Migrates the keys in a database to a database on
+ * another server, or at another index, without writing
+ * them to a data file in between.
+ * <p>
+ * A {@link KeyspaceScanner} reads the keys from the source
+ * with its own workers and hands them to the pipelined
+ * {@link ImportWorkers} writing to the target, through
+ * bounded queues. The copy runs as fast as the slower of
+ * the two servers allows, while the memory used stays
+ * bounded by the depth of the queues.
+ * </p>
+ *
+ * @author Braydon
+ */
+@Builder
+public final class MigrateTask {
+    /**
+     * The pool to borrow connections to the source from.
+     * <p>
+     * This must be able to hand out a connection
+     * to the scanner and to every reader at once,
+     * and one more to the latency probe if throttled.
+     * </p>
+     */
+    @NonNull private final JedisPool sourcePool;
+
+    /**
+     * The pool to borrow connections to the target from.
+     * <p>
+     * This must be able to hand out a connection to every
+     * writer at once, and one more to the latency probe
+     * if throttled.
+     * </p>
+     */
+    @NonNull private final JedisPool targetPool;
+
+    /**
+     * How the keys should be read from the source.
+     */
+    @NonNull private final ExportMode mode;
+
+    /**
+     * The COUNT hint to use for each SCAN.
+     */
+    private final int scanCount;
+
+    /**
+     * The amount of threads to read from the
+     * source, and to write to the target, with.
+     */
+    private final int threads;
+
+    /**
+     * The amount of members above which a
+     * key is read and written in pages.
+     */
+    private final int largeKeySize;
+
+    /**
+     * The amount of members to request
+     * per page when reading a large key.
+     */
+    private final int pageSize;
+
+    /**
+     * The filter the keys must pass, null to migrate every key.
+     */
+    private final KeyFilter filter;
+
+    /**
+     * The latency ceiling in milliseconds to slow the reads and
+     * writes down to, zero to migrate as fast as possible.
+     * <p>
+     * The source and the target are probed separately,
+     * each only slows down the side that is slow.
+     * </p>
+     */
+    private final int maxLatencyMillis;
+
+    /**
+     * The maximum amount of entries waiting for each writer.
+     */
+    private final int queueDepth;
+
+    /**
+     * The maximum amount of commands to queue before syncing.
+     */
+    private final int batchSize;
+
+    /**
+     * The maximum amount of estimated key bytes to queue before syncing.
+     */
+    private final long batchBytes;
+
+    /**
+     * The maximum amount of members to write per command.
+     */
+    private final int memberBatchSize;
+
+    /**
+     * The maximum amount of member bytes to write per command.
+     */
+    private final long memberBatchBytes;
+
+    /**
+     * Whether to flush the target database prior to migrating.
+     */
+    private final boolean flush;
+
+    /**
+     * The interval in seconds to report the progress at, zero to never report.
+     */
+    private final int progressInterval;
+
+    /**
+     * Migrate the keys from the source to the target.
+     * <p>
+     * The progress of the writes to the target
+     * is reported periodically.
+     * </p>
+     */
+    public void run() {
+        TransferMetrics readMetrics = new TransferMetrics("read"); // The keys read from the source
+        TransferMetrics metrics = new TransferMetrics("migrate"); // The keys written to the target
+        LatencyThrottle sourceThrottle = maxLatencyMillis > 0 ? new LatencyThrottle(sourcePool, maxLatencyMillis, threads, readMetrics.getLatency("probe")) : null;
+        KeyspaceScanner scanner = KeyspaceScanner.builder()
+                .pool(sourcePool)
+                .mode(mode)
+                .scanCount(scanCount)
+                .threads(threads)
+                .largeKeySize(largeKeySize)
+                .pageSize(pageSize)
+                .filter(filter)
+                .throttle(sourceThrottle)
+                .millisecondTtls(true) // Nothing rounds them to seconds in between
+                .build();
+        ImportWorkers workers = ImportWorkers.builder()
+                .pool(targetPool)
+                .metrics(metrics)
+                .threads(threads)
+                .queueDepth(queueDepth)
+                .batchSize(batchSize)
+                .batchBytes(batchBytes)
+                .memberBatchSize(memberBatchSize)
+                .memberBatchBytes(memberBatchBytes)
+                .maxLatencyMillis(maxLatencyMillis) // The workers probe the target themselves
+                .millisecondTtls(true)
+                .build();
+        if (flush) { // If the user wants to flush the target database, flush it
+            workers.flushDatabase();
+        }
+        if (filter == null || (filter.getPattern() == null && filter.getTypeName() == null)) { // How many keys match a filter isn't known up front
+            try (Jedis jedis = sourcePool.getResource()) {
+                metrics.setExpectedKeys(jedis.dbSize()); // An estimate, keys may be added or removed while scanning
+            }
+        }
+        long found = 0L; // The amount of keys found while scanning
+        Exception error = null; // The error the scanner ran into
+        workers.start();
+        ProgressReporter reporter = new ProgressReporter(metrics, "Migrated", progressInterval);
+        try {
+            found = scanner.scan(new ForwardingDataWriter(workers), readMetrics, ScanParams.SCAN_POINTER_START, null);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception ex) {
+            error = ex;
+        } finally {
+            reporter.close();
+            try {
+                workers.finish();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (sourceThrottle != null) { // The scan is done
+                sourceThrottle.close();
+            }
+        }
+        if (workers.getError() != null) { // A writer failed, which stopped the scan
+            error = workers.getError();
+        }
+        if (error != null) { // Something went wrong, the migration is incomplete
+            error.printStackTrace();
+        }
+        long elapsed = Math.max(metrics.getElapsed(), 1L);
+
+        // Log that the migration has finished
+        System.out.printf("Migration finished in %sms (success: %s, failed: %s, skipped: %s, total: %s)%n",
+                elapsed,
+                metrics.getKeys(), // The amount of keys successfully migrated
+                readMetrics.getFailed() + metrics.getFailed(), // The amount of keys that failed to read or write
+                readMetrics.getSkipped(), // The amount of keys over the size limit
+                found // The total amount of keys found while scanning
+        );
+        System.out.printf("Throughput: %.1f keys/s, %.2f MiB/s across %s thread(s)%n",
+                metrics.getKeys() * 1000D / elapsed,
+                metrics.getBytes() * 1000D / elapsed / (1024D * 1024D),
+                threads
+        );
+    }
+}
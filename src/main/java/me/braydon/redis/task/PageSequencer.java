@@ -0,0 +1,52 @@
+package me.braydon.redis.task;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Hands out turns to write pages of keys in the order
+ * they were scanned, while the pages are still fetched
+ * by the workers in parallel.
+ * <p>
+ * Writing in scan order means that once a page has been
+ * written, so has every page scanned before it, so the
+ * cursor that follows it is a consistent checkpoint.
+ * </p>
+ *
+ * @author Braydon
+ */
+final class PageSequencer {
+    private long next; // The sequence number of the page to write next
+    private boolean failed; // Whether a page failed, the pages after it are never written
+
+    /**
+     * Wait until every page before the given one has been written.
+     *
+     * @param page the sequence number of the page
+     * @throws InterruptedException if interrupted while waiting
+     * @throws CancellationException if an earlier page failed
+     */
+    synchronized void awaitTurn(long page) throws InterruptedException {
+        while (!failed && page != next) {
+            wait();
+        }
+        if (failed) {
+            throw new CancellationException("An earlier page failed to export");
+        }
+    }
+
+    /**
+     * End the turn of the page being written.
+     */
+    synchronized void endTurn() {
+        next++;
+        notifyAll();
+    }
+
+    /**
+     * Record that a page failed, releasing every page waiting for its turn.
+     */
+    synchronized void fail() {
+        failed = true;
+        notifyAll();
+    }
+}
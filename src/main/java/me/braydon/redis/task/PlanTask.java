@@ -0,0 +1,876 @@
+package me.braydon.redis.task;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import me.braydon.redis.io.DataFormat;
+import me.braydon.redis.io.DataWriter;
+import me.braydon.redis.io.ParallelGzipOutputStream;
+import me.braydon.redis.type.KeyCodecs;
+import me.braydon.redis.type.KeyPage;
+import me.braydon.redis.type.KeyValue;
+import me.braydon.redis.type.ReadableKeyCodec;
+import me.braydon.redis.type.impl.DumpCodec;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Samples a database to plan an export of it.
+ * <p>
+ * A random sample of the keys is taken with RANDOMKEY, or
+ * with the first few SCANs when the keys are filtered by
+ * name or type, as RANDOMKEY can't be filtered. The TYPE,
+ * MEMORY USAGE and amount of members of every sampled key
+ * are fetched, and the keys small enough to read without
+ * stalling the server are read and written in the format of
+ * the data file, to measure their size in the data file.
+ * </p>
+ * <p>
+ * From the sample, the size of the data file, the spread of
+ * the key sizes and the time the export takes are estimated,
+ * the latter from how long the server took to answer the
+ * sampling pipelines. Settings suited to the keys are then
+ * suggested as an {@link ExportPlan}.
+ * </p>
+ *
+ * @author Braydon
+ */
+@Builder
+public final class PlanTask {
+    /**
+     * The most workers to suggest for each server.
+     */
+    public static final int MAX_THREADS = 16;
+
+    /**
+     * The codec used to read the DUMP payloads of keys.
+     */
+    private static final DumpCodec DUMP_CODEC = new DumpCodec();
+
+    /**
+     * The amounts of sampled keys to fetch per pipeline, taken in turn.
+     * <p>
+     * The pipelines hold different amounts of keys, so the
+     * cost of a pipeline can be told apart from that of a key.
+     * </p>
+     */
+    private static final int[] BATCH_SIZES = { 25, 50, 100, 200 };
+
+    /**
+     * The most large keys to read a page of.
+     */
+    private static final int MAX_PAGED_KEYS = 5;
+
+    /**
+     * The most SCANs to sample the keys with when they are filtered.
+     */
+    private static final int MAX_SCANS = 1000;
+
+    /**
+     * The amount of PINGs to measure the round trip with.
+     */
+    private static final int PINGS = 5;
+
+    /**
+     * The MEMORY USAGE above which a sampled key isn't read,
+     * its size in the data file is estimated instead.
+     */
+    private static final long READ_LIMIT_BYTES = 1024L * 1024L;
+
+    /**
+     * The amount of data file bytes to aim for per page of keys.
+     */
+    private static final long PAGE_BYTES = 1024L * 1024L;
+
+    /**
+     * The amount of data file bytes above which a key
+     * should be read in pages, rather than in one reply.
+     */
+    private static final long LARGE_KEY_BYTES = 1024L * 1024L;
+
+    /**
+     * The amount of data file bytes to aim for per page of members.
+     */
+    private static final long MEMBER_PAGE_BYTES = 256L * 1024L;
+
+    /**
+     * The limits of the key size buckets reported, by MEMORY USAGE.
+     */
+    private static final long[] SIZE_BUCKETS = { 1024L, 64L * 1024L, 1024L * 1024L, 16L * 1024L * 1024L };
+
+    /**
+     * The pools to borrow connections from, one for each
+     * server to sample, such as every master of a cluster.
+     */
+    @Singular @NonNull private final List<JedisPool> pools;
+
+    /**
+     * The format the data file would be written in.
+     */
+    @NonNull private final DataFormat format;
+
+    /**
+     * Whether the data file would be gzip compressed.
+     */
+    private final boolean compress;
+
+    /**
+     * How the keys would be exported.
+     */
+    @NonNull private final ExportMode mode;
+
+    /**
+     * The filter the keys must pass, null to plan for every key.
+     */
+    private final KeyFilter filter;
+
+    /**
+     * The amount of keys to sample across every server.
+     */
+    private final int sampleSize;
+
+    /**
+     * The COUNT hint the export would use for each SCAN.
+     */
+    private final int scanCount;
+
+    /**
+     * The amount of workers the export would fetch pages from each server with.
+     */
+    private final int threads;
+
+    /**
+     * The amount of members above which the
+     * export would read a key in pages.
+     */
+    private final int largeKeySize;
+
+    /**
+     * The amount of members the export would
+     * request per page of a large key.
+     */
+    private final int pageSize;
+
+    /**
+     * Sample the database and report the plan for exporting it.
+     *
+     * @return the plan, null if there are no keys to plan for or sampling failed
+     */
+    public ExportPlan run() {
+        long started = System.currentTimeMillis();
+        List<Sample> samples = new ArrayList<>();
+        Timing timing = new Timing();
+        long expectedKeys = 0L; // The estimated amount of keys that match the filter
+        double compression; // The size of the keys read once compressed, relative to their size
+        try (SizeProbe probe = new SizeProbe(format, compress)) {
+            long[] sizes = new long[pools.size()];
+            long total = 0L;
+            for (int i = 0; i < pools.size(); i++) {
+                try (Jedis jedis = pools.get(i).getResource()) {
+                    sizes[i] = jedis.dbSize();
+                    total += sizes[i];
+                }
+            }
+            for (int i = 0; i < pools.size(); i++) {
+                if (sizes[i] == 0L) {
+                    continue;
+                }
+                int count = (int) Math.max(1L, (long) Math.ceil((double) sampleSize * sizes[i] / total)); // A share of the sample as large as the share of the keys
+                try (Jedis jedis = pools.get(i).getResource()) {
+                    expectedKeys += sample(jedis, sizes[i], count, samples, timing, probe);
+                }
+            }
+            compression = probe.finish();
+        } catch (IOException | JedisException ex) {
+            System.err.println("Failed to sample the database");
+            ex.printStackTrace();
+            return null;
+        }
+        if (samples.isEmpty()) {
+            System.out.printf("No %skeys were found in the database, there is nothing to plan%n", filter == null ? "" : "matching ");
+            return null;
+        }
+        Estimate estimate = new Estimate(samples, expectedKeys, timing);
+        System.out.printf("Sampled %s key(s) in %sms, the server answers a PING in %.2fms and a pipeline in %.2fms plus %.1fus per key%n",
+                samples.size(), System.currentTimeMillis() - started, timing.getRoundTrip() / 1_000_000D,
+                estimate.pipelineNanos / 1_000_000D, estimate.keyNanos / 3_000D);
+        ExportPlan plan = suggest(estimate, compression);
+        report(estimate, plan);
+        return plan;
+    }
+
+    /**
+     * Sample the keys of the server behind the given connection.
+     *
+     * @param jedis the connection
+     * @param dbSize the amount of keys in the database
+     * @param count the amount of keys to sample
+     * @param samples the samples to add to
+     * @param timing the timing to record the pipelines in
+     * @param probe the probe to measure the data file bytes with
+     * @return the estimated amount of keys in the database that match the filter
+     * @throws IOException if measuring the data file bytes fails
+     */
+    private long sample(@NonNull Jedis jedis, long dbSize, int count, @NonNull List<Sample> samples,
+                        @NonNull Timing timing, @NonNull SizeProbe probe) throws IOException {
+        for (int i = 0; i < PINGS; i++) { // Measure the round trip, to tell it apart from the time the server spends
+            long start = System.nanoTime();
+            jedis.ping();
+            timing.pings.add(System.nanoTime() - start);
+        }
+        Collection<String> keys = new LinkedHashSet<>(); // The keys to sample, a key drawn twice is sampled once
+        long expectedKeys = dbSize;
+        if (filter == null || (filter.getPattern() == null && filter.getTypeName() == null)) { // Draw the keys at random
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<String>> drawn = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                drawn.add(pipeline.randomKey());
+            }
+            pipeline.sync();
+            for (Response<String> key : drawn) {
+                if (key.get() != null) {
+                    keys.add(key.get());
+                }
+            }
+        } else { // The first keys scanned are spread across the hash table, so they are sampled instead
+            ScanParams scanParams = filter.applyTo(new ScanParams().count(scanCount));
+            String cursor = ScanParams.SCAN_POINTER_START;
+            long matched = 0L;
+            int scans = 0;
+            do {
+                ScanResult<String> page = filter.getTypeName() == null ? jedis.scan(cursor, scanParams)
+                        : jedis.scan(cursor, scanParams, filter.getTypeName());
+                cursor = page.getCursor();
+                matched += page.getResult().size();
+                for (String key : page.getResult()) {
+                    if (keys.size() < count) {
+                        keys.add(key);
+                    }
+                }
+                scans++;
+            } while (!cursor.equals(ScanParams.SCAN_POINTER_START) && keys.size() < count && scans < MAX_SCANS);
+            if (!cursor.equals(ScanParams.SCAN_POINTER_START)) { // Scale up by the share of the keys examined, COUNT of them per SCAN
+                expectedKeys = Math.round(dbSize * Math.min(1D, (double) matched / Math.min(dbSize, (long) scans * scanCount)));
+            } else {
+                expectedKeys = matched;
+            }
+        }
+        List<String> batch = new ArrayList<>();
+        for (String key : keys) {
+            batch.add(key);
+            if (batch.size() == BATCH_SIZES[timing.batches % BATCH_SIZES.length]) {
+                sampleBatch(jedis, batch, samples, timing, probe);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            sampleBatch(jedis, batch, samples, timing, probe);
+        }
+        return expectedKeys;
+    }
+
+    /**
+     * Sample the given keys, fetching their TYPE, MEMORY USAGE
+     * and amount of members, then reading the small ones and
+     * the first page of a few of the large ones.
+     *
+     * @param jedis the connection
+     * @param keys the keys to sample
+     * @param samples the samples to add to
+     * @param timing the timing to record the pipelines in
+     * @param probe the probe to measure the data file bytes with
+     * @throws IOException if measuring the data file bytes fails
+     */
+    private void sampleBatch(@NonNull Jedis jedis, @NonNull List<String> keys, @NonNull List<Sample> samples,
+                             @NonNull Timing timing, @NonNull SizeProbe probe) throws IOException {
+        Pipeline pipeline = jedis.pipelined();
+        timing.batches++;
+
+        // Fetch the type and memory usage of every key
+        List<Response<String>> types = new ArrayList<>(keys.size());
+        List<Response<Long>> usages = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            types.add(pipeline.type(key));
+            usages.add(pipeline.memoryUsage(key));
+        }
+        long start = System.nanoTime();
+        pipeline.sync();
+        timing.pipelineSynced(keys.size(), System.nanoTime() - start);
+
+        // Fetch the amount of members of every collection
+        List<Sample> batch = new ArrayList<>(keys.size());
+        List<Response<Long>> lengths = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            String typeName = types.get(i).get();
+            Long usage = usages.get(i).get();
+            if (typeName.equals("none") || usage == null) { // Removed since it was drawn
+                continue;
+            }
+            ReadableKeyCodec<?> typeCodec = KeyCodecs.getReadableCodec(typeName);
+            Sample sample = new Sample(keys.get(i), typeName, mode == ExportMode.DUMP ? DUMP_CODEC : typeCodec, usage);
+            sample.skipped = filter != null && filter.isTooLarge(usage);
+            batch.add(sample);
+            Response<Long> length = typeCodec == null ? null : typeCodec.queueLength(pipeline, SafeEncoder.encode(sample.key)); // Null if the type is never paged
+            sample.collection = length != null;
+            lengths.add(length);
+        }
+        start = System.nanoTime();
+        pipeline.sync();
+        timing.pipelineSynced(keys.size(), System.nanoTime() - start);
+
+        // Read the keys that are small enough to read whole
+        List<Supplier<? extends KeyValue<?>>> values = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Sample sample = batch.get(i);
+            Response<Long> length = lengths.get(i);
+            sample.members = length == null || length.get() == null ? 1L : length.get();
+            boolean readable = sample.codec != null && !sample.skipped && sample.memory <= READ_LIMIT_BYTES
+                    && (mode == ExportMode.DUMP || sample.members <= largeKeySize);
+            values.add(readable ? queueRead(pipeline, sample.codec, SafeEncoder.encode(sample.key)) : null);
+        }
+        start = System.nanoTime();
+        pipeline.sync();
+        timing.pipelineSynced(keys.size(), System.nanoTime() - start);
+        for (int i = 0; i < batch.size(); i++) {
+            Supplier<? extends KeyValue<?>> value = values.get(i);
+            KeyValue<?> keyValue = value == null ? null : value.get();
+            if (keyValue != null && keyValue.getValue() != null) { // Write it to measure its size in the data file
+                Sample sample = batch.get(i);
+                sample.bytes = probe.measure(sample.key, keyValue);
+            }
+        }
+
+        // Read the first page of the large keys, to measure the cost of a member
+        for (Sample sample : batch) {
+            ReadableKeyCodec<?> typeCodec = KeyCodecs.getReadableCodec(sample.typeName);
+            if (timing.pagedKeys < MAX_PAGED_KEYS && sample.collection && sample.members > largeKeySize && typeCodec != null) {
+                readFirstPage(jedis, sample, typeCodec, timing, probe);
+            }
+        }
+        samples.addAll(batch);
+    }
+
+    /**
+     * Read the first page of the given large key, recording
+     * the time it took and the size of its members.
+     *
+     * @param jedis the connection
+     * @param sample the sampled key
+     * @param codec the codec of the key type
+     * @param timing the timing to record the page in
+     * @param probe the probe to measure the data file bytes with
+     * @param <T> the type of value
+     * @throws IOException if measuring the data file bytes fails
+     */
+    private <T> void readFirstPage(@NonNull Jedis jedis, @NonNull Sample sample, @NonNull ReadableKeyCodec<T> codec,
+                                   @NonNull Timing timing, @NonNull SizeProbe probe) throws IOException {
+        long start = System.nanoTime();
+        KeyPage<T> page = codec.readPage(jedis, SafeEncoder.encode(sample.key), ScanParams.SCAN_POINTER_START, pageSize);
+        long nanos = System.nanoTime() - start;
+        timing.pagedKeys++;
+        timing.pageNanos += nanos;
+        timing.pageMembers += Math.min(pageSize, sample.members); // COUNT is a hint, but close enough to the amount returned
+        timing.pageBytes += probe.measure(sample.key, new KeyValue<>(codec, page.getValue()));
+    }
+
+    /**
+     * Queue the read of the given key with the given codec.
+     *
+     * @param pipeline the pipeline to queue the read in
+     * @param codec the codec of the key type
+     * @param key the key to read
+     * @param <T> the type of value
+     * @return the pending value, available once the pipeline has been synced
+     */
+    @NonNull
+    private static <T> Supplier<KeyValue<T>> queueRead(@NonNull Pipeline pipeline, @NonNull ReadableKeyCodec<T> codec, byte @NonNull [] key) {
+        Supplier<T> value = codec.queueRead(pipeline, key);
+        return () -> new KeyValue<>(codec, value.get());
+    }
+
+    /**
+     * Suggest the settings suited to the sampled keys.
+     *
+     * @param estimate the estimate from the sample
+     * @param compression the size of the keys read once compressed, relative to their size
+     * @return the plan
+     */
+    @NonNull
+    private ExportPlan suggest(@NonNull Estimate estimate, double compression) {
+        // Aim for pages of keys that fill a reply of about the same size, whatever the size of the keys
+        int suggestedScanCount = estimate.smallKeyBytes > 0D ? round(PAGE_BYTES / estimate.smallKeyBytes, 100, 5_000) : scanCount;
+
+        // Aim for large keys, and their pages, to be read in replies of about the same size
+        int suggestedLargeKeySize = largeKeySize;
+        int suggestedPageSize = pageSize;
+        if (mode == ExportMode.TYPES && estimate.memberBytes > 0D) {
+            suggestedLargeKeySize = round(LARGE_KEY_BYTES / estimate.memberBytes, 100, 1_000_000);
+            suggestedPageSize = round(MEMBER_PAGE_BYTES / estimate.memberBytes, 100, suggestedLargeKeySize);
+        }
+
+        // Enough workers to keep the server busy while the others wait on their round trips
+        double roundTrips = mode == ExportMode.DUMP ? 1D : 3D; // The pipelines per page of keys
+        double pageNanos = Math.max(suggestedScanCount * estimate.keyNanos, 1D);
+        long pages = (long) Math.ceil((double) estimate.expectedKeys / pools.size() / suggestedScanCount); // No more workers than pages to fetch
+        int suggestedThreads = (int) Math.min(Math.min(MAX_THREADS, Math.max(pages, 1L)),
+                Math.max(1L, 1L + (long) Math.ceil(roundTrips * estimate.pipelineNanos / pageNanos)));
+        return ExportPlan.builder()
+                .expectedKeys(estimate.exportedKeys)
+                .expectedBytes(Math.round(estimate.fileBytes * compression))
+                .expectedMillis(estimate.millis(suggestedScanCount, suggestedThreads, suggestedLargeKeySize, suggestedPageSize))
+                .scanCount(suggestedScanCount)
+                .threads(suggestedThreads)
+                .largeKeySize(suggestedLargeKeySize)
+                .pageSize(suggestedPageSize)
+                .batchSize(suggestedScanCount)
+                .build();
+    }
+
+    /**
+     * Report the estimate and the plan.
+     *
+     * @param estimate the estimate from the sample
+     * @param plan the suggested plan
+     */
+    private void report(@NonNull Estimate estimate, @NonNull ExportPlan plan) {
+        List<Sample> samples = estimate.samples;
+        System.out.printf("Keys: ~%s to export, of ~%s %s%n", plan.getExpectedKeys(), estimate.expectedKeys,
+                filter == null || (filter.getPattern() == null && filter.getTypeName() == null) ? "in the database" : "matching keys");
+        if (estimate.unsupported > 0L) {
+            System.out.printf("  ~%s key(s) of unsupported types would fail, use --mode dump to export them%n", estimate.scale(estimate.unsupported));
+        }
+        if (estimate.skipped > 0L) {
+            System.out.printf("  ~%s key(s) are over --max-bytes and would be skipped%n", estimate.scale(estimate.skipped));
+        }
+
+        // The share of each type
+        Map<String, Long> typeCounts = new TreeMap<>();
+        for (Sample sample : samples) {
+            typeCounts.merge(sample.typeName, 1L, Long::sum);
+        }
+        StringJoiner types = new StringJoiner(", ");
+        typeCounts.forEach((typeName, count) -> types.add(String.format("%s %.1f%%", typeName, count * 100D / samples.size())));
+        System.out.printf("Types: %s%n", types);
+
+        // The spread of the key sizes
+        long[] memory = samples.stream().mapToLong(sample -> sample.memory).sorted().toArray();
+        System.out.printf("Key size (MEMORY USAGE): p50 %s, p90 %s, p99 %s, max %s, ~%s in total%n",
+                formatBytes(percentile(memory, 0.5D)), formatBytes(percentile(memory, 0.9D)), formatBytes(percentile(memory, 0.99D)),
+                formatBytes(memory[memory.length - 1]), formatBytes(estimate.scale(Arrays.stream(memory).sum())));
+        long[] buckets = new long[SIZE_BUCKETS.length + 1];
+        for (long usage : memory) {
+            int bucket = 0;
+            while (bucket < SIZE_BUCKETS.length && usage >= SIZE_BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] > 0L) {
+                String range = i == 0 ? "under " + formatBytes(SIZE_BUCKETS[0])
+                        : i == SIZE_BUCKETS.length ? formatBytes(SIZE_BUCKETS[i - 1]) + " and over"
+                        : formatBytes(SIZE_BUCKETS[i - 1]) + " to " + formatBytes(SIZE_BUCKETS[i]);
+                System.out.printf("  %-22s ~%s key(s)%n", range, estimate.scale(buckets[i]));
+            }
+        }
+
+        // The keys that would hold up the server
+        long large = samples.stream().filter(sample -> sample.codec != null && !sample.skipped && sample.members > largeKeySize).count();
+        if (mode == ExportMode.TYPES && large > 0L) {
+            System.out.printf("Large keys: ~%s key(s) have over %s members and would be read in pages of %s%n",
+                    estimate.scale(large), largeKeySize, pageSize);
+        }
+        long huge = samples.stream().filter(sample -> sample.memory > LARGE_KEY_BYTES).count();
+        if (mode == ExportMode.DUMP && huge > 0L) {
+            System.out.printf("Large keys: ~%s key(s) use over %s and would each be dumped in a single reply, blocking the server%n",
+                    estimate.scale(huge), formatBytes(LARGE_KEY_BYTES));
+        }
+        samples.stream().sorted(Comparator.comparingLong((Sample sample) -> sample.memory).reversed()).limit(5)
+                .filter(sample -> sample.memory > LARGE_KEY_BYTES || sample.members > largeKeySize)
+                .forEach(sample -> System.out.printf("  %s (%s, %s member(s), %s)%n", sample.key, sample.typeName, sample.members, formatBytes(sample.memory)));
+
+        // What the export would cost
+        System.out.printf("Data file: ~%s (%s%s)%n", formatBytes(plan.getExpectedBytes()),
+                format.name().toLowerCase(), compress ? ", compressed" : "");
+        System.out.printf("Export time: ~%s with the current settings, ~%s with the suggested ones%n",
+                formatMillis(estimate.millis(scanCount, threads, largeKeySize, pageSize)), formatMillis(plan.getExpectedMillis()));
+        StringBuilder suggested = new StringBuilder()
+                .append("--scan-count ").append(plan.getScanCount())
+                .append(" --threads ").append(plan.getThreads());
+        if (mode == ExportMode.TYPES) {
+            suggested.append(" --large-key-size ").append(plan.getLargeKeySize())
+                    .append(" --page-size ").append(plan.getPageSize());
+        }
+        System.out.printf("Suggested: %s (and --batch-size %s when importing)%n", suggested, plan.getBatchSize());
+    }
+
+    /**
+     * Get the given percentile of the given sorted values.
+     *
+     * @param sorted the values, sorted
+     * @param percentile the percentile, between zero and one
+     * @return the value
+     */
+    private static long percentile(long @NonNull [] sorted, double percentile) {
+        return sorted[(int) Math.max(0L, Math.min(sorted.length - 1, (long) Math.ceil(percentile * sorted.length) - 1L))];
+    }
+
+    /**
+     * Round the given value to two significant
+     * digits, within the given bounds.
+     *
+     * @param value the value
+     * @param min the lowest value to return, at least 10
+     * @param max the highest value to return
+     * @return the rounded value
+     */
+    private static int round(double value, int min, int max) {
+        double bounded = Math.max(min, Math.min(max, value));
+        double magnitude = Math.pow(10D, Math.floor(Math.log10(bounded)) - 1D);
+        return (int) Math.max(min, Math.min(max, Math.round(bounded / magnitude) * magnitude));
+    }
+
+    /**
+     * Format the given amount of bytes for reading.
+     *
+     * @param bytes the amount of bytes
+     * @return the formatted amount, such as "1.5 MiB"
+     */
+    @NonNull
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024L) {
+            return bytes + " B";
+        }
+        String[] units = { "KiB", "MiB", "GiB", "TiB" };
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024D && unit < units.length - 1) {
+            value /= 1024D;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
+
+    /**
+     * Format the given duration for reading.
+     *
+     * @param millis the duration in milliseconds
+     * @return the formatted duration, such as "1h 5m 12s"
+     */
+    @NonNull
+    private static String formatMillis(long millis) {
+        long seconds = Math.max(1L, Math.round(millis / 1000D));
+        if (seconds < 60L) {
+            return seconds + "s";
+        } else if (seconds < 3600L) {
+            return (seconds / 60L) + "m " + (seconds % 60L) + "s";
+        }
+        return (seconds / 3600L) + "h " + (seconds / 60L % 60L) + "m " + (seconds % 60L) + "s";
+    }
+
+    /**
+     * A sampled key.
+     */
+    private static final class Sample {
+        @NonNull private final String key;
+        @NonNull private final String typeName;
+        private final ReadableKeyCodec<?> codec; // The codec the key would be exported with, null if the type is not supported
+        private final long memory; // The MEMORY USAGE of the key
+        private long members; // The amount of members, one for a type that is never paged
+        private boolean collection; // Whether the key is of a type that can be paged
+        private long bytes = -1L; // The size of the key in the data file, -1 if it wasn't read
+        private boolean skipped; // Whether the key is over the size limit
+
+        private Sample(@NonNull String key, @NonNull String typeName, ReadableKeyCodec<?> codec, long memory) {
+            this.key = key;
+            this.typeName = typeName;
+            this.codec = codec;
+            this.memory = memory;
+        }
+    }
+
+    /**
+     * How long the server took to answer the sampling pipelines.
+     */
+    private static final class Timing {
+        private final List<Long> pings = new ArrayList<>(); // The round trip of every PING
+        private final List<long[]> pipelines = new ArrayList<>(); // The amount of keys in, and the time taken by, every pipeline
+        private int batches; // The amount of batches of keys sampled
+        private int pagedKeys; // The amount of large keys a page was read of
+        private long pageNanos; // The time taken to read the pages
+        private long pageMembers; // The amount of members in the pages
+        private long pageBytes; // The data file bytes of the pages
+
+        /**
+         * Record a pipeline being synced.
+         *
+         * @param keys the amount of keys in the pipeline
+         * @param nanos the time the sync took
+         */
+        private void pipelineSynced(int keys, long nanos) {
+            pipelines.add(new long[] { keys, nanos });
+        }
+
+        /**
+         * Fit the time a pipeline takes to a fixed cost
+         * plus a cost per key, by least squares.
+         * <p>
+         * The fixed cost is at least the round trip, it
+         * is more when the replies are held back on the way.
+         * </p>
+         *
+         * @return the fixed cost and the cost per key, in nanoseconds
+         */
+        private double @NonNull [] fitPipelines() {
+            double roundTrip = getRoundTrip();
+            if (pipelines.isEmpty()) {
+                return new double[] { roundTrip, 0D };
+            }
+            double meanKeys = pipelines.stream().mapToLong(pipeline -> pipeline[0]).average().orElse(0D);
+            double meanNanos = pipelines.stream().mapToLong(pipeline -> pipeline[1]).average().orElse(0D);
+            double covariance = 0D;
+            double variance = 0D;
+            for (long[] pipeline : pipelines) {
+                covariance += (pipeline[0] - meanKeys) * (pipeline[1] - meanNanos);
+                variance += (pipeline[0] - meanKeys) * (pipeline[0] - meanKeys);
+            }
+            double perKey = variance > 0D ? covariance / variance // The pipelines held different amounts of keys
+                    : (meanNanos - roundTrip) / Math.max(meanKeys, 1D);
+            perKey = Math.max(perKey, 0D);
+            return new double[] { Math.max(meanNanos - perKey * meanKeys, roundTrip), perKey };
+        }
+
+        /**
+         * Get the median round trip.
+         *
+         * @return the round trip in nanoseconds
+         */
+        private long getRoundTrip() {
+            if (pings.isEmpty()) {
+                return 0L;
+            }
+            List<Long> sorted = new ArrayList<>(pings);
+            Collections.sort(sorted);
+            return sorted.get(sorted.size() / 2);
+        }
+    }
+
+    /**
+     * The estimates drawn from a sample.
+     */
+    private final class Estimate {
+        private final List<Sample> samples;
+        private final long expectedKeys; // The estimated amount of keys that match the filter
+        private final long exportedKeys; // The estimated amount of keys that would be exported
+        private final long unsupported; // The amount of sampled keys of unsupported types
+        private final long skipped; // The amount of sampled keys over the size limit
+        private final double fileBytes; // The estimated size of the data file, uncompressed
+        private final double smallKeyBytes; // The mean data file bytes of the keys read whole
+        private final double memberBytes; // The mean data file bytes of a member of a collection
+        private final double pipelineNanos; // The time a pipeline takes, whatever it holds
+        private final double keyNanos; // The time the pipelines of a page take per key
+        private final double byteNanos; // The time reading a large key takes per data file byte
+        private final double bytesPerMemory; // The data file bytes per byte of MEMORY USAGE
+
+        private Estimate(@NonNull List<Sample> samples, long expectedKeys, @NonNull Timing timing) {
+            this.samples = samples;
+            this.expectedKeys = expectedKeys;
+            long unsupported = 0L;
+            long skipped = 0L;
+            long measuredBytes = 0L;
+            long measuredMemory = 0L;
+            long measured = 0L;
+            long collectionBytes = 0L;
+            long collectionMembers = 0L;
+            for (Sample sample : samples) {
+                if (sample.codec == null) {
+                    unsupported++;
+                } else if (sample.skipped) {
+                    skipped++;
+                } else if (sample.bytes >= 0L) {
+                    measuredBytes += sample.bytes;
+                    measuredMemory += sample.memory;
+                    measured++;
+                    if (sample.collection) {
+                        collectionBytes += sample.bytes;
+                        collectionMembers += sample.members;
+                    }
+                }
+            }
+            this.unsupported = unsupported;
+            this.skipped = skipped;
+            exportedKeys = scale(samples.size() - unsupported - skipped);
+            bytesPerMemory = measuredMemory > 0L ? (double) measuredBytes / measuredMemory : 1D;
+            smallKeyBytes = measured > 0L ? (double) measuredBytes / measured : 0D;
+            collectionBytes += timing.pageBytes;
+            collectionMembers += timing.pageMembers;
+            memberBytes = collectionMembers > 0L ? (double) collectionBytes / collectionMembers : 0D;
+            double[] fit = timing.fitPipelines();
+            pipelineNanos = fit[0];
+            keyNanos = fit[1] * 3D; // Each key is in three pipelines, as when exporting
+            if (timing.pageBytes > 0L) { // Measured on the pages of large keys
+                byteNanos = Math.max(timing.pageNanos - timing.pagedKeys * pipelineNanos, 0D) / timing.pageBytes;
+            } else { // Only small keys were sampled, which cost more per byte
+                byteNanos = smallKeyBytes > 0D ? keyNanos / smallKeyBytes : 0D;
+            }
+            double sampledBytes = 0D;
+            for (Sample sample : samples) {
+                if (sample.codec != null && !sample.skipped) {
+                    sampledBytes += bytesOf(sample);
+                }
+            }
+            fileBytes = sampledBytes * expectedKeys / samples.size();
+        }
+
+        /**
+         * Scale the given amount of sampled keys up to the database.
+         *
+         * @param sampled the amount of sampled keys
+         * @return the estimated amount of keys in the database
+         */
+        private long scale(long sampled) {
+            return Math.round((double) sampled * expectedKeys / samples.size());
+        }
+
+        /**
+         * Get the size of the given sampled key in the data file,
+         * estimated from its MEMORY USAGE if it wasn't read.
+         *
+         * @param sample the sampled key
+         * @return the size in bytes
+         */
+        private double bytesOf(@NonNull Sample sample) {
+            return sample.bytes >= 0L ? sample.bytes : sample.memory * bytesPerMemory;
+        }
+
+        /**
+         * Estimate the time an export takes with the given settings.
+         * <p>
+         * Every pipeline costs a fixed time, and each key in
+         * it a time of its own, as fitted to the sampling
+         * pipelines. The keys read in pages cost a fixed time
+         * per page plus a time per byte, as measured on the
+         * first pages of the sampled large keys. The fixed times
+         * of the pipelines overlap across the workers, and the
+         * servers of a cluster are read at once.
+         * </p>
+         *
+         * @param scanCount the COUNT hint to use for each SCAN
+         * @param threads the amount of workers per server
+         * @param largeKeySize the amount of members above which a key is read in pages
+         * @param pageSize the amount of members per page of a large key
+         * @return the estimated time in milliseconds
+         */
+        private long millis(int scanCount, int threads, int largeKeySize, int pageSize) {
+            double work = 0D; // The time the server spends on the sampled keys
+            double largePages = 0D; // The pages of members of the sampled keys
+            for (Sample sample : samples) {
+                if (sample.codec == null || sample.skipped) {
+                    work += keyNanos; // Still typed before being left out
+                } else if (mode == ExportMode.TYPES && sample.members > largeKeySize) {
+                    work += bytesOf(sample) * byteNanos;
+                    largePages += Math.ceil((double) sample.members / pageSize);
+                } else {
+                    work += sample.bytes >= 0L ? keyNanos : keyNanos + bytesOf(sample) * byteNanos;
+                }
+            }
+            double servers = pools.size();
+            double scale = (double) expectedKeys / samples.size() / servers; // The keys of each server per sampled key
+            double keysPerServer = expectedKeys / servers;
+            double pages = Math.ceil(keysPerServer / scanCount);
+            double roundTrips = pages * (mode == ExportMode.DUMP ? 1D : 3D) * pipelineNanos / threads + largePages * scale * pipelineNanos;
+            double scanning = pages * pipelineNanos; // The scanner walks the keyspace on its own
+            return Math.round(Math.max(scanning, work * scale + roundTrips) / 1_000_000D);
+        }
+    }
+
+    /**
+     * Measures how large keys are in the data file,
+     * by writing them to a writer that discards them.
+     */
+    private static final class SizeProbe implements Closeable {
+        private final ByteCounter raw = new ByteCounter();
+        private final DataWriter writer; // Flushed after each key, to measure it
+        private final ByteCounter compressed; // Null if the data file isn't compressed
+        private final DataWriter compressedWriter; // Never flushed, so the keys are compressed together
+        private long measured; // The data file bytes of every key measured
+        private boolean closed;
+
+        private SizeProbe(@NonNull DataFormat format, boolean compress) throws IOException {
+            writer = format.newWriter(raw);
+            compressed = compress ? new ByteCounter() : null;
+            compressedWriter = compress ? format.newWriter(new ParallelGzipOutputStream(compressed, 1)) : null;
+        }
+
+        /**
+         * Measure the size of the given key in the data file.
+         *
+         * @param key the name of the key
+         * @param value the value of the key
+         * @return the size in bytes
+         * @throws IOException if writing fails
+         */
+        private long measure(@NonNull String key, @NonNull KeyValue<?> value) throws IOException {
+            long before = raw.count;
+            value.writeTo(writer, key, -1L);
+            writer.flush();
+            if (compressedWriter != null) {
+                value.writeTo(compressedWriter, key, -1L);
+            }
+            measured += raw.count - before;
+            return raw.count - before;
+        }
+
+        /**
+         * Finish measuring.
+         *
+         * @return the size of the keys measured once compressed relative to their size, one if not compressed
+         * @throws IOException if writing fails
+         */
+        private double finish() throws IOException {
+            close();
+            return compressed == null || measured == 0L ? 1D : (double) compressed.count / measured;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try (compressedWriter) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * An output stream that discards the bytes
+     * written to it, counting them.
+     */
+    private static final class ByteCounter extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte @NonNull [] bytes, int offset, int length) {
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package me.braydon.redis.task;
+
+import lombok.Getter;
+import lombok.NonNull;
+import me.braydon.redis.common.ClusterTopology;
+import me.braydon.redis.common.Digests;
+import me.braydon.redis.io.DataEntry;
+import me.braydon.redis.io.DataWriter;
+import me.braydon.redis.io.JsonStrings;
+import me.braydon.redis.type.KeyCodec;
+import me.braydon.redis.type.KeyValue;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Digests the keys written to it, rather than
+ * writing them to a data file.
+ * <p>
+ * The digest of a key covers its name, type, members
+ * and whether it expires, but not its time-to-live,
+ * which keeps counting down after it is read. The
+ * digests of the keys are added up per hash slot, so
+ * the order the keys are read in doesn't matter and
+ * two sides are compared slot by slot. When drilling
+ * down, the digest of every key in the given slots is
+ * kept instead, to find the keys that differ.
+ * </p>
+ *
+ * @author Braydon
+ * @see VerifyTask for comparing a database with a data file
+ */
+final class SlotDigests implements DataWriter {
+    /**
+     * The slots to keep the digest of every key
+     * in, null to only add up the digests per slot.
+     */
+    private final BitSet drillDown;
+
+    /**
+     * The sum of the digests of the keys in each slot.
+     */
+    private final long[] sums = new long[ClusterTopology.SLOTS];
+
+    /**
+     * The amount of keys in each slot.
+     */
+    private final long[] counts = new long[ClusterTopology.SLOTS];
+
+    /**
+     * The digest of every key in the slots drilled down into, by name.
+     */
+    @Getter private final Map<String, Long> keys = new HashMap<>();
+
+    /**
+     * The amount of keys digested.
+     */
+    @Getter private long keyCount;
+
+    private String key; // The name of the key being digested
+    private String typeName; // The type of the key being digested
+    private boolean expires; // Whether the key being digested has a time-to-live
+    private long digest; // The digest of the members of the key being digested
+    private boolean present; // Whether the key being digested still existed when it was read
+    private long position; // The estimated amount of bytes digested
+
+    SlotDigests(BitSet drillDown) {
+        this.drillDown = drillDown;
+    }
+
+    /**
+     * Digest the key in the given entry from a data file.
+     *
+     * @param entry the entry, which must hold the value of a supported type
+     */
+    void add(@NonNull DataEntry entry) {
+        KeyValue<?> value = entry.getKeyValue();
+        if (value.getValue() != null) {
+            add(entry.getKey(), value.getCodec().getTypeName(), entry.getTtl() >= 0L, value.digest(0L));
+        }
+        position += entry.getSize();
+    }
+
+    @Override
+    public void beginKey(@NonNull String key, long ttl, @NonNull KeyCodec<?> codec) {
+        this.key = key;
+        typeName = codec.getTypeName();
+        expires = ttl >= 0L;
+        digest = 0L;
+        present = false;
+    }
+
+    @Override
+    public <T> void writeMembers(@NonNull KeyCodec<T> codec, T value) {
+        if (value == null) { // The key was removed after it was scanned
+            return;
+        }
+        digest = codec.digest(digest, value);
+        present = true;
+        position += codec.sizeOf(value);
+    }
+
+    @Override
+    public void endKey() {
+        if (present) {
+            add(key, typeName, expires, digest);
+        }
+        key = null;
+    }
+
+    /**
+     * Get the estimated amount of bytes digested.
+     *
+     * @return the amount of bytes
+     */
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+
+    /**
+     * Find the slots whose keys differ from those of the given digests.
+     *
+     * @param other the digests to compare with
+     * @return the slots that differ
+     */
+    @NonNull
+    BitSet differingSlots(@NonNull SlotDigests other) {
+        BitSet differing = new BitSet(ClusterTopology.SLOTS);
+        for (int slot = 0; slot < ClusterTopology.SLOTS; slot++) {
+            if (sums[slot] != other.sums[slot] || counts[slot] != other.counts[slot]) {
+                differing.set(slot);
+            }
+        }
+        return differing;
+    }
+
+    /**
+     * Add the digest of the given key to its slot.
+     *
+     * @param key the name of the key
+     * @param typeName the type of the key
+     * @param expires whether the key has a time-to-live
+     * @param valueDigest the digest of the members of the key
+     */
+    private void add(@NonNull String key, @NonNull String typeName, boolean expires, long valueDigest) {
+        long keyDigest = Digests.combine(Digests.combine(Digests.hash(key), Digests.hash(typeName)),
+                Digests.combine(valueDigest, expires ? 1L : 0L));
+        int slot = JedisClusterCRC16.getSlot(JsonStrings.decode(key)); // The slot of the name as it is stored
+        sums[slot] += keyDigest; // Added up, so the order of the keys doesn't matter
+        counts[slot]++;
+        if (drillDown != null && drillDown.get(slot)) {
+            keys.put(key, keyDigest);
+        }
+        keyCount++;
+    }
+}
@@ -0,0 +1,381 @@
+package me.braydon.redis.task;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import me.braydon.redis.common.ClusterTopology;
+import me.braydon.redis.common.LatencyThrottle;
+import me.braydon.redis.io.DataEntry;
+import me.braydon.redis.io.DataFormat;
+import me.braydon.redis.io.DataReader;
+import me.braydon.redis.metrics.ProgressReporter;
+import me.braydon.redis.metrics.TransferMetrics;
+import me.braydon.redis.type.impl.DumpCodec;
+import me.braydon.redis.type.impl.TombstoneCodec;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.ScanParams;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Verifies that a database holds the same keys as a data file.
+ * <p>
+ * Both sides are digested at once: the database is read by
+ * a {@link KeyspaceScanner}, with pipelines on every worker's
+ * connection, while the data file is read on another thread.
+ * The digests of the keys are added up per hash slot into
+ * {@link SlotDigests}, so only the 16384 slot digests are
+ * compared rather than every key.
+ * </p>
+ * <p>
+ * Only the slots that differ are drilled down into. Both
+ * sides are read again, but the database keys in the other
+ * slots are left out as soon as they are scanned, so only
+ * the keys in those slots are fetched and compared one by one.
+ * </p>
+ *
+ * @author Braydon
+ */
+@Builder
+public final class VerifyTask {
+    /**
+     * The most slots to drill down into, which bounds
+     * the amount of key digests held in memory.
+     */
+    private static final int MAX_DRILL_DOWN_SLOTS = 256;
+
+    /**
+     * The most keys to list for each kind of difference.
+     */
+    private static final int MAX_LISTED_KEYS = 20;
+
+    /**
+     * The pools to borrow connections from, one for each
+     * server to verify, such as every master of a cluster.
+     * <p>
+     * Each must be able to hand out a connection to
+     * its scanner and to every worker at once, and one
+     * more to the latency probe if throttled.
+     * </p>
+     */
+    @Singular @NonNull private final List<JedisPool> pools;
+
+    /**
+     * The data file to compare the database with.
+     */
+    @NonNull private final File dataFile;
+
+    /**
+     * The format of the data file.
+     */
+    @NonNull private final DataFormat format;
+
+    /**
+     * The amount of threads to decompress the data file with.
+     */
+    private final int compressThreads;
+
+    /**
+     * The COUNT hint to use for each SCAN.
+     */
+    private final int scanCount;
+
+    /**
+     * The amount of workers to fetch pages from each server with.
+     */
+    private final int threads;
+
+    /**
+     * The amount of members above which a
+     * key is read in pages.
+     */
+    private final int largeKeySize;
+
+    /**
+     * The amount of members to request
+     * per page when reading a large key.
+     */
+    private final int pageSize;
+
+    /**
+     * The filter the keys must pass, null to verify every key.
+     * <p>
+     * This should be the filter the data file was exported
+     * or imported with, so both sides hold the same keys.
+     * </p>
+     */
+    private final KeyFilter filter;
+
+    /**
+     * The latency ceiling in milliseconds to slow the
+     * reads down to, zero to read as fast as possible.
+     */
+    private final int maxLatencyMillis;
+
+    /**
+     * The interval in seconds to report the progress at, zero to never report.
+     */
+    private final int progressInterval;
+
+    /**
+     * Compare the database with the data file.
+     * <p>
+     * The data file decides how the database is read:
+     * a data file of DUMP payloads is compared with the
+     * payloads the server dumps, otherwise the members
+     * of the keys are compared.
+     * </p>
+     *
+     * @return whether the database matches the data file
+     */
+    public boolean run() {
+        ExportMode mode;
+        try {
+            mode = detectMode();
+        } catch (IOException ex) {
+            System.err.printf("Failed to read %s%n", dataFile);
+            ex.printStackTrace();
+            return false;
+        }
+        TransferMetrics metrics = new TransferMetrics("verify");
+        if (filter == null) { // How many keys match a filter isn't known up front
+            long expectedKeys = 0L;
+            for (JedisPool pool : pools) {
+                try (Jedis jedis = pool.getResource()) {
+                    expectedKeys += jedis.dbSize();
+                }
+            }
+            metrics.setExpectedKeys(expectedKeys); // An estimate, keys may be added or removed while scanning
+        }
+        SlotDigests[] digests; // The digests of the data file and of the database
+        BitSet differing;
+        try {
+            System.out.printf("Digesting the %s in the database and in %s%n", mode == ExportMode.DUMP ? "DUMP payloads" : "keys", dataFile);
+            digests = digest(mode, filter, null, metrics);
+            differing = digests[0].differingSlots(digests[1]);
+            System.out.printf("Digested %s key(s) in the data file and %s in the database in %sms%n",
+                    digests[0].getKeyCount(), digests[1].getKeyCount(), metrics.getElapsed());
+            if (metrics.getFailed() > 0L) {
+                System.out.printf("Left out %s key(s) of the database that couldn't be read%n", metrics.getFailed());
+            }
+            if (differing.isEmpty()) {
+                System.out.printf("The database matches the data file (%s of %s slots match)%n", ClusterTopology.SLOTS, ClusterTopology.SLOTS);
+                return true;
+            }
+            System.out.printf("%s of %s slots differ, drilling down into %s%n", differing.cardinality(), ClusterTopology.SLOTS,
+                    differing.cardinality() > MAX_DRILL_DOWN_SLOTS ? "the first " + MAX_DRILL_DOWN_SLOTS : "them");
+            BitSet drillDown = differing.get(0, differing.stream().skip(MAX_DRILL_DOWN_SLOTS - 1).findFirst().orElse(ClusterTopology.SLOTS - 1) + 1);
+            KeyFilter slotFilter = (filter == null ? KeyFilter.builder() : filter.toBuilder()).slots(drillDown).build();
+            digests = digest(mode, slotFilter, drillDown, new TransferMetrics("verify"));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception ex) {
+            System.err.println("Failed to verify the database");
+            ex.printStackTrace();
+            return false;
+        }
+        report(digests[0].getKeys(), digests[1].getKeys());
+        return false;
+    }
+
+    /**
+     * Detect how the data file was exported, from its first entry.
+     *
+     * @return the mode the data file was exported in
+     * @throws IOException if the data file cannot be read
+     */
+    @NonNull
+    private ExportMode detectMode() throws IOException {
+        try (DataReader reader = format.openReader(dataFile, compressThreads)) {
+            DataEntry entry = reader.next();
+            return entry != null && entry.getTypeName().equals(DumpCodec.TYPE_NAME) ? ExportMode.DUMP : ExportMode.TYPES;
+        }
+    }
+
+    /**
+     * Digest the data file and the database at once.
+     *
+     * @param mode how to read the keys in the database
+     * @param filter the filter the keys must pass, null for every key
+     * @param drillDown the slots to keep the digest of every key in, null for none
+     * @param metrics the metrics to record the database reads in
+     * @return the digests of the data file, followed by those of the database
+     * @throws Exception the first error either side ran into
+     */
+    @NonNull
+    private SlotDigests[] digest(@NonNull ExportMode mode, KeyFilter filter, BitSet drillDown, @NonNull TransferMetrics metrics)
+            throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SlotDigests> file = executor.submit(() -> digestFile(filter, drillDown));
+            SlotDigests database = new SlotDigests(drillDown);
+            ProgressReporter reporter = new ProgressReporter(metrics, "Digested", progressInterval);
+            try {
+                if (pools.size() > 1) { // Scan the servers in parallel
+                    scanServers(mode, filter, database, metrics);
+                } else {
+                    scan(pools.get(0), null, mode, filter, database, metrics);
+                }
+            } finally {
+                reporter.close();
+            }
+            return new SlotDigests[] { file.get(), database };
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        } finally {
+            executor.shutdownNow(); // Stop reading the data file if the database failed
+        }
+    }
+
+    /**
+     * Digest the keys in the data file.
+     *
+     * @param filter the filter the keys must pass, null for every key
+     * @param drillDown the slots to keep the digest of every key in, null for none
+     * @return the digests
+     * @throws IOException if reading fails, or the data file holds deleted keys
+     */
+    @NonNull
+    private SlotDigests digestFile(KeyFilter filter, BitSet drillDown) throws IOException {
+        SlotDigests digests = new SlotDigests(drillDown);
+        try (DataReader reader = format.openReader(dataFile, compressThreads)) {
+            DataEntry entry;
+            while ((entry = reader.next()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while digesting the data file");
+                } else if (entry.getTypeName().equals(TombstoneCodec.TYPE_NAME)) { // Only the chain as a whole describes the database
+                    throw new IOException("Cannot verify against an incremental export, it holds the keys deleted since the one before it");
+                } else if (entry.getKeyValue() == null) { // An unsupported type is never read from the database either
+                    continue;
+                }
+                if (filter == null || filter.matches(entry.getKey(), ImportTask.getTypeName(entry))) {
+                    digests.add(entry);
+                }
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Scan every server at once, digesting their keys.
+     *
+     * @param mode how to read the keys
+     * @param filter the filter the keys must pass, null for every key
+     * @param digests the digests to add the keys to
+     * @param metrics the metrics to record the keys in
+     * @throws Exception the first error a scanner ran into
+     */
+    private void scanServers(@NonNull ExportMode mode, KeyFilter filter, @NonNull SlotDigests digests,
+                             @NonNull TransferMetrics metrics) throws Exception {
+        ReentrantLock writeLock = new ReentrantLock();
+        ExecutorService executor = Executors.newFixedThreadPool(pools.size());
+        CompletionService<Long> scans = new ExecutorCompletionService<>(executor);
+        for (JedisPool pool : pools) {
+            scans.submit(() -> scan(pool, writeLock, mode, filter, digests, metrics));
+        }
+        executor.shutdown();
+        try {
+            for (int i = 0; i < pools.size(); i++) {
+                scans.take().get(); // In the order the scans finish, so a failure is seen straight away
+            }
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        } finally {
+            executor.shutdownNow(); // Stop the other scans if one failed
+        }
+    }
+
+    /**
+     * Scan the server behind the given pool, digesting its keys.
+     *
+     * @param pool the pool of the server
+     * @param writeLock the lock to hold while digesting, null if the digests aren't shared
+     * @param mode how to read the keys
+     * @param filter the filter the keys must pass, null for every key
+     * @param digests the digests to add the keys to
+     * @param metrics the metrics to record the keys in
+     * @return the amount of keys found while scanning
+     * @throws Exception the first error the scanner ran into
+     */
+    private long scan(@NonNull JedisPool pool, ReentrantLock writeLock, @NonNull ExportMode mode, KeyFilter filter,
+                      @NonNull SlotDigests digests, @NonNull TransferMetrics metrics) throws Exception {
+        try (LatencyThrottle throttle = maxLatencyMillis > 0 ? new LatencyThrottle(pool, maxLatencyMillis, threads, metrics.getLatency("probe")) : null) {
+            return KeyspaceScanner.builder()
+                    .pool(pool)
+                    .mode(mode)
+                    .scanCount(scanCount)
+                    .threads(threads)
+                    .largeKeySize(largeKeySize)
+                    .pageSize(pageSize)
+                    .filter(filter)
+                    .throttle(throttle)
+                    .writeLock(writeLock)
+                    .build().scan(digests, metrics, ScanParams.SCAN_POINTER_START, null);
+        }
+    }
+
+    /**
+     * Report the keys that differ between the given digests.
+     *
+     * @param fileKeys the digests of the keys in the data file
+     * @param databaseKeys the digests of the keys in the database
+     */
+    private static void report(@NonNull Map<String, Long> fileKeys, @NonNull Map<String, Long> databaseKeys) {
+        List<String> missing = new ArrayList<>(); // In the data file, but not in the database
+        List<String> unexpected = new ArrayList<>(); // In the database, but not in the data file
+        List<String> different = new ArrayList<>(); // In both, but with different content
+        for (Map.Entry<String, Long> entry : fileKeys.entrySet()) {
+            Long digest = databaseKeys.get(entry.getKey());
+            if (digest == null) {
+                missing.add(entry.getKey());
+            } else if (!digest.equals(entry.getValue())) {
+                different.add(entry.getKey());
+            }
+        }
+        for (String key : databaseKeys.keySet()) {
+            if (!fileKeys.containsKey(key)) {
+                unexpected.add(key);
+            }
+        }
+        if (missing.isEmpty() && unexpected.isEmpty() && different.isEmpty()) { // Changed between the two reads
+            System.out.println("The slots that differed match now, the keys were changed while verifying");
+            return;
+        }
+        report("missing from the database", missing);
+        report("in the database but not in the data file", unexpected);
+        report("different in the database", different);
+    }
+
+    /**
+     * Report the given keys, listing the first few.
+     *
+     * @param description what is wrong with the keys
+     * @param keys the keys
+     */
+    private static void report(@NonNull String description, @NonNull List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Collections.sort(keys);
+        System.out.printf("%s key(s) %s%s%n", keys.size(), description, keys.size() > MAX_LISTED_KEYS ? ", the first " + MAX_LISTED_KEYS + ":" : ":");
+        for (String key : keys.subList(0, Math.min(keys.size(), MAX_LISTED_KEYS))) {
+            System.out.printf("  %s%n", key);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package me.braydon.redis.type;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.io.BinaryDataReader;
+import me.braydon.redis.io.BinaryDataWriter;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+
+/**
+ * Moves the value of a single Redis type between
+ * Redis and the formats of the data file.
+ * <p>
+ * A codec holds no state of its own, a single instance
+ * is shared by every key of its type and every thread.
+ * The value of a key is passed in and out explicitly and
+ * is written to, or read from, the data file as a stream
+ * rather than through an intermediate json tree.
+ * </p>
+ * <p>
+ * Codecs are found with a {@link java.util.ServiceLoader},
+ * so a codec for another type can be added by listing it in
+ * {@code META-INF/services/me.braydon.redis.type.KeyCodec}.
+ * </p>
+ * <p>
+ * A codec only reads the values of its type from Redis
+ * if it implements {@link ReadableKeyCodec}, so the entries
+ * of a type that is never stored in Redis, such as a
+ * tombstone, need no reads of their own.
+ * </p>
+ *
+ * @param <T> the type of value held in memory
+ * @author Braydon
+ * @see KeyCodecs for the registered codecs
+ */
+public interface KeyCodec<T> {
+    /**
+     * Get the name of the type this codec handles,
+     * as reported by the TYPE command.
+     *
+     * @return the type name
+     */
+    @NonNull String getTypeName();
+
+    /**
+     * Queue the commands to save the given value to Redis.
+     * <p>
+     * A collection is split between as many variadic
+     * commands as needed to keep each one within the
+     * given amount of members and bytes, so a huge key
+     * never becomes a single huge command.
+     * </p>
+     * <p>
+     * Any value already stored under the key is replaced,
+     * so saving the same value twice is harmless, unless
+     * appending the later pages of a large key.
+     * </p>
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to save the value to
+     * @param value the value to save
+     * @param append whether to add the members to those already stored
+     * @param batchMembers the maximum amount of members per command
+     * @param batchBytes the maximum amount of member bytes per command
+     * @return the amount of commands queued
+     * @see Pipeline for pipeline
+     */
+    int saveToRedis(@NonNull Pipeline pipeline, byte @NonNull [] key, T value, boolean append, int batchMembers, long batchBytes);
+
+    /**
+     * Estimate the size of the given value, the
+     * amount of bytes of its members and scores.
+     * <p>
+     * This stands in for the data file bytes of
+     * a key that is never written to a data file.
+     * </p>
+     *
+     * @param value the value
+     * @return the size in bytes
+     */
+    long sizeOf(T value);
+
+    /**
+     * Fold the given members into the digest of a key.
+     * <p>
+     * The members of a key read in pages are folded in a
+     * page at a time, so the digest of a type whose members
+     * are unordered must not depend on their order.
+     * </p>
+     *
+     * @param digest the digest of the members folded in so far, zero before the first
+     * @param value the members to fold in
+     * @return the digest
+     * @see me.braydon.redis.common.Digests for hashing the members
+     */
+    long digest(long digest, T value);
+
+    /**
+     * Whether the data of a key is held in a
+     * json array, rather than a json object.
+     *
+     * @return whether the data is an array
+     */
+    boolean isJsonArray();
+
+    /**
+     * Write the members of the given value to
+     * the open json data array or object.
+     * <p>
+     * This may be called once for every page of a key.
+     * </p>
+     *
+     * @param writer the writer to write to
+     * @param value the value to write
+     * @throws IOException if writing fails
+     */
+    void writeJson(@NonNull JsonWriter writer, T value) throws IOException;
+
+    /**
+     * Read a value from the members of the
+     * open json data array or object.
+     *
+     * @param reader the reader to read from
+     * @return the value
+     * @throws IOException if reading fails
+     */
+    T readJson(@NonNull JsonReader reader) throws IOException;
+
+    /**
+     * Write the members of the given value as
+     * a block of the binary record being written.
+     * <p>
+     * This may be called once for every page of a key.
+     * </p>
+     *
+     * @param writer the writer to write to
+     * @param value the value to write
+     * @throws IOException if writing fails
+     * @see BinaryDataWriter#beginBlock(int, int) for blocks
+     */
+    void writeBinary(@NonNull BinaryDataWriter writer, T value) throws IOException;
+
+    /**
+     * Read a value from the blocks of the current binary record.
+     * <p>
+     * Every block up to and including the
+     * end of the record must be consumed.
+     * </p>
+     *
+     * @param reader the reader to read from
+     * @return the value
+     * @throws IOException if reading fails
+     */
+    T readBinary(@NonNull BinaryDataReader reader) throws IOException;
+}
@@ -0,0 +1,77 @@
+package me.braydon.redis.type;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The registry of every {@link KeyCodec}.
+ * <p>
+ * The codecs are loaded once, so looking one up
+ * for a key is a plain read of an immutable map.
+ * </p>
+ *
+ * @author Braydon
+ */
+@UtilityClass
+public final class KeyCodecs {
+    /**
+     * The codecs keyed by their type name.
+     */
+    private static final Map<String, KeyCodec<?>> CODECS = loadCodecs();
+
+    /**
+     * Get the codec for the type with the given name.
+     *
+     * @param typeName the name of the type
+     * @return the codec, null if the type is not supported
+     */
+    public static KeyCodec<?> getCodec(@NonNull String typeName) {
+        return CODECS.get(typeName);
+    }
+
+    /**
+     * Get the codec for the type with the given
+     * name, if it reads the type from Redis.
+     *
+     * @param typeName the name of the type, as reported by the TYPE command
+     * @return the codec, null if the type is not supported or is never read from Redis
+     */
+    public static ReadableKeyCodec<?> getReadableCodec(@NonNull String typeName) {
+        return CODECS.get(typeName) instanceof ReadableKeyCodec<?> codec ? codec : null;
+    }
+
+    /**
+     * Get every registered codec.
+     *
+     * @return the codecs
+     */
+    @NonNull
+    public static Collection<KeyCodec<?>> getCodecs() {
+        return CODECS.values();
+    }
+
+    /**
+     * Load the codecs listed by every
+     * {@code META-INF/services/me.braydon.redis.type.KeyCodec}.
+     *
+     * @return the codecs keyed by their type name
+     * @throws IllegalStateException if two codecs handle the same type
+     */
+    @NonNull
+    private static Map<String, KeyCodec<?>> loadCodecs() {
+        Map<String, KeyCodec<?>> codecs = new HashMap<>();
+        for (KeyCodec<?> codec : ServiceLoader.load(KeyCodec.class)) {
+            KeyCodec<?> previous = codecs.putIfAbsent(codec.getTypeName(), codec);
+            if (previous != null) {
+                throw new IllegalStateException("Both " + previous.getClass().getName() + " and "
+                        + codec.getClass().getName() + " handle the type " + codec.getTypeName());
+            }
+        }
+        return Map.copyOf(codecs);
+    }
+}
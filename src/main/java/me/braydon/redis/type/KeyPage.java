@@ -0,0 +1,25 @@
+package me.braydon.redis.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A page of members read from a large key.
+ *
+ * @param <T> the type of value held in memory
+ * @author Braydon
+ * @see ReadableKeyCodec#readPage(redis.clients.jedis.Jedis, byte[], String, int) for reading a page
+ */
+@AllArgsConstructor @Getter
+public final class KeyPage<T> {
+    /**
+     * The cursor of the next page.
+     */
+    @NonNull private final String cursor;
+
+    /**
+     * The members in this page.
+     */
+    @NonNull private final T value;
+}
@@ -0,0 +1,78 @@
+package me.braydon.redis.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import me.braydon.redis.io.DataWriter;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+
+/**
+ * The value of a key, paired with
+ * the codec that understands it.
+ *
+ * @param <T> the type of value held in memory
+ * @author Braydon
+ */
+@AllArgsConstructor @Getter @ToString
+public final class KeyValue<T> {
+    /**
+     * The codec of the value.
+     */
+    @NonNull private final KeyCodec<T> codec;
+
+    /**
+     * The value, null if the key was removed before it was read.
+     */
+    @ToString.Exclude private final T value;
+
+    /**
+     * Queue the commands to save this value to Redis.
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to save the value to
+     * @param append whether to add the members to those already stored
+     * @param batchMembers the maximum amount of members per command
+     * @param batchBytes the maximum amount of member bytes per command
+     * @return the amount of commands queued
+     * @see KeyCodec#saveToRedis(Pipeline, byte[], Object, boolean, int, long) for saving
+     */
+    public int saveToRedis(@NonNull Pipeline pipeline, byte @NonNull [] key, boolean append, int batchMembers, long batchBytes) {
+        return codec.saveToRedis(pipeline, key, value, append, batchMembers, batchBytes);
+    }
+
+    /**
+     * Estimate the size of this value.
+     *
+     * @return the size in bytes
+     * @see KeyCodec#sizeOf(Object) for the estimate
+     */
+    public long sizeOf() {
+        return codec.sizeOf(value);
+    }
+
+    /**
+     * Fold this value into the given digest.
+     *
+     * @param digest the digest of the members folded in so far
+     * @return the digest, unchanged if the key was removed
+     * @see KeyCodec#digest(long, Object) for the digest
+     */
+    public long digest(long digest) {
+        return value == null ? digest : codec.digest(digest, value);
+    }
+
+    /**
+     * Write this value to the given writer.
+     *
+     * @param writer the writer to write to
+     * @param key the key name
+     * @param ttl the time-to-live of the key in seconds
+     * @throws IOException if writing fails
+     */
+    public void writeTo(@NonNull DataWriter writer, @NonNull String key, long ttl) throws IOException {
+        writer.writeKey(key, ttl, codec, value);
+    }
+}
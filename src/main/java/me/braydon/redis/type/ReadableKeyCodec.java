@@ -0,0 +1,70 @@
+package me.braydon.redis.type;
+
+import lombok.NonNull;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link KeyCodec} that also reads the values of its type from Redis.
+ * <p>
+ * The scanners look the codec of a key up with
+ * {@link KeyCodecs#getReadableCodec(String)}, so a type
+ * only written to data files, such as a tombstone,
+ * is never read.
+ * </p>
+ *
+ * @param <T> the type of value held in memory
+ * @author Braydon
+ */
+public interface ReadableKeyCodec<T> extends KeyCodec<T> {
+    /**
+     * Queue the commands required to read the
+     * value of the given key from Redis.
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to read
+     * @return the pending value, only available once the pipeline has been synced
+     * @see Pipeline for pipeline
+     */
+    @NonNull Supplier<T> queueRead(@NonNull Pipeline pipeline, byte @NonNull [] key);
+
+    /**
+     * Queue the command to get the amount
+     * of members in the given key in Redis.
+     * <p>
+     * Keys with more members than the large key size
+     * are read in pages rather than in a single reply.
+     * </p>
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to get the amount of members of
+     * @return the pending amount of members, null if this type is not read in pages
+     * @see #readPage(Jedis, byte[], String, int) for reading a page
+     */
+    default Response<Long> queueLength(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return null;
+    }
+
+    /**
+     * Read the next page of members from the given key in Redis.
+     * <p>
+     * Members may be returned more than once when
+     * the key is modified while it is being read.
+     * </p>
+     *
+     * @param jedis the jedis connection
+     * @param key the key to read
+     * @param cursor the cursor returned by the previous page, {@link ScanParams#SCAN_POINTER_START} for the first
+     * @param count the amount of members to request
+     * @return the page, with a cursor of {@link ScanParams#SCAN_POINTER_START} once every page has been read
+     * @throws UnsupportedOperationException if this type is not read in pages
+     */
+    @NonNull
+    default KeyPage<T> readPage(@NonNull Jedis jedis, byte @NonNull [] key, @NonNull String cursor, int count) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot read in pages");
+    }
+}
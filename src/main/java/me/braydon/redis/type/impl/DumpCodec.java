@@ -0,0 +1,176 @@
+package me.braydon.redis.type.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.common.Digests;
+import me.braydon.redis.io.BinaryDataReader;
+import me.braydon.redis.io.BinaryDataWriter;
+import me.braydon.redis.type.ReadableKeyCodec;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.RestoreParams;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.function.Supplier;
+
+/**
+ * The {@link ReadableKeyCodec} of entries holding a DUMP payload.
+ * <p>
+ * Rather than the members of the key, this moves the
+ * serialized DUMP payload of the key, its real type and
+ * its absolute expiry. This supports every type the
+ * server does, including streams and module types.
+ * </p>
+ *
+ * @author Braydon
+ * @see DumpPayload for the payload
+ */
+public final class DumpCodec implements ReadableKeyCodec<DumpPayload> {
+    /**
+     * The type name used for entries holding a DUMP payload.
+     */
+    public static final String TYPE_NAME = "dump";
+
+    /**
+     * The size of the footer of a DUMP payload, the
+     * two byte RDB version and the eight byte checksum.
+     */
+    private static final int FOOTER_SIZE = 10;
+
+    @Override @NonNull
+    public String getTypeName() {
+        return TYPE_NAME;
+    }
+
+    /**
+     * Queue the TYPE, PTTL and DUMP of the given key.
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to read
+     * @return the pending payload
+     */
+    @Override @NonNull
+    public Supplier<DumpPayload> queueRead(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        Response<String> type = pipeline.type(key);
+        Response<Long> pttl = pipeline.pttl(key);
+        Response<byte[]> payload = pipeline.dump(key);
+        return () -> DumpPayload.captured(type.get(), pttl.get(), payload.get());
+    }
+
+    /**
+     * Queue the RESTORE of the given payload, replacing
+     * the key if it exists and restoring its absolute expiry.
+     * <p>
+     * The server rejects a payload of an RDB version newer than
+     * its own, or with a wrong checksum, so the reply must be read
+     * to know whether the key was restored.
+     * </p>
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to restore the payload to
+     * @param dump the payload to restore
+     * @param append unused, a payload is never saved in pages
+     * @param batchMembers unused, a payload is restored in one command
+     * @param batchBytes unused, a payload is restored in one command
+     * @return the amount of commands queued
+     */
+    @Override
+    public int saveToRedis(@NonNull Pipeline pipeline, byte @NonNull [] key, @NonNull DumpPayload dump,
+                           boolean append, int batchMembers, long batchBytes) {
+        pipeline.restore(key, Math.max(dump.getExpireAt(), 0L), dump.getPayload(), RestoreParams.restoreParams().replace().absTtl());
+        return 1;
+    }
+
+    /**
+     * Check whether the given error is the server rejecting
+     * a payload because of its RDB version or checksum.
+     *
+     * @param error the error the RESTORE was replied to with
+     * @return whether the payload is incompatible with the server
+     */
+    public static boolean isIncompatible(@NonNull RuntimeException error) {
+        return error.getMessage() != null && error.getMessage().contains("payload version or checksum are wrong");
+    }
+
+    @Override
+    public long sizeOf(@NonNull DumpPayload dump) {
+        return dump.getPayload() == null ? 0L : dump.getPayload().length;
+    }
+
+    /**
+     * Fold the serialized value of the given payload into the digest.
+     * <p>
+     * The RDB version and checksum at the end of the payload
+     * are left out, so the payloads of servers of different
+     * versions match if they serialize the value the same way.
+     * </p>
+     *
+     * @param digest the digest of the members folded in so far
+     * @param dump the payload
+     * @return the digest
+     */
+    @Override
+    public long digest(long digest, @NonNull DumpPayload dump) {
+        byte[] payload = dump.getPayload();
+        if (payload == null) {
+            return digest;
+        }
+        return Digests.combine(digest, Digests.hash(payload, 0, Math.max(payload.length - FOOTER_SIZE, 0)));
+    }
+
+    @Override
+    public boolean isJsonArray() {
+        return false;
+    }
+
+    @Override
+    public void writeJson(@NonNull JsonWriter writer, @NonNull DumpPayload dump) throws IOException {
+        writer.name("type").value(dump.getTypeName());
+        writer.name("expireAt").value(dump.getExpireAt());
+        writer.name("payload").value(Base64.getEncoder().encodeToString(dump.getPayload()));
+    }
+
+    @Override @NonNull
+    public DumpPayload readJson(@NonNull JsonReader reader) throws IOException {
+        String typeName = null;
+        long expireAt = -1L;
+        byte[] payload = null;
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type" -> typeName = reader.nextString();
+                case "expireAt" -> expireAt = reader.nextLong();
+                case "payload" -> payload = Base64.getDecoder().decode(reader.nextString());
+                default -> reader.skipValue();
+            }
+        }
+        if (payload == null) {
+            throw new IOException("The dump entry has no payload");
+        }
+        return new DumpPayload(typeName, -1L, expireAt, payload);
+    }
+
+    @Override
+    public void writeBinary(@NonNull BinaryDataWriter writer, @NonNull DumpPayload dump) throws IOException {
+        writer.beginBlock(1, 3); // A single member of the type, expiry and payload
+        writer.writeString(dump.getTypeName());
+        writer.writeLong(dump.getExpireAt());
+        writer.writeField(dump.getPayload());
+    }
+
+    @Override @NonNull
+    public DumpPayload readBinary(@NonNull BinaryDataReader reader) throws IOException {
+        DumpPayload dump = null;
+        int members;
+        while ((members = reader.nextBlock()) > 0) {
+            for (int i = 0; i < members; i++) {
+                dump = new DumpPayload(reader.readString(), -1L, reader.readLong(), reader.readField());
+            }
+        }
+        if (dump == null) {
+            throw new IOException("The dump record has no payload");
+        }
+        return dump;
+    }
+}
@@ -0,0 +1,60 @@
+package me.braydon.redis.type.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * The serialized DUMP payload of a key,
+ * its real type and its absolute expiry.
+ *
+ * @author Braydon
+ * @see DumpCodec for the codec
+ */
+@AllArgsConstructor @Getter @ToString
+public final class DumpPayload {
+    /**
+     * The real type of the key.
+     */
+    private final String typeName;
+
+    /**
+     * The remaining time-to-live in milliseconds when the
+     * payload was captured, -1 if the key doesn't expire.
+     */
+    private final long pttl;
+
+    /**
+     * The unix time in milliseconds the key expires at, -1 if it doesn't.
+     */
+    private final long expireAt;
+
+    /**
+     * The DUMP payload, null if the key no longer exists.
+     */
+    @ToString.Exclude private final byte[] payload;
+
+    /**
+     * Create a payload captured just now with the given time-to-live.
+     *
+     * @param typeName the real type of the key
+     * @param pttl the remaining time-to-live in milliseconds
+     * @param payload the DUMP payload
+     * @return the payload
+     */
+    @NonNull
+    public static DumpPayload captured(String typeName, long pttl, byte[] payload) {
+        return new DumpPayload(typeName, pttl, pttl < 0L ? -1L : System.currentTimeMillis() + pttl, payload);
+    }
+
+    /**
+     * Check whether the key has expired since
+     * the payload was captured.
+     *
+     * @return whether the key has expired
+     */
+    public boolean isExpired() {
+        return expireAt > 0L && expireAt <= System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,162 @@
+package me.braydon.redis.type.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.common.Digests;
+import me.braydon.redis.io.BinaryDataReader;
+import me.braydon.redis.io.BinaryDataWriter;
+import me.braydon.redis.io.JsonStrings;
+import me.braydon.redis.type.KeyPage;
+import me.braydon.redis.type.ReadableKeyCodec;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.util.JedisByteHashMap;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The {@link ReadableKeyCodec} of the "hash" type.
+ * <p>
+ * The data is a json object of every field and its value,
+ * or blocks of two fields per member in a binary record.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class HashCodec implements ReadableKeyCodec<Map<byte[], byte[]>> {
+    @Override @NonNull
+    public String getTypeName() {
+        return "hash";
+    }
+
+    @Override @NonNull
+    public Supplier<Map<byte[], byte[]>> queueRead(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return pipeline.hgetAll(key);
+    }
+
+    @Override
+    public Response<Long> queueLength(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return pipeline.hlen(key);
+    }
+
+    @Override @NonNull
+    public KeyPage<Map<byte[], byte[]>> readPage(@NonNull Jedis jedis, byte @NonNull [] key, @NonNull String cursor, int count) {
+        ScanResult<Map.Entry<byte[], byte[]>> page = jedis.hscan(key, SafeEncoder.encode(cursor), new ScanParams().count(count));
+        Map<byte[], byte[]> fields = new JedisByteHashMap();
+        for (Map.Entry<byte[], byte[]> entry : page.getResult()) {
+            fields.put(entry.getKey(), entry.getValue());
+        }
+        return new KeyPage<>(page.getCursor(), fields);
+    }
+
+    /**
+     * Queue the commands to save the given fields
+     * to Redis, in batches of HSET.
+     * <p>
+     * The key is deleted first, so the fields replace any
+     * already stored rather than being merged with them,
+     * unless they are appended to a key saved in pages.
+     * </p>
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to save the fields to
+     * @param fields the fields to save
+     * @param append whether to add the fields to those already stored
+     * @param batchMembers the maximum amount of fields per command
+     * @param batchBytes the maximum amount of field bytes per command
+     * @return the amount of commands queued
+     */
+    @Override
+    public int saveToRedis(@NonNull Pipeline pipeline, byte @NonNull [] key, @NonNull Map<byte[], byte[]> fields,
+                           boolean append, int batchMembers, long batchBytes) {
+        int commands = 0;
+        if (!append) { // Replace the key, importing it again must not duplicate its fields
+            pipeline.del(key);
+            commands++;
+        }
+        Map<byte[], byte[]> batch = new HashMap<>();
+        long bytes = 0L; // The amount of member bytes in the batch
+        for (Map.Entry<byte[], byte[]> entry : fields.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+            bytes += entry.getKey().length + entry.getValue().length;
+            if (batch.size() >= batchMembers || bytes >= batchBytes) { // The batch is full, save it
+                pipeline.hset(key, batch);
+                commands++;
+                batch = new HashMap<>();
+                bytes = 0L;
+            }
+        }
+        if (!batch.isEmpty()) { // Save the remaining fields
+            pipeline.hset(key, batch);
+            commands++;
+        }
+        return commands;
+    }
+
+    @Override
+    public long sizeOf(@NonNull Map<byte[], byte[]> fields) {
+        long size = 0L;
+        for (Map.Entry<byte[], byte[]> entry : fields.entrySet()) {
+            size += entry.getKey().length + entry.getValue().length;
+        }
+        return size;
+    }
+
+    @Override
+    public long digest(long digest, @NonNull Map<byte[], byte[]> fields) {
+        for (Map.Entry<byte[], byte[]> entry : fields.entrySet()) { // In any order
+            digest += Digests.combine(Digests.hash(entry.getKey()), Digests.hash(entry.getValue()));
+        }
+        return digest;
+    }
+
+    @Override
+    public boolean isJsonArray() {
+        return false;
+    }
+
+    @Override
+    public void writeJson(@NonNull JsonWriter writer, @NonNull Map<byte[], byte[]> fields) throws IOException {
+        for (Map.Entry<byte[], byte[]> entry : fields.entrySet()) {
+            writer.name(JsonStrings.encode(entry.getKey())).value(JsonStrings.encode(entry.getValue()));
+        }
+    }
+
+    @Override @NonNull
+    public Map<byte[], byte[]> readJson(@NonNull JsonReader reader) throws IOException {
+        Map<byte[], byte[]> fields = new JedisByteHashMap();
+        while (reader.hasNext()) {
+            fields.put(JsonStrings.decode(reader.nextName()), JsonStrings.decode(reader.nextString()));
+        }
+        return fields;
+    }
+
+    @Override
+    public void writeBinary(@NonNull BinaryDataWriter writer, @NonNull Map<byte[], byte[]> fields) throws IOException {
+        writer.beginBlock(fields.size(), 2);
+        for (Map.Entry<byte[], byte[]> entry : fields.entrySet()) { // Each member is a field and its value
+            writer.writeField(entry.getKey());
+            writer.writeField(entry.getValue());
+        }
+    }
+
+    @Override @NonNull
+    public Map<byte[], byte[]> readBinary(@NonNull BinaryDataReader reader) throws IOException {
+        Map<byte[], byte[]> fields = new JedisByteHashMap();
+        int members;
+        while ((members = reader.nextBlock()) > 0) {
+            for (int i = 0; i < members; i++) {
+                fields.put(reader.readField(), reader.readField());
+            }
+        }
+        return fields;
+    }
+}
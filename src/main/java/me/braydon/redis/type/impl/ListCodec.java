@@ -0,0 +1,169 @@
+package me.braydon.redis.type.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.common.Digests;
+import me.braydon.redis.io.BinaryDataReader;
+import me.braydon.redis.io.BinaryDataWriter;
+import me.braydon.redis.io.JsonStrings;
+import me.braydon.redis.type.KeyPage;
+import me.braydon.redis.type.ReadableKeyCodec;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The {@link ReadableKeyCodec} of the "list" type.
+ * <p>
+ * The data is a json array of the elements in order,
+ * or blocks of one field per member in a binary record.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class ListCodec implements ReadableKeyCodec<List<byte[]>> {
+    @Override @NonNull
+    public String getTypeName() {
+        return "list";
+    }
+
+    @Override @NonNull
+    public Supplier<List<byte[]>> queueRead(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return pipeline.lrange(key, 0, -1); // Get every element in a single round trip
+    }
+
+    @Override
+    public Response<Long> queueLength(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return pipeline.llen(key);
+    }
+
+    /**
+     * Read the next range of elements from the given list.
+     * <p>
+     * The cursor of a list is the index of the next
+     * element, and a short range is the last one.
+     * </p>
+     *
+     * @param jedis the jedis connection
+     * @param key the key to read
+     * @param cursor the index of the first element in the range
+     * @param count the amount of elements to request
+     * @return the page
+     */
+    @Override @NonNull
+    public KeyPage<List<byte[]>> readPage(@NonNull Jedis jedis, byte @NonNull [] key, @NonNull String cursor, int count) {
+        long start = Long.parseLong(cursor);
+        List<byte[]> elements = jedis.lrange(key, start, start + count - 1);
+        return new KeyPage<>(elements.size() < count ? ScanParams.SCAN_POINTER_START : String.valueOf(start + count), elements);
+    }
+
+    /**
+     * Queue the commands to append the given elements
+     * to Redis, in batches of RPUSH, which keeps them in
+     * the order they were exported.
+     * <p>
+     * The key is deleted first, so the elements replace any
+     * already stored rather than being merged with them,
+     * unless they are appended to a key saved in pages.
+     * </p>
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to save the elements to
+     * @param elements the elements to save
+     * @param append whether to add the elements to those already stored
+     * @param batchMembers the maximum amount of elements per command
+     * @param batchBytes the maximum amount of element bytes per command
+     * @return the amount of commands queued
+     */
+    @Override
+    public int saveToRedis(@NonNull Pipeline pipeline, byte @NonNull [] key, @NonNull List<byte[]> elements,
+                           boolean append, int batchMembers, long batchBytes) {
+        int commands = 0;
+        if (!append) { // Replace the key, importing it again must not duplicate its elements
+            pipeline.del(key);
+            commands++;
+        }
+        List<byte[]> batch = new ArrayList<>();
+        long bytes = 0L; // The amount of member bytes in the batch
+        for (byte[] element : elements) {
+            batch.add(element);
+            bytes += element.length;
+            if (batch.size() >= batchMembers || bytes >= batchBytes) { // The batch is full, save it
+                pipeline.rpush(key, batch.toArray(new byte[0][]));
+                commands++;
+                batch.clear();
+                bytes = 0L;
+            }
+        }
+        if (!batch.isEmpty()) { // Save the remaining elements
+            pipeline.rpush(key, batch.toArray(new byte[0][]));
+            commands++;
+        }
+        return commands;
+    }
+
+    @Override
+    public long sizeOf(@NonNull List<byte[]> elements) {
+        long size = 0L;
+        for (byte[] element : elements) {
+            size += element.length;
+        }
+        return size;
+    }
+
+    @Override
+    public long digest(long digest, @NonNull List<byte[]> elements) {
+        for (byte[] element : elements) { // The order of the elements matters
+            digest = Digests.combine(digest, Digests.hash(element));
+        }
+        return digest;
+    }
+
+    @Override
+    public boolean isJsonArray() {
+        return true;
+    }
+
+    @Override
+    public void writeJson(@NonNull JsonWriter writer, @NonNull List<byte[]> elements) throws IOException {
+        for (byte[] element : elements) {
+            writer.value(JsonStrings.encode(element));
+        }
+    }
+
+    @Override @NonNull
+    public List<byte[]> readJson(@NonNull JsonReader reader) throws IOException {
+        List<byte[]> elements = new ArrayList<>();
+        while (reader.hasNext()) {
+            elements.add(JsonStrings.decode(reader.nextString()));
+        }
+        return elements;
+    }
+
+    @Override
+    public void writeBinary(@NonNull BinaryDataWriter writer, @NonNull List<byte[]> elements) throws IOException {
+        writer.beginBlock(elements.size(), 1);
+        for (byte[] element : elements) {
+            writer.writeField(element);
+        }
+    }
+
+    @Override @NonNull
+    public List<byte[]> readBinary(@NonNull BinaryDataReader reader) throws IOException {
+        List<byte[]> elements = new ArrayList<>();
+        int members;
+        while ((members = reader.nextBlock()) > 0) {
+            for (int i = 0; i < members; i++) {
+                elements.add(reader.readField());
+            }
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,159 @@
+package me.braydon.redis.type.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.common.Digests;
+import me.braydon.redis.io.BinaryDataReader;
+import me.braydon.redis.io.BinaryDataWriter;
+import me.braydon.redis.io.JsonStrings;
+import me.braydon.redis.type.KeyPage;
+import me.braydon.redis.type.ReadableKeyCodec;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The {@link ReadableKeyCodec} of the "set" type.
+ * <p>
+ * The data is a json array of the members, or blocks
+ * of one field per member in a binary record. Arrays
+ * have no value equality, so the members are kept as
+ * they were read rather than in a set.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class SetCodec implements ReadableKeyCodec<Collection<byte[]>> {
+    @Override @NonNull
+    public String getTypeName() {
+        return "set";
+    }
+
+    @Override @NonNull
+    public Supplier<Collection<byte[]>> queueRead(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return pipeline.smembers(key)::get;
+    }
+
+    @Override
+    public Response<Long> queueLength(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return pipeline.scard(key);
+    }
+
+    @Override @NonNull
+    public KeyPage<Collection<byte[]>> readPage(@NonNull Jedis jedis, byte @NonNull [] key, @NonNull String cursor, int count) {
+        ScanResult<byte[]> page = jedis.sscan(key, SafeEncoder.encode(cursor), new ScanParams().count(count));
+        return new KeyPage<>(page.getCursor(), page.getResult());
+    }
+
+    /**
+     * Queue the commands to save the given members
+     * to Redis, in batches of SADD.
+     * <p>
+     * The key is deleted first, so the members replace any
+     * already stored rather than being merged with them,
+     * unless they are appended to a key saved in pages.
+     * </p>
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to save the members to
+     * @param members the members to save
+     * @param append whether to add the members to those already stored
+     * @param batchMembers the maximum amount of members per command
+     * @param batchBytes the maximum amount of member bytes per command
+     * @return the amount of commands queued
+     */
+    @Override
+    public int saveToRedis(@NonNull Pipeline pipeline, byte @NonNull [] key, @NonNull Collection<byte[]> members,
+                           boolean append, int batchMembers, long batchBytes) {
+        int commands = 0;
+        if (!append) { // Replace the key, importing it again must not duplicate its members
+            pipeline.del(key);
+            commands++;
+        }
+        List<byte[]> batch = new ArrayList<>();
+        long bytes = 0L; // The amount of member bytes in the batch
+        for (byte[] member : members) {
+            batch.add(member);
+            bytes += member.length;
+            if (batch.size() >= batchMembers || bytes >= batchBytes) { // The batch is full, save it
+                pipeline.sadd(key, batch.toArray(new byte[0][]));
+                commands++;
+                batch.clear();
+                bytes = 0L;
+            }
+        }
+        if (!batch.isEmpty()) { // Save the remaining members
+            pipeline.sadd(key, batch.toArray(new byte[0][]));
+            commands++;
+        }
+        return commands;
+    }
+
+    @Override
+    public long sizeOf(@NonNull Collection<byte[]> members) {
+        long size = 0L;
+        for (byte[] member : members) {
+            size += member.length;
+        }
+        return size;
+    }
+
+    @Override
+    public long digest(long digest, @NonNull Collection<byte[]> members) {
+        for (byte[] member : members) { // In any order
+            digest += Digests.hash(member);
+        }
+        return digest;
+    }
+
+    @Override
+    public boolean isJsonArray() {
+        return true;
+    }
+
+    @Override
+    public void writeJson(@NonNull JsonWriter writer, @NonNull Collection<byte[]> members) throws IOException {
+        for (byte[] member : members) {
+            writer.value(JsonStrings.encode(member));
+        }
+    }
+
+    @Override @NonNull
+    public Collection<byte[]> readJson(@NonNull JsonReader reader) throws IOException {
+        List<byte[]> members = new ArrayList<>();
+        while (reader.hasNext()) {
+            members.add(JsonStrings.decode(reader.nextString()));
+        }
+        return members;
+    }
+
+    @Override
+    public void writeBinary(@NonNull BinaryDataWriter writer, @NonNull Collection<byte[]> members) throws IOException {
+        writer.beginBlock(members.size(), 1);
+        for (byte[] member : members) {
+            writer.writeField(member);
+        }
+    }
+
+    @Override @NonNull
+    public Collection<byte[]> readBinary(@NonNull BinaryDataReader reader) throws IOException {
+        List<byte[]> members = new ArrayList<>();
+        int count;
+        while ((count = reader.nextBlock()) > 0) {
+            for (int i = 0; i < count; i++) {
+                members.add(reader.readField());
+            }
+        }
+        return members;
+    }
+}
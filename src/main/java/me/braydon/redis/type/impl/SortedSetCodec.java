@@ -0,0 +1,204 @@
+package me.braydon.redis.type.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.common.Digests;
+import me.braydon.redis.io.BinaryDataReader;
+import me.braydon.redis.io.BinaryDataWriter;
+import me.braydon.redis.io.JsonStrings;
+import me.braydon.redis.type.KeyPage;
+import me.braydon.redis.type.ReadableKeyCodec;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.resps.Tuple;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The {@link ReadableKeyCodec} of the "zset" type.
+ * <p>
+ * The data is a json object of every member and its score,
+ * or blocks of two fields per member in a binary record.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class SortedSetCodec implements ReadableKeyCodec<List<Tuple>> {
+    @Override @NonNull
+    public String getTypeName() {
+        return "zset";
+    }
+
+    @Override @NonNull
+    public Supplier<List<Tuple>> queueRead(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return pipeline.zrangeByScoreWithScores(key, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public Response<Long> queueLength(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return pipeline.zcard(key);
+    }
+
+    @Override @NonNull
+    public KeyPage<List<Tuple>> readPage(@NonNull Jedis jedis, byte @NonNull [] key, @NonNull String cursor, int count) {
+        ScanResult<Tuple> page = jedis.zscan(key, SafeEncoder.encode(cursor), new ScanParams().count(count));
+        return new KeyPage<>(page.getCursor(), page.getResult());
+    }
+
+    /**
+     * Queue the commands to save the given members
+     * to Redis, in batches of ZADD.
+     * <p>
+     * The key is deleted first, so the members replace any
+     * already stored rather than being merged with them,
+     * unless they are appended to a key saved in pages.
+     * </p>
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to save the members to
+     * @param members the members to save
+     * @param append whether to add the members to those already stored
+     * @param batchMembers the maximum amount of members per command
+     * @param batchBytes the maximum amount of member bytes per command
+     * @return the amount of commands queued
+     */
+    @Override
+    public int saveToRedis(@NonNull Pipeline pipeline, byte @NonNull [] key, @NonNull List<Tuple> members,
+                           boolean append, int batchMembers, long batchBytes) {
+        int commands = 0;
+        if (!append) { // Replace the key, importing it again must not duplicate its members
+            pipeline.del(key);
+            commands++;
+        }
+        Map<byte[], Double> batch = new HashMap<>();
+        long bytes = 0L; // The amount of member bytes in the batch
+        for (Tuple member : members) {
+            batch.put(member.getBinaryElement(), member.getScore());
+            bytes += member.getBinaryElement().length + Double.BYTES;
+            if (batch.size() >= batchMembers || bytes >= batchBytes) { // The batch is full, save it
+                pipeline.zadd(key, batch);
+                commands++;
+                batch = new HashMap<>();
+                bytes = 0L;
+            }
+        }
+        if (!batch.isEmpty()) { // Save the remaining members
+            pipeline.zadd(key, batch);
+            commands++;
+        }
+        return commands;
+    }
+
+    @Override
+    public long sizeOf(@NonNull List<Tuple> members) {
+        long size = 0L;
+        for (Tuple member : members) {
+            size += member.getBinaryElement().length + Double.BYTES;
+        }
+        return size;
+    }
+
+    @Override
+    public long digest(long digest, @NonNull List<Tuple> members) {
+        for (Tuple member : members) { // In any order, members with equal scores may come in any order
+            digest += Digests.combine(Digests.hash(member.getBinaryElement()), Digests.mix(Double.doubleToLongBits(member.getScore())));
+        }
+        return digest;
+    }
+
+    @Override
+    public boolean isJsonArray() {
+        return false;
+    }
+
+    /**
+     * Write the members as an object of their scores.
+     * <p>
+     * Json has no infinite numbers, so an infinite
+     * score is written as "inf" or "-inf", the
+     * way Redis itself writes it.
+     * </p>
+     *
+     * @param writer the writer to write to
+     * @param members the members to write
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeJson(@NonNull JsonWriter writer, @NonNull List<Tuple> members) throws IOException {
+        for (Tuple member : members) {
+            writer.name(JsonStrings.encode(member.getBinaryElement()));
+            double score = member.getScore();
+            if (Double.isInfinite(score)) {
+                writer.value(score > 0D ? "inf" : "-inf");
+            } else {
+                writer.value(score);
+            }
+        }
+    }
+
+    @Override @NonNull
+    public List<Tuple> readJson(@NonNull JsonReader reader) throws IOException {
+        List<Tuple> members = new ArrayList<>();
+        while (reader.hasNext()) {
+            byte[] element = JsonStrings.decode(reader.nextName());
+            members.add(new Tuple(element, reader.peek() == JsonToken.STRING ? parseScore(reader.nextString()) : reader.nextDouble()));
+        }
+        return members;
+    }
+
+    /**
+     * Parse a score written as a string, accepting
+     * the infinities the way ZADD does.
+     *
+     * @param score the score
+     * @return the parsed score
+     * @throws IOException if the score isn't a number
+     */
+    private static double parseScore(@NonNull String score) throws IOException {
+        String lower = score.toLowerCase(Locale.ROOT);
+        if (lower.equals("inf") || lower.equals("+inf")) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (lower.equals("-inf")) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        try {
+            return Double.parseDouble(score);
+        } catch (NumberFormatException ex) {
+            throw new IOException("The score '" + score + "' is not a number", ex);
+        }
+    }
+
+    @Override
+    public void writeBinary(@NonNull BinaryDataWriter writer, @NonNull List<Tuple> members) throws IOException {
+        writer.beginBlock(members.size(), 2);
+        for (Tuple member : members) { // Each member is a key and its score
+            writer.writeField(member.getBinaryElement());
+            writer.writeDouble(member.getScore());
+        }
+    }
+
+    @Override @NonNull
+    public List<Tuple> readBinary(@NonNull BinaryDataReader reader) throws IOException {
+        List<Tuple> members = new ArrayList<>();
+        int count;
+        while ((count = reader.nextBlock()) > 0) {
+            for (int i = 0; i < count; i++) {
+                members.add(new Tuple(reader.readField(), reader.readDouble()));
+            }
+        }
+        return members;
+    }
+}
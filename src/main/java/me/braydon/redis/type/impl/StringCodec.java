@@ -0,0 +1,105 @@
+package me.braydon.redis.type.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.common.Digests;
+import me.braydon.redis.io.BinaryDataReader;
+import me.braydon.redis.io.BinaryDataWriter;
+import me.braydon.redis.io.JsonStrings;
+import me.braydon.redis.type.ReadableKeyCodec;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * The {@link ReadableKeyCodec} of the "string" type.
+ * <p>
+ * The data is a json array holding the value, or a
+ * single block of one field in a binary record. The
+ * value is null if the key was removed before it was
+ * read, it is then written without a block.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class StringCodec implements ReadableKeyCodec<byte[]> {
+    @Override @NonNull
+    public String getTypeName() {
+        return "string";
+    }
+
+    @Override @NonNull
+    public Supplier<byte[]> queueRead(@NonNull Pipeline pipeline, byte @NonNull [] key) {
+        return pipeline.get(key); // Load the string
+    }
+
+    @Override
+    public int saveToRedis(@NonNull Pipeline pipeline, byte @NonNull [] key, byte[] value, boolean append,
+                           int batchMembers, long batchBytes) {
+        if (value == null) { // Nothing to save
+            return 0;
+        }
+        pipeline.set(key, value); // Save the string
+        return 1;
+    }
+
+    @Override
+    public long sizeOf(byte[] value) {
+        return value == null ? 0L : value.length;
+    }
+
+    @Override
+    public long digest(long digest, byte[] value) {
+        return value == null ? digest : Digests.combine(digest, Digests.hash(value));
+    }
+
+    @Override
+    public boolean isJsonArray() {
+        return true;
+    }
+
+    @Override
+    public void writeJson(@NonNull JsonWriter writer, byte[] value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else {
+            writer.value(JsonStrings.encode(value));
+        }
+    }
+
+    @Override
+    public byte[] readJson(@NonNull JsonReader reader) throws IOException {
+        byte[] value = null;
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else {
+                value = JsonStrings.decode(reader.nextString());
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void writeBinary(@NonNull BinaryDataWriter writer, byte[] value) throws IOException {
+        if (value != null) {
+            writer.beginBlock(1, 1);
+            writer.writeField(value);
+        }
+    }
+
+    @Override
+    public byte[] readBinary(@NonNull BinaryDataReader reader) throws IOException {
+        byte[] value = null;
+        int members;
+        while ((members = reader.nextBlock()) > 0) {
+            for (int i = 0; i < members; i++) {
+                value = reader.readField();
+            }
+        }
+        return value;
+    }
+}
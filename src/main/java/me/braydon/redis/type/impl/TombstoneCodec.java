@@ -0,0 +1,97 @@
+package me.braydon.redis.type.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import me.braydon.redis.io.BinaryDataReader;
+import me.braydon.redis.io.BinaryDataWriter;
+import me.braydon.redis.type.KeyCodec;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+
+/**
+ * The {@link KeyCodec} of tombstones, the entries of
+ * an incremental export recording a deleted key.
+ * <p>
+ * A tombstone has no value, importing it deletes the
+ * key, so applying an incremental export on top of the
+ * export it was compared with removes the keys that
+ * were deleted in between.
+ * </p>
+ * <p>
+ * A tombstone is never stored in Redis, so this
+ * codec only writes to Redis and never reads.
+ * </p>
+ *
+ * @author Braydon
+ */
+public final class TombstoneCodec implements KeyCodec<Void> {
+    /**
+     * The type name used for tombstones.
+     */
+    public static final String TYPE_NAME = "deleted";
+
+    @Override @NonNull
+    public String getTypeName() {
+        return TYPE_NAME;
+    }
+
+    /**
+     * Queue the deletion of the given key.
+     *
+     * @param pipeline the pipelined jedis connection
+     * @param key the key to delete
+     * @param value unused, a tombstone has no value
+     * @param append unused, a tombstone is never saved in pages
+     * @param batchMembers unused, a tombstone has no members
+     * @param batchBytes unused, a tombstone has no members
+     * @return the amount of commands queued
+     */
+    @Override
+    public int saveToRedis(@NonNull Pipeline pipeline, byte @NonNull [] key, Void value, boolean append, int batchMembers, long batchBytes) {
+        pipeline.del(key);
+        return 1;
+    }
+
+    @Override
+    public long sizeOf(Void value) {
+        return 0L;
+    }
+
+    @Override
+    public long digest(long digest, Void value) {
+        return digest;
+    }
+
+    @Override
+    public boolean isJsonArray() {
+        return false;
+    }
+
+    @Override
+    public void writeJson(@NonNull JsonWriter writer, Void value) {
+        // A tombstone has no members
+    }
+
+    @Override
+    public Void readJson(@NonNull JsonReader reader) throws IOException {
+        while (reader.hasNext()) { // Written by a newer version
+            reader.skipValue();
+        }
+        return null;
+    }
+
+    @Override
+    public void writeBinary(@NonNull BinaryDataWriter writer, Void value) {
+        // A tombstone has no members
+    }
+
+    @Override
+    public Void readBinary(@NonNull BinaryDataReader reader) throws IOException {
+        if (reader.nextBlock() > 0) { // The end of the record must follow straight away
+            throw new IOException("The tombstone record has members");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,139 @@
+package me.braydon.redis.common;
+
+import lombok.NonNull;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the parsing of CLUSTER NODES replies by {@link ClusterTopology}.
+ *
+ * @author Braydon
+ */
+final class ClusterTopologyTest {
+    private static final String SEED_HOST = "seed.example";
+
+    @Test
+    void parsesTheMastersAndTheirSlots() {
+        ClusterTopology topology = ClusterTopology.parse("""
+                a1 10.0.0.1:7001@17001 myself,master - 0 0 1 connected 0-5460
+                a2 10.0.0.2:7002@17002 master - 0 1700000000000 2 connected 5461-10922
+                a3 10.0.0.3:7003@17003 master - 0 1700000000000 3 connected 10923-16383
+                b1 10.0.0.4:7004@17004 slave a1 0 1700000000000 1 connected
+                """, SEED_HOST);
+        assertEquals(List.of(new HostAndPort("10.0.0.1", 7001), new HostAndPort("10.0.0.2", 7002),
+                new HostAndPort("10.0.0.3", 7003)), topology.getMasters());
+        assertMaster(topology, 0, 0);
+        assertMaster(topology, 5460, 0);
+        assertMaster(topology, 5461, 1);
+        assertMaster(topology, 10922, 1);
+        assertMaster(topology, 10923, 2);
+        assertMaster(topology, 16383, 2);
+    }
+
+    @Test
+    void usesTheSeedHostForAnAddressWithoutHost() {
+        ClusterTopology topology = ClusterTopology.parse("""
+                a1 :7001@17001 myself,master - 0 0 1 connected 0-8191
+                a2 10.0.0.2:7002@17002 master - 0 1700000000000 2 connected 8192-16383
+                """, SEED_HOST);
+        assertEquals(new HostAndPort(SEED_HOST, 7001), topology.getMasters().get(0));
+        assertEquals(new HostAndPort("10.0.0.2", 7002), topology.getMasters().get(1));
+    }
+
+    @Test
+    void dropsTheBusPortAndHostname() {
+        ClusterTopology topology = ClusterTopology.parse("""
+                a1 10.0.0.1:7001@17001,node-1.example myself,master - 0 0 1 connected 0-8191
+                a2 10.0.0.2:7002@17002,node-2.example master - 0 1700000000000 2 connected 8192-16383
+                """, SEED_HOST);
+        assertEquals(List.of(new HostAndPort("10.0.0.1", 7001), new HostAndPort("10.0.0.2", 7002)), topology.getMasters());
+    }
+
+    @Test
+    void keepsMigratingSlotsOnTheirCurrentMaster() {
+        ClusterTopology topology = ClusterTopology.parse("""
+                a1 10.0.0.1:7001@17001 myself,master - 0 0 1 connected 0-8191 [8191->-a2]
+                a2 10.0.0.2:7002@17002 master - 0 1700000000000 2 connected 8192-16383 [8191-<-a1]
+                """, SEED_HOST);
+        assertEquals(2, topology.getMasters().size());
+        assertMaster(topology, 8191, 0);
+        assertMaster(topology, 8192, 1);
+    }
+
+    @Test
+    void parsesSingleSlots() {
+        ClusterTopology topology = ClusterTopology.parse("""
+                a1 10.0.0.1:7001@17001 myself,master - 0 0 1 connected 0-99 100 102-16383
+                a2 10.0.0.2:7002@17002 master - 0 1700000000000 2 connected 101
+                """, SEED_HOST);
+        assertMaster(topology, 100, 0);
+        assertMaster(topology, 101, 1);
+        assertMaster(topology, 102, 0);
+    }
+
+    @Test
+    void skipsFailedMasters() {
+        ClusterTopology topology = ClusterTopology.parse("""
+                a1 10.0.0.1:7001@17001 myself,master - 0 0 1 connected 0-8191
+                a2 10.0.0.2:7002@17002 master - 0 1700000000000 3 connected 8192-16383
+                a3 10.0.0.3:7003@17003 master,fail - 1700000000000 1700000000000 2 disconnected 8192-16383
+                a4 10.0.0.4:7004@17004 master,noaddr - 1700000000000 1700000000000 2 disconnected 8192-16383
+                """, SEED_HOST);
+        assertEquals(List.of(new HostAndPort("10.0.0.1", 7001), new HostAndPort("10.0.0.2", 7002)), topology.getMasters());
+        assertMaster(topology, 8192, 1);
+        assertMaster(topology, 16383, 1);
+    }
+
+    @Test
+    void rejectsAnUnservedSlot() {
+        String nodes = """
+                a1 10.0.0.1:7001@17001 myself,master - 0 0 1 connected 0-8191
+                a2 10.0.0.2:7002@17002 master - 0 1700000000000 2 connected 8193-16383
+                """;
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> ClusterTopology.parse(nodes, SEED_HOST));
+        assertEquals("Hash slot 8192 isn't served by any master, is the cluster healthy?", ex.getMessage());
+    }
+
+    @Test
+    void rejectsTheSlotsOfAFailedMaster() {
+        String nodes = """
+                a1 10.0.0.1:7001@17001 myself,master - 0 0 1 connected 0-8191
+                a2 10.0.0.2:7002@17002 master,fail - 1700000000000 1700000000000 2 disconnected 8192-16383
+                """;
+        assertThrows(IllegalStateException.class, () -> ClusterTopology.parse(nodes, SEED_HOST));
+    }
+
+    /**
+     * Assert that a key in the given slot is sent to the given master.
+     *
+     * @param topology the topology
+     * @param slot the hash slot
+     * @param master the index of the expected master
+     */
+    private static void assertMaster(@NonNull ClusterTopology topology, int slot, int master) {
+        assertEquals(master, topology.getMaster(keyInSlot(slot).getBytes(StandardCharsets.UTF_8)), "slot " + slot);
+    }
+
+    /**
+     * Find a key name in the given hash slot.
+     *
+     * @param slot the hash slot
+     * @return the key name
+     */
+    @NonNull
+    private static String keyInSlot(int slot) {
+        for (int i = 0; ; i++) {
+            String key = "key:" + i;
+            if (JedisClusterCRC16.getSlot(key) == slot) {
+                return key;
+            }
+        }
+    }
+}
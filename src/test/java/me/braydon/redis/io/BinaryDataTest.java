@@ -0,0 +1,276 @@
+package me.braydon.redis.io;
+
+import lombok.NonNull;
+import me.braydon.redis.type.impl.HashCodec;
+import me.braydon.redis.type.impl.ListCodec;
+import me.braydon.redis.type.impl.SetCodec;
+import me.braydon.redis.type.impl.SortedSetCodec;
+import me.braydon.redis.type.impl.StringCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import redis.clients.jedis.resps.Tuple;
+import redis.clients.jedis.util.JedisByteHashMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for writing and reading binary data files, and
+ * for rejecting the ones that are truncated or corrupt.
+ *
+ * @author Braydon
+ */
+final class BinaryDataTest {
+    private static final HashCodec HASH = new HashCodec();
+    private static final ListCodec LIST = new ListCodec();
+    private static final SetCodec SET = new SetCodec();
+    private static final SortedSetCodec SORTED_SET = new SortedSetCodec();
+    private static final StringCodec STRING = new StringCodec();
+
+    /**
+     * A value larger than the buffers of the writer and reader.
+     */
+    private static final byte[] LARGE = new byte[BinaryDataWriter.BUFFER_SIZE * 3 + 17];
+
+    static {
+        for (int i = 0; i < LARGE.length; i++) {
+            LARGE[i] = (byte) (i * 31);
+        }
+    }
+
+    @TempDir File directory;
+
+    @Test
+    void readsWhatWasWritten() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(new BinaryDataWriter(out));
+        assertWritten(new BinaryDataReader(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void readsWhatWasWrittenCompressed() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(new BinaryDataWriter(new ParallelGzipOutputStream(out, 4)));
+        assertWritten(new BinaryDataReader(new ParallelGzipInputStream(new ByteArrayInputStream(out.toByteArray()), 4)));
+    }
+
+    @Test
+    void readsWhatWasWrittenToAFile() throws IOException {
+        for (boolean compress : new boolean[] { false, true }) {
+            File file = new File(directory, compress ? "data.bin.gz" : "data.bin");
+            write(DataFormat.BINARY.openWriter(file, compress, 2));
+            assertEquals(compress, DataFormat.isCompressed(file));
+            assertWritten(DataFormat.BINARY.openReader(file, 2));
+        }
+    }
+
+    @Test
+    void rejectsATruncatedFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(new BinaryDataWriter(out));
+        byte[] bytes = out.toByteArray();
+        for (int length : new int[] { 5, 9, 40, bytes.length / 2, bytes.length - 1 }) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(EOFException.class, () -> readAll(new ByteArrayInputStream(truncated)), "cut at " + length);
+        }
+    }
+
+    @Test
+    void rejectsATruncatedCompressedFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(new BinaryDataWriter(new ParallelGzipOutputStream(out, 2)));
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() / 2);
+        assertThrows(IOException.class, () -> readAll(new ParallelGzipInputStream(new ByteArrayInputStream(truncated), 2)));
+    }
+
+    @Test
+    void rejectsANegativeFieldLength() {
+        byte[] bytes = record(-1);
+        IOException ex = assertThrows(IOException.class, () -> readAll(new ByteArrayInputStream(bytes)));
+        assertTrue(ex.getMessage().contains("corrupt"), ex.getMessage());
+    }
+
+    @Test
+    void rejectsAFieldLongerThanTheStream() {
+        byte[] bytes = record(Integer.MAX_VALUE - 8); // Never allocated, the stream ends first
+        assertThrows(EOFException.class, () -> readAll(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void rejectsAFieldLongerThanTheFile() throws IOException {
+        File file = new File(directory, "corrupt.bin");
+        Files.write(file.toPath(), record(1 << 30));
+        IOException ex = assertThrows(IOException.class, () -> readAll(DataFormat.BINARY.openReader(file, 1)));
+        assertTrue(ex.getMessage().contains("corrupt"), ex.getMessage());
+    }
+
+    @Test
+    void rejectsANegativeMemberCount() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(header());
+        out.write(BinaryDataWriter.KEY_RECORD);
+        out.write(field("key"));
+        out.write(field(LIST.getTypeName()));
+        out.write(ByteBuffer.allocate(Long.BYTES).putLong(-1L).array());
+        out.write(ByteBuffer.allocate(Integer.BYTES + 1).putInt(-5).put((byte) 1).array()); // A block of -5 members
+        IOException ex = assertThrows(IOException.class, () -> readAll(new ByteArrayInputStream(out.toByteArray())));
+        assertTrue(ex.getMessage().contains("corrupt"), ex.getMessage());
+    }
+
+    @Test
+    void rejectsACorruptKeyNameInTheIndex() {
+        byte[] negative = ByteBuffer.allocate(Integer.BYTES).putInt(-1).array();
+        assertThrows(IOException.class, () -> KeyIndex.readKey(new DataInputStream(new ByteArrayInputStream(negative)), 100L));
+        byte[] tooLong = ByteBuffer.allocate(Integer.BYTES + 3).putInt(101).put(new byte[3]).array();
+        assertThrows(IOException.class, () -> KeyIndex.readKey(new DataInputStream(new ByteArrayInputStream(tooLong)), 100L));
+    }
+
+    /**
+     * Write a key of every type, including one written in
+     * pages and one larger than the buffers, then close.
+     *
+     * @param writer the writer
+     * @throws IOException if writing fails
+     */
+    private static void write(@NonNull DataWriter writer) throws IOException {
+        try (writer) {
+            writer.writeKey("string", -1L, STRING, bytes("value"));
+            writer.writeKey("large", 60L, STRING, LARGE);
+            Map<byte[], byte[]> fields = new JedisByteHashMap();
+            fields.put(bytes("a"), bytes("1"));
+            fields.put(bytes("b"), new byte[0]);
+            writer.writeKey("hash", 3600L, HASH, fields);
+            writer.beginKey("list", -1L, LIST); // Written a page at a time
+            writer.writeMembers(LIST, List.of(bytes("one"), bytes("two")));
+            writer.writeMembers(LIST, List.of(bytes("three")));
+            writer.endKey();
+            writer.writeKey("set", -1L, SET, List.of(bytes("x")));
+            writer.writeKey("zset", -1L, SORTED_SET, List.of(new Tuple("low", Double.NEGATIVE_INFINITY), new Tuple("mid", 1.5D)));
+        }
+    }
+
+    /**
+     * Assert that the given reader reads the keys written by {@link #write(DataWriter)}, then close it.
+     *
+     * @param reader the reader
+     * @throws IOException if reading fails
+     */
+    @SuppressWarnings("unchecked")
+    private static void assertWritten(@NonNull DataReader reader) throws IOException {
+        try (reader) {
+            DataEntry string = reader.next();
+            assertEquals("string", string.getKey());
+            assertEquals(-1L, string.getTtl());
+            assertArrayEquals(bytes("value"), (byte[]) string.getKeyValue().getValue());
+
+            DataEntry large = reader.next();
+            assertEquals(60L, large.getTtl());
+            assertArrayEquals(LARGE, (byte[]) large.getKeyValue().getValue());
+
+            DataEntry hash = reader.next();
+            assertEquals("hash", hash.getTypeName());
+            assertEquals(3600L, hash.getTtl());
+            Map<byte[], byte[]> fields = (Map<byte[], byte[]>) hash.getKeyValue().getValue();
+            assertEquals(2, fields.size());
+            assertArrayEquals(bytes("1"), fields.get(bytes("a")));
+            assertArrayEquals(new byte[0], fields.get(bytes("b")));
+
+            DataEntry list = reader.next();
+            assertEquals(List.of("one", "two", "three"), strings((List<byte[]>) list.getKeyValue().getValue()));
+
+            DataEntry set = reader.next();
+            assertEquals(List.of("x"), strings(new ArrayList<>((Collection<byte[]>) set.getKeyValue().getValue())));
+
+            DataEntry zset = reader.next();
+            List<Tuple> members = (List<Tuple>) zset.getKeyValue().getValue();
+            assertEquals(List.of(new Tuple("low", Double.NEGATIVE_INFINITY), new Tuple("mid", 1.5D)), members);
+
+            assertNull(reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    /**
+     * Read every entry from the given stream of a binary data file.
+     *
+     * @param in the stream
+     * @throws IOException if reading fails
+     */
+    private static void readAll(@NonNull InputStream in) throws IOException {
+        readAll(new BinaryDataReader(in));
+    }
+
+    /**
+     * Read every entry from the given reader, then close it.
+     *
+     * @param reader the reader
+     * @throws IOException if reading fails
+     */
+    private static void readAll(@NonNull DataReader reader) throws IOException {
+        try (reader) {
+            while (reader.next() != null) {
+                // Every entry is parsed
+            }
+        }
+    }
+
+    /**
+     * Get a data file holding a single record whose
+     * key name claims to be of the given length.
+     *
+     * @param length the length of the key name
+     * @return the bytes of the data file
+     */
+    private static byte @NonNull [] record(int length) {
+        byte[] header = header();
+        return ByteBuffer.allocate(header.length + 1 + Integer.BYTES + 3)
+                .put(header)
+                .put(BinaryDataWriter.KEY_RECORD)
+                .putInt(length)
+                .put(bytes("key"))
+                .array();
+    }
+
+    private static byte @NonNull [] header() {
+        byte[] header = Arrays.copyOf(BinaryDataWriter.MAGIC, BinaryDataWriter.MAGIC.length + 1);
+        header[BinaryDataWriter.MAGIC.length] = BinaryDataWriter.VERSION;
+        return header;
+    }
+
+    private static byte @NonNull [] field(@NonNull String value) {
+        byte[] bytes = bytes(value);
+        return ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).array();
+    }
+
+    private static byte @NonNull [] bytes(@NonNull String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @NonNull
+    private static List<String> strings(@NonNull List<byte[]> values) {
+        List<String> strings = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            strings.add(new String(value, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+}
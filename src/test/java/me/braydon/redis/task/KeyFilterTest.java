@@ -0,0 +1,112 @@
+package me.braydon.redis.task;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the glob-style matching of {@link KeyFilter},
+ * which must agree with the matching of SCAN on the server.
+ *
+ * @author Braydon
+ */
+final class KeyFilterTest {
+    @ParameterizedTest(name = "{0} matches {1}: {2}")
+    @CsvSource(delimiter = '|', textBlock = """
+            # Stars
+            *         | ''        | true
+            *         | anything  | true
+            user:*    | user:     | true
+            user:*    | user:1    | true
+            user:*    | users:1   | false
+            *:1       | user:1    | true
+            *:1       | user:12   | false
+            a*b*c     | axxbyyc   | true
+            a*b*c     | abc       | true
+            a*b*c     | axxbyy    | false
+            a**b      | ab        | true
+            a**b      | axxb      | true
+            # Question marks
+            h?llo     | hello     | true
+            h?llo     | hllo      | false
+            h?llo     | heello    | false
+            ??        | ab        | true
+            ??        | a         | false
+            # Sets
+            h[ae]llo  | hallo     | true
+            h[ae]llo  | hello     | true
+            h[ae]llo  | hillo     | false
+            h[ae]llo  | hllo      | false
+            h[^e]llo  | hallo     | true
+            h[^e]llo  | hello     | false
+            h[^ae]llo | hillo     | true
+            h[^ae]llo | hallo     | false
+            # Ranges
+            h[a-c]llo | hbllo     | true
+            h[a-c]llo | hcllo     | true
+            h[a-c]llo | hdllo     | false
+            h[c-a]llo | hallo     | true
+            h[^a-c]lo | hdlo      | true
+            h[^a-c]lo | hblo      | false
+            key[0-9]  | key7      | true
+            key[0-9]  | keyx      | false
+            # Escapes
+            h\\*llo   | h*llo     | true
+            h\\*llo   | hello     | false
+            h\\?llo   | h?llo     | true
+            h\\?llo   | hello     | false
+            h\\[a]llo | h[a]llo   | true
+            h\\[a]llo | hallo     | false
+            h[\\]]llo | h]llo     | true
+            h[\\^]llo | h^llo     | true
+            h[\\^]llo | hallo     | false
+            a\\       | a\\       | true
+            # Literals
+            hello     | hello     | true
+            hello     | hello!    | false
+            hello     | hell      | false
+            """)
+    void matchesLikeScan(String pattern, String key, boolean expected) {
+        KeyFilter filter = KeyFilter.builder().pattern(pattern).build();
+        assertEquals(expected, filter.matchesName(key));
+    }
+
+    @Test
+    void matchesEveryNameWithoutPattern() {
+        KeyFilter filter = KeyFilter.builder().build();
+        assertTrue(filter.matchesName(""));
+        assertTrue(filter.matchesName("[*?\\"));
+    }
+
+    @Test
+    void matchesTheType() {
+        KeyFilter filter = KeyFilter.builder().pattern("user:*").typeName("hash").build();
+        assertTrue(filter.matches("user:1", "hash"));
+        assertFalse(filter.matches("user:1", "string"));
+        assertFalse(filter.matches("order:1", "hash"));
+    }
+
+    @ParameterizedTest(name = "{0} starts with {1}")
+    @CsvSource(delimiter = '|', textBlock = """
+            plain       | plain
+            user:*      | user:
+            user:?      | user:
+            user:[ab]   | user:
+            user:\\*    | user:
+            *           | ''
+            ?           | ''
+            a*b         | a
+            """)
+    void getsThePrefix(String pattern, String prefix) {
+        assertEquals(prefix, KeyFilter.builder().pattern(pattern).build().getPrefix());
+    }
+
+    @Test
+    void getsNoPrefixWithoutPattern() {
+        assertEquals("", KeyFilter.builder().build().getPrefix());
+    }
+}